@@ -0,0 +1,268 @@
+package client;
+
+import common.AlertaUsuario;
+import common.CambiosPrecios;
+import common.InterfazServicioCripto;
+import common.PaginaAlertas;
+import common.PlazoVencidoException;
+import common.ServidorSaturadoException;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente asíncrono de {@link InterfazServicioCripto}, para paneles y bots que necesitan muchas
+ * consultas a la vez (ej. los precios de 200 símbolos más las alertas de un usuario).
+ *
+ * Cada método devuelve un {@link CompletableFuture} con el resultado tipado, sin formatear, así
+ * las consultas se lanzan juntas y se combinan con {@code thenCombine}/{@code allOf}. Las
+ * llamadas corren en un pool acotado ({@code cripto.cliente.async.hilos}, 16 por defecto, con
+ * una cola de {@code cripto.cliente.async.cola} tareas); si la cola se llena, el método falla
+ * de inmediato con {@link RejectedExecutionException}.
+ *
+ * Se reintenta hasta {@code cripto.cliente.async.intentos} veces en total (3):
+ * - Ante un error de transporte (no se pudo conectar, la conexión se cortó) la llamada pasa al
+ *   otro servidor (principal o respaldo), con espera exponencial entre intentos.
+ * - Si el servidor respondió {@link ServidorSaturadoException}, se reintenta en el mismo servidor
+ *   después de la espera que éste sugiere.
+ * Los demás errores del servidor ({@link PlazoVencidoException}, validaciones) no se reintentan
+ * ni cambian de servidor; el futuro falla con el error que lanzó el servidor, sin el
+ * {@link java.rmi.ServerException} con que lo envuelve RMI.
+ */
+public class ClienteAsincrono implements AutoCloseable {
+
+    private static final int HILOS = Integer.getInteger("cripto.cliente.async.hilos", 16);
+    private static final int CAPACIDAD_COLA = Integer.getInteger("cripto.cliente.async.cola", 10_000);
+    private static final int MAX_INTENTOS = Integer.getInteger("cripto.cliente.async.intentos", 3);
+    private static final long ESPERA_BASE_MS = 100;
+
+    /** Llamada a un servidor. */
+    @FunctionalInterface
+    public interface Llamada<T> {
+        T ejecutar(InterfazServicioCripto servicio) throws RemoteException;
+    }
+
+    /** Búsqueda del stub de un servidor (0 principal, 1 respaldo). */
+    @FunctionalInterface
+    interface Buscador {
+        InterfazServicioCripto buscar(int indice) throws RemoteException;
+    }
+
+    private final Buscador buscador;
+    private final ThreadPoolExecutor hilos;
+    private final InterfazServicioCripto[] servidores = new InterfazServicioCripto[2]; // Principal y respaldo; protegido por 'this'
+    private volatile int actual = 0; // Índice del servidor al que se envían las llamadas
+
+    public ClienteAsincrono() {
+        this(ClienteAsincrono::buscarEnRegistry);
+    }
+
+    ClienteAsincrono(Buscador buscador) {
+        this.buscador = buscador;
+        AtomicInteger numero = new AtomicInteger();
+        this.hilos = new ThreadPoolExecutor(HILOS, HILOS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(CAPACIDAD_COLA), r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("ClienteAsincrono-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.hilos.allowCoreThreadTimeOut(true);
+    }
+
+    /** Precio actual de una criptomoneda; negativo si el servidor no lo encuentra. */
+    public CompletableFuture<Double> precioActual(String criptomoneda, String moneda) {
+        return llamar(s -> s.obtenerPrecioActual(criptomoneda, moneda, TerminalCliente.PLAZO_LLAMADA_MS));
+    }
+
+    /**
+     * Precios de varias criptomonedas, consultadas en paralelo. Los símbolos cuya consulta falló
+     * (o que el servidor no encontró) no aparecen en el resultado; falla solo si fallan todas.
+     */
+    public CompletableFuture<Map<String, Double>> precios(Collection<String> criptomonedas, String moneda) {
+        Map<String, CompletableFuture<Double>> consultas = new TreeMap<>();
+        for (String cripto : criptomonedas) {
+            consultas.put(cripto.trim().toUpperCase(), precioActual(cripto, moneda));
+        }
+        return CompletableFuture.allOf(consultas.values().toArray(new CompletableFuture<?>[0]))
+                .handle((ignorado, error) -> {
+                    Map<String, Double> precios = new TreeMap<>();
+                    Throwable primerError = null;
+                    for (Map.Entry<String, CompletableFuture<Double>> consulta : consultas.entrySet()) {
+                        if (consulta.getValue().isCompletedExceptionally()) {
+                            primerError = primerError != null ? primerError : consulta.getValue().exceptionNow();
+                            continue;
+                        }
+                        double precio = consulta.getValue().join();
+                        if (precio >= 0) {
+                            precios.put(consulta.getKey(), precio);
+                        }
+                    }
+                    if (precios.isEmpty() && primerError != null) {
+                        throw new CompletionException(desenvolver(primerError));
+                    }
+                    return precios;
+                });
+    }
+
+    /** Precios en caché del servidor (los monitoreados). */
+    public CompletableFuture<Map<String, Double>> preciosMonitoreados(String idUsuario, String moneda) {
+        return llamar(s -> s.obtenerPreciosMonitoreados(idUsuario, moneda));
+    }
+
+    /** Precios de todas las criptomonedas base. */
+    public CompletableFuture<Map<String, Double>> preciosDeTodasLasBases(String idUsuario, String moneda) {
+        return llamar(s -> s.obtenerPreciosDeTodasLasBases(idUsuario, moneda, TerminalCliente.PLAZO_LLAMADA_MS));
+    }
+
+    /** Precios de la lista de seguimiento del usuario. */
+    public CompletableFuture<Map<String, Double>> preciosSeguimiento(String idUsuario, String moneda) {
+        return llamar(s -> s.obtenerPreciosSeguimiento(idUsuario, moneda, TerminalCliente.PLAZO_LLAMADA_MS));
+    }
+
+    /**
+     * Cambios de precio desde una versión. Las versiones son propias de cada servidor: tras un
+     * cambio de servidor la respuesta es una instantánea completa.
+     */
+    public CompletableFuture<CambiosPrecios> cambiosDesde(long version, String moneda) {
+        return llamar(s -> s.obtenerCambiosDesde(version, moneda));
+    }
+
+    /** Estadísticas de los últimos {@code ventana} periodos de una criptomoneda. */
+    public CompletableFuture<Map<String, Double>> estadisticas(String criptomoneda, int ventana) {
+        return llamar(s -> s.obtenerEstadisticas(criptomoneda, ventana));
+    }
+
+    /** Todas las alertas del usuario, pidiendo las páginas una tras otra. */
+    public CompletableFuture<List<AlertaUsuario>> alertas(String idUsuario) {
+        return alertasDesde(idUsuario, 0, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<AlertaUsuario>> alertasDesde(String idUsuario, int cursor, List<AlertaUsuario> acumuladas) {
+        // El cursor es un ID de alerta, así que tras un cambio de servidor se continúa desde la misma página
+        return llamar(s -> s.obtenerAlertasUsuario(idUsuario, cursor, TerminalCliente.TAMANO_PAGINA_ALERTAS))
+                .thenCompose((PaginaAlertas pagina) -> {
+                    acumuladas.addAll(pagina.getAlertas());
+                    return pagina.hayMas()
+                            ? alertasDesde(idUsuario, pagina.getSiguienteCursor(), acumuladas)
+                            : CompletableFuture.completedFuture(acumuladas);
+                });
+    }
+
+    /**
+     * Ejecuta una llamada cualquiera con los reintentos y el cambio de servidor del cliente.
+     * La llamada debe poder repetirse sin efectos duplicados.
+     */
+    public <T> CompletableFuture<T> llamar(Llamada<T> llamada) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        intentar(llamada, 1, resultado);
+        return resultado;
+    }
+
+    /** Deja de aceptar llamadas; las que ya están en cola terminan. */
+    @Override
+    public void close() {
+        hilos.shutdown();
+    }
+
+    private <T> void intentar(Llamada<T> llamada, int intento, CompletableFuture<T> resultado) {
+        int indice = actual;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return llamada.ejecutar(servidor(indice));
+            } catch (RemoteException e) {
+                throw new CompletionException(e);
+            }
+        }, hilos).whenComplete((valor, error) -> {
+            if (error == null) {
+                resultado.complete(valor);
+                return;
+            }
+            Throwable desenvuelto = desenvolver(error);
+            if (!(desenvuelto instanceof RemoteException remota)) {
+                resultado.completeExceptionally(desenvuelto);
+                return;
+            }
+            RemoteException causa = ErroresRemotos.causa(remota);
+            long esperaMs;
+            if (causa instanceof ServidorSaturadoException saturado) {
+                esperaMs = saturado.getReintentarEnMs(); // Rechazada sin ejecutarse: el mismo servidor, más tarde
+            } else if (ErroresRemotos.esDeTransporte(remota)) {
+                cambiarDeServidor(indice);
+                esperaMs = ESPERA_BASE_MS << (intento - 1);
+            } else {
+                resultado.completeExceptionally(causa);
+                return;
+            }
+            if (intento >= MAX_INTENTOS) {
+                resultado.completeExceptionally(causa);
+                return;
+            }
+            CompletableFuture.delayedExecutor(esperaMs, TimeUnit.MILLISECONDS).execute(() -> {
+                try {
+                    intentar(llamada, intento + 1, resultado);
+                } catch (RejectedExecutionException e) {
+                    resultado.completeExceptionally(causa); // Pool cerrado o cola llena: se informa el error original
+                }
+            });
+        });
+    }
+
+    // Stub del servidor (0 principal, 1 respaldo), buscado la primera vez
+    private InterfazServicioCripto servidor(int indice) throws RemoteException {
+        synchronized (this) {
+            if (servidores[indice] != null) {
+                return servidores[indice];
+            }
+        }
+        InterfazServicioCripto stub = buscador.buscar(indice);
+        synchronized (this) {
+            servidores[indice] = stub;
+        }
+        return stub;
+    }
+
+    private static InterfazServicioCripto buscarEnRegistry(int indice) throws RemoteException {
+        try {
+            Registry registry = indice == 0
+                    ? LocateRegistry.getRegistry(TerminalCliente.HOST_PRINCIPAL, TerminalCliente.PUERTO_PRINCIPAL)
+                    : LocateRegistry.getRegistry(TerminalCliente.HOST_RESPALDO, TerminalCliente.PUERTO_RESPALDO);
+            return (InterfazServicioCripto) registry.lookup(indice == 0 ? TerminalCliente.SERVICIO_PRINCIPAL : TerminalCliente.SERVICIO_RESPALDO);
+        } catch (NotBoundException e) {
+            // Como un objeto no exportado: la llamada no llegó a ningún servicio y se puede pasar al otro servidor
+            throw new NoSuchObjectException("El servidor " + (indice == 0 ? "principal" : "de respaldo") + " no está publicado.");
+        }
+    }
+
+    // Tras un error de transporte con el servidor 'indice' se usa el otro; el stub fallido se vuelve a buscar la próxima vez
+    private void cambiarDeServidor(int indice) {
+        synchronized (this) {
+            servidores[indice] = null;
+            if (actual == indice) {
+                actual = 1 - indice;
+            }
+        }
+    }
+
+    private static Throwable desenvolver(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,58 @@
+package client;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.MarshalException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.rmi.UnknownHostException;
+import java.rmi.UnmarshalException;
+
+/**
+ * Clasificación de los errores de una llamada RMI, para decidir si se puede repetir.
+ *
+ * RMI envuelve en {@link ServerException} lo que lanza el servidor: la causa es el error real
+ * (ej. {@link common.ServidorSaturadoException}, {@link common.PlazoVencidoException} o un error
+ * de validación), y que llegue significa que el servidor respondió.
+ */
+final class ErroresRemotos {
+
+    private ErroresRemotos() {
+    }
+
+    /** El error que lanzó el servidor, sin el envoltorio de RMI; los errores locales quedan igual. */
+    static RemoteException causa(RemoteException e) {
+        if (e instanceof ServerException && e.getCause() instanceof RemoteException remota) {
+            return remota;
+        }
+        return e;
+    }
+
+    /** El servidor recibió la llamada y respondió con un error (la llamada pudo tener efecto). */
+    static boolean respondioElServidor(RemoteException e) {
+        return e instanceof ServerException || e instanceof ServerError;
+    }
+
+    /**
+     * La llamada no llegó a enviarse (no se pudo conectar o el objeto ya no está exportado), así
+     * que el servidor no la ejecutó y se puede reenviar aunque no sea idempotente.
+     */
+    static boolean noLlegoAlServidor(RemoteException e) {
+        return e instanceof ConnectException
+                || e instanceof ConnectIOException
+                || e instanceof UnknownHostException
+                || e instanceof NoSuchObjectException;
+    }
+
+    /**
+     * Error de transporte: la llamada no llegó o su respuesta se perdió (conexión cortada), sin
+     * que el servidor informara nada. Solo en estos casos tiene sentido pasar al otro servidor.
+     */
+    static boolean esDeTransporte(RemoteException e) {
+        return noLlegoAlServidor(e)
+                || e instanceof MarshalException
+                || e instanceof UnmarshalException;
+    }
+}
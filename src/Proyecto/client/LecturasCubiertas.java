@@ -0,0 +1,210 @@
+package client;
+
+import common.InterfazServicioCripto;
+import common.PlazoVencidoException;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lecturas cubiertas (hedged reads) entre el servidor actual y el otro servidor.
+ *
+ * Una lectura idempotente se envía al servidor actual; si no responde dentro del percentil
+ * {@code cripto.cliente.cobertura.percentil} (95 por defecto) de las latencias recientes, se
+ * envía un duplicado al otro servidor y se usa la primera respuesta que llegue. La otra se
+ * descarta (RMI no permite interrumpir una llamada en curso; el servidor la abandona al vencer
+ * su plazo). Los duplicados no pueden superar el {@code cripto.cliente.cobertura.presupuestoPct}%
+ * (10 por defecto) de las lecturas, para no duplicar la carga justo cuando los servidores van lentos.
+ *
+ * Está desactivado salvo con {@code -Dcripto.cliente.cobertura=true}.
+ *
+ * Con o sin duplicados, la lectura se deja de esperar a los {@code plazoMs} más un margen
+ * ({@code cripto.cliente.margenRespuestaMs}, 2000 ms) con {@link PlazoVencidoException} de etapa
+ * {@code respuesta}: el servidor que cumple el plazo avisa antes, así que esto solo corta a uno
+ * que no responde. El límite es de cada lectura, no del socket: las escrituras no se cortan.
+ */
+public class LecturasCubiertas {
+
+    private static final boolean HABILITADA = Boolean.getBoolean("cripto.cliente.cobertura");
+    private static final int PERCENTIL = Integer.getInteger("cripto.cliente.cobertura.percentil", 95);
+    private static final int PRESUPUESTO_PCT = Integer.getInteger("cripto.cliente.cobertura.presupuestoPct", 10);
+    private static final int MUESTRAS = 128;          // Latencias recientes del servidor actual
+    private static final int MINIMO_MUESTRAS = 20;    // Antes de esto no hay percentil confiable
+    private static final long MINIMO_UMBRAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Margen para que el aviso de plazo vencido del servidor llegue antes de dejar de esperarlo
+    private static final long MARGEN_RESPUESTA_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("cripto.cliente.margenRespuestaMs", 2_000));
+
+    /** Lectura idempotente contra un servidor, que debe pedirle responder dentro de {@code plazoMs}. */
+    @FunctionalInterface
+    public interface Lectura<T> {
+        T ejecutar(InterfazServicioCripto servicio, long plazoMs) throws RemoteException;
+    }
+
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Latencias recientes en anillo; protegidas por 'this'
+    private final long[] latencias = new long[MUESTRAS];
+    private int posicion = 0;
+    private int cantidad = 0;
+
+    private final AtomicLong lecturas = new AtomicLong();
+    private final AtomicLong coberturas = new AtomicLong();
+    private final AtomicLong ganadas = new AtomicLong();          // El duplicado respondió primero
+    private final AtomicLong ahorroNanos = new AtomicLong();     // Suma de lo que se habría esperado de más
+    private final AtomicLong ahorroMedidas = new AtomicLong();
+
+    /**
+     * Ejecuta la lectura en {@code actual} y, si tarda más del umbral, también en el servidor que
+     * entregue {@code alterno} (que se consulta en segundo plano; puede devolver null si no hay otro).
+     * Ambas comparten el mismo plazo: el duplicado se envía solo con lo que queda de {@code plazoMs}.
+     *
+     * @throws RemoteException El error del servidor actual si ninguno de los dos respondió, o
+     *                         {@link PlazoVencidoException} si no hubo respuesta dentro del plazo más el margen.
+     */
+    public <T> T leer(InterfazServicioCripto actual, Supplier<InterfazServicioCripto> alterno, long plazoMs,
+                      Lectura<T> lectura) throws RemoteException {
+        lecturas.incrementAndGet();
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(plazoMs);
+        CompletableFuture<T> principal = CompletableFuture.supplyAsync(() -> ejecutar(lectura, actual, plazoMs), hilos);
+        if (!HABILITADA) {
+            return esperar(principal, limite);
+        }
+        principal.thenRun(() -> registrarLatencia(System.nanoTime() - inicio));
+
+        long umbral = umbralNanos();
+        if (umbral < 0 || !dentroDelPresupuesto()) {
+            return esperar(principal, limite);
+        }
+        try {
+            return principal.get(umbral, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Sigue abajo: el servidor actual ya superó el percentil
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Lectura interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw comoRemota(e.getCause());
+        }
+
+        if (limite - System.nanoTime() < MINIMO_UMBRAL_NANOS) {
+            return esperar(principal, limite); // Ya no queda plazo para que un duplicado sirva de algo
+        }
+        coberturas.incrementAndGet();
+        CompletableFuture<T> duplicado = CompletableFuture.supplyAsync(() -> {
+            InterfazServicioCripto otro = alterno.get();
+            if (otro == null) {
+                throw new CompletionException(new RemoteException("No hay otro servidor disponible."));
+            }
+            // Lo que le queda a la lectura (la consulta del alterno también lo consume)
+            long restanteMs = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+            if (restanteMs <= 0) {
+                throw new CompletionException(new RemoteException("Plazo de la lectura vencido antes del duplicado."));
+            }
+            return ejecutar(lectura, otro, restanteMs);
+        }, hilos);
+
+        CompletableFuture<T> primera = new CompletableFuture<>();
+        principal.thenAccept(primera::complete);
+        duplicado.thenAccept(resultado -> {
+            if (primera.complete(resultado)) {
+                ganadas.incrementAndGet();
+                long respondidoEn = System.nanoTime();
+                // Cuánto antes respondió el duplicado que el servidor actual (si éste llega a responder)
+                principal.thenRun(() -> {
+                    ahorroNanos.addAndGet(System.nanoTime() - respondidoEn);
+                    ahorroMedidas.incrementAndGet();
+                });
+            }
+        });
+        // Si ambos fallan, se informa el error del servidor actual (el que dispara la reconexión)
+        CompletableFuture.allOf(principal, duplicado).whenComplete((r, e) -> principal.whenComplete((x, error) -> {
+            if (error != null) {
+                primera.completeExceptionally(error);
+            }
+        }));
+        return esperar(primera, limite);
+    }
+
+    /** Resumen de lecturas, duplicados y ahorro de latencia, para mostrar al usuario. */
+    public String estadisticas() {
+        long total = lecturas.get();
+        long enviados = coberturas.get();
+        long medidas = ahorroMedidas.get();
+        long umbral = umbralNanos();
+        return String.format("Lecturas cubiertas: %s%n"
+                        + "  Lecturas: %d | Duplicados enviados: %d (%.1f%%, presupuesto %d%%)%n"
+                        + "  Duplicados que respondieron primero: %d%n"
+                        + "  Ahorro medio cuando ganó el duplicado: %s%n"
+                        + "  Umbral actual (p%d): %s",
+                HABILITADA ? "activadas" : "desactivadas (-Dcripto.cliente.cobertura=true)",
+                total, enviados, total == 0 ? 0.0 : 100.0 * enviados / total, PRESUPUESTO_PCT,
+                ganadas.get(),
+                medidas == 0 ? "sin datos" : String.format("%.1f ms", ahorroNanos.get() / 1e6 / medidas),
+                PERCENTIL, umbral < 0 ? "sin datos suficientes" : String.format("%.1f ms", umbral / 1e6));
+    }
+
+    private boolean dentroDelPresupuesto() {
+        return (coberturas.get() + 1) * 100 <= lecturas.get() * PRESUPUESTO_PCT;
+    }
+
+    private synchronized void registrarLatencia(long nanos) {
+        latencias[posicion] = nanos;
+        posicion = (posicion + 1) % latencias.length;
+        if (cantidad < latencias.length) {
+            cantidad++;
+        }
+    }
+
+    // Percentil de las latencias recientes, o -1 si aún hay pocas muestras
+    private synchronized long umbralNanos() {
+        if (cantidad < MINIMO_MUESTRAS) {
+            return -1;
+        }
+        long[] ordenadas = Arrays.copyOf(latencias, cantidad);
+        Arrays.sort(ordenadas);
+        int indice = Math.min(cantidad - 1, (int) Math.ceil(cantidad * PERCENTIL / 100.0) - 1);
+        return Math.max(MINIMO_UMBRAL_NANOS, ordenadas[Math.max(0, indice)]);
+    }
+
+    private static <T> T ejecutar(Lectura<T> lectura, InterfazServicioCripto servicio, long plazoMs) {
+        try {
+            return lectura.ejecutar(servicio, plazoMs);
+        } catch (RemoteException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // Espera la respuesta hasta el límite de la lectura más el margen; la llamada abandonada termina sola
+    private static <T> T esperar(CompletableFuture<T> futuro, long limite) throws RemoteException {
+        try {
+            return futuro.get(limite + MARGEN_RESPUESTA_NANOS - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new PlazoVencidoException("respuesta");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Lectura interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw comoRemota(e.getCause());
+        }
+    }
+
+    private static RemoteException comoRemota(Throwable causa) {
+        if (causa instanceof CompletionException && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        if (causa instanceof RemoteException remota) {
+            return remota;
+        }
+        return new RemoteException("Error en la lectura: " + causa.getMessage(), causa);
+    }
+}
@@ -1,5 +1,8 @@
 package client;
 
+import common.AlertaUsuario;
+
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -55,6 +58,13 @@ public class RunCliente {
         System.out.println("  7. Modificar alerta configurada"); // <-- NUEVA LÍNEA
         System.out.println("  8. Cambiar ID de usuario [actual: " + idUsuario + "]");
         System.out.println("  9. Ayuda"); // <-- Ajustar numeración
+        System.out.println(" 10. Cambiar moneda de cotización [actual: " + controlador.getMoneda().toUpperCase() + "]");
+        System.out.println(" 11. Configurar alerta estadística (cambio %, media móvil, volatilidad)");
+        System.out.println(" 12. Ver estadísticas de una criptomoneda");
+        System.out.println(" 13. Ver mi lista de seguimiento");
+        System.out.println(" 14. Agregar criptomoneda a mi lista de seguimiento");
+        System.out.println(" 15. Quitar criptomoneda de mi lista de seguimiento");
+        System.out.println(" 16. Ver estadísticas de lecturas cubiertas");
         System.out.println("  0. Salir");
         System.out.println(ANSI_CYAN + "╚═══════════════════════════════════════════════╝" + ANSI_RESET);
         System.out.print("Seleccione una opción: ");
@@ -106,6 +116,27 @@ public class RunCliente {
             case 9:
                 mostrarAyuda();
                 break;
+            case 10:
+                cambiarMoneda();
+                break;
+            case 11:
+                configurarAlertaEstadistica();
+                break;
+            case 12:
+                verEstadisticas();
+                break;
+            case 13:
+                verListaSeguimiento();
+                break;
+            case 14:
+                agregarASeguimiento();
+                break;
+            case 15:
+                quitarDeSeguimiento();
+                break;
+            case 16:
+                verEstadisticasLecturasCubiertas();
+                break;
             default:
                 System.out.println(ANSI_RED + "Opción no válida. Intente nuevamente." + ANSI_RESET);
                 break;
@@ -214,14 +245,12 @@ public class RunCliente {
 
         try {
             // Primero, obtenemos las alertas para verificar si existen
-            String alertasActualesStr = controlador.obtenerAlertasUsuario();
+            List<AlertaUsuario> alertasActuales = controlador.obtenerAlertas();
 
             // Imprimimos el resultado (sea la lista de alertas o el mensaje de "no hay alertas")
-            System.out.println(alertasActualesStr);
+            System.out.println(controlador.formatearAlertas(alertasActuales));
 
-            // Verificamos si el mensaje indica que no hay alertas
-            // Esta comparación es sensible al texto exacto devuelto por TerminalCliente.java
-            if ("No tienes alertas configuradas.".equals(alertasActualesStr.trim())) {
+            if (alertasActuales.isEmpty()) {
                 // Si no hay alertas, no pedimos ID y terminamos aquí.
                 return;
             }
@@ -239,8 +268,12 @@ public class RunCliente {
                 return;
             }
 
-            if (idAlertaAEliminar <= 0) {
-                System.out.println(ANSI_RED + "El ID de la alerta debe ser un número positivo." + ANSI_RESET);
+            boolean esDelUsuario = false;
+            for (AlertaUsuario alerta : alertasActuales) {
+                esDelUsuario |= alerta.getIdAlerta() == idAlertaAEliminar;
+            }
+            if (!esDelUsuario) {
+                System.out.println(ANSI_RED + "No tienes una alerta con el ID " + idAlertaAEliminar + "." + ANSI_RESET);
                 return;
             }
 
@@ -270,6 +303,149 @@ public class RunCliente {
         System.out.println(ANSI_GREEN + "ID de usuario actualizado correctamente a: " + idUsuario + ANSI_RESET);
     }
 
+    /**
+     * Cambia la moneda de cotización de las consultas de precios
+     */
+    private static void cambiarMoneda() {
+        System.out.println(ANSI_CYAN + "\n[CAMBIO DE MONEDA DE COTIZACIÓN]" + ANSI_RESET);
+        System.out.println("Moneda actual: " + controlador.getMoneda().toUpperCase());
+        System.out.print("Ingrese la nueva moneda (ej. USD, EUR, CLP, BTC): ");
+        String nuevaMoneda = scanner.nextLine().trim();
+        if (nuevaMoneda.isEmpty()) {
+            System.out.println(ANSI_RED + "La moneda no puede estar vacía." + ANSI_RESET);
+            return;
+        }
+        try {
+            System.out.println(controlador.cambiarMoneda(nuevaMoneda));
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al cambiar la moneda: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private static void configurarAlertaEstadistica() {
+        System.out.println(ANSI_CYAN + "\n[CONFIGURACIÓN DE ALERTA ESTADÍSTICA]" + ANSI_RESET);
+        try {
+            System.out.print("Ingrese el símbolo de la criptomoneda (ej. BTC): ");
+            String cripto = scanner.nextLine().trim().toUpperCase();
+            if (cripto.isEmpty()) {
+                System.out.println(ANSI_RED + "Debe ingresar un símbolo válido." + ANSI_RESET);
+                return;
+            }
+
+            System.out.println("Tipos de alerta:");
+            System.out.println("  1: Cambio porcentual en un periodo de minutos (ej. más de 5% en 60 min)");
+            System.out.println("  2: Cruce del precio con su media móvil (SMA) de N periodos");
+            System.out.println("  3: Volatilidad (desviación estándar de N periodos sobre un % de la media)");
+            System.out.print("Seleccione tipo: ");
+            int tipo = obtenerOpcion();
+
+            String tipoCondicion;
+            String preguntaVentana;
+            if (tipo == 1) {
+                tipoCondicion = "CAMBIO_PCT";
+                preguntaVentana = "Ingrese la ventana en minutos (ej. 60): ";
+            } else if (tipo == 2) {
+                tipoCondicion = "CRUCE_SMA";
+                preguntaVentana = "Ingrese la cantidad de periodos de la media (ej. 50): ";
+            } else if (tipo == 3) {
+                tipoCondicion = "VOLATIL";
+                preguntaVentana = "Ingrese la cantidad de periodos (ej. 20): ";
+            } else {
+                System.out.println(ANSI_RED + "Tipo no válido. Debe ser 1, 2 o 3." + ANSI_RESET);
+                return;
+            }
+
+            System.out.print(preguntaVentana);
+            int ventana = obtenerOpcion();
+            if (ventana < 2) {
+                System.out.println(ANSI_RED + "La ventana debe ser un número entero mayor o igual a 2." + ANSI_RESET);
+                return;
+            }
+
+            double umbral = 0;
+            if (tipo != 2) {
+                System.out.print("Ingrese el porcentaje umbral (ej. 5): ");
+                try {
+                    umbral = Double.parseDouble(scanner.nextLine().trim());
+                    if (umbral < 0) throw new NumberFormatException("Umbral no puede ser negativo");
+                } catch (NumberFormatException e) {
+                    System.out.println(ANSI_RED + "El umbral debe ser un número válido y no negativo." + ANSI_RESET);
+                    return;
+                }
+            }
+
+            String resultado = controlador.establecerAlertaEstadistica(cripto, tipoCondicion, umbral, ventana);
+            System.out.println(ANSI_GREEN + resultado + ANSI_RESET);
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al configurar alerta estadística: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private static void verListaSeguimiento() {
+        System.out.println(ANSI_CYAN + "\n[MI LISTA DE SEGUIMIENTO]" + ANSI_RESET);
+        try {
+            System.out.println(controlador.obtenerListaSeguimiento());
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al obtener la lista de seguimiento: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private static void agregarASeguimiento() {
+        System.out.println(ANSI_CYAN + "\n[AGREGAR A LISTA DE SEGUIMIENTO]" + ANSI_RESET);
+        System.out.print("Ingrese el símbolo de la criptomoneda (ej. BTC): ");
+        String cripto = scanner.nextLine().trim().toUpperCase();
+        if (cripto.isEmpty()) {
+            System.out.println(ANSI_RED + "Debe ingresar un símbolo válido." + ANSI_RESET);
+            return;
+        }
+        try {
+            System.out.println(ANSI_GREEN + controlador.agregarASeguimiento(cripto) + ANSI_RESET);
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al agregar a la lista de seguimiento: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private static void quitarDeSeguimiento() {
+        System.out.println(ANSI_CYAN + "\n[QUITAR DE LISTA DE SEGUIMIENTO]" + ANSI_RESET);
+        System.out.print("Ingrese el símbolo de la criptomoneda (ej. BTC): ");
+        String cripto = scanner.nextLine().trim().toUpperCase();
+        if (cripto.isEmpty()) {
+            System.out.println(ANSI_RED + "Debe ingresar un símbolo válido." + ANSI_RESET);
+            return;
+        }
+        try {
+            System.out.println(ANSI_GREEN + controlador.quitarDeSeguimiento(cripto) + ANSI_RESET);
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al quitar de la lista de seguimiento: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
+    private static void verEstadisticasLecturasCubiertas() {
+        System.out.println(ANSI_CYAN + "\n[LECTURAS CUBIERTAS]" + ANSI_RESET);
+        System.out.println(controlador.estadisticasLecturasCubiertas());
+    }
+
+    private static void verEstadisticas() {
+        System.out.println(ANSI_CYAN + "\n[ESTADÍSTICAS DE PRECIO]" + ANSI_RESET);
+        try {
+            System.out.print("Ingrese el símbolo de la criptomoneda (ej. BTC): ");
+            String cripto = scanner.nextLine().trim().toUpperCase();
+            if (cripto.isEmpty()) {
+                System.out.println(ANSI_RED + "Debe ingresar un símbolo válido." + ANSI_RESET);
+                return;
+            }
+            System.out.print("Ingrese la cantidad de periodos (ej. 20): ");
+            int ventana = obtenerOpcion();
+            if (ventana < 2) {
+                System.out.println(ANSI_RED + "La cantidad de periodos debe ser un número entero mayor o igual a 2." + ANSI_RESET);
+                return;
+            }
+            System.out.println(controlador.obtenerEstadisticas(cripto, ventana));
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Error al obtener estadísticas: " + e.getMessage() + ANSI_RESET);
+        }
+    }
+
     private static void mostrarAyuda() {
         System.out.println(ANSI_CYAN + "\n[AYUDA DEL SISTEMA]" + ANSI_RESET);
         System.out.println("Este sistema le permite monitorear precios de criptomonedas y configurar alertas");
@@ -283,6 +459,14 @@ public class RunCliente {
         System.out.println("  alcance un precio mayor o menor que un umbral definido.");
         System.out.println("• Ver alertas: Muestra todas sus alertas configuradas.");
         System.out.println("• Cambiar ID: Permite cambiar su identificador en el sistema.");
+        System.out.println("• Cambiar moneda: Elige la moneda en que se muestran los precios (USD, EUR, CLP, BTC...).");
+        System.out.println("• Alerta estadística: Avisa cuando el precio se mueve más de un % en un periodo,");
+        System.out.println("  cruza su media móvil o su volatilidad supera un umbral.");
+        System.out.println("• Estadísticas: Media móvil, desviación, mínimo y máximo de los últimos periodos.");
+        System.out.println("• Lista de seguimiento: Criptomonedas que el servidor mantiene actualizadas para usted;");
+        System.out.println("  sus precios se consultan todos juntos en una sola operación.");
+        System.out.println("• Lecturas cubiertas: Con -Dcripto.cliente.cobertura=true, una consulta de precios lenta");
+        System.out.println("  se repite en el otro servidor y se usa la primera respuesta.");
         System.out.println("\nSi tiene problemas, contacte al administrador del sistema.");
     }
 
@@ -1,12 +1,18 @@
 package client;
 
+import common.AlertaUsuario;
+import common.CambiosPrecios;
 import common.InterfazServicioCripto;
+import common.PaginaAlertas;
+import common.ServidorSaturadoException;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Controlador que maneja la lógica de comunicación con el servidor RMI.
@@ -20,13 +26,29 @@ public class TerminalCliente {
     private String idUsuario;
     private boolean conectado = false;
 
-    private static final String HOST_PRINCIPAL = "localhost";
-    private static final int PUERTO_PRINCIPAL = 1099;
-    private static final String SERVICIO_PRINCIPAL = "ServidorCriptoMonitor";
+    private String moneda = "usd"; // Moneda de cotización seleccionada
 
-    private static final String HOST_RESPALDO = "localhost";
-    private static final int PUERTO_RESPALDO = 1100;
-    private static final String SERVICIO_RESPALDO = "ServidorCriptoMonitorRespaldo";
+    // Copia local de los precios monitoreados, sincronizada por deltas con obtenerCambiosDesde
+    private final Map<String, Double> preciosMonitoreadosLocales = new TreeMap<>();
+    private long versionPreciosMonitoreados = 0;
+
+    static final int TAMANO_PAGINA_ALERTAS = 100;
+
+    // Plazo que se le da al servidor en las consultas que pueden ir a CoinGecko o a la BD
+    static final long PLAZO_LLAMADA_MS = Long.getLong("cripto.cliente.plazoMs", 10_000);
+
+    static final String HOST_PRINCIPAL = "localhost";
+    static final int PUERTO_PRINCIPAL = 1099;
+    static final String SERVICIO_PRINCIPAL = "ServidorCriptoMonitor";
+
+    static final String HOST_RESPALDO = "localhost";
+    static final int PUERTO_RESPALDO = 1100;
+    static final String SERVICIO_RESPALDO = "ServidorCriptoMonitorRespaldo";
+
+    // Lecturas idempotentes que pueden duplicarse al otro servidor si el actual tarda
+    private final LecturasCubiertas lecturasCubiertas = new LecturasCubiertas();
+    private boolean enRespaldo = false;
+    private volatile InterfazServicioCripto servicioAlterno; // Servidor distinto del actual, para las lecturas cubiertas
 
 
     // Dentro de la clase TerminalCliente
@@ -35,6 +57,8 @@ public class TerminalCliente {
             System.out.println("Intentando conectar al servidor PRINCIPAL...");
             Registry registry = LocateRegistry.getRegistry(HOST_PRINCIPAL, PUERTO_PRINCIPAL);
             this.servicio = (InterfazServicioCripto) registry.lookup(SERVICIO_PRINCIPAL);
+            this.enRespaldo = false;
+            this.servicioAlterno = null;
             System.out.println("✓ Conexión establecida con el servidor PRINCIPAL.");
             return;
         } catch (Exception e) {
@@ -45,6 +69,8 @@ public class TerminalCliente {
             System.out.println("Intentando conectar al servidor de RESPALDO...");
             Registry registry = LocateRegistry.getRegistry(HOST_RESPALDO, PUERTO_RESPALDO);
             this.servicio = (InterfazServicioCripto) registry.lookup(SERVICIO_RESPALDO);
+            this.enRespaldo = true;
+            this.servicioAlterno = null;
             System.out.println("✓ Conexión establecida con el servidor de RESPALDO.");
         } catch (Exception e) {
             System.out.println(ANSI_RED + "✘ Falló la conexión con el servidor de respaldo." + ANSI_RESET);
@@ -52,6 +78,103 @@ public class TerminalCliente {
         }
     }
 
+    /** Llamada al servidor actual. */
+    @FunctionalInterface
+    private interface Operacion<T> {
+        T ejecutar(InterfazServicioCripto servicio) throws RemoteException;
+    }
+
+    /**
+     * Ejecuta una lectura con a lo más un reintento, según el error:
+     * - Servidor saturado: rechazó la llamada sin ejecutarla; se reintenta en el mismo servidor
+     *   después de la espera que sugiere, en vez de reconectar y reenviar al instante.
+     * - Error de transporte: se reconecta (principal o respaldo) y se reintenta.
+     * - Plazo vencido u otro error del servidor: se informa. Reintentar un plazo vencido con otro
+     *   plazo completo duplicaría la espera del usuario y la carga de un servidor ya lento.
+     */
+    private <T> T leer(Operacion<T> lectura) throws Exception {
+        try {
+            return lectura.ejecutar(servicio);
+        } catch (RemoteException e) {
+            RemoteException causa = ErroresRemotos.causa(e);
+            if (causa instanceof ServidorSaturadoException saturado) {
+                System.err.println("Servidor saturado. Reintentando en " + saturado.getReintentarEnMs() + " ms...");
+                Thread.sleep(saturado.getReintentarEnMs());
+            } else if (ErroresRemotos.esDeTransporte(e)) {
+                System.err.println("Se perdió la conexión. Intentando reconectar...");
+                conectarConFailover();
+                System.out.println("Reconexión exitosa. Reintentando la operación...");
+            } else {
+                throw causa;
+            }
+            return reintentar(lectura);
+        }
+    }
+
+    /**
+     * Ejecuta una escritura sin arriesgar duplicados: solo se reenvía si el servidor no llegó a
+     * ejecutarla (rechazo por saturación, o la llamada no salió y se reenvía al servidor con el que
+     * se reconecte). Si se cortó después de enviarse (la escritura del servidor puede tardar
+     * bastante más que una lectura) el servidor pudo aplicarla, así que se reconecta para las
+     * próximas operaciones y se le pide al usuario revisar antes de repetirla.
+     */
+    private String escribir(Operacion<String> escritura) throws Exception {
+        try {
+            return escritura.ejecutar(servicio);
+        } catch (RemoteException e) {
+            RemoteException causa = ErroresRemotos.causa(e);
+            if (causa instanceof ServidorSaturadoException saturado) {
+                System.err.println("Servidor saturado. Reintentando en " + saturado.getReintentarEnMs() + " ms...");
+                Thread.sleep(saturado.getReintentarEnMs());
+                return reintentar(escritura);
+            }
+            if (ErroresRemotos.respondioElServidor(e)) {
+                throw causa; // Error informado por el servidor (ej. validación)
+            }
+            System.err.println("Se perdió la conexión. Intentando reconectar...");
+            conectarConFailover();
+            if (!ErroresRemotos.noLlegoAlServidor(e)) {
+                throw new Exception("La conexión se cortó con la operación ya enviada: puede que el servidor la haya aplicado. "
+                        + "Revise sus alertas y su lista de seguimiento antes de repetirla.", e);
+            }
+            System.out.println("Reconexión exitosa. Reintentando la operación...");
+            return reintentar(escritura);
+        }
+    }
+
+    // Último intento: se informa el error tal como lo lanzó el servidor
+    private <T> T reintentar(Operacion<T> operacion) throws RemoteException {
+        try {
+            return operacion.ejecutar(servicio);
+        } catch (RemoteException e) {
+            throw ErroresRemotos.causa(e);
+        }
+    }
+
+    // Stub del servidor al que no estamos conectados; null si no responde (se reintenta en la próxima cobertura)
+    private InterfazServicioCripto servicioAlterno() {
+        InterfazServicioCripto alterno = servicioAlterno;
+        if (alterno == null) {
+            try {
+                Registry registry = enRespaldo
+                        ? LocateRegistry.getRegistry(HOST_PRINCIPAL, PUERTO_PRINCIPAL)
+                        : LocateRegistry.getRegistry(HOST_RESPALDO, PUERTO_RESPALDO);
+                alterno = (InterfazServicioCripto) registry.lookup(enRespaldo ? SERVICIO_PRINCIPAL : SERVICIO_RESPALDO);
+                servicioAlterno = alterno;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return alterno;
+    }
+
+    /**
+     * Estadísticas de las lecturas cubiertas (duplicados enviados, cuántos ganaron y el ahorro de latencia).
+     */
+    public String estadisticasLecturasCubiertas() {
+        return lecturasCubiertas.estadisticas();
+    }
+
     /**
      * Actualiza el ID de usuario
      *
@@ -62,43 +185,68 @@ public class TerminalCliente {
     }
 
     /**
-     * Obtiene los precios de todas las criptomonedas monitoreadas/cacheadas por el servidor.
+     * Cambia la moneda de cotización usada en las consultas de precios.
      *
-     * @return String formateado con los precios
+     * @param nuevaMoneda Código de moneda (ej. "usd", "eur", "clp", "btc")
+     * @return Mensaje de confirmación o de error si el servidor no la soporta
      * @throws Exception Si ocurre un error al comunicarse con el servidor
      */
-    public String obtenerPreciosMonitoreados() throws Exception {
-        Map<String, Double> precios;
-        try {
-            // 2. PRIMER INTENTO
-            precios = servicio.obtenerPreciosMonitoreados(idUsuario);
+    public String cambiarMoneda(String nuevaMoneda) throws Exception {
+        List<String> disponibles = leer(InterfazServicioCripto::obtenerMonedasDisponibles);
 
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
+        String monedaLower = nuevaMoneda.trim().toLowerCase();
+        if (!disponibles.contains(monedaLower)) {
+            return "Moneda no soportada por el servidor. Disponibles: " + String.join(", ", disponibles).toUpperCase();
+        }
+        this.moneda = monedaLower;
+        // La copia local estaba en otra moneda: se fuerza una instantánea completa en la próxima consulta
+        preciosMonitoreadosLocales.clear();
+        versionPreciosMonitoreados = 0;
+        return "Moneda de cotización actualizada a " + monedaLower.toUpperCase() + ".";
+    }
 
-            conectarConFailover(); // Llama al método de reconexión
+    public String getMoneda() {
+        return moneda;
+    }
 
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
+    private String formatearPrecio(double precio) {
+        // Las cotizaciones en BTC necesitan más decimales que las monedas fiduciarias
+        return "btc".equals(moneda)
+                ? String.format("%.8f %s", precio, moneda.toUpperCase())
+                : String.format("%.2f %s", precio, moneda.toUpperCase());
+    }
+
+    /**
+     * Obtiene los precios de todas las criptomonedas monitoreadas/cacheadas por el servidor.
+     *
+     * @return String formateado con los precios
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String obtenerPreciosMonitoreados() throws Exception {
+        // Tras reconectar, el otro servidor no reconoce nuestra versión y responde con una instantánea completa
+        CambiosPrecios cambios = leer(s -> s.obtenerCambiosDesde(versionPreciosMonitoreados, moneda));
 
-            // SEGUNDO INTENTO
-            precios = servicio.obtenerPreciosMonitoreados(idUsuario);
+        if (cambios.isInstantaneaCompleta()) {
+            preciosMonitoreadosLocales.clear();
         }
+        preciosMonitoreadosLocales.putAll(cambios.getPrecios());
+        versionPreciosMonitoreados = cambios.getVersion();
+        Map<String, Double> precios = preciosMonitoreadosLocales;
 
         if (precios.isEmpty()) {
             return "No hay precios (cacheados/monitoreados) disponibles en este momento.";
         }
 
         StringBuilder resultado = new StringBuilder();
-        resultado.append("Precios actuales (cacheados/monitoreados) en USD:\n");
+        resultado.append("Precios actuales (cacheados/monitoreados) en " + moneda.toUpperCase() + ":\n");
         resultado.append("╔════════╦═══════════════╗\n");
         resultado.append("║ SÍMBOLO ║    PRECIO     ║\n");
         resultado.append("╠════════╬═══════════════╣\n");
 
         for (Map.Entry<String, Double> entrada : precios.entrySet()) {
             if (entrada.getValue() >= 0) {
-                resultado.append(String.format("║ %-7s ║ $%-12.2f ║\n",
-                        entrada.getKey(), entrada.getValue()));
+                resultado.append(String.format("║ %-7s ║ %-13s ║\n",
+                        entrada.getKey(), formatearPrecio(entrada.getValue())));
             } else {
                 resultado.append(String.format("║ %-7s ║ %-13s ║\n", // Ajuste para texto
                         entrada.getKey(), (entrada.getValue() == -1.0 ? "No disponible" : "Error")));
@@ -115,37 +263,23 @@ public class TerminalCliente {
      * @throws Exception Si ocurre un error al comunicarse con el servidor
      */
     public String obtenerPreciosDeTodasLasBases() throws Exception { // NUEVO MÉTODO
-        Map<String, Double> precios;
-        try {
-            // 2. PRIMER INTENTO
-            precios = servicio.obtenerPreciosDeTodasLasBases(idUsuario);
-
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
-
-            conectarConFailover(); // Llama al método de reconexión
-
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
-
-            // SEGUNDO INTENTO
-            precios = servicio.obtenerPreciosDeTodasLasBases(idUsuario);
-        }
+        Map<String, Double> precios = leer(actual -> lecturasCubiertas.leer(actual, this::servicioAlterno, PLAZO_LLAMADA_MS,
+                (s, plazo) -> s.obtenerPreciosDeTodasLasBases(idUsuario, moneda, plazo)));
 
         if (precios.isEmpty()) {
             return "No hay precios de criptomonedas base disponibles o configuradas en el servidor.";
         }
 
         StringBuilder resultado = new StringBuilder();
-        resultado.append("Precios actuales de criptomonedas base en USD:\n");
+        resultado.append("Precios actuales de criptomonedas base en " + moneda.toUpperCase() + ":\n");
         resultado.append("╔════════╦═══════════════╗\n");
         resultado.append("║ SÍMBOLO ║    PRECIO     ║\n");
         resultado.append("╠════════╬═══════════════╣\n");
 
         for (Map.Entry<String, Double> entrada : precios.entrySet()) {
             if (entrada.getValue() >= 0) {
-                resultado.append(String.format("║ %-7s ║ $%-12.2f ║\n",
-                        entrada.getKey(), entrada.getValue()));
+                resultado.append(String.format("║ %-7s ║ %-13s ║\n",
+                        entrada.getKey(), formatearPrecio(entrada.getValue())));
             } else {
                 resultado.append(String.format("║ %-7s ║ %-13s ║\n",
                         entrada.getKey(), (entrada.getValue() == -1.0 ? "No disponible" : "Error (-2.0)")));
@@ -164,22 +298,8 @@ public class TerminalCliente {
      * @throws Exception Si ocurre un error al comunicarse con el servidor
      */
     public String obtenerPrecioEspecifico(String criptomoneda) throws Exception {
-        double precio;
-        try {
-            // 2. PRIMER INTENTO
-            precio = servicio.obtenerPrecioActual(criptomoneda);
-
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
-
-            conectarConFailover(); // Llama al método de reconexión
-
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
-
-            // SEGUNDO INTENTO
-            precio = servicio.obtenerPrecioActual(criptomoneda);
-        }
+        double precio = leer(actual -> lecturasCubiertas.leer(actual, this::servicioAlterno, PLAZO_LLAMADA_MS,
+                (s, plazo) -> s.obtenerPrecioActual(criptomoneda, moneda, plazo)));
 
         if (precio < 0) { // Incluye -1.0 (no encontrado) y -2.0 (error general)
             if (precio == -1.0) {
@@ -188,8 +308,8 @@ public class TerminalCliente {
                 return "Error al obtener el precio para " + criptomoneda + ".";
             }
         }
-        return String.format("Precio actual de %s: $%.2f USD",
-                criptomoneda, precio);
+        return String.format("Precio actual de %s: %s",
+                criptomoneda, formatearPrecio(precio));
     }
 
     /**
@@ -203,21 +323,62 @@ public class TerminalCliente {
      */
     public String establecerAlerta(String criptomoneda, double precioUmbral,
                                    String tipoCondicion) throws Exception {
-        try {
-            // 2. PRIMER INTENTO
-            return servicio.establecerAlerta(idUsuario, criptomoneda, precioUmbral, tipoCondicion);
-
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
+        return escribir(s -> s.establecerAlerta(idUsuario, criptomoneda, precioUmbral, tipoCondicion));
+    }
 
-            conectarConFailover(); // Llama al método de reconexión
+    /**
+     * Establece una alerta estadística (cambio porcentual, cruce de media móvil o volatilidad)
+     *
+     * @param criptomoneda  Símbolo de la criptomoneda
+     * @param tipoCondicion CAMBIO_PCT, CRUCE_SMA o VOLATIL
+     * @param umbral        Porcentaje umbral (se ignora en CRUCE_SMA)
+     * @param ventana       Minutos (CAMBIO_PCT) o periodos (CRUCE_SMA, VOLATIL)
+     * @return Mensaje de confirmación
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String establecerAlertaEstadistica(String criptomoneda, String tipoCondicion,
+                                              double umbral, int ventana) throws Exception {
+        return escribir(s -> s.establecerAlertaEstadistica(idUsuario, criptomoneda, tipoCondicion, umbral, ventana));
+    }
 
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
+    /**
+     * Obtiene las estadísticas de los últimos periodos de precio de una criptomoneda
+     *
+     * @param criptomoneda Símbolo de la criptomoneda
+     * @param ventana      Cantidad de periodos
+     * @return String formateado con las estadísticas
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String obtenerEstadisticas(String criptomoneda, int ventana) throws Exception {
+        Map<String, Double> estadisticas = leer(s -> s.obtenerEstadisticas(criptomoneda, ventana));
 
-            // SEGUNDO INTENTO
-            return servicio.establecerAlerta(idUsuario, criptomoneda, precioUmbral, tipoCondicion);
+        StringBuilder resultado = new StringBuilder();
+        resultado.append(String.format("Estadísticas de %s (últimos %d periodos):\n", criptomoneda.toUpperCase(), ventana));
+        for (Map.Entry<String, Double> entrada : estadisticas.entrySet()) {
+            double valor = entrada.getValue();
+            resultado.append(String.format("  %-16s %s\n", entrada.getKey(),
+                    Double.isNaN(valor) ? "(sin datos suficientes)" : String.format("%,.4f", valor)));
         }
+        return resultado.toString();
+    }
+
+    /**
+     * Obtiene todas las alertas del usuario, pidiéndolas al servidor por páginas.
+     *
+     * @return Lista de alertas ordenadas por ID
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public List<AlertaUsuario> obtenerAlertas() throws Exception {
+        List<AlertaUsuario> alertas = new ArrayList<>();
+        int cursor = 0;
+        do {
+            // El cursor es un ID de alerta, así que tras reconectar el otro servidor continúa desde la misma página
+            int desde = cursor;
+            PaginaAlertas pagina = leer(s -> s.obtenerAlertasUsuario(idUsuario, desde, TAMANO_PAGINA_ALERTAS));
+            alertas.addAll(pagina.getAlertas());
+            cursor = pagina.getSiguienteCursor();
+        } while (cursor > 0);
+        return alertas;
     }
 
     /**
@@ -227,25 +388,16 @@ public class TerminalCliente {
      * @throws Exception Si ocurre un error al comunicarse con el servidor
      */
     public String obtenerAlertasUsuario() throws Exception {
-        List<String> alertas;
-
-        try {
-            // --- PRIMER INTENTO ---
-            // Esta es la única línea que puede lanzar una RemoteException
-            alertas = servicio.obtenerAlertasUsuario(idUsuario);
-
-        } catch (RemoteException e) {
-            // Si el primer intento falla, entramos aquí.
-            System.err.println("Se perdió la conexión con el servidor. Intentando reconectar...");
-
-            // Llamamos al método que se encarga de cambiar al servidor de respaldo.
-            conectarConFailover();
-
-            System.out.println("Reconexión exitosa. Reintentando obtener las alertas...");
-
-            alertas = servicio.obtenerAlertasUsuario(idUsuario);
-        }
+        return formatearAlertas(obtenerAlertas());
+    }
 
+    /**
+     * Formatea una lista de alertas como tabla.
+     *
+     * @param alertas Alertas obtenidas con {@link #obtenerAlertas()}
+     * @return String formateado con las alertas
+     */
+    public String formatearAlertas(List<AlertaUsuario> alertas) {
         if (alertas.isEmpty()) {
             return "No tienes alertas configuradas.";
         }
@@ -256,13 +408,63 @@ public class TerminalCliente {
         resultado.append("║           ALERTAS             ║\n");
         resultado.append("╠═══════════════════════════════╣\n");
 
-        for (String alerta : alertas) {
+        for (AlertaUsuario alerta : alertas) {
             resultado.append(String.format("║ %-29s ║\n", alerta));
         }
         resultado.append("╚═══════════════════════════════╝");
         return resultado.toString();
     }
 
+    /**
+     * Obtiene en una sola llamada los precios de la lista de seguimiento del usuario.
+     *
+     * @return String formateado con los precios
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String obtenerListaSeguimiento() throws Exception {
+        Map<String, Double> precios = leer(actual -> lecturasCubiertas.leer(actual, this::servicioAlterno, PLAZO_LLAMADA_MS,
+                (s, plazo) -> s.obtenerPreciosSeguimiento(idUsuario, moneda, plazo)));
+
+        if (precios.isEmpty()) {
+            return "Tu lista de seguimiento está vacía.";
+        }
+
+        StringBuilder resultado = new StringBuilder();
+        resultado.append("Lista de seguimiento en " + moneda.toUpperCase() + ":\n");
+        resultado.append("╔════════╦═══════════════╗\n");
+        resultado.append("║ SÍMBOLO ║    PRECIO     ║\n");
+        resultado.append("╠════════╬═══════════════╣\n");
+
+        for (Map.Entry<String, Double> entrada : precios.entrySet()) {
+            resultado.append(String.format("║ %-7s ║ %-13s ║\n", entrada.getKey(),
+                    entrada.getValue() >= 0 ? formatearPrecio(entrada.getValue()) : "No disponible"));
+        }
+        resultado.append("╚════════╩═══════════════╝");
+        return resultado.toString();
+    }
+
+    /**
+     * Agrega una criptomoneda a la lista de seguimiento del usuario.
+     *
+     * @param criptomoneda Símbolo de la criptomoneda
+     * @return Mensaje de confirmación del servidor
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String agregarASeguimiento(String criptomoneda) throws Exception {
+        return escribir(s -> s.agregarASeguimiento(idUsuario, criptomoneda));
+    }
+
+    /**
+     * Quita una criptomoneda de la lista de seguimiento del usuario.
+     *
+     * @param criptomoneda Símbolo de la criptomoneda
+     * @return Mensaje de confirmación del servidor
+     * @throws Exception Si ocurre un error al comunicarse con el servidor
+     */
+    public String quitarDeSeguimiento(String criptomoneda) throws Exception {
+        return escribir(s -> s.quitarDeSeguimiento(idUsuario, criptomoneda));
+    }
+
     /**
      * Solicita al servidor eliminar una alerta específica.
      *
@@ -271,21 +473,7 @@ public class TerminalCliente {
      * @throws Exception Si ocurre un error al comunicarse con el servidor.
      */
     public String eliminarAlerta(int idAlertaDB) throws Exception {
-        try {
-            // 2. PRIMER INTENTO
-            return servicio.eliminarAlerta(idUsuario, idAlertaDB);
-
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
-
-            conectarConFailover(); // Llama al método de reconexión
-
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
-
-            // SEGUNDO INTENTO
-            return servicio.eliminarAlerta(idUsuario, idAlertaDB);
-        }
+        return escribir(s -> s.eliminarAlerta(idUsuario, idAlertaDB));
     }
 
     /**
@@ -311,20 +499,6 @@ public class TerminalCliente {
      * @throws Exception Si hay un error.
      */
     public String modificarAlerta(int idAlertaDB, double nuevoPrecio, String nuevaCondicion) throws Exception {
-        try {
-            // 2. PRIMER INTENTO
-            return servicio.modificarAlerta(idUsuario, idAlertaDB, nuevoPrecio, nuevaCondicion);
-
-        } catch (RemoteException e) {
-            // 3. SI FALLA, RECONECTAR Y REINTENTAR
-            System.err.println("Se perdió la conexión. Intentando reconectar...");
-
-            conectarConFailover(); // Llama al método de reconexión
-
-            System.out.println("Reconexión exitosa. Reintentando la operación...");
-
-            // SEGUNDO INTENTO
-            return servicio.modificarAlerta(idUsuario, idAlertaDB, nuevoPrecio, nuevaCondicion);
-        }
+        return escribir(s -> s.modificarAlerta(idUsuario, idAlertaDB, nuevoPrecio, nuevaCondicion));
     }
 }
\ No newline at end of file
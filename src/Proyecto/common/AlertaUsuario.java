@@ -0,0 +1,62 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * Alerta de un usuario, tal como la devuelve {@link InterfazServicioCripto#obtenerAlertasUsuario(String, int, int)}.
+ * Inmutable; el cliente usa {@link #getIdAlerta()} para modificarla o eliminarla.
+ */
+public final class AlertaUsuario implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int idAlerta;          // id_alerta en la BD
+    private final String simbolo;        // Ej: "BTC"
+    private final String tipoCondicion;  // "MAYOR_QUE", "MENOR_QUE", "CAMBIO_PCT", "CRUCE_SMA" o "VOLATIL"
+    private final double umbral;         // Precio o porcentaje, según el tipo
+    private final int ventana;           // Solo alertas estadísticas; 0 en las de precio fijo
+    private final boolean activa;
+    private final String descripcion;    // Condición legible, ej: "BTC > 70000.00"
+
+    public AlertaUsuario(int idAlerta, String simbolo, String tipoCondicion, double umbral, int ventana, boolean activa, String descripcion) {
+        this.idAlerta = idAlerta;
+        this.simbolo = simbolo;
+        this.tipoCondicion = tipoCondicion;
+        this.umbral = umbral;
+        this.ventana = ventana;
+        this.activa = activa;
+        this.descripcion = descripcion;
+    }
+
+    public int getIdAlerta() {
+        return idAlerta;
+    }
+
+    public String getSimbolo() {
+        return simbolo;
+    }
+
+    public String getTipoCondicion() {
+        return tipoCondicion;
+    }
+
+    public double getUmbral() {
+        return umbral;
+    }
+
+    public int getVentana() {
+        return ventana;
+    }
+
+    public boolean isActiva() {
+        return activa;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[ID: %d] %s (Activa: %b)", idAlerta, descripcion, activa);
+    }
+}
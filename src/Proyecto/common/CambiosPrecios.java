@@ -0,0 +1,48 @@
+package common;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Respuesta de {@link InterfazServicioCripto#obtenerCambiosDesde(long, String)}.
+ * Contiene solo los precios (en una moneda) que cambiaron desde la versión indicada por el cliente,
+ * o una instantánea completa de la caché si el cliente quedó demasiado atrasado.
+ */
+public class CambiosPrecios implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long version;              // Versión que el cliente debe enviar en la próxima consulta
+    private final String moneda;             // Moneda de cotización de los precios, ej: "usd"
+    private final boolean instantaneaCompleta; // true si 'precios' reemplaza todo lo que el cliente tenía
+    private final Map<String, Double> precios; // Símbolo -> precio
+
+    public CambiosPrecios(long version, String moneda, boolean instantaneaCompleta, Map<String, Double> precios) {
+        this.version = version;
+        this.moneda = moneda;
+        this.instantaneaCompleta = instantaneaCompleta;
+        this.precios = precios != null ? precios : Collections.emptyMap();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getMoneda() {
+        return moneda;
+    }
+
+    public boolean isInstantaneaCompleta() {
+        return instantaneaCompleta;
+    }
+
+    public Map<String, Double> getPrecios() {
+        return precios;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CambiosPrecios{version=%d, moneda=%s, completa=%b, cambios=%d}",
+                version, moneda, instantaneaCompleta, precios.size());
+    }
+}
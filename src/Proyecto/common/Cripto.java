@@ -4,23 +4,53 @@ import java.io.Serializable;
 import java.util.Objects;
 import java.util.Date;
 
-import java.rmi.Remote;
-import java.rmi.RemoteException;
-import java.util.List;
-import java.util.Map;
-
-public class Cripto implements Serializable {
-    private static final long serialVersionUID = 4L; // Incrementar si la estructura cambia
-
-    private final String simbolo;         // Ej: "BTC", "ETH" (Identificador y nombre para mostrar)
-    private double precioUSD;
-    private long ultimaActualizacionTimestamp; // Momento en que se actualizó/creó este objeto Cripto
-
-    // Constructor principal
-    public Cripto(String simbolo, double precioUSD) {
-        this.simbolo = Objects.requireNonNull(simbolo, "El símbolo no puede ser nulo").toUpperCase();
-        this.precioUSD = precioUSD;
-        this.ultimaActualizacionTimestamp = System.currentTimeMillis(); // Se establece al crear o actualizar
+/**
+ * Instantánea inmutable del precio de una criptomoneda.
+ * Una actualización de precio produce un objeto nuevo; nunca se modifica uno existente,
+ * así los lectores de la caché pueden usarlo sin sincronización.
+ */
+public final class Cripto implements Serializable {
+    private static final long serialVersionUID = 6L; // Incrementar si la estructura cambia
+
+    private final String simbolo;         // Ej: "BTC", "ETH" (Identificador y nombre para mostrar, internado)
+    private final String moneda;          // Moneda de cotización en minúsculas, ej: "usd", "eur" (internada)
+    private final double precio;
+    private final long timestampFuente;    // Momento de la cotización según la API (ms)
+    private final long timestampObtencion; // Momento en que el servidor obtuvo la cotización (ms)
+    private final long secuencia;          // Versión de la caché en que se publicó (0 si aún no se publica)
+
+    private transient int hash; // Calculado de forma perezosa (0 = no calculado)
+
+    // Constructor principal: cotización sin timestamp de origen, obtenida ahora
+    public Cripto(String simbolo, String moneda, double precio) {
+        this(simbolo, moneda, precio, System.currentTimeMillis(), System.currentTimeMillis(), 0L);
+    }
+
+    public Cripto(String simbolo, String moneda, double precio, long timestampFuente, long timestampObtencion, long secuencia) {
+        this.simbolo = Objects.requireNonNull(simbolo, "El símbolo no puede ser nulo").toUpperCase().intern();
+        this.moneda = Objects.requireNonNull(moneda, "La moneda no puede ser nula").toLowerCase().intern();
+        this.precio = precio;
+        this.timestampFuente = timestampFuente;
+        this.timestampObtencion = timestampObtencion;
+        this.secuencia = secuencia;
+    }
+
+    // Copia de otra instantánea: su símbolo y su moneda ya están normalizados e internados
+    private Cripto(Cripto origen, long secuencia) {
+        this.simbolo = origen.simbolo;
+        this.moneda = origen.moneda;
+        this.precio = origen.precio;
+        this.timestampFuente = origen.timestampFuente;
+        this.timestampObtencion = origen.timestampObtencion;
+        this.secuencia = secuencia;
+    }
+
+    /**
+     * Devuelve una copia de esta instantánea con el número de secuencia indicado.
+     */
+    public Cripto conSecuencia(long nuevaSecuencia) {
+        // Sin volver a normalizar ni internar: se llama en cada escritura de la caché
+        return new Cripto(this, nuevaSecuencia);
     }
 
     // Getters
@@ -28,27 +58,36 @@ public class Cripto implements Serializable {
         return simbolo;
     }
 
-    public double getPrecioUSD() {
-        return precioUSD;
+    public String getMoneda() {
+        return moneda;
+    }
+
+    public double getPrecio() {
+        return precio;
+    }
+
+    public long getTimestampFuente() {
+        return timestampFuente;
+    }
+
+    public long getTimestampObtencion() {
+        return timestampObtencion;
     }
 
-    public long getUltimaActualizacionTimestamp() {
-        return ultimaActualizacionTimestamp;
+    public long getSecuencia() {
+        return secuencia;
     }
 
-    // Setter para actualizar el precio y el timestamp
-    // Se usaría cuando CoinGeckoService actualiza un objeto Cripto existente
-    // o cuando se crea uno nuevo con datos frescos.
-    public void setPrecioUSD(double precioUSD) {
-        this.precioUSD = precioUSD;
-        this.ultimaActualizacionTimestamp = System.currentTimeMillis();
+    // Al deserializar se vuelven a internar el símbolo y la moneda
+    private Object readResolve() {
+        return new Cripto(simbolo, moneda, precio, timestampFuente, timestampObtencion, secuencia);
     }
 
     @Override
     public String toString() {
         // Usamos el símbolo como nombre descriptivo aquí
-        return String.format("%s: $%.2f USD (Actualizado: %tF %<tT)",
-                simbolo, precioUSD, new Date(ultimaActualizacionTimestamp));
+        return String.format("%s: %.2f %s (Actualizado: %tF %<tT)",
+                simbolo, precio, moneda.toUpperCase(), new Date(timestampFuente));
     }
 
     @Override
@@ -56,11 +95,16 @@ public class Cripto implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Cripto cripto = (Cripto) o;
-        return simbolo.equals(cripto.simbolo);
+        return simbolo.equals(cripto.simbolo) && moneda.equals(cripto.moneda);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(simbolo);
+        int h = hash;
+        if (h == 0) {
+            h = 31 * simbolo.hashCode() + moneda.hashCode();
+            hash = h;
+        }
+        return h;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de las conexiones creadas por {@link FabricaSocketsRmi} en este proceso
+ * (el servidor los publica en sus métricas; el cliente puede consultarlos directamente).
+ *
+ * Los bytes "en red" son los que realmente viajan por TCP; los "sin comprimir" son los que
+ * escribe o lee RMI. Sin compresión ambos coinciden, salvo por la cabecera de cada bloque.
+ */
+public final class EstadisticasSockets {
+
+    private static final AtomicLong CONEXIONES_ABIERTAS = new AtomicLong();
+    private static final LongAdder CONEXIONES_TOTALES = new LongAdder();
+    private static final LongAdder BYTES_ENVIADOS_RED = new LongAdder();
+    private static final LongAdder BYTES_RECIBIDOS_RED = new LongAdder();
+    private static final LongAdder BYTES_ENVIADOS_SIN_COMPRIMIR = new LongAdder();
+    private static final LongAdder BYTES_RECIBIDOS_SIN_COMPRIMIR = new LongAdder();
+    private static final LongAdder BLOQUES_COMPRIMIDOS = new LongAdder();
+
+    static void conexionAbierta() {
+        CONEXIONES_ABIERTAS.incrementAndGet();
+        CONEXIONES_TOTALES.increment();
+    }
+
+    static void conexionCerrada() {
+        CONEXIONES_ABIERTAS.decrementAndGet();
+    }
+
+    static void enviadosRed(long bytes) {
+        BYTES_ENVIADOS_RED.add(bytes);
+    }
+
+    static void recibidosRed(long bytes) {
+        BYTES_RECIBIDOS_RED.add(bytes);
+    }
+
+    static void enviadosSinComprimir(long bytes) {
+        BYTES_ENVIADOS_SIN_COMPRIMIR.add(bytes);
+    }
+
+    static void recibidosSinComprimir(long bytes) {
+        BYTES_RECIBIDOS_SIN_COMPRIMIR.add(bytes);
+    }
+
+    static void bloqueComprimido() {
+        BLOQUES_COMPRIMIDOS.increment();
+    }
+
+    /** Conexiones RMI abiertas ahora mismo. */
+    public static long conexionesAbiertas() {
+        return CONEXIONES_ABIERTAS.get();
+    }
+
+    /** Conexiones RMI abiertas desde el arranque (aceptadas y salientes). */
+    public static long conexionesTotales() {
+        return CONEXIONES_TOTALES.sum();
+    }
+
+    public static long bytesEnviadosRed() {
+        return BYTES_ENVIADOS_RED.sum();
+    }
+
+    public static long bytesRecibidosRed() {
+        return BYTES_RECIBIDOS_RED.sum();
+    }
+
+    public static long bytesEnviadosSinComprimir() {
+        return BYTES_ENVIADOS_SIN_COMPRIMIR.sum();
+    }
+
+    public static long bytesRecibidosSinComprimir() {
+        return BYTES_RECIBIDOS_SIN_COMPRIMIR.sum();
+    }
+
+    /** Bloques que se enviaron comprimidos (superaron el umbral y la compresión redujo su tamaño). */
+    public static long bloquesComprimidos() {
+        return BLOQUES_COMPRIMIDOS.sum();
+    }
+
+    private EstadisticasSockets() {
+    }
+}
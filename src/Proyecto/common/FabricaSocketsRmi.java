@@ -0,0 +1,125 @@
+package common;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Fábrica de sockets para exportar el servicio RMI, en reemplazo de las fábricas por defecto.
+ *
+ * - Desactiva Nagle (TCP_NODELAY) y fija los buffers de envío y recepción del socket
+ *   ({@code cripto.rmi.bufferBytes}, 64 KiB por defecto), antes de conectar para que la
+ *   ventana TCP se negocie con ese tamaño.
+ * - Opcionalmente comprime los datos: cada bloque que RMI vacía (flush) con al menos
+ *   {@code cripto.rmi.umbralCompresion} bytes (1024) se envía con Deflate; los bloques chicos
+ *   (pings, acuses) viajan tal cual. Sirve para los mapas de precios grandes por WAN.
+ * - Cuenta conexiones y bytes en {@link EstadisticasSockets}.
+ *
+ * La misma instancia actúa como fábrica del servidor y del cliente: el stub lleva una copia
+ * serializada, así el cliente habla con el mismo formato sin configurar nada. RMI reutiliza las
+ * conexiones de fábricas iguales, por eso {@link #equals(Object)} compara la configuración.
+ *
+ * El modo se elige al exportar con {@code cripto.rmi.sockets}: {@code defecto} (fábricas de RMI),
+ * {@code tcp} (solo ajustes TCP; el valor por defecto) o {@code comprimido}.
+ */
+public final class FabricaSocketsRmi implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean comprimir;
+    private final int umbralCompresion;
+    private final int tamanoBuffer;
+
+    public FabricaSocketsRmi(boolean comprimir, int umbralCompresion, int tamanoBuffer) {
+        if (umbralCompresion < 0 || tamanoBuffer <= 0) {
+            throw new IllegalArgumentException("Umbral de compresión o tamaño de buffer inválido.");
+        }
+        this.comprimir = comprimir;
+        this.umbralCompresion = umbralCompresion;
+        this.tamanoBuffer = tamanoBuffer;
+    }
+
+    /**
+     * La fábrica configurada por las propiedades {@code cripto.rmi.*}, o null para usar las
+     * fábricas por defecto de RMI ({@code cripto.rmi.sockets=defecto}).
+     */
+    public static FabricaSocketsRmi desdePropiedades() {
+        String modo = System.getProperty("cripto.rmi.sockets", "tcp").trim().toLowerCase(Locale.ROOT);
+        int umbral = Integer.getInteger("cripto.rmi.umbralCompresion", 1024);
+        int buffer = Integer.getInteger("cripto.rmi.bufferBytes", 64 * 1024);
+        return switch (modo) {
+            case "defecto" -> null;
+            case "tcp" -> new FabricaSocketsRmi(false, umbral, buffer);
+            case "comprimido" -> new FabricaSocketsRmi(true, umbral, buffer);
+            default -> throw new IllegalArgumentException("cripto.rmi.sockets desconocido: " + modo
+                    + " (use defecto, tcp o comprimido).");
+        };
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        SocketRmi socket = new SocketRmi(comprimir, umbralCompresion);
+        try {
+            socket.configurar(tamanoBuffer);
+            socket.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        socket.conectado();
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket servidor = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                SocketRmi socket = new SocketRmi(comprimir, umbralCompresion);
+                implAccept(socket);
+                socket.configurar(tamanoBuffer);
+                socket.conectado();
+                return socket;
+            }
+        };
+        try {
+            servidor.setReceiveBufferSize(tamanoBuffer); // Lo heredan los sockets aceptados
+            servidor.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            servidor.close();
+            throw e;
+        }
+        return servidor;
+    }
+
+    public boolean isComprimir() {
+        return comprimir;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FabricaSocketsRmi otra)) return false;
+        return comprimir == otra.comprimir
+                && umbralCompresion == otra.umbralCompresion
+                && tamanoBuffer == otra.tamanoBuffer;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(comprimir, umbralCompresion, tamanoBuffer);
+    }
+
+    @Override
+    public String toString() {
+        return "FabricaSocketsRmi{" +
+                (comprimir ? "comprimido, umbral=" + umbralCompresion + " B" : "tcp") +
+                ", buffer=" + tamanoBuffer + " B" +
+                '}';
+    }
+}
@@ -39,8 +39,47 @@ public interface InterfazServicioCripto extends Remote {
      * @return Una lista de Strings, donde cada String describe una alerta (ej. "BTC > 70000 USD").
      * @throws RemoteException Si ocurre un error durante la comunicación RMI.
      */
+    /**
+     * Establece una alerta estadística, evaluada sobre una ventana deslizante de precios
+     * en la moneda por defecto del servidor.
+     *
+     * @param idUsuario     Identificador único del usuario que establece la alerta.
+     * @param criptomoneda  Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @param tipoCondicion "CAMBIO_PCT": el precio se mueve más de {@code umbral}% en los últimos {@code ventana} minutos.
+     *                      "CRUCE_SMA": el precio cruza su media móvil de {@code ventana} periodos (el umbral se ignora).
+     *                      "VOLATIL": la desviación estándar de {@code ventana} periodos supera {@code umbral}% de la media.
+     * @param umbral        Porcentaje umbral de la condición.
+     * @param ventana       Tamaño de la ventana, en minutos o periodos según el tipo (2 a 1440).
+     * @return Un mensaje de confirmación o error.
+     * @throws RemoteException Si los datos son inválidos o si ocurre un error durante la comunicación RMI.
+     */
+    String establecerAlertaEstadistica(String idUsuario, String criptomoneda, String tipoCondicion, double umbral, int ventana) throws RemoteException;
+
     List <String> obtenerAlertasUsuario(String idUsuario) throws RemoteException;
 
+    /**
+     * Recupera las alertas de un usuario (activas e inactivas) por páginas, ordenadas por id.
+     *
+     * @param idUsuario Identificador único del usuario.
+     * @param cursor    0 para la primera página; luego el {@link PaginaAlertas#getSiguienteCursor()} de la anterior.
+     * @param limite    Cantidad máxima de alertas de la página (1 a 500).
+     * @return La página de alertas y el cursor de la siguiente (0 si no hay más).
+     * @throws RemoteException Si los parámetros son inválidos o si ocurre un error durante la comunicación RMI.
+     */
+    PaginaAlertas obtenerAlertasUsuario(String idUsuario, int cursor, int limite) throws RemoteException;
+
+    /**
+     * Obtiene las estadísticas de los últimos {@code ventana} periodos de precio de una criptomoneda,
+     * en la moneda por defecto del servidor.
+     *
+     * @param criptomoneda Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @param ventana      Cantidad de periodos (2 a 1440).
+     * @return Un Map con "muestras", "sma", "desviacion", "volatilidad_pct", "minimo", "maximo" y "cambio_pct";
+     *         los valores son NaN mientras la ventana no tenga suficientes precios.
+     * @throws RemoteException Si los datos son inválidos o si ocurre un error durante la comunicación RMI.
+     */
+    Map<String, Double> obtenerEstadisticas(String criptomoneda, int ventana) throws RemoteException;
+
     /**
      * Obtiene el precio actual de una criptomoneda específica.
      *
@@ -50,6 +89,38 @@ public interface InterfazServicioCripto extends Remote {
      */
     double obtenerPrecioActual(String criptomoneda) throws RemoteException;
 
+    /**
+     * Obtiene el precio actual de una criptomoneda en la moneda de cotización indicada.
+     *
+     * @param criptomoneda Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @param moneda       Moneda de cotización (ej. "usd", "eur", "clp", "btc"); ver {@link #obtenerMonedasDisponibles()}.
+     * @return El precio actual en esa moneda, o un valor negativo si no se encuentra.
+     * @throws RemoteException Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    double obtenerPrecioActual(String criptomoneda, String moneda) throws RemoteException;
+
+    /**
+     * Igual que {@link #obtenerPrecioActual(String, String)}, pero con un plazo: el servidor deja
+     * de trabajar en la consulta (caché, CoinGecko, base de datos) cuando se cumple.
+     *
+     * @param criptomoneda Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @param moneda       Moneda de cotización (ej. "usd", "eur").
+     * @param plazoMs      Milisegundos que el cliente está dispuesto a esperar (mayor que 0).
+     * @return El precio actual en esa moneda, o un valor negativo si no se encuentra.
+     * @throws PlazoVencidoException Si el plazo se cumple antes de obtener el precio.
+     * @throws RemoteException       Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    double obtenerPrecioActual(String criptomoneda, String moneda, long plazoMs) throws RemoteException;
+
+    /**
+     * Obtiene las monedas de cotización que el servidor mantiene en caché.
+     * La primera de la lista es la moneda por defecto de los métodos sin parámetro de moneda.
+     *
+     * @return Lista de códigos de moneda en minúsculas (ej. "usd", "eur").
+     * @throws RemoteException Si ocurre un error durante la comunicación RMI.
+     */
+    List<String> obtenerMonedasDisponibles() throws RemoteException;
+
     /**
      * Obtiene un mapa con los precios actuales de un conjunto de criptomonedas monitoreadas
      * (generalmente aquellas en caché debido a búsquedas recientes o alertas activas).
@@ -61,6 +132,77 @@ public interface InterfazServicioCripto extends Remote {
      */
     Map<String, Double> obtenerPreciosMonitoreados(String idUsuario) throws RemoteException;
 
+    /**
+     * Igual que {@link #obtenerPreciosMonitoreados(String)}, pero con los precios en la moneda indicada.
+     *
+     * @param idUsuario (Opcional, para logging).
+     * @param moneda    Moneda de cotización (ej. "usd", "eur").
+     * @return Un Map de símbolo a precio en esa moneda.
+     * @throws RemoteException Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    Map<String, Double> obtenerPreciosMonitoreados(String idUsuario, String moneda) throws RemoteException;
+
+    /**
+     * Obtiene solo los precios que cambiaron desde la versión indicada.
+     * Pensado para clientes que sondean periódicamente: el costo de la respuesta
+     * depende de cuántos precios cambiaron, no del tamaño del catálogo.
+     *
+     * @param version La versión devuelta por la consulta anterior, o 0 en la primera consulta.
+     * @return Los cambios y la nueva versión. Si el cliente está demasiado atrasado (o la versión
+     * proviene de otro servidor), se devuelve una instantánea completa marcada como tal.
+     * @throws RemoteException Si ocurre un error durante la comunicación RMI.
+     */
+    CambiosPrecios obtenerCambiosDesde(long version) throws RemoteException;
+
+    /**
+     * Igual que {@link #obtenerCambiosDesde(long)}, pero con los precios en la moneda indicada.
+     * La versión es común a todas las monedas.
+     *
+     * @param version La versión devuelta por la consulta anterior, o 0 en la primera consulta.
+     * @param moneda  Moneda de cotización (ej. "usd", "eur").
+     * @return Los cambios en esa moneda y la nueva versión.
+     * @throws RemoteException Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    CambiosPrecios obtenerCambiosDesde(long version, String moneda) throws RemoteException;
+
+    /**
+     * Agrega una criptomoneda a la lista de seguimiento del usuario. El servidor refresca los
+     * precios de las listas en cada ciclo, en una sola petición por lotes.
+     *
+     * @param idUsuario    Identificador único del usuario.
+     * @param criptomoneda Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @return Un mensaje de confirmación.
+     * @throws RemoteException Si la criptomoneda no existe, la lista está llena o si ocurre un error durante la comunicación RMI.
+     */
+    String agregarASeguimiento(String idUsuario, String criptomoneda) throws RemoteException;
+
+    /**
+     * Quita una criptomoneda de la lista de seguimiento del usuario.
+     *
+     * @param idUsuario    Identificador único del usuario.
+     * @param criptomoneda Símbolo de la criptomoneda (ej. "BTC", "ETH").
+     * @return Un mensaje de confirmación.
+     * @throws RemoteException Si ocurre un error durante la comunicación RMI.
+     */
+    String quitarDeSeguimiento(String idUsuario, String criptomoneda) throws RemoteException;
+
+    /**
+     * Obtiene en una sola llamada los precios de toda la lista de seguimiento del usuario.
+     *
+     * @param idUsuario Identificador único del usuario.
+     * @param moneda    Moneda de cotización (ej. "usd", "eur").
+     * @return Un Map ordenado de símbolo a precio en esa moneda; valores negativos si algún precio no pudo obtenerse.
+     * @throws RemoteException Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    Map<String, Double> obtenerPreciosSeguimiento(String idUsuario, String moneda) throws RemoteException;
+
+    /**
+     * Igual que {@link #obtenerPreciosSeguimiento(String, String)}, pero con un plazo en milisegundos.
+     *
+     * @throws PlazoVencidoException Si el plazo se cumple antes de completar la respuesta.
+     */
+    Map<String, Double> obtenerPreciosSeguimiento(String idUsuario, String moneda, long plazoMs) throws RemoteException;
+
     /**
      * Elimina una alerta específica de un usuario.
      *
@@ -82,6 +224,23 @@ public interface InterfazServicioCripto extends Remote {
      */
     Map<String, Double> obtenerPreciosDeTodasLasBases(String idUsuario) throws RemoteException; // NUEVO MÉTODO
 
+    /**
+     * Igual que {@link #obtenerPreciosDeTodasLasBases(String)}, pero con los precios en la moneda indicada.
+     *
+     * @param idUsuario (Opcional, para logging).
+     * @param moneda    Moneda de cotización (ej. "usd", "eur").
+     * @return Un Map de símbolo a precio en esa moneda; valores negativos si algún precio no pudo obtenerse.
+     * @throws RemoteException Si la moneda no está soportada o si ocurre un error durante la comunicación RMI.
+     */
+    Map<String, Double> obtenerPreciosDeTodasLasBases(String idUsuario, String moneda) throws RemoteException;
+
+    /**
+     * Igual que {@link #obtenerPreciosDeTodasLasBases(String, String)}, pero con un plazo en milisegundos.
+     *
+     * @throws PlazoVencidoException Si el plazo se cumple antes de completar la respuesta.
+     */
+    Map<String, Double> obtenerPreciosDeTodasLasBases(String idUsuario, String moneda, long plazoMs) throws RemoteException;
+
     // Dentro de la interfaz InterfazServicioCripto
 
     /**
@@ -92,7 +251,8 @@ public interface InterfazServicioCripto extends Remote {
      * @param nuevoPrecio    El nuevo precio umbral para la alerta.
      * @param nuevaCondicion La nueva condición ("MAYOR_QUE" o "MENOR_QUE").
      * @return Un mensaje de confirmación o error.
-     * @throws RemoteException Si ocurre un error durante la comunicación RMI.
+     * @throws RemoteException Si ocurre un error durante la comunicación RMI, o si la alerta es
+     *                         estadística (esas no se modifican: se eliminan y se crean de nuevo).
      */
     String modificarAlerta(String idUsuario, int idAlertaDB, double nuevoPrecio, String nuevaCondicion) throws RemoteException;
 }
@@ -0,0 +1,44 @@
+package common;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Respuesta de {@link InterfazServicioCripto#obtenerAlertasUsuario(String, int, int)}: una página
+ * de alertas ordenadas por id y el cursor para pedir la siguiente.
+ */
+public class PaginaAlertas implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<AlertaUsuario> alertas;
+    private final int siguienteCursor; // Cursor de la próxima página; 0 si esta es la última
+    private final int total;           // Alertas del usuario en todas las páginas
+
+    public PaginaAlertas(List<AlertaUsuario> alertas, int siguienteCursor, int total) {
+        this.alertas = alertas != null ? alertas : Collections.emptyList();
+        this.siguienteCursor = siguienteCursor;
+        this.total = total;
+    }
+
+    public List<AlertaUsuario> getAlertas() {
+        return alertas;
+    }
+
+    public int getSiguienteCursor() {
+        return siguienteCursor;
+    }
+
+    public boolean hayMas() {
+        return siguienteCursor > 0;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PaginaAlertas{alertas=%d, siguienteCursor=%d, total=%d}", alertas.size(), siguienteCursor, total);
+    }
+}
@@ -0,0 +1,27 @@
+package common;
+
+import java.rmi.RemoteException;
+
+/**
+ * El plazo que el cliente dio a la llamada se cumplió antes de que el servidor terminara.
+ *
+ * El servidor deja de trabajar en la llamada en cuanto lo detecta (entre la caché, la petición
+ * a CoinGecko y la lectura de MySQL), así que el resultado parcial no se devuelve. El cliente
+ * también la lanza, con la etapa {@code respuesta}, cuando deja de esperar a un servidor que no
+ * contestó dentro del plazo.
+ */
+public class PlazoVencidoException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    private final String etapa;
+
+    public PlazoVencidoException(String etapa) {
+        super("Plazo de la llamada vencido (etapa: " + etapa + ").");
+        this.etapa = etapa;
+    }
+
+    /** Etapa en que se detectó el vencimiento (ej. "caché", "CoinGecko", "BD", o "respuesta" en el cliente). */
+    public String getEtapa() {
+        return etapa;
+    }
+}
@@ -0,0 +1,33 @@
+package common;
+
+import java.rmi.RemoteException;
+
+/**
+ * El servidor rechazó la llamada sin ejecutarla porque está saturado (control de admisión).
+ *
+ * La llamada no tuvo ningún efecto, así que siempre se puede reintentar: en el otro servidor
+ * o en el mismo, después de {@link #getReintentarEnMs()} milisegundos.
+ */
+public class ServidorSaturadoException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    private final String claseLlamada;
+    private final long reintentarEnMs;
+
+    public ServidorSaturadoException(String claseLlamada, long reintentarEnMs) {
+        super("Servidor saturado: se rechazó una llamada de tipo " + claseLlamada
+                + ". Reintente en " + reintentarEnMs + " ms o en el servidor de respaldo.");
+        this.claseLlamada = claseLlamada;
+        this.reintentarEnMs = reintentarEnMs;
+    }
+
+    /** Tipo de llamada rechazada (ej. {@code LECTURA}, {@code ESCRITURA}, {@code ORIGEN}). */
+    public String getClaseLlamada() {
+        return claseLlamada;
+    }
+
+    /** Espera sugerida antes de reintentar en el mismo servidor. */
+    public long getReintentarEnMs() {
+        return reintentarEnMs;
+    }
+}
@@ -0,0 +1,412 @@
+package common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Socket de {@link FabricaSocketsRmi}: cuenta los bytes y, si se pide, comprime por bloques.
+ *
+ * Con compresión, lo escrito se acumula hasta que RMI hace flush (al final de cada mensaje) y
+ * se envía como un bloque: {@code [tipo][largo]} y los datos, o {@code [tipo][largo comprimido]
+ * [largo original]} y los datos deflactados cuando el bloque supera el umbral y la compresión
+ * lo achica. Ambos extremos deben usar el mismo modo, lo que garantiza el stub serializado.
+ */
+final class SocketRmi extends Socket {
+
+    private static final int BLOQUE_PLANO = 0;
+    private static final int BLOQUE_COMPRIMIDO = 1;
+    private static final int MAX_BLOQUE = 1 << 20; // Se vacía antes aunque RMI no haya hecho flush
+
+    private final boolean comprimir;
+    private final int umbralCompresion;
+    private final AtomicBoolean abierto = new AtomicBoolean(false);
+    private InputStream entrada;   // Protegidos por 'this'
+    private OutputStream salida;
+
+    SocketRmi(boolean comprimir, int umbralCompresion) {
+        this.comprimir = comprimir;
+        this.umbralCompresion = umbralCompresion;
+    }
+
+    void configurar(int tamanoBuffer) throws SocketException {
+        setTcpNoDelay(true);
+        setKeepAlive(true);
+        setSendBufferSize(tamanoBuffer);
+        setReceiveBufferSize(tamanoBuffer);
+    }
+
+    void conectado() {
+        if (abierto.compareAndSet(false, true)) {
+            EstadisticasSockets.conexionAbierta();
+        }
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (entrada == null) {
+            InputStream red = new EntradaContada(super.getInputStream());
+            entrada = comprimir ? new EntradaBloques(red) : new EntradaSinComprimir(red);
+        }
+        return entrada;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (salida == null) {
+            OutputStream red = new SalidaContada(super.getOutputStream());
+            salida = comprimir ? new SalidaBloques(red, umbralCompresion) : new SalidaSinComprimir(red);
+        }
+        return salida;
+    }
+
+    /**
+     * RMI cierra el socket, no sus flujos: aquí se liberan también el Deflater y el Inflater,
+     * cuya memoria nativa no la recupera el recolector a tiempo.
+     */
+    @Override
+    public void close() throws IOException {
+        if (abierto.compareAndSet(true, false)) {
+            EstadisticasSockets.conexionCerrada();
+        }
+        try {
+            super.close();
+        } finally {
+            synchronized (this) {
+                if (salida instanceof SalidaBloques bloques) {
+                    bloques.liberar();
+                }
+                if (entrada instanceof EntradaBloques bloques) {
+                    bloques.liberar();
+                }
+            }
+        }
+    }
+
+    // --- Conteo de bytes en la red ---
+
+    private static final class EntradaContada extends FilterInputStream {
+        EntradaContada(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                EstadisticasSockets.recibidosRed(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                EstadisticasSockets.recibidosRed(n);
+            }
+            return n;
+        }
+    }
+
+    private static final class SalidaContada extends FilterOutputStream {
+        SalidaContada(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            EstadisticasSockets.enviadosRed(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            EstadisticasSockets.enviadosRed(len);
+        }
+    }
+
+    // Sin compresión lo que RMI lee y escribe es lo mismo que viaja por la red
+    private static final class EntradaSinComprimir extends FilterInputStream {
+        EntradaSinComprimir(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                EstadisticasSockets.recibidosSinComprimir(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                EstadisticasSockets.recibidosSinComprimir(n);
+            }
+            return n;
+        }
+    }
+
+    private static final class SalidaSinComprimir extends FilterOutputStream {
+        SalidaSinComprimir(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            EstadisticasSockets.enviadosSinComprimir(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            EstadisticasSockets.enviadosSinComprimir(len);
+        }
+    }
+
+    // --- Compresión por bloques ---
+
+    private static final class SalidaBloques extends OutputStream {
+        private final DataOutputStream red;
+        private final int umbral;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] pendiente = new byte[8192];
+        private int largo = 0;
+        private byte[] comprimido = new byte[0];
+        private boolean liberado = false; // Protegido por 'this', como el deflater
+
+        SalidaBloques(OutputStream red, int umbral) {
+            this.red = new DataOutputStream(red);
+            this.umbral = umbral;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            asegurar(1);
+            pendiente[largo++] = (byte) b;
+            if (largo >= MAX_BLOQUE) {
+                enviarBloque();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int parte = Math.min(len, MAX_BLOQUE - largo);
+                asegurar(parte);
+                System.arraycopy(b, off, pendiente, largo, parte);
+                largo += parte;
+                off += parte;
+                len -= parte;
+                if (largo >= MAX_BLOQUE) {
+                    enviarBloque();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            enviarBloque();
+            red.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                liberar();
+                red.close();
+            }
+        }
+
+        synchronized void liberar() {
+            liberado = true;
+            deflater.end();
+        }
+
+        private void asegurar(int adicionales) {
+            if (largo + adicionales > pendiente.length) {
+                pendiente = Arrays.copyOf(pendiente, Math.max(largo + adicionales, pendiente.length * 2));
+            }
+        }
+
+        private void enviarBloque() throws IOException {
+            if (largo == 0) {
+                return;
+            }
+            EstadisticasSockets.enviadosSinComprimir(largo);
+            int largoComprimido = largo >= umbral ? deflactar() : -1;
+            if (largoComprimido >= 0 && largoComprimido < largo) {
+                red.writeByte(BLOQUE_COMPRIMIDO);
+                red.writeInt(largoComprimido);
+                red.writeInt(largo);
+                red.write(comprimido, 0, largoComprimido);
+                EstadisticasSockets.bloqueComprimido();
+            } else {
+                // Bloque chico o que no se comprime (ej. ya comprimido): va tal cual
+                red.writeByte(BLOQUE_PLANO);
+                red.writeInt(largo);
+                red.write(pendiente, 0, largo);
+            }
+            largo = 0;
+        }
+
+        // Deja el bloque pendiente deflactado en 'comprimido'; devuelve su largo
+        private synchronized int deflactar() throws IOException {
+            if (liberado) {
+                throw new SocketException("Socket RMI cerrado.");
+            }
+            if (comprimido.length < largo) {
+                comprimido = new byte[largo];
+            }
+            deflater.reset();
+            deflater.setInput(pendiente, 0, largo);
+            deflater.finish();
+            int total = 0;
+            while (!deflater.finished()) {
+                if (total == comprimido.length) {
+                    return -1; // Ocupa al menos lo mismo que sin comprimir
+                }
+                total += deflater.deflate(comprimido, total, comprimido.length - total);
+            }
+            return total;
+        }
+    }
+
+    private static final class EntradaBloques extends InputStream {
+        private final DataInputStream red;
+        private final Inflater inflater = new Inflater();
+        private byte[] bloque = new byte[8192];
+        private byte[] comprimido = new byte[0];
+        private int posicion = 0;
+        private int limite = 0;
+        private boolean liberado = false; // Protegido por 'this', como el inflater
+
+        EntradaBloques(InputStream red) {
+            this.red = new DataInputStream(red);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (posicion == limite && !leerBloque()) {
+                return -1;
+            }
+            return bloque[posicion++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (posicion == limite && !leerBloque()) {
+                return -1;
+            }
+            int n = Math.min(len, limite - posicion);
+            System.arraycopy(bloque, posicion, b, off, n);
+            posicion += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limite - posicion;
+        }
+
+        @Override
+        public void close() throws IOException {
+            liberar();
+            red.close();
+        }
+
+        synchronized void liberar() {
+            liberado = true;
+            inflater.end();
+        }
+
+        // Lee el siguiente bloque no vacío; false si la conexión se cerró entre bloques
+        private boolean leerBloque() throws IOException {
+            while (true) {
+                int tipo = red.read();
+                if (tipo < 0) {
+                    return false;
+                }
+                int largo = red.readInt();
+                if (largo < 0 || largo > MAX_BLOQUE) {
+                    throw new IOException("Bloque RMI con largo inválido: " + largo);
+                }
+                if (tipo == BLOQUE_PLANO) {
+                    asegurar(largo);
+                    red.readFully(bloque, 0, largo);
+                    posicion = 0;
+                    limite = largo;
+                } else if (tipo == BLOQUE_COMPRIMIDO) {
+                    int original = red.readInt();
+                    if (original < 0 || original > MAX_BLOQUE) {
+                        throw new IOException("Bloque RMI comprimido con largo inválido: " + original);
+                    }
+                    if (comprimido.length < largo) {
+                        comprimido = new byte[largo];
+                    }
+                    red.readFully(comprimido, 0, largo);
+                    asegurar(original);
+                    inflar(largo, original);
+                    posicion = 0;
+                    limite = original;
+                } else {
+                    throw new IOException("Tipo de bloque RMI desconocido: " + tipo
+                            + " (¿cliente y servidor con distinto modo de sockets?)");
+                }
+                EstadisticasSockets.recibidosSinComprimir(limite);
+                if (limite > 0) {
+                    return true;
+                }
+            }
+        }
+
+        private synchronized void inflar(int largo, int original) throws IOException {
+            if (liberado) {
+                throw new SocketException("Socket RMI cerrado.");
+            }
+            inflater.reset();
+            inflater.setInput(comprimido, 0, largo);
+            try {
+                int total = 0;
+                while (total < original) {
+                    int n = inflater.inflate(bloque, total, original - total);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new EOFException("Bloque RMI comprimido truncado.");
+                    }
+                    total += n;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Bloque RMI comprimido corrupto.", e);
+            }
+        }
+
+        private void asegurar(int largo) {
+            if (bloque.length < largo) {
+                bloque = new byte[Math.max(largo, bloque.length * 2)];
+            }
+        }
+    }
+}
@@ -10,8 +10,12 @@ module Proyecto { // Este es el nombre de TU módulo
 	requires com.fasterxml.jackson.core;
 	requires com.fasterxml.jackson.annotation;
 	requires org.apache.httpcomponents.client5.httpclient5;
+	requires org.apache.httpcomponents.client5.httpclient5.cache;
 	requires org.apache.httpcomponents.core5.httpcore5;
 	requires org.slf4j;
 	requires java.sql;
+	requires java.management;
+	requires io.reactivex.rxjava3;
+	requires org.reactivestreams;
 }
 
@@ -0,0 +1,65 @@
+package server;
+
+/**
+ * Definición inmutable de una alerta activa, tal como está en la tabla {@code alertas}.
+ */
+class AlertaDefinicion {
+
+    // Tipos de alerta estadística (caben en tipo_condicion VARCHAR(10)); usan la columna 'ventana'
+    static final String CAMBIO_PCT = "CAMBIO_PCT"; // Movimiento de más de umbral% en los últimos 'ventana' minutos
+    static final String CRUCE_SMA = "CRUCE_SMA";   // El precio cruza su media móvil de 'ventana' periodos
+    static final String VOLATIL = "VOLATIL";       // Desviación estándar de 'ventana' periodos sobre umbral% de la media
+
+    final String idAlertaDB;
+    final String idUsuario;
+    final String criptomoneda;
+    final double precioUmbral;
+    final String tipoCondicion;
+    final int ventana; // Solo alertas estadísticas; 0 en las de precio fijo
+    final boolean activa;
+
+    AlertaDefinicion(String idAlertaDB, String idUsuario, String criptomoneda, double precioUmbral, String tipoCondicion, int ventana, boolean activa) {
+        this.idAlertaDB = idAlertaDB;
+        this.idUsuario = idUsuario;
+        this.criptomoneda = criptomoneda.toUpperCase();
+        this.precioUmbral = precioUmbral;
+        this.tipoCondicion = tipoCondicion;
+        this.ventana = ventana;
+        this.activa = activa;
+    }
+
+    AlertaDefinicion(String idUsuario, String criptomoneda, double precioUmbral, String tipoCondicion, int ventana) {
+        this(null, idUsuario, criptomoneda, precioUmbral, tipoCondicion, ventana, true);
+    }
+
+    /** Copia con otro umbral y tipo de condición (la ventana se mantiene). */
+    AlertaDefinicion conCondicion(double nuevoUmbral, String nuevoTipo) {
+        return new AlertaDefinicion(idAlertaDB, idUsuario, criptomoneda, nuevoUmbral, nuevoTipo, ventana, activa);
+    }
+
+    /** true si ambas definiciones describen la misma condición para el mismo usuario. */
+    boolean mismaDefinicion(AlertaDefinicion otra) {
+        return idAlertaDB.equals(otra.idAlertaDB) && idUsuario.equals(otra.idUsuario)
+                && criptomoneda.equals(otra.criptomoneda) && precioUmbral == otra.precioUmbral
+                && tipoCondicion.equals(otra.tipoCondicion) && ventana == otra.ventana;
+    }
+
+    static String describirCondicion(String simbolo, String tipoCondicion, double umbral, int ventana) {
+        switch (tipoCondicion) {
+            case CAMBIO_PCT:
+                return String.format("%s cambia más de %.2f%% en %d min", simbolo, umbral, ventana);
+            case CRUCE_SMA:
+                return String.format("%s cruza su SMA(%d)", simbolo, ventana);
+            case VOLATIL:
+                return String.format("%s volatilidad > %.2f%% en %d periodos", simbolo, umbral, ventana);
+            default:
+                String simboloCondicion = "MAYOR_QUE".equals(tipoCondicion) ? ">" : "<";
+                return String.format("%s %s %.2f", simbolo, simboloCondicion, umbral);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (Activa: %b)", describirCondicion(criptomoneda, tipoCondicion, precioUmbral, ventana), activa);
+    }
+}
@@ -0,0 +1,161 @@
+package server;
+
+import common.AlertaUsuario;
+import common.PaginaAlertas;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Alertas de cada usuario (activas e inactivas) en memoria, ordenadas por id, para listar
+ * por páginas sin consultar MySQL en cada llamada.
+ *
+ * La lista de un usuario se lee de la BD una sola vez (las llamadas simultáneas comparten la
+ * lectura) y se descarta cuando una escritura de este servidor toca sus alertas. Las escrituras
+ * hechas en el otro servidor se ven al vencer la entrada, a los {@link #VIGENCIA_MS} ms.
+ * Con muchos usuarios se descartan primero las entradas más antiguas.
+ */
+class AlertasPorUsuario {
+
+    private static final Logger log = LogAsincrono.obtener(AlertasPorUsuario.class);
+
+    private static final long VIGENCIA_MS = Long.getLong("cripto.alertas.cacheUsuarioSeg", 60) * 1000;
+    private static final int MAX_USUARIOS = Integer.getInteger("cripto.alertas.cacheUsuarios", 1_000);
+    static final int MAX_POR_PAGINA = 500;
+
+    private static final class Entrada {
+        final long cargadaEn = System.currentTimeMillis();
+        final CompletableFuture<List<AlertaUsuario>> alertas = new CompletableFuture<>(); // Ordenadas por id
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>(); // nombre_usuario -> alertas
+    private final EjecutorTareas ejecutor;
+
+    AlertasPorUsuario(EjecutorTareas ejecutor) {
+        this.ejecutor = ejecutor;
+        Metricas.REGISTRO.indicador("cripto_alertas_usuarios_cache", "Usuarios con sus alertas en memoria.", entradas::size);
+    }
+
+    /**
+     * Página de alertas (ordenadas por id) con id mayor que {@code cursor}.
+     *
+     * @param cursor 0 para la primera página; luego el {@code siguienteCursor} de la anterior.
+     * @param limite Tamaño de página, entre 1 y {@link #MAX_POR_PAGINA}.
+     */
+    static PaginaAlertas pagina(List<AlertaUsuario> alertas, int cursor, int limite) {
+        int desde = primeraMayorQue(alertas, cursor);
+        int hasta = Math.min(alertas.size(), desde + limite);
+        int siguienteCursor = hasta < alertas.size() ? alertas.get(hasta - 1).getIdAlerta() : 0;
+        return new PaginaAlertas(new ArrayList<>(alertas.subList(desde, hasta)), siguienteCursor, alertas.size());
+    }
+
+    /** Todas las alertas del usuario, ordenadas por id (lista inmutable). */
+    List<AlertaUsuario> obtener(String nombreUsuario) throws SQLException {
+        while (true) {
+            Entrada entrada = entradas.get(nombreUsuario);
+            if (entrada != null && System.currentTimeMillis() - entrada.cargadaEn < VIGENCIA_MS) {
+                try {
+                    return entrada.alertas.join(); // Si otra llamada la está leyendo, se espera su resultado
+                } catch (CompletionException e) {
+                    throw (SQLException) e.getCause(); // La lectura compartida falló; esta llamada también
+                }
+            }
+            Entrada nueva = new Entrada();
+            boolean propia = entrada == null ? entradas.putIfAbsent(nombreUsuario, nueva) == null : entradas.replace(nombreUsuario, entrada, nueva);
+            if (!propia) {
+                continue; // Otro hilo empezó la lectura primero
+            }
+            if (entradas.size() > MAX_USUARIOS) {
+                descartarAntiguas();
+            }
+            try {
+                List<AlertaUsuario> alertas = Collections.unmodifiableList(ejecutor.conPermisoDB(() -> leerDeBD(nombreUsuario)));
+                nueva.alertas.complete(alertas);
+                return alertas;
+            } catch (SQLException | RuntimeException e) {
+                entradas.remove(nombreUsuario, nueva); // Un error no se recuerda
+                nueva.alertas.completeExceptionally(e instanceof SQLException ? e : new SQLException(e.getMessage(), e));
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Descarta las alertas en memoria del usuario; se llama después de confirmar una escritura.
+     * Una lectura que estuviera en curso queda huérfana y la siguiente consulta vuelve a la BD.
+     */
+    void invalidar(String nombreUsuario) {
+        if (nombreUsuario != null) {
+            entradas.remove(nombreUsuario);
+        }
+    }
+
+    // Primero las vencidas; si no alcanza, la cuarta parte más antigua
+    private void descartarAntiguas() {
+        long ahora = System.currentTimeMillis();
+        entradas.values().removeIf(entrada -> ahora - entrada.cargadaEn >= VIGENCIA_MS);
+        if (entradas.size() > MAX_USUARIOS) {
+            List<Map.Entry<String, Entrada>> porAntiguedad = new ArrayList<>(entradas.entrySet());
+            porAntiguedad.sort((a, b) -> Long.compare(a.getValue().cargadaEn, b.getValue().cargadaEn));
+            for (Map.Entry<String, Entrada> antigua : porAntiguedad.subList(0, porAntiguedad.size() / 4)) {
+                entradas.remove(antigua.getKey(), antigua.getValue());
+            }
+        }
+    }
+
+    private static int primeraMayorQue(List<AlertaUsuario> alertas, int idAlerta) {
+        int bajo = 0;
+        int alto = alertas.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (alertas.get(medio).getIdAlerta() <= idAlerta) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private List<AlertaUsuario> leerDeBD(String nombreUsuario) throws SQLException {
+        // El usuario se resuelve primero para que la lectura de alertas use idx_alertas_usuario
+        String sql = "SELECT a.id_alerta, c.simbolo, a.precio_umbral, a.tipo_condicion, a.ventana, a.activa " +
+                "FROM usuarios u " +
+                "JOIN alertas a ON a.id_usuario_fk = u.id_usuario " +
+                "JOIN criptomonedas c ON a.id_cripto_fk = c.id_cripto " +
+                "WHERE u.nombre_usuario = ? ORDER BY a.id_alerta";
+        List<AlertaUsuario> alertas = new ArrayList<>();
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseManager.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, nombreUsuario);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                String simbolo = rs.getString("simbolo").toUpperCase();
+                double umbral = rs.getDouble("precio_umbral");
+                String tipoCondicion = rs.getString("tipo_condicion");
+                int ventana = rs.getInt("ventana");
+                alertas.add(new AlertaUsuario(rs.getInt("id_alerta"), simbolo, tipoCondicion, umbral, ventana, rs.getBoolean("activa"),
+                        AlertaDefinicion.describirCondicion(simbolo, tipoCondicion, umbral, ventana)));
+            }
+        } finally {
+            DatabaseManager.close(conn, pstmt, rs);
+        }
+        log.debug("Alertas de {} cargadas en memoria: {}", nombreUsuario, alertas.size());
+        return alertas;
+    }
+}
@@ -0,0 +1,162 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Arranque del servidor por subsistemas independientes (BD, catálogo, CoinGecko, caché...).
+ *
+ * Cada paso corre en su propio hilo virtual, en paralelo con los demás, y el servicio se
+ * publica en el RMI Registry sin esperarlos: mientras un subsistema no está listo el servidor
+ * funciona en modo degradado (las consultas de precios se atienden desde la caché y las
+ * operaciones que lo necesitan se rechazan de inmediato con {@link #exigir}).
+ * Un paso que falla se reintenta con espera exponencial (1 s, 2 s, ... hasta 30 s), así un
+ * MySQL caído al arrancar no impide que el respaldo tome tráfico.
+ *
+ * El estado de cada subsistema se publica en {@code cripto_arranque_listo{subsistema="..."}}.
+ */
+public class ArranqueServidor {
+
+    private static final Logger log = LogAsincrono.obtener(ArranqueServidor.class);
+
+    private static final long ESPERA_INICIAL_MS = 1_000;
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+
+    /** Paso de arranque; si lanza una excepción se reintenta. */
+    @FunctionalInterface
+    public interface Paso {
+        void ejecutar() throws Exception;
+    }
+
+    enum Estado { PENDIENTE, LISTO, FALLIDO }
+
+    private static final class Subsistema {
+        final String nombre;
+        final Paso paso;
+        volatile Estado estado = Estado.PENDIENTE;
+        volatile String ultimoError;
+        volatile long listoEnMs;
+        int intentos = 0;
+
+        Subsistema(String nombre, Paso paso) {
+            this.nombre = nombre;
+            this.paso = paso;
+        }
+    }
+
+    private final EjecutorTareas ejecutor;
+    private final Map<String, Subsistema> subsistemas = new LinkedHashMap<>(); // Fijo tras iniciar()
+    private final Set<Thread> hilos = ConcurrentHashMap.newKeySet();
+    private volatile boolean detenido = false;
+    private long inicio;
+
+    public ArranqueServidor(EjecutorTareas ejecutor) {
+        this.ejecutor = ejecutor;
+    }
+
+    /** Agrega un subsistema; se debe llamar antes de {@link #iniciar()}. */
+    public void agregar(String nombre, Paso paso) {
+        Subsistema subsistema = new Subsistema(nombre, paso);
+        subsistemas.put(nombre, subsistema);
+        Metricas.REGISTRO.indicador("cripto_arranque_listo", "1 si el subsistema terminó de arrancar.",
+                "subsistema=\"" + nombre + "\"", () -> subsistema.estado == Estado.LISTO ? 1 : 0);
+    }
+
+    /** Lanza todos los pasos en paralelo y vuelve de inmediato. */
+    public void iniciar() {
+        inicio = System.nanoTime();
+        for (Subsistema subsistema : subsistemas.values()) {
+            ejecutor.ejecutar(() -> ejecutarConReintentos(subsistema));
+        }
+    }
+
+    private void ejecutarConReintentos(Subsistema subsistema) {
+        Thread hilo = Thread.currentThread();
+        hilo.setName("Arranque-" + subsistema.nombre);
+        hilos.add(hilo);
+        try {
+            long espera = ESPERA_INICIAL_MS;
+            while (!detenido) {
+                subsistema.intentos++;
+                try {
+                    subsistema.paso.ejecutar();
+                    subsistema.listoEnMs = (System.nanoTime() - inicio) / 1_000_000;
+                    subsistema.estado = Estado.LISTO;
+                    log.info("Subsistema '{}' listo en {} ms ({} intentos).", subsistema.nombre, subsistema.listoEnMs, subsistema.intentos);
+                    if (todoListo()) {
+                        log.info("Arranque completo en {} ms: {}", (System.nanoTime() - inicio) / 1_000_000, estado());
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    subsistema.ultimoError = primeraLinea(e);
+                    subsistema.estado = Estado.FALLIDO;
+                    log.warn("Subsistema '{}' no disponible ({}); se reintenta en {} s.", subsistema.nombre, subsistema.ultimoError, espera / 1000);
+                }
+                Thread.sleep(espera);
+                espera = Math.min(espera * 2, ESPERA_MAXIMA_MS);
+            }
+        } catch (InterruptedException e) {
+            // Apagado: se deja de reintentar
+        } finally {
+            hilos.remove(hilo);
+        }
+    }
+
+    // Los errores del driver JDBC traen varias líneas; para el log y el cliente basta la primera
+    private static String primeraLinea(Exception e) {
+        String mensaje = e.getMessage() != null ? e.getMessage() : e.toString();
+        int salto = mensaje.indexOf('\n');
+        return salto > 0 ? mensaje.substring(0, salto).trim() : mensaje;
+    }
+
+    public boolean listo(String nombre) {
+        Subsistema subsistema = subsistemas.get(nombre);
+        return subsistema != null && subsistema.estado == Estado.LISTO;
+    }
+
+    public boolean todoListo() {
+        for (Subsistema subsistema : subsistemas.values()) {
+            if (subsistema.estado != Estado.LISTO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rechaza la operación si el subsistema aún no arrancó (modo degradado).
+     */
+    public void exigir(String nombre, String operacion) throws RemoteException {
+        if (!listo(nombre)) {
+            Subsistema subsistema = subsistemas.get(nombre);
+            String detalle = subsistema != null && subsistema.ultimoError != null ? " (último error: " + subsistema.ultimoError + ")" : "";
+            throw new RemoteException("Servidor en modo degradado: no se puede " + operacion + " porque el subsistema '"
+                    + nombre + "' aún no está listo" + detalle + ". Las consultas de precios siguen disponibles.");
+        }
+    }
+
+    /** Estado de cada subsistema, ej. {@code bd=LISTO (120 ms)}. */
+    public Map<String, String> estado() {
+        Map<String, String> estado = new LinkedHashMap<>();
+        for (Subsistema subsistema : subsistemas.values()) {
+            estado.put(subsistema.nombre, subsistema.estado == Estado.LISTO
+                    ? "LISTO (" + subsistema.listoEnMs + " ms)" : subsistema.estado.name());
+        }
+        return estado;
+    }
+
+    /** Deja de reintentar los pasos pendientes (al apagar). */
+    public void detener() {
+        detenido = true;
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+        }
+    }
+}
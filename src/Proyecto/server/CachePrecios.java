@@ -0,0 +1,264 @@
+package server;
+
+import common.CambiosPrecios;
+import common.Cripto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Caché de precios organizada como matriz (símbolo × moneda), con una versión monótona
+ * por actualización.
+ *
+ * Cada símbolo recibe un índice de fila fijo la primera vez que se publica, y cada moneda
+ * configurada un índice de columna; la instantánea inmutable ({@link Cripto}) de un par
+ * vive en la celda {@code fila * numMonedas + columna} de un único arreglo. Los lectores
+ * recorren el arreglo sin bloqueos ni reservas de memoria; solo los escritores se sincronizan.
+ *
+ * Cada instantánea publicada lleva como secuencia la versión en que se publicó, de modo
+ * que {@link #cambiosDesde(long, String)} devuelve solo las celdas con secuencia mayor a la
+ * del cliente. Los 15 bits altos de la versión identifican a esta instancia del servidor
+ * (época): una versión emitida por el otro servidor (principal/respaldo) o por una
+ * ejecución anterior produce una instantánea completa.
+ *
+ * Cada fila recuerda cuándo se consultó por última vez su símbolo ({@link #marcarAcceso(String)}),
+ * para refrescar solo lo que alguien usa y desalojar los símbolos fríos cuando la caché supera
+ * su presupuesto ({@link #desalojar(int, Set)}). La fila de un símbolo desalojado se reutiliza,
+ * así que los lectores comprueban el símbolo de la celda que leen. Un desalojo publica una versión
+ * nueva, y un cliente con una versión anterior a él recibe una instantánea completa: así su copia
+ * local deja de mostrar los símbolos desalojados.
+ */
+public class CachePrecios {
+
+    private static final int FILAS_INICIALES = 64;
+    private static final int BITS_CONTADOR = 48;
+    private static final long MASCARA_CONTADOR = (1L << BITS_CONTADOR) - 1;
+    private static final long RESOLUCION_ACCESO_MS = 1_000; // Evita escribir la marca en cada lectura
+
+    private final Map<String, Integer> columnaPorMoneda = new HashMap<>(); // Inmutable tras el constructor
+    private final int numMonedas;
+
+    private final Map<String, Integer> filaPorSimbolo = new ConcurrentHashMap<>();
+    private volatile AtomicReferenceArray<Cripto> celdas;
+    private volatile AtomicLongArray ultimoAcceso; // Por fila, en ms
+    private int filasOcupadas = 0; // Protegido por 'this'
+    private final Deque<Integer> filasLibres = new ArrayDeque<>(); // Filas de símbolos desalojados; protegido por 'this'
+
+    private final long epoca;
+    private volatile long version; // Última versión publicada (incluye la época)
+    private volatile long versionUltimoDesalojo; // Versión publicada por el último desalojo (o la inicial)
+
+    public CachePrecios(List<String> monedas) {
+        for (String moneda : monedas) {
+            columnaPorMoneda.putIfAbsent(moneda.toLowerCase(), columnaPorMoneda.size());
+        }
+        this.numMonedas = columnaPorMoneda.size();
+        this.celdas = new AtomicReferenceArray<>(FILAS_INICIALES * numMonedas);
+        this.ultimoAcceso = new AtomicLongArray(FILAS_INICIALES);
+        // Época aleatoria en [1, 2^15): nunca produce versiones negativas ni iguales a 0.
+        this.epoca = ThreadLocalRandom.current().nextLong(1, 1L << 15) << BITS_CONTADOR;
+        this.version = epoca;
+        this.versionUltimoDesalojo = epoca;
+    }
+
+    public boolean soportaMoneda(String moneda) {
+        return columnaPorMoneda.containsKey(moneda);
+    }
+
+    public Cripto obtener(String simbolo, String moneda) {
+        Integer fila = filaPorSimbolo.get(simbolo);
+        Integer columna = columnaPorMoneda.get(moneda);
+        if (fila == null || columna == null) {
+            return null;
+        }
+        Cripto cripto = celdas.get(fila * numMonedas + columna);
+        // La fila pudo reasignarse a otro símbolo entre ambas lecturas
+        return cripto != null && cripto.getSimbolo().equals(simbolo) ? cripto : null;
+    }
+
+    /**
+     * Anota que un cliente consultó el símbolo. Sin bloqueos; la marca tiene resolución de un segundo.
+     */
+    public void marcarAcceso(String simbolo) {
+        Integer fila = filaPorSimbolo.get(simbolo);
+        AtomicLongArray accesos = ultimoAcceso;
+        if (fila == null || fila >= accesos.length()) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        if (ahora - accesos.get(fila) >= RESOLUCION_ACCESO_MS) {
+            accesos.set(fila, ahora);
+        }
+    }
+
+    /** Símbolos consultados desde el instante dado (ms). */
+    public Set<String> simbolosUsadosDesde(long instanteMillis) {
+        Set<String> usados = new HashSet<>();
+        AtomicLongArray accesos = ultimoAcceso;
+        for (Map.Entry<String, Integer> entrada : filaPorSimbolo.entrySet()) {
+            int fila = entrada.getValue();
+            if (fila < accesos.length() && accesos.get(fila) >= instanteMillis) {
+                usados.add(entrada.getKey());
+            }
+        }
+        return usados;
+    }
+
+    /**
+     * Si hay más de {@code maxSimbolos} símbolos, desaloja los consultados hace más tiempo,
+     * sin tocar los protegidos (los que tienen alertas activas).
+     * Si desaloja alguno publica una versión nueva: quien sincronice desde antes recibe una instantánea completa.
+     *
+     * @return Cantidad de símbolos desalojados.
+     */
+    public synchronized int desalojar(int maxSimbolos, Set<String> protegidos) {
+        int sobran = filaPorSimbolo.size() - maxSimbolos;
+        if (sobran <= 0) {
+            return 0;
+        }
+        List<Map.Entry<String, Integer>> candidatos = new ArrayList<>();
+        for (Map.Entry<String, Integer> entrada : filaPorSimbolo.entrySet()) {
+            if (!protegidos.contains(entrada.getKey())) {
+                candidatos.add(Map.entry(entrada.getKey(), entrada.getValue()));
+            }
+        }
+        AtomicLongArray accesos = ultimoAcceso;
+        candidatos.sort((a, b) -> Long.compare(accesos.get(a.getValue()), accesos.get(b.getValue())));
+        int desalojados = 0;
+        for (Map.Entry<String, Integer> candidato : candidatos) {
+            if (desalojados == sobran) {
+                break;
+            }
+            int fila = candidato.getValue();
+            filaPorSimbolo.remove(candidato.getKey());
+            for (int columna = 0; columna < numMonedas; columna++) {
+                celdas.set(fila * numMonedas + columna, null);
+            }
+            filasLibres.push(fila);
+            desalojados++;
+        }
+        if (desalojados > 0) {
+            long nueva = version + 1;
+            versionUltimoDesalojo = nueva;
+            version = nueva; // Después de la marca: quien lea esta versión ve el desalojo
+        }
+        return desalojados;
+    }
+
+    /** Cantidad de símbolos con al menos una cotización en caché. */
+    public int tamano() {
+        return filaPorSimbolo.size();
+    }
+
+    /** Recorre las cotizaciones de una moneda. */
+    public void forEach(String moneda, BiConsumer<String, Cripto> accion) {
+        Integer columna = columnaPorMoneda.get(moneda);
+        if (columna == null) {
+            return;
+        }
+        AtomicReferenceArray<Cripto> actual = celdas;
+        for (int i = columna; i < actual.length(); i += numMonedas) {
+            Cripto cripto = actual.get(i);
+            if (cripto != null) {
+                accion.accept(cripto.getSimbolo(), cripto);
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Publica una nueva instantánea en la celda (símbolo, moneda) de la cotización
+     * y devuelve la versión asignada. Las monedas no configuradas se ignoran (devuelve -1).
+     */
+    public synchronized long actualizar(Cripto cripto) {
+        Integer columna = columnaPorMoneda.get(cripto.getMoneda());
+        if (columna == null) {
+            return -1;
+        }
+        Integer fila = filaPorSimbolo.get(cripto.getSimbolo());
+        if (fila == null) {
+            if (!filasLibres.isEmpty()) {
+                fila = filasLibres.pop();
+            } else {
+                fila = filasOcupadas++;
+                if ((fila + 1) * numMonedas > celdas.length()) {
+                    crecer();
+                }
+            }
+            ultimoAcceso.set(fila, 0); // Publicado pero aún sin consultas (ej. la precarga)
+            filaPorSimbolo.put(cripto.getSimbolo(), fila);
+        }
+        long nueva = version + 1;
+        celdas.set(fila * numMonedas + columna, cripto.conSecuencia(nueva));
+        version = nueva; // Se publica después de la celda: quien lea esta versión ve la celda
+        return nueva;
+    }
+
+    /**
+     * Renueva la hora de obtención de una cotización cuyo precio no cambió, sin publicar una
+     * versión nueva: los clientes que sincronizan por versión no la reciben otra vez.
+     * Si el par no está en caché o su precio es otro, la publica como {@link #actualizar(Cripto)}.
+     */
+    public synchronized long refrescar(Cripto cripto) {
+        Integer fila = filaPorSimbolo.get(cripto.getSimbolo());
+        Integer columna = columnaPorMoneda.get(cripto.getMoneda());
+        if (fila != null && columna != null) {
+            int celda = fila * numMonedas + columna;
+            Cripto actual = celdas.get(celda);
+            if (actual != null && actual.getSimbolo().equals(cripto.getSimbolo()) && actual.getPrecio() == cripto.getPrecio()) {
+                celdas.set(celda, cripto.conSecuencia(actual.getSecuencia()));
+                return actual.getSecuencia();
+            }
+        }
+        return actualizar(cripto);
+    }
+
+    private void crecer() {
+        AtomicReferenceArray<Cripto> anterior = celdas;
+        AtomicReferenceArray<Cripto> nuevo = new AtomicReferenceArray<>(anterior.length() * 2);
+        for (int i = 0; i < anterior.length(); i++) {
+            nuevo.set(i, anterior.get(i));
+        }
+        AtomicLongArray accesosAnteriores = ultimoAcceso;
+        AtomicLongArray accesos = new AtomicLongArray(accesosAnteriores.length() * 2);
+        for (int i = 0; i < accesosAnteriores.length(); i++) {
+            accesos.set(i, accesosAnteriores.get(i));
+        }
+        celdas = nuevo;
+        ultimoAcceso = accesos;
+    }
+
+    /**
+     * Devuelve los precios en {@code moneda} publicados después de {@code versionCliente}.
+     * Una versión de otra época o futura, o anterior al último desalojo, produce una instantánea completa.
+     */
+    public CambiosPrecios cambiosDesde(long versionCliente, String moneda) {
+        // Se lee la versión antes de recorrer: todo lo publicado hasta ella es visible en el recorrido.
+        // Lo que se publique durante el recorrido puede aparecer ahora y otra vez en la próxima consulta.
+        long actual = version;
+        boolean mismaEpoca = (versionCliente & ~MASCARA_CONTADOR) == epoca;
+        boolean completa = !mismaEpoca || versionCliente > actual || versionCliente < versionUltimoDesalojo;
+
+        Map<String, Double> precios = new HashMap<>();
+        forEach(moneda, (simbolo, cripto) -> {
+            if (completa || cripto.getSecuencia() > versionCliente) {
+                precios.put(simbolo, cripto.getPrecio());
+            }
+        });
+        return new CambiosPrecios(actual, moneda, completa, precios);
+    }
+}
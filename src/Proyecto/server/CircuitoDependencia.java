@@ -0,0 +1,174 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.util.function.Function;
+
+/**
+ * Cortacircuitos (circuit breaker) de una dependencia externa: MySQL o CoinGecko.
+ *
+ * Guarda el resultado de las últimas {@code cripto.circuito.ventana} llamadas (20 por defecto).
+ * Con al menos {@code cripto.circuito.minimo} llamadas (10) y una tasa de fallos de
+ * {@code cripto.circuito.umbralPct}% o más (50), el circuito se abre: durante
+ * {@code cripto.circuito.aperturaSeg} segundos (30) las llamadas se rechazan al instante, sin
+ * tocar la red, y quien llama pasa directo a su alternativa (caché, último precio conocido).
+ * Después se deja pasar una sola llamada de prueba (semiabierto): si resulta bien el circuito
+ * se cierra, y si falla vuelve a abrirse.
+ *
+ * El estado se publica en {@code cripto_circuito_estado{dependencia="..."}} (0 cerrado,
+ * 1 semiabierto, 2 abierto).
+ */
+final class CircuitoDependencia {
+
+    private static final Logger log = LogAsincrono.obtener(CircuitoDependencia.class);
+
+    private static final int TAMANO_VENTANA = Integer.getInteger("cripto.circuito.ventana", 20);
+    private static final int MINIMO_LLAMADAS = Integer.getInteger("cripto.circuito.minimo", 10);
+    private static final double UMBRAL_FALLOS = Integer.getInteger("cripto.circuito.umbralPct", 50) / 100.0;
+    private static final long APERTURA_NANOS = Long.getLong("cripto.circuito.aperturaSeg", 30) * 1_000_000_000L;
+
+    enum Estado { CERRADO, SEMIABIERTO, ABIERTO }
+
+    private final String nombre;
+    private final Contador rechazos;
+
+    // Resultados de las últimas llamadas (true = fallo), en anillo; protegido por 'this'
+    private final boolean[] ventana = new boolean[Math.max(1, TAMANO_VENTANA)];
+    private int posicion = 0;
+    private int llamadas = 0;
+    private int fallos = 0;
+
+    private volatile Estado estado = Estado.CERRADO;
+    private long abiertoDesde;  // nanoTime; protegido por 'this'
+    private long pruebaDesde;   // nanoTime de la llamada de prueba en curso, 0 si no hay
+    private long aperturas = 0; // Solo para el log
+
+    CircuitoDependencia(String nombre) {
+        this.nombre = nombre;
+        String etiqueta = "dependencia=\"" + nombre + "\"";
+        this.rechazos = Metricas.REGISTRO.contador("cripto_circuito_rechazos_total",
+                "Llamadas rechazadas al instante por circuito abierto.", etiqueta);
+        Metricas.REGISTRO.indicador("cripto_circuito_estado", "Estado del cortacircuitos: 0 cerrado, 1 semiabierto, 2 abierto.",
+                etiqueta, () -> estado.ordinal());
+    }
+
+    Estado estado() {
+        return estado;
+    }
+
+    /**
+     * @return true si la llamada puede hacerse; false si el circuito está abierto (o ya hay una prueba en curso).
+     */
+    boolean permitir() {
+        if (estado == Estado.CERRADO) {
+            return true; // Camino común, sin bloqueo
+        }
+        synchronized (this) {
+            long ahora = System.nanoTime();
+            if (estado == Estado.ABIERTO && ahora - abiertoDesde >= APERTURA_NANOS) {
+                estado = Estado.SEMIABIERTO;
+                pruebaDesde = 0;
+            }
+            // Una prueba que nunca informó su resultado no bloquea el circuito para siempre
+            if (estado == Estado.SEMIABIERTO && (pruebaDesde == 0 || ahora - pruebaDesde >= APERTURA_NANOS)) {
+                pruebaDesde = ahora;
+                log.info("Circuito de {} semiabierto: se deja pasar una llamada de prueba.", nombre);
+                return true;
+            }
+            if (estado == Estado.CERRADO) {
+                return true;
+            }
+        }
+        rechazos.incrementar();
+        return false;
+    }
+
+    synchronized void exito() {
+        if (estado == Estado.SEMIABIERTO) {
+            log.info("Circuito de {} cerrado: la llamada de prueba resultó bien.", nombre);
+            reiniciarVentana();
+            estado = Estado.CERRADO;
+            return;
+        }
+        registrar(false);
+    }
+
+    /**
+     * La llamada no llegó a la dependencia (por ejemplo, un acierto de la caché HTTP): no cuenta
+     * como éxito ni como fallo, y si era la llamada de prueba deja pasar la siguiente.
+     */
+    synchronized void sinResultado() {
+        if (estado == Estado.SEMIABIERTO) {
+            pruebaDesde = 0;
+        }
+    }
+
+    synchronized void fallo() {
+        if (estado == Estado.SEMIABIERTO) {
+            abrir("falló la llamada de prueba");
+            return;
+        }
+        if (estado == Estado.ABIERTO) {
+            return; // Llamada que empezó antes de abrirse
+        }
+        registrar(true);
+        if (llamadas >= MINIMO_LLAMADAS && fallos >= UMBRAL_FALLOS * llamadas) {
+            abrir(fallos + " fallos en las últimas " + llamadas + " llamadas");
+        }
+    }
+
+    /**
+     * Ejecuta la llamada a través del circuito: la rechaza si está abierto y registra si falló.
+     *
+     * @param rechazo Crea la excepción (del tipo que ya maneja quien llama) cuando el circuito está abierto.
+     */
+    <T, E extends Exception> T ejecutar(EjecutorTareas.Bloqueante<T, E> llamada, Function<String, E> rechazo) throws E {
+        if (!permitir()) {
+            throw rechazo.apply(mensajeRechazo());
+        }
+        T resultado;
+        try {
+            resultado = llamada.ejecutar();
+        } catch (Exception e) {
+            fallo();
+            throw e;
+        }
+        exito();
+        return resultado;
+    }
+
+    String mensajeRechazo() {
+        return "Circuito de " + nombre + " abierto: " + nombre + " no responde; se reintentará en unos segundos.";
+    }
+
+    private void registrar(boolean fallo) {
+        if (llamadas == ventana.length) {
+            if (ventana[posicion]) {
+                fallos--; // Sale de la ventana el resultado más antiguo
+            }
+        } else {
+            llamadas++;
+        }
+        ventana[posicion] = fallo;
+        if (fallo) {
+            fallos++;
+        }
+        posicion = (posicion + 1) % ventana.length;
+    }
+
+    private void abrir(String motivo) {
+        estado = Estado.ABIERTO;
+        abiertoDesde = System.nanoTime();
+        pruebaDesde = 0;
+        aperturas++;
+        reiniciarVentana();
+        log.warn("Circuito de {} abierto ({}; apertura n.º {}): las llamadas se rechazan durante {} s.",
+                nombre, motivo, aperturas, APERTURA_NANOS / 1_000_000_000L);
+    }
+
+    private void reiniciarVentana() {
+        posicion = 0;
+        llamadas = 0;
+        fallos = 0;
+    }
+}
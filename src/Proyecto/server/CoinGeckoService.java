@@ -3,11 +3,15 @@ package server;
 import common.Cripto; // Asegúrate de importar tu clase Cripto
 
 // Imports para Apache HttpClient 5
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.cache.CacheConfig;
+import org.apache.hc.client5.http.impl.cache.CachingHttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
@@ -15,19 +19,47 @@ import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.util.Timeout;
 
 // Imports para Jackson
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.*; // Para Collections, HashMap, Map, Set, Optional
+import java.util.*; // Para Arrays, Collections, HashMap, List, Map, Set
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Cliente de la API de precios de CoinGecko.
+ *
+ * Usa un único cliente HTTP con caché (httpclient5-cache) durante toda la vida del servidor:
+ * respeta Cache-Control, y cuando una respuesta guardada vence la revalida con
+ * If-None-Match / If-Modified-Since. Si CoinGecko responde 304, o la respuesta guardada
+ * sigue fresca, se reutilizan las cotizaciones ya parseadas de esa URL en vez de volver a leer el JSON.
+ *
+ * La caché vive en memoria ({@code cripto.http.cacheEntradas} respuestas, 256 por defecto);
+ * con {@code cripto.http.cacheDir} los cuerpos de las respuestas se guardan en ese directorio.
+ *
+ * Las peticiones pasan por un {@link CircuitoDependencia}: los errores de red, los 5xx y los 429
+ * cuentan como fallos, y con el circuito abierto se lanza la IOException sin salir a la red.
+ * Un acierto de la caché HTTP no sale a la red, así que no cuenta ni como éxito ni como fallo.
+ */
 public class CoinGeckoService {
 
+    private static final Logger log = LogAsincrono.obtener(CoinGeckoService.class);
+
     private static final String API_BASE_URL = "https://api.coingecko.com/api/v3/simple/price";
+    private static final String PING_URL = "https://api.coingecko.com/api/v3/ping";
     private static final int TIMEOUT_MILLISECONDS = 10000; // 10 segundos
+    private static final int ENTRADAS_CACHE_HTTP = Integer.getInteger("cripto.http.cacheEntradas", 256);
+    private static final long TAMANO_MAXIMO_RESPUESTA = 256 * 1024;
 
     private final ObjectMapper objectMapper;
+    private final CloseableHttpClient httpClient;
+    private final CircuitoDependencia circuito = new CircuitoDependencia("coingecko");
+    // URL -> cotizaciones parseadas de la última respuesta completa (se reutilizan con un 304 o un acierto de caché)
+    private final Map<String, List<Cripto>> ultimasCotizaciones = new ConcurrentHashMap<>();
     public static final Map<String, String> SYMBOL_TO_COINGECKO_ID_MAP = new HashMap<>();
     static {
         SYMBOL_TO_COINGECKO_ID_MAP.put("BTC", "bitcoin");
@@ -37,23 +69,42 @@ public class CoinGeckoService {
         SYMBOL_TO_COINGECKO_ID_MAP.put("DOGE", "dogecoin");
         // Puedes añadir más mapeos aquí si es necesario
     }
+    private static final Map<String, String> COINGECKO_ID_TO_SYMBOL_MAP = new HashMap<>();
+    static {
+        SYMBOL_TO_COINGECKO_ID_MAP.forEach((simbolo, id) -> COINGECKO_ID_TO_SYMBOL_MAP.put(id, simbolo));
+    }
+
+    /**
+     * Monedas de cotización que el servidor mantiene en caché. Se configuran con la
+     * propiedad de sistema {@code cripto.monedas} (lista separada por comas); la primera
+     * es la moneda por defecto de la API y de las alertas.
+     */
+    public static final List<String> MONEDAS_COTIZACION = Collections.unmodifiableList(
+            Arrays.stream(System.getProperty("cripto.monedas", "usd,eur,clp,btc").split(","))
+                    .map(String::trim)
+                    .map(String::toLowerCase)
+                    .filter(m -> !m.isEmpty())
+                    .distinct()
+                    .collect(Collectors.toList()));
+    public static final String MONEDA_POR_DEFECTO = MONEDAS_COTIZACION.get(0);
 
     public CoinGeckoService() {
         this.objectMapper = new ObjectMapper();
+        this.httpClient = crearCliente();
     }
 
     /**
-     * Obtiene los datos de múltiples criptomonedas y los devuelve como un mapa de Símbolo a objeto Cripto.
+     * Obtiene en una sola petición las cotizaciones de múltiples criptomonedas en varias monedas.
      *
      * @param symbolsUnchecked Set de símbolos de criptomonedas (ej. "BTC", "ETH").
-     * @param vsCurrency       La moneda contra la cual cotizar (ej. "usd").
-     * @return Un Map donde la clave es el símbolo original (ej. "BTC") y el valor es el objeto Cripto correspondiente.
+     * @param vsCurrencies     Las monedas contra las cuales cotizar (ej. "usd", "eur").
+     * @return Una lista con un objeto Cripto por cada par (símbolo, moneda) presente en la respuesta.
      * @throws IOException Si ocurre un error de red o al parsear la respuesta.
      */
-    public Map<String, Cripto> fetchCriptoData(Set<String> symbolsUnchecked, String vsCurrency) throws IOException {
+    public List<Cripto> fetchCriptoData(Set<String> symbolsUnchecked, List<String> vsCurrencies) throws IOException {
         if (symbolsUnchecked == null || symbolsUnchecked.isEmpty()) {
-            System.out.println("[CoinGeckoService] No se proporcionaron símbolos para buscar precios.");
-            return Collections.emptyMap();
+            log.info("No se proporcionaron símbolos para buscar precios.");
+            return Collections.emptyList();
         }
 
         // Mapear símbolos a IDs de CoinGecko, normalizando a mayúsculas y filtrando los no existentes
@@ -64,90 +115,215 @@ public class CoinGeckoService {
                 .collect(Collectors.toSet());
 
         if (coingeckoIds.isEmpty()) {
-            System.err.println("[CoinGeckoService] No se encontraron IDs de CoinGecko válidos para los símbolos: " + symbolsUnchecked);
-            return Collections.emptyMap();
+            log.warn("No se encontraron IDs de CoinGecko válidos para los símbolos: {}", symbolsUnchecked);
+            return Collections.emptyList();
         }
 
-        String idsParam = String.join(",", coingeckoIds);
-        String url = String.format("%s?ids=%s&vs_currencies=%s", API_BASE_URL, idsParam, vsCurrency.toLowerCase());
-
-        Map<String, Cripto> symbolCriptoMap = new HashMap<>();
+        String idsParam = String.join(",", new TreeSet<>(coingeckoIds)); // Mismo conjunto, misma URL (clave de la caché HTTP)
+        String monedasParam = String.join(",", vsCurrencies).toLowerCase();
+        String url = String.format("%s?ids=%s&vs_currencies=%s&include_last_updated_at=true", API_BASE_URL, idsParam, monedasParam);
 
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
-                .setConnectTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
-                .setResponseTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
-                .build();
+        List<Cripto> cotizaciones = new ArrayList<>(coingeckoIds.size() * vsCurrencies.size());
 
-        try (CloseableHttpClient httpClient = HttpClients.custom()
-                .setDefaultRequestConfig(requestConfig)
-                .build()) {
+        PlazoLlamada.verificar("CoinGecko");
+        if (!circuito.permitir()) {
+            throw new IOException(circuito.mensajeRechazo());
+        }
+        try {
 
             HttpGet request = new HttpGet(url);
-            System.out.println("[CoinGeckoService] Realizando petición a: " + url); // Log de la URL
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                final HttpEntity entity = response.getEntity();
-                int statusCode = response.getCode();
-
-                if (statusCode == HttpStatus.SC_OK && entity != null) {
-                    String jsonResponse = EntityUtils.toString(entity);
-                    //System.out.println("[CoinGeckoService DEBUG] Respuesta JSON: " + jsonResponse); // Para depuración
-                    Map<String, Map<String, Double>> rawPrices = objectMapper.readValue(jsonResponse,
-                            new TypeReference<Map<String, Map<String, Double>>>() {});
-
-                    for (Map.Entry<String, Map<String, Double>> rawEntry : rawPrices.entrySet()) {
-                        String coingeckoId = rawEntry.getKey(); // ej: "bitcoin"
-                        Map<String, Double> currencyPriceMap = rawEntry.getValue();
-                        Double price = currencyPriceMap.get(vsCurrency.toLowerCase());
-
-                        if (price != null) {
-                            // Encontrar el símbolo original (BTC, ETH) a partir del coingeckoId
-                            Optional<String> originalSymbolOpt = SYMBOL_TO_COINGECKO_ID_MAP.entrySet().stream()
-                                    .filter(mapEntry -> mapEntry.getValue().equals(coingeckoId))
-                                    .map(Map.Entry::getKey)
-                                    .findFirst();
-
-                            if (originalSymbolOpt.isPresent()) {
-                                String originalSymbol = originalSymbolOpt.get(); // ej: "BTC"
-                                Cripto criptoObjeto = new Cripto(originalSymbol, price);
-                                symbolCriptoMap.put(originalSymbol, criptoObjeto);
+            if (PlazoLlamada.limite() != null) {
+                // La petición no espera más de lo que le queda a la llamada RMI que la originó
+                // (la conexión nueva, si hace falta, se acota con el timeout del pool)
+                Timeout restante = Timeout.ofMilliseconds(Math.max(1, PlazoLlamada.restanteMs(TIMEOUT_MILLISECONDS)));
+                request.setConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(restante)
+                        .setResponseTimeout(restante)
+                        .build());
+            }
+            HttpCacheContext contexto = HttpCacheContext.create();
+            log.debug("Realizando petición a: {}", url);
+
+            long inicio = System.nanoTime();
+            try {
+                httpClient.execute(request, contexto, response -> {
+                    final HttpEntity entity = response.getEntity();
+                    int statusCode = response.getCode();
+                    CacheResponseStatus estadoCache = contexto.getCacheResponseStatus();
+                    if (estadoCache == CacheResponseStatus.CACHE_HIT) {
+                        circuito.sinResultado(); // No salió a la red: no dice nada de CoinGecko
+                    } else {
+                        registrarEnCircuito(statusCode);
+                        Metricas.COINGECKO_PETICIONES.incrementar();
+                    }
+                    List<Cripto> anteriores = ultimasCotizaciones.get(url);
+
+                    if (statusCode == HttpStatus.SC_OK && anteriores != null
+                            && (estadoCache == CacheResponseStatus.CACHE_HIT || estadoCache == CacheResponseStatus.VALIDATED)) {
+                        // Mismo cuerpo que la última vez: las cotizaciones no cambiaron, solo se obtienen ahora
+                        Metricas.COINGECKO_SIN_CAMBIOS.incrementar();
+                        long timestampObtencion = System.currentTimeMillis();
+                        for (Cripto anterior : anteriores) {
+                            cotizaciones.add(new Cripto(anterior.getSimbolo(), anterior.getMoneda(), anterior.getPrecio(),
+                                    anterior.getTimestampFuente(), timestampObtencion, 0L));
+                        }
+                        log.debug("Respuesta de CoinGecko sin cambios ({}): {}", estadoCache, url);
+                    } else if (statusCode == HttpStatus.SC_OK && entity != null) {
+                        String jsonResponse = EntityUtils.toString(entity);
+                        long timestampObtencion = System.currentTimeMillis();
+                        //System.out.println("[CoinGeckoService DEBUG] Respuesta JSON: " + jsonResponse); // Para depuración
+                        Map<String, Map<String, Double>> rawPrices = objectMapper.readValue(jsonResponse,
+                                new TypeReference<Map<String, Map<String, Double>>>() {});
+
+                        for (Map.Entry<String, Map<String, Double>> rawEntry : rawPrices.entrySet()) {
+                            // Encontrar el símbolo original (BTC, ETH) a partir del coingeckoId (ej: "bitcoin")
+                            String originalSymbol = COINGECKO_ID_TO_SYMBOL_MAP.get(rawEntry.getKey());
+                            if (originalSymbol == null) {
+                                continue;
+                            }
+                            Map<String, Double> currencyPriceMap = rawEntry.getValue();
+                            Double lastUpdatedAt = currencyPriceMap.get("last_updated_at"); // Segundos UNIX de la cotización
+                            long timestampFuente = lastUpdatedAt != null ? lastUpdatedAt.longValue() * 1000L : timestampObtencion;
+
+                            for (String moneda : vsCurrencies) {
+                                Double price = currencyPriceMap.get(moneda.toLowerCase());
+                                if (price != null) {
+                                    cotizaciones.add(new Cripto(originalSymbol, moneda, price, timestampFuente, timestampObtencion, 0L));
+                                }
                             }
                         }
+                        recordarCotizaciones(url, cotizaciones);
+                    } else {
+                        Metricas.COINGECKO_ERRORES.incrementar();
+                        String responseBody = entity != null ? EntityUtils.toString(entity) : "(sin cuerpo de respuesta)";
+                        log.warn("Error al obtener precios: Código {} - {}. URL: {}", statusCode, responseBody, url);
                     }
-                } else {
-                    String responseBody = entity != null ? EntityUtils.toString(entity) : "(sin cuerpo de respuesta)";
-                    System.err.printf("[CoinGeckoService] Error al obtener precios: Código %d - %s. URL: %s\n", statusCode, responseBody, url);
+                    Metricas.COINGECKO_COTIZACIONES.sumar(cotizaciones.size());
+                    return null; // El cliente consume la entidad y libera la conexión
+                });
+            } catch (IOException e) {
+                Metricas.COINGECKO_ERRORES.incrementar();
+                if (e.getCause() instanceof ParseException) {
+                    // El cliente envuelve la ParseException del manejador; no es culpa de la conexión
+                    log.warn("ParseException al procesar la respuesta de la URL {}: {}", url, e.getCause().getMessage());
+                    throw new IOException("Error al parsear la respuesta de CoinGecko para URL " + url, e.getCause());
                 }
-                EntityUtils.consume(entity); // Asegurar que la entidad se consume
-            } catch (ParseException e) {
-                System.err.println("[CoinGeckoService] ParseException al procesar la respuesta de la URL " + url + ": " + e.getMessage());
-                throw new IOException("Error al parsear la respuesta de CoinGecko para URL " + url, e);
+                // Red o timeout; ni un JSON inválido ni el plazo corto de un cliente son culpa de la conexión
+                if (!(e instanceof JsonProcessingException) && !PlazoLlamada.vencido()) {
+                    circuito.fallo();
+                }
+                throw e;
+            } finally {
+                Metricas.COINGECKO_LATENCIA.registrarDesde(inicio);
             }
         } catch (IOException e) {
-            System.err.println("[CoinGeckoService] IOException al realizar la petición a " + url + ": " + e.getMessage());
+            log.warn("IOException al realizar la petición a {}: {}", url, e.getMessage());
+            if (PlazoLlamada.vencido()) {
+                throw PlazoLlamada.vencimiento("CoinGecko");
+            }
             throw e; // Re-lanzar para que la clase que llama pueda manejarlo
         }
-        return symbolCriptoMap;
+        return cotizaciones;
+    }
+
+    /**
+     * Hace una petición liviana a CoinGecko ({@code /ping}) para dejar cargadas las clases de
+     * HttpClient y TLS y resuelto el DNS antes de la primera consulta de un cliente.
+     *
+     * @throws IOException Si CoinGecko no responde o responde con error.
+     */
+    public void precalentar() throws IOException {
+        if (!circuito.permitir()) {
+            throw new IOException(circuito.mensajeRechazo());
+        }
+        int statusCode;
+        try {
+            statusCode = httpClient.execute(new HttpGet(PING_URL), response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+        } catch (IOException e) {
+            circuito.fallo();
+            throw e;
+        }
+        registrarEnCircuito(statusCode);
+        if (statusCode != HttpStatus.SC_OK) {
+            throw new IOException("CoinGecko respondió " + statusCode + " a " + PING_URL);
+        }
+    }
+
+    // Un 429 (límite de peticiones) también abre el circuito: insistir solo alarga el bloqueo
+    private void registrarEnCircuito(int statusCode) {
+        if (statusCode >= HttpStatus.SC_SERVER_ERROR || statusCode == HttpStatus.SC_TOO_MANY_REQUESTS) {
+            circuito.fallo();
+        } else {
+            circuito.exito();
+        }
+    }
+
+    /** Cierra el cliente HTTP y sus conexiones (al apagar el servidor). */
+    public void cerrar() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Error al cerrar el cliente HTTP: {}", e.getMessage());
+        }
+    }
+
+    // Acotado como la caché HTTP: con más URLs distintas que entradas, se empieza de nuevo
+    private void recordarCotizaciones(String url, List<Cripto> cotizaciones) {
+        if (ultimasCotizaciones.size() >= ENTRADAS_CACHE_HTTP) {
+            ultimasCotizaciones.clear();
+        }
+        ultimasCotizaciones.put(url, List.copyOf(cotizaciones));
+    }
+
+    private static CloseableHttpClient crearCliente() {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
+                .setResponseTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
+                .build();
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(TIMEOUT_MILLISECONDS))
+                .build();
+        CacheConfig cacheConfig = CacheConfig.custom()
+                .setMaxCacheEntries(ENTRADAS_CACHE_HTTP)
+                .setMaxObjectSize(TAMANO_MAXIMO_RESPUESTA)
+                .setSharedCache(false)
+                .setHeuristicCachingEnabled(false) // Solo lo que CoinGecko declara cacheable
+                .build();
+        CachingHttpClientBuilder builder = CachingHttpClientBuilder.create();
+        builder.setCacheConfig(cacheConfig);
+        String directorio = System.getProperty("cripto.http.cacheDir");
+        if (directorio != null && !directorio.isBlank()) {
+            File cacheDir = new File(directorio);
+            if (cacheDir.isDirectory() || cacheDir.mkdirs()) {
+                builder.setCacheDir(cacheDir);
+                builder.setDeleteCache(false); // Se conserva entre ejecuciones
+            } else {
+                log.warn("No se pudo crear el directorio de caché HTTP {}; se usa solo memoria.", directorio);
+            }
+        }
+        builder.setDefaultRequestConfig(requestConfig);
+        builder.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                .setDefaultConnectionConfig(connectionConfig)
+                .build());
+        return builder.build();
     }
 
     /**
-     * Obtiene los datos de una sola criptomoneda como objeto Cripto.
+     * Obtiene las cotizaciones de una sola criptomoneda en varias monedas, en una sola petición.
      *
-     * @param symbol     Símbolo de la criptomoneda (ej. "BTC").
-     * @param vsCurrency La moneda contra la cual cotizar (ej. "usd").
-     * @return El objeto Cripto correspondiente, o null si no se encuentra o hay un error.
+     * @param symbol       Símbolo de la criptomoneda (ej. "BTC").
+     * @param vsCurrencies Las monedas contra las cuales cotizar (ej. "usd", "eur").
+     * @return Los objetos Cripto obtenidos (uno por moneda), o una lista vacía si no se encuentra.
      * @throws IOException Si ocurre un error de red.
      */
-    public Cripto fetchSingleCriptoData(String symbol, String vsCurrency) throws IOException {
+    public List<Cripto> fetchSingleCriptoData(String symbol, List<String> vsCurrencies) throws IOException {
         if (symbol == null || symbol.trim().isEmpty()) {
-            System.err.println("[CoinGeckoService] Símbolo no puede ser nulo o vacío para fetchSingleCriptoData.");
-            return null;
+            log.warn("Símbolo no puede ser nulo o vacío para fetchSingleCriptoData.");
+            return Collections.emptyList();
         }
-        // fetchCriptoData espera un Set y normaliza a mayúsculas internamente si es necesario.
-        // Aseguramos que el símbolo que buscamos en el mapa de retorno también esté en mayúsculas.
-        String upperSymbol = symbol.toUpperCase();
-        Map<String, Cripto> criptoDataMap = fetchCriptoData(Collections.singleton(upperSymbol), vsCurrency);
-        return criptoDataMap.get(upperSymbol);
+        return fetchCriptoData(Collections.singleton(symbol.toUpperCase()), vsCurrencies);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monótono de bajo costo. Usa un {@link LongAdder}, que reparte las
+ * escrituras concurrentes en celdas separadas para no pelear por una sola línea de caché.
+ */
+public final class Contador {
+
+    private final LongAdder valor = new LongAdder();
+
+    public void incrementar() {
+        valor.increment();
+    }
+
+    public void sumar(long n) {
+        valor.add(n);
+    }
+
+    public long valor() {
+        return valor.sum();
+    }
+}
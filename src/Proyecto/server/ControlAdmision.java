@@ -0,0 +1,171 @@
+package server;
+
+import common.ServidorSaturadoException;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión de las llamadas RMI: un límite de concurrencia adaptativo por tipo de
+ * llamada, con prioridad para las lecturas de caché.
+ *
+ * Cada {@link Clase} tiene un límite AIMD: mientras las llamadas terminan dentro de su latencia
+ * objetivo y el límite se está usando, crece en 1 por cada "ventana" de llamadas (+1/límite por
+ * llamada); cuando una llamada tarda más que el objetivo, se multiplica por 0,9 (a lo más una vez
+ * por objetivo transcurrido, para que una misma ráfaga lenta no lo hunda). Una llamada que
+ * excede el límite se rechaza al instante con {@link ServidorSaturadoException}, sin ejecutarse.
+ *
+ * Además, el total de llamadas en curso de todas las clases está acotado por
+ * {@code cripto.admision.maxTotal}, y cada clase solo entra mientras el total no pase su
+ * fracción de ese máximo: al saturarse el servidor se dejan de admitir primero las idas al
+ * origen (CoinGecko o MySQL por un fallo de caché), luego las escrituras, y al final las lecturas.
+ *
+ * Una lectura que falla en la caché toma además un permiso {@link Clase#ORIGEN} en el mismo hilo;
+ * el tiempo pasado en el origen se descuenta de la latencia de la lectura, para que un CoinGecko
+ * lento reduzca el límite de las idas al origen y no el de las lecturas de caché. Del mismo modo,
+ * una escritura descuenta con {@link #descontar(long)} la espera del mutex de escrituras y la
+ * pausa de demostración: su latencia mide solo el trabajo en MySQL.
+ */
+final class ControlAdmision {
+
+    private static final int MAX_TOTAL = Integer.getInteger("cripto.admision.maxTotal", 512);
+    private static final double FACTOR_REDUCCION = 0.9;
+
+    /** Tipo de llamada; las de mayor fracción se siguen admitiendo cuando las demás ya se rechazan. */
+    enum Clase {
+        /** Respuestas desde la caché en memoria. */
+        LECTURA(1.0, 50, 8, 1024, 64),
+        /** Escrituras en MySQL (alertas y listas de seguimiento). */
+        ESCRITURA(0.75, 500, 2, 64, 16),
+        /** Trabajo que sale del proceso por un fallo de caché: CoinGecko o lecturas de MySQL. */
+        ORIGEN(0.5, 3_000, 1, 64, 8);
+
+        final double fraccionTotal;
+        final long objetivoMs;
+        final int minimo;
+        final int maximo;
+        final int inicial;
+
+        Clase(double fraccionTotal, long objetivoMs, int minimo, int maximo, int inicial) {
+            this.fraccionTotal = fraccionTotal;
+            this.objetivoMs = Long.getLong("cripto.admision." + name().toLowerCase(Locale.ROOT) + ".objetivoMs", objetivoMs);
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.inicial = inicial;
+        }
+    }
+
+    private static final class Limitador {
+        final Clase clase;
+        final long objetivoNanos;
+        final AtomicInteger enCurso = new AtomicInteger();
+        final Contador rechazos;
+        volatile double limite;
+        private long ultimaReduccion; // nanoTime; protegido por 'this'
+
+        Limitador(Clase clase) {
+            this.clase = clase;
+            this.objetivoNanos = clase.objetivoMs * 1_000_000L;
+            this.limite = clase.inicial;
+            this.ultimaReduccion = System.nanoTime() - objetivoNanos; // La primera llamada lenta ya reduce
+            String etiqueta = "clase=\"" + clase.name() + "\"";
+            this.rechazos = Metricas.REGISTRO.contador("cripto_admision_rechazos_total",
+                    "Llamadas RMI rechazadas por el control de admisión.", etiqueta);
+            Metricas.REGISTRO.indicador("cripto_admision_limite", "Límite de concurrencia adaptativo actual.",
+                    etiqueta, () -> (int) limite);
+            Metricas.REGISTRO.indicador("cripto_admision_en_curso", "Llamadas admitidas en curso.",
+                    etiqueta, enCurso::get);
+        }
+
+        boolean intentar() {
+            while (true) {
+                int actual = enCurso.get();
+                if (actual >= (int) limite) {
+                    return false;
+                }
+                if (enCurso.compareAndSet(actual, actual + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void liberar(long latenciaNanos) {
+            int enVuelo = enCurso.getAndDecrement();
+            synchronized (this) {
+                if (latenciaNanos > objetivoNanos) {
+                    long ahora = System.nanoTime();
+                    if (ahora - ultimaReduccion >= objetivoNanos) {
+                        limite = Math.max(clase.minimo, limite * FACTOR_REDUCCION);
+                        ultimaReduccion = ahora;
+                    }
+                } else if (enVuelo >= limite / 2) { // Solo crece si el límite actual se está usando
+                    limite = Math.min(clase.maximo, limite + 1.0 / limite);
+                }
+            }
+        }
+    }
+
+    private final Map<Clase, Limitador> limitadores = new EnumMap<>(Clase.class);
+    private final AtomicInteger enCursoTotal = new AtomicInteger();
+    private final ThreadLocal<long[]> nanosDescontados = ThreadLocal.withInitial(() -> new long[1]); // De la llamada en curso del hilo
+
+    ControlAdmision() {
+        for (Clase clase : Clase.values()) {
+            limitadores.put(clase, new Limitador(clase));
+        }
+    }
+
+    /**
+     * Admite una llamada de la clase dada; debe cerrarse con {@link #salir(Clase, long)}.
+     *
+     * @throws ServidorSaturadoException Si la clase o el servidor están en su límite.
+     */
+    void entrar(Clase clase) throws ServidorSaturadoException {
+        if (!intentar(clase)) {
+            throw rechazo(clase);
+        }
+    }
+
+    /** Como {@link #entrar(Clase)}, pero devuelve false en vez de lanzar (ya contado como rechazo). */
+    boolean intentar(Clase clase) {
+        Limitador limitador = limitadores.get(clase);
+        if (enCursoTotal.get() >= MAX_TOTAL * clase.fraccionTotal || !limitador.intentar()) {
+            limitador.rechazos.incrementar();
+            return false;
+        }
+        enCursoTotal.incrementAndGet();
+        if (clase != Clase.ORIGEN) {
+            nanosDescontados.get()[0] = 0;
+        }
+        return true;
+    }
+
+    /** Registra el fin de una llamada admitida, con su latencia desde {@code inicioNanos}. */
+    void salir(Clase clase, long inicioNanos) {
+        enCursoTotal.decrementAndGet();
+        long latencia = System.nanoTime() - inicioNanos;
+        long[] descontados = nanosDescontados.get();
+        if (clase == Clase.ORIGEN) {
+            descontados[0] += latencia;
+        } else {
+            latencia -= descontados[0];
+            descontados[0] = 0;
+        }
+        limitadores.get(clase).liberar(latencia);
+    }
+
+    /**
+     * Descuenta de la latencia de la llamada en curso del hilo un tramo que no refleja la carga de
+     * su clase (ej. la espera del mutex de escrituras), para que no reduzca su límite.
+     */
+    void descontar(long nanos) {
+        nanosDescontados.get()[0] += nanos;
+    }
+
+    /** Excepción para una llamada rechazada; sugiere reintentar tras la latencia objetivo de la clase. */
+    ServidorSaturadoException rechazo(Clase clase) {
+        return new ServidorSaturadoException(clase.name(), clase.objetivoMs);
+    }
+}
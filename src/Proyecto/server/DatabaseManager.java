@@ -1,51 +1,220 @@
     package server;
 
+import org.slf4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 
+/**
+ * Acceso a MySQL.
+ *
+ * Las conexiones se reutilizan: {@link #getConnection()} entrega una conexión inactiva si hay
+ * (la última devuelta primero) y abre una nueva si no; cerrar la conexión la devuelve al pool
+ * con autocommit restablecido. Se guardan a lo más {@code cripto.db.pool} conexiones
+ * inactivas (por defecto 8); la concurrencia real ya la acotan los permisos de {@link EjecutorTareas}.
+ * Una conexión que estuvo inactiva más de 30 s se valida antes de entregarla.
+ *
+ * Pedir una conexión pasa por un {@link CircuitoDependencia}: con MySQL caído, tras unos
+ * pocos fallos las siguientes llamadas reciben la SQLException al instante en vez de esperar
+ * cada una su intento de conexión (acotado por {@code cripto.db.connectTimeoutMs}, 3 s por defecto).
+ */
 public class DatabaseManager {
 
+    private static final Logger log = LogAsincrono.obtener(DatabaseManager.class);
+
     // --- Configuración de la Base de Datos ---
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/cripto_monitor_db";
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/cripto_monitor_db?connectTimeout="
+            + Integer.getInteger("cripto.db.connectTimeoutMs", 3_000);
 
     private static final String DB_USER = "root";
     private static final String DB_PASSWORD = "";
 
+    private static final int MAX_CONEXIONES_INACTIVAS = Integer.getInteger("cripto.db.pool", 8);
+    private static final long VALIDAR_TRAS_INACTIVIDAD_MS = 30_000;
+    private static final int TIMEOUT_VALIDACION_SEGUNDOS = 2;
+
+    private static final class ConexionInactiva {
+        final Connection fisica;
+        final long desde = System.currentTimeMillis();
+
+        ConexionInactiva(Connection fisica) {
+            this.fisica = fisica;
+        }
+    }
+
+    private static final Deque<ConexionInactiva> inactivas = new ArrayDeque<>(); // Protegida por sí misma
+    private static final CircuitoDependencia CIRCUITO = new CircuitoDependencia("mysql");
+    private static final String ESTADO_SQL_SIN_CONEXION = "08001";
+
 
     static {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
-            System.err.println("Error al cargar el driver JDBC de MySQL: " + e.getMessage());
+            log.error("Error al cargar el driver JDBC de MySQL: {}", e.getMessage());
         }
+        Metricas.REGISTRO.indicador("cripto_db_conexiones_inactivas", "Conexiones a MySQL abiertas y disponibles en el pool.",
+                () -> {
+                    synchronized (inactivas) {
+                        return inactivas.size();
+                    }
+                });
     }
 
     // --- Métodos de Conexión y Cierre ---
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return CIRCUITO.ejecutar(DatabaseManager::obtenerConexion, mensaje -> new SQLException(mensaje, ESTADO_SQL_SIN_CONEXION));
+    }
+
+    private static Connection obtenerConexion() throws SQLException {
+        ConexionInactiva inactiva;
+        while ((inactiva = tomarInactiva()) != null) {
+            if (System.currentTimeMillis() - inactiva.desde < VALIDAR_TRAS_INACTIVIDAD_MS
+                    || inactiva.fisica.isValid(TIMEOUT_VALIDACION_SEGUNDOS)) {
+                return envolver(inactiva.fisica);
+            }
+            cerrarFisica(inactiva.fisica); // MySQL la cerró por inactividad
+        }
+        return envolver(abrirFisica());
+    }
+
+    /**
+     * Abre conexiones hasta tener {@code cantidad} inactivas en el pool (sin pasar del máximo),
+     * para que las primeras consultas no paguen el handshake con MySQL.
+     */
+    public static void precalentar(int cantidad) throws SQLException {
+        int objetivo = Math.min(cantidad, MAX_CONEXIONES_INACTIVAS);
+        while (true) {
+            synchronized (inactivas) {
+                if (inactivas.size() >= objetivo) {
+                    return;
+                }
+            }
+            devolver(CIRCUITO.ejecutar(DatabaseManager::abrirFisica, mensaje -> new SQLException(mensaje, ESTADO_SQL_SIN_CONEXION)));
+        }
+    }
+
+    /** Cierra las conexiones inactivas del pool (al apagar el servidor). */
+    public static void cerrarConexiones() {
+        ConexionInactiva inactiva;
+        while ((inactiva = tomarInactiva()) != null) {
+            cerrarFisica(inactiva.fisica);
+        }
+    }
+
+    private static Connection abrirFisica() throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        } catch (SQLException e) {
+            Metricas.DB_CONEXION_ERRORES.incrementar();
+            throw e;
+        } finally {
+            Metricas.DB_CONEXION_LATENCIA.registrarDesde(inicio);
+        }
+    }
+
+    private static ConexionInactiva tomarInactiva() {
+        synchronized (inactivas) {
+            return inactivas.pollFirst();
+        }
+    }
+
+    private static void devolver(Connection fisica) {
+        try {
+            if (fisica.isClosed()) {
+                return;
+            }
+            // Quien la usó pudo dejar una transacción abierta o el autocommit apagado
+            if (!fisica.getAutoCommit()) {
+                fisica.rollback();
+                fisica.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            cerrarFisica(fisica);
+            return;
+        }
+        synchronized (inactivas) {
+            if (inactivas.size() < MAX_CONEXIONES_INACTIVAS) {
+                inactivas.addFirst(new ConexionInactiva(fisica));
+                return;
+            }
+        }
+        cerrarFisica(fisica);
+    }
+
+    private static void cerrarFisica(Connection fisica) {
+        try {
+            fisica.close();
+        } catch (SQLException e) {
+            log.debug("Error al cerrar una conexión del pool: {}", e.getMessage());
+        }
+    }
+
+    // Conexión que al cerrarse vuelve al pool; después de cerrada no se puede seguir usando
+    private static Connection envolver(Connection fisica) {
+        InvocationHandler manejador = new InvocationHandler() {
+            private boolean cerrada = false;
+
+            @Override
+            public synchronized Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                switch (metodo.getName()) {
+                    case "close":
+                        if (!cerrada) {
+                            cerrada = true;
+                            devolver(fisica);
+                        }
+                        return null;
+                    case "isClosed":
+                        return cerrada || fisica.isClosed();
+                    case "toString":
+                        return "Pool(" + fisica + ")";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        if (cerrada) {
+                            throw new SQLException("La conexión ya fue devuelta al pool.");
+                        }
+                        try {
+                            return metodo.invoke(fisica, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, manejador);
     }
 
     public static void close(Connection conn, Statement stmt, ResultSet rs) {
         try {
             if (rs != null) rs.close();
         } catch (SQLException e) {
-            System.err.println("Error al cerrar ResultSet: " + e.getMessage());
+            log.warn("Error al cerrar ResultSet: {}", e.getMessage());
         }
         try {
             if (stmt != null) stmt.close();
         } catch (SQLException e) {
-            System.err.println("Error al cerrar Statement: " + e.getMessage());
+            log.warn("Error al cerrar Statement: {}", e.getMessage());
         }
         try {
             if (conn != null && !conn.isClosed()) conn.close();
         } catch (SQLException e) {
-            System.err.println("Error al cerrar Connection: " + e.getMessage());
+            log.warn("Error al cerrar Connection: {}", e.getMessage());
         }
     }
 
@@ -62,7 +231,7 @@ public class DatabaseManager {
     }
 
 
-    public static void inicializarCriptomonedasBase() {
+    public static void inicializarCriptomonedasBase() throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -79,7 +248,7 @@ public class DatabaseManager {
             Statement stmtCheck = conn.createStatement();
             rs = stmtCheck.executeQuery(sqlCheckEmpty);
             if (rs.next() && rs.getInt(1) > 0 && criptosBase.size() == rs.getInt(1) ) {
-                System.out.println("[DatabaseManager] La tabla 'criptomonedas' ya parece estar poblada con las bases.");
+                log.info("La tabla 'criptomonedas' ya parece estar poblada con las bases.");
             }
             rs.close();
             stmtCheck.close();
@@ -97,26 +266,26 @@ public class DatabaseManager {
                 pstmt.setString(2, coingeckoId);
                 pstmt.setString(3, nombreCripto);
                 pstmt.addBatch();
-                System.out.println("[DatabaseManager] Preparando para insertar/ignorar criptomoneda: " + simbolo);
+                log.debug("Preparando para insertar/ignorar criptomoneda: {}", simbolo);
             }
             pstmt.executeBatch();
             conn.commit();
-            System.out.println("[DatabaseManager] Criptomonedas base verificadas/insertadas en la BD.");
+            log.info("Criptomonedas base verificadas/insertadas en la BD.");
 
         } catch (SQLException e) {
-            System.err.println("[DatabaseManager ERROR] Error al inicializar criptomonedas base: " + e.getMessage());
             if (conn != null) {
                 try {
                     conn.rollback();
                 } catch (SQLException ex) {
-                    System.err.println("[DatabaseManager ERROR] Error en rollback: " + ex.getMessage());
+                    log.error("Error en rollback: {}", ex.getMessage());
                 }
             }
+            throw e;
         } finally {
             close(conn, pstmt, rs); // rs ya debería estar cerrado
         }
     }
-    public static void inicializarUsuarioPorDefecto(String nombreUsuarioPorDefecto) {
+    public static void inicializarUsuarioPorDefecto(String nombreUsuarioPorDefecto) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -137,13 +306,11 @@ public class DatabaseManager {
                 pstmt.setString(1, nombreUsuarioPorDefecto);
                 int affectedRows = pstmt.executeUpdate();
                 if (affectedRows > 0) {
-                    System.out.println("[DatabaseManager] Usuario por defecto '" + nombreUsuarioPorDefecto + "' creado.");
+                    log.info("Usuario por defecto '{}' creado.", nombreUsuarioPorDefecto);
                 }
             } else {
-                System.out.println("[DatabaseManager] Usuario por defecto '" + nombreUsuarioPorDefecto + "' ya existe.");
+                log.info("Usuario por defecto '{}' ya existe.", nombreUsuarioPorDefecto);
             }
-        } catch (SQLException e) {
-            System.err.println("[DatabaseManager ERROR] Error al inicializar usuario por defecto: " + e.getMessage());
         } finally {
             close(conn, pstmt, rs);
         }
@@ -0,0 +1,157 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de disparo de cada alerta activa, en memoria, para que una alerta se dispare una
+ * vez por cruce de precio y no en cada ciclo del verificador mientras la condición se cumpla.
+ *
+ * Estados por alerta:
+ * - ARMADA: se dispara cuando se cumple la condición (pasa a DISPARADA).
+ * - DISPARADA: ya avisó; no vuelve a disparar aunque la condición se siga cumpliendo.
+ * - ENFRIAMIENTO: el precio volvió a cruzar la banda de histéresis; se rearma cuando pasa
+ *   el tiempo de enfriamiento.
+ *
+ * La política de rearme ({@code cripto.alertas.rearme}) decide qué pasa tras disparar:
+ * - UNA_VEZ (por defecto): la alerta se desactiva en MySQL, como una alerta de un solo uso.
+ *   Nunca se rearma, así que la banda de histéresis no interviene.
+ * - ENFRIAMIENTO: la alerta sigue activa y se rearma según la banda y
+ *   {@code cripto.alertas.enfriamientoSeg} (por defecto 300 s).
+ *
+ * La banda de histéresis ({@code cripto.alertas.histeresisPct}, por defecto 0.5%) solo se usa
+ * con ENFRIAMIENTO: evita que un precio que oscila justo en el umbral rearme y dispare la
+ * alerta una y otra vez.
+ *
+ * Las alertas a desactivar se acumulan y se escriben juntas, en un solo UPDATE por ciclo.
+ * Hay un disparador por partición de {@link EvaluadorAlertas}, y lo evalúa solo el hilo de esa partición.
+ */
+public class DisparadorAlertas {
+
+    enum Estado { ARMADA, DISPARADA, ENFRIAMIENTO }
+
+    enum PoliticaRearme { UNA_VEZ, ENFRIAMIENTO }
+
+    private static final class EstadoAlerta {
+        Estado estado = Estado.ARMADA;
+        String tipoCondicion;
+        double precioUmbral;
+        int ventana;
+        long instanteDisparo;
+        long ultimoCiclo;
+    }
+
+    private final PoliticaRearme politica;
+    private final double histeresis;
+    private final long enfriamientoMs;
+
+    private final Map<String, EstadoAlerta> estados = new HashMap<>(); // id_alerta -> estado
+    private final Set<String> pendientesDeDesactivar = ConcurrentHashMap.newKeySet();
+    private long ciclo = 0;
+
+    public DisparadorAlertas() {
+        this(PoliticaRearme.valueOf(System.getProperty("cripto.alertas.rearme", "UNA_VEZ").trim().toUpperCase(Locale.ROOT)),
+                Double.parseDouble(System.getProperty("cripto.alertas.histeresisPct", "0.5")) / 100.0,
+                Long.getLong("cripto.alertas.enfriamientoSeg", 300) * 1000L);
+    }
+
+    public DisparadorAlertas(PoliticaRearme politica, double histeresis, long enfriamientoMs) {
+        this.politica = politica;
+        this.histeresis = histeresis;
+        this.enfriamientoMs = enfriamientoMs;
+    }
+
+    /** Marca el inicio de un ciclo del verificador. */
+    public void iniciarCiclo() {
+        ciclo++;
+    }
+
+    /**
+     * Evalúa una alerta con el valor actual de su condición y actualiza su estado.
+     * Para MENOR_QUE la condición se cumple con valores bajo el umbral; para el resto
+     * (precio MAYOR_QUE, o el cambio porcentual, la volatilidad, etc.) sobre el umbral.
+     *
+     * @return true si la alerta se dispara en esta evaluación (solo al pasar de ARMADA a DISPARADA).
+     */
+    public boolean evaluar(String idAlerta, String tipoCondicion, double precioUmbral, int ventana, double valorActual, long ahoraMillis) {
+        EstadoAlerta estado = estados.get(idAlerta);
+        if (estado == null || estado.precioUmbral != precioUmbral || estado.ventana != ventana
+                || !tipoCondicion.equals(estado.tipoCondicion)) {
+            // Alerta nueva o modificada por su dueño: empieza armada
+            estado = new EstadoAlerta();
+            estado.tipoCondicion = tipoCondicion;
+            estado.precioUmbral = precioUmbral;
+            estado.ventana = ventana;
+            estados.put(idAlerta, estado);
+        }
+        estado.ultimoCiclo = ciclo;
+
+        boolean mayorQue = !"MENOR_QUE".equals(tipoCondicion);
+        if (estado.estado == Estado.DISPARADA) {
+            // Sale de DISPARADA solo con ENFRIAMIENTO y cuando el valor cruzó la banda de histéresis
+            if (politica != PoliticaRearme.ENFRIAMIENTO || !fueraDeBanda(mayorQue, precioUmbral, valorActual)) {
+                return false;
+            }
+            estado.estado = Estado.ENFRIAMIENTO;
+        }
+        if (estado.estado == Estado.ENFRIAMIENTO) {
+            if (ahoraMillis - estado.instanteDisparo < enfriamientoMs) {
+                return false;
+            }
+            estado.estado = Estado.ARMADA; // Si la condición ya se volvió a cumplir, dispara ahora
+        }
+        boolean cumple = mayorQue ? valorActual > precioUmbral : valorActual < precioUmbral;
+        if (!cumple) {
+            return false;
+        }
+        estado.estado = Estado.DISPARADA;
+        estado.instanteDisparo = ahoraMillis;
+        if (politica == PoliticaRearme.UNA_VEZ) {
+            pendientesDeDesactivar.add(idAlerta);
+        }
+        return true;
+    }
+
+    /**
+     * Anota que la alerta sigue activa en este ciclo aunque no se evaluó (sin precio o sin
+     * datos suficientes en su ventana), para que {@link #terminarCiclo()} no olvide su estado.
+     */
+    public void conservar(String idAlerta) {
+        EstadoAlerta estado = estados.get(idAlerta);
+        if (estado != null) {
+            estado.ultimoCiclo = ciclo;
+        }
+    }
+
+    // El valor se alejó del umbral más allá de la banda, en la dirección contraria a la condición
+    private boolean fueraDeBanda(boolean mayorQue, double umbral, double valor) {
+        return mayorQue ? valor <= umbral * (1 - histeresis) : valor >= umbral * (1 + histeresis);
+    }
+
+    /**
+     * Termina el ciclo: olvida el estado de las alertas que ya no están activas en la BD
+     * (eliminadas o desactivadas), es decir, las que en este ciclo no se evaluaron ni se conservaron.
+     */
+    public void terminarCiclo() {
+        estados.values().removeIf(e -> e.ultimoCiclo != ciclo);
+    }
+
+    /** Alertas disparadas que falta desactivar en la BD. */
+    public List<String> pendientesDeDesactivar() {
+        return new ArrayList<>(pendientesDeDesactivar);
+    }
+
+    public int cantidadPendientes() {
+        return pendientesDeDesactivar.size();
+    }
+
+    /** Confirma que las alertas ya quedaron desactivadas en la BD. */
+    public void confirmarDesactivadas(List<String> idsAlerta) {
+        pendientesDeDesactivar.removeAll(idsAlerta);
+    }
+}
@@ -0,0 +1,211 @@
+package server;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ejecución del trabajo bloqueante del servidor sobre hilos virtuales.
+ *
+ * - Cada tarea en segundo plano corre en su propio hilo virtual: bloquearse en JDBC o HTTP
+ *   solo estaciona el hilo virtual y libera el hilo portador.
+ * - La concurrencia hacia cada dependencia está acotada por un semáforo propio
+ *   (MySQL y CoinGecko), así una ráfaga de clientes hace cola aquí en lugar de abrir
+ *   conexiones sin límite. La espera por permiso también está acotada (y además por el plazo
+ *   de la llamada RMI, si tiene): si el compartimento sigue lleno, la operación falla y quien
+ *   llama recurre a la caché o al último precio conocido, en lugar de acumular hilos detrás
+ *   de una dependencia lenta.
+ * - {@link #conPermisoDB} y {@link #conPermisoHTTP} ejecutan la tarea en el hilo que llama. En
+ *   una llamada RMI ese es el hilo de transporte de RMI, que sigue ocupado mientras dura la
+ *   operación: lo que se acota es cuántas operaciones llegan a la dependencia y cuánto se
+ *   espera por ella, no el hilo de la llamada.
+ * - Las tareas periódicas usan un único hilo de plataforma como temporizador, que solo
+ *   despacha cada ejecución a un hilo virtual y omite el tick si la anterior sigue en curso.
+ *
+ * Los límites se configuran con las propiedades {@code cripto.concurrencia.db},
+ * {@code cripto.concurrencia.http}, {@code cripto.concurrencia.esperaDbMs} y
+ * {@code cripto.concurrencia.esperaHttpMs}.
+ */
+public class EjecutorTareas {
+
+    private static final int MAX_CONCURRENCIA_DB = Integer.getInteger("cripto.concurrencia.db", 8);
+    private static final int MAX_CONCURRENCIA_HTTP = Integer.getInteger("cripto.concurrencia.http", 4);
+    private static final long ESPERA_PERMISO_DB_MS = Long.getLong("cripto.concurrencia.esperaDbMs", 5000);
+    private static final long ESPERA_PERMISO_HTTP_MS = Long.getLong("cripto.concurrencia.esperaHttpMs", 2000);
+
+    /** Tarea bloqueante que puede lanzar una excepción verificada concreta. */
+    @FunctionalInterface
+    public interface Bloqueante<T, E extends Exception> {
+        T ejecutar() throws E;
+    }
+
+    private final ExecutorService virtuales = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cripto-virtual-", 0).factory());
+    private final ScheduledExecutorService temporizador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = Executors.defaultThreadFactory().newThread(r);
+        t.setName("CriptoTemporizadorThread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<AtomicBoolean> ejecucionesProgramadas = new CopyOnWriteArrayList<>();
+
+    private final Semaphore permisosDB = new Semaphore(MAX_CONCURRENCIA_DB, true);
+    private final Semaphore permisosHTTP = new Semaphore(MAX_CONCURRENCIA_HTTP, true);
+
+    public EjecutorTareas() {
+        Metricas.REGISTRO.indicador("cripto_db_permisos_en_uso", "Operaciones JDBC en curso.",
+                () -> MAX_CONCURRENCIA_DB - permisosDB.availablePermits());
+        Metricas.REGISTRO.indicador("cripto_db_permisos_en_espera", "Tareas esperando un permiso de MySQL.",
+                permisosDB::getQueueLength);
+        Metricas.REGISTRO.indicador("cripto_http_permisos_en_uso", "Peticiones a CoinGecko en curso.",
+                () -> MAX_CONCURRENCIA_HTTP - permisosHTTP.availablePermits());
+        Metricas.REGISTRO.indicador("cripto_http_permisos_en_espera", "Tareas esperando un permiso de CoinGecko.",
+                permisosHTTP::getQueueLength);
+    }
+
+    /**
+     * Ejecuta la tarea en el hilo actual, ocupando uno de los permisos de MySQL.
+     * La espera por el permiso se acota a {@code cripto.concurrencia.esperaDbMs} y al plazo de la
+     * llamada RMI, si tiene ({@link PlazoLlamada}).
+     *
+     * @throws SQLTransientConnectionException Si no hubo permiso a tiempo (la tarea no se ejecutó).
+     * @throws SQLTimeoutException             Si el plazo de la llamada venció esperando el permiso.
+     */
+    public <T, E extends Exception> T conPermisoDB(Bloqueante<T, E> tarea) throws E, SQLException {
+        boolean obtenido;
+        try {
+            obtenido = !PlazoLlamada.vencido()
+                    && permisosDB.tryAcquire(PlazoLlamada.restanteMs(ESPERA_PERMISO_DB_MS), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando permiso para MySQL.", e);
+        }
+        if (!obtenido && PlazoLlamada.vencido()) {
+            throw new SQLTimeoutException("Plazo de la llamada vencido esperando permiso para MySQL.");
+        }
+        if (!obtenido) {
+            Metricas.DB_SIN_PERMISO.incrementar();
+            throw new SQLTransientConnectionException("Demasiadas operaciones en MySQL en curso; no hubo permiso en "
+                    + ESPERA_PERMISO_DB_MS + " ms.");
+        }
+        long inicio = System.nanoTime();
+        try {
+            return tarea.ejecutar();
+        } catch (Exception e) {
+            Metricas.DB_ERRORES.incrementar();
+            throw e;
+        } finally {
+            Metricas.DB_OPERACIONES.incrementar();
+            Metricas.DB_LATENCIA.registrarDesde(inicio);
+            permisosDB.release();
+        }
+    }
+
+    /**
+     * Ejecuta la tarea en el hilo actual, ocupando uno de los permisos de CoinGecko.
+     * La espera por el permiso también se acota al plazo de la llamada RMI, si tiene ({@link PlazoLlamada}).
+     *
+     * @throws IOException Si no hay permiso libre en {@code cripto.concurrencia.esperaHttpMs} ms
+     *                     (o antes del plazo, con {@link common.PlazoVencidoException}), o si la tarea falla.
+     */
+    public <T> T conPermisoHTTP(Bloqueante<T, IOException> tarea) throws IOException {
+        PlazoLlamada.verificar("permiso HTTP");
+        boolean obtenido;
+        try {
+            obtenido = permisosHTTP.tryAcquire(PlazoLlamada.restanteMs(ESPERA_PERMISO_HTTP_MS), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando permiso para CoinGecko.", e);
+        }
+        if (!obtenido && PlazoLlamada.vencido()) {
+            throw PlazoLlamada.vencimiento("permiso HTTP");
+        }
+        if (!obtenido) {
+            Metricas.COINGECKO_SIN_PERMISO.incrementar();
+            throw new IOException("Demasiadas peticiones a CoinGecko en curso; no hubo permiso en "
+                    + ESPERA_PERMISO_HTTP_MS + " ms.");
+        }
+        try {
+            return tarea.ejecutar();
+        } finally {
+            permisosHTTP.release();
+        }
+    }
+
+    /** Lanza la tarea en un hilo virtual nuevo. */
+    public <T> Future<T> enviar(Callable<T> tarea) {
+        return virtuales.submit(tarea);
+    }
+
+    /** Lanza la tarea en un hilo virtual nuevo. */
+    public void ejecutar(Runnable tarea) {
+        virtuales.execute(tarea);
+    }
+
+    /**
+     * Programa una tarea periódica. Cada ejecución corre en un hilo virtual con el nombre dado;
+     * si la ejecución anterior aún no termina, el tick se omite en vez de acumularse.
+     */
+    public void programar(String nombre, Runnable tarea, long delayInicial, long periodo, TimeUnit unidad) {
+        AtomicBoolean enCurso = new AtomicBoolean(false);
+        ejecucionesProgramadas.add(enCurso);
+        temporizador.scheduleAtFixedRate(() -> {
+            if (!enCurso.compareAndSet(false, true)) {
+                return;
+            }
+            virtuales.execute(() -> {
+                Thread.currentThread().setName(nombre);
+                try {
+                    tarea.run();
+                } finally {
+                    enCurso.set(false);
+                }
+            });
+        }, delayInicial, periodo, unidad);
+    }
+
+    /**
+     * Cancela las tareas periódicas y espera, hasta el instante límite (nanoTime),
+     * a que terminen las ejecuciones que ya estaban en curso.
+     */
+    public void detenerProgramadas(long limiteNanos) {
+        temporizador.shutdownNow();
+        for (AtomicBoolean enCurso : ejecucionesProgramadas) {
+            while (enCurso.get() && System.nanoTime() < limiteNanos) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * No acepta más tareas y espera hasta el instante límite (nanoTime) a que terminen las lanzadas.
+     */
+    public void detener(long limiteNanos) {
+        virtuales.shutdown();
+        try {
+            if (!virtuales.awaitTermination(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                virtuales.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            virtuales.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package server;
+
+import common.Cripto;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escritura diferida (write-behind) de cotizaciones en {@code historial_precios}.
+ *
+ * Quien publica precios en la caché solo encola las cotizaciones; un hilo virtual las
+ * agrupa en lotes y las inserta en una sola transacción, ocupando un permiso de MySQL.
+ * Así una consulta RMI que tuvo que ir a CoinGecko no espera además la escritura del historial.
+ * En la misma transacción se actualiza {@code precios_actuales} con el precio más reciente de
+ * cada par (símbolo, moneda) del lote, para que el último precio conocido se lea sin recorrer el historial.
+ * Al apagar el servidor, {@link #detener(long)} escribe lo que quede en la cola antes de terminar.
+ */
+public class EscritorHistorial {
+
+    private static final Logger log = LogAsincrono.obtener(EscritorHistorial.class);
+
+    private static final int TAMANO_LOTE = 500;
+    private static final int CAPACIDAD_COLA = 10_000;
+    private static final long ESPERA_COLA_MS = 200;
+    private static final int ERROR_TABLA_NO_EXISTE = 1146;
+
+    private final BlockingQueue<Cripto> pendientes = new LinkedBlockingQueue<>(CAPACIDAD_COLA);
+    private final Map<String, Integer> idsCripto = new ConcurrentHashMap<>(); // Símbolo -> id_cripto
+    private final EjecutorTareas ejecutor;
+    private final CountDownLatch terminado = new CountDownLatch(1);
+    private volatile boolean deteniendo = false;
+
+    public EscritorHistorial(EjecutorTareas ejecutor) {
+        this.ejecutor = ejecutor;
+        Metricas.REGISTRO.indicador("cripto_historial_cola", "Cotizaciones en espera de ser guardadas.", pendientes::size);
+        ejecutor.ejecutar(this::bucleEscritura);
+    }
+
+    /**
+     * Encola las cotizaciones para su inserción. Si la cola está llena (MySQL caído o muy lento),
+     * las cotizaciones se descartan: la caché ya tiene el precio y el historial es de mejor esfuerzo.
+     */
+    public void encolar(List<Cripto> cotizaciones) {
+        int descartadas = 0;
+        for (Cripto cripto : cotizaciones) {
+            if (!pendientes.offer(cripto)) {
+                descartadas++;
+            }
+        }
+        if (descartadas > 0) {
+            Metricas.HISTORIAL_DESCARTADAS.sumar(descartadas);
+            log.warn("Cola llena: se descartaron {} cotizaciones del historial.", descartadas);
+        }
+    }
+
+    /**
+     * Deja de esperar cotizaciones nuevas, escribe las pendientes y espera a que el hilo
+     * escritor termine, como máximo hasta el instante límite (nanoTime).
+     */
+    public void detener(long limiteNanos) {
+        deteniendo = true;
+        try {
+            if (!terminado.await(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Plazo agotado: quedaron {} cotizaciones sin guardar.", pendientes.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void bucleEscritura() {
+        Thread.currentThread().setName("HistoryWriterThread");
+        List<Cripto> lote = new ArrayList<>(TAMANO_LOTE);
+        try {
+            // Al detener se sigue vaciando la cola hasta que quede vacía
+            while (!deteniendo || !pendientes.isEmpty()) {
+                Cripto primera = pendientes.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                pendientes.drainTo(lote, TAMANO_LOTE - 1);
+                escribirConPermiso(lote);
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            terminado.countDown();
+        }
+    }
+
+    // Sin permiso de MySQL a tiempo se reintenta el mismo lote: el historial espera, no se pierde
+    private void escribirConPermiso(List<Cripto> lote) throws InterruptedException {
+        while (true) {
+            try {
+                ejecutor.conPermisoDB(() -> escribirLote(lote));
+                return;
+            } catch (SQLException e) {
+                log.debug("Lote de historial en espera de permiso de MySQL: {}", e.getMessage());
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    private boolean escribirLote(List<Cripto> lote) {
+        Connection conn = null;
+        PreparedStatement pstmtHistorial = null;
+        PreparedStatement pstmtPrecioActual = null;
+        PreparedStatement pstmtGetCriptoId = null;
+        ResultSet rsCriptoId = null;
+
+        String sqlGetCriptoId = "SELECT id_cripto FROM criptomonedas WHERE simbolo = ?";
+        String sqlInsertHistorial = "INSERT INTO historial_precios (id_cripto_fk, precio, moneda_cotizacion, timestamp_precio) VALUES (?, ?, ?, ?)";
+        // Solo reemplaza el precio si el nuevo no es más antiguo (precio se asigna antes que timestamp_precio)
+        String sqlUpsertPrecioActual = "INSERT INTO precios_actuales (id_cripto_fk, moneda_cotizacion, precio, timestamp_precio) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE precio = IF(VALUES(timestamp_precio) >= timestamp_precio, VALUES(precio), precio), " +
+                "timestamp_precio = GREATEST(timestamp_precio, VALUES(timestamp_precio))";
+        Map<String, Cripto> ultimasDelLote = new LinkedHashMap<>(); // "id_cripto/moneda" -> cotización más reciente
+
+        try {
+            conn = DatabaseManager.getConnection();
+            conn.setAutoCommit(false); // Iniciar transacción
+
+            pstmtGetCriptoId = conn.prepareStatement(sqlGetCriptoId);
+            pstmtHistorial = conn.prepareStatement(sqlInsertHistorial);
+
+            for (Cripto cripto : lote) {
+                String simbolo = cripto.getSimbolo();
+
+                // 1. Obtener id_cripto_fk (se recuerda por símbolo: no cambia mientras el servidor corre)
+                Integer idCriptoFk = idsCripto.get(simbolo);
+                if (idCriptoFk == null) {
+                    pstmtGetCriptoId.setString(1, simbolo);
+                    rsCriptoId = pstmtGetCriptoId.executeQuery();
+                    if (rsCriptoId.next()) {
+                        idCriptoFk = rsCriptoId.getInt("id_cripto");
+                        idsCripto.put(simbolo, idCriptoFk);
+                    }
+                    rsCriptoId.close();
+                }
+
+                if (idCriptoFk != null) {
+                    // 2. Guardar en historial_precios
+                    pstmtHistorial.setInt(1, idCriptoFk);
+                    pstmtHistorial.setDouble(2, cripto.getPrecio());
+                    pstmtHistorial.setString(3, cripto.getMoneda());
+                    pstmtHistorial.setLong(4, cripto.getTimestampFuente());
+                    pstmtHistorial.addBatch();
+                    ultimasDelLote.merge(idCriptoFk + "/" + cripto.getMoneda(), cripto,
+                            (anterior, nueva) -> nueva.getTimestampFuente() >= anterior.getTimestampFuente() ? nueva : anterior);
+                } else {
+                    log.error("No se encontró id_cripto para el símbolo: {} al guardar historial.", simbolo);
+                }
+            }
+            pstmtHistorial.executeBatch();
+
+            pstmtPrecioActual = conn.prepareStatement(sqlUpsertPrecioActual);
+            for (Map.Entry<String, Cripto> ultima : ultimasDelLote.entrySet()) {
+                pstmtPrecioActual.setInt(1, idsCripto.get(ultima.getValue().getSimbolo()));
+                pstmtPrecioActual.setString(2, ultima.getValue().getMoneda());
+                pstmtPrecioActual.setDouble(3, ultima.getValue().getPrecio());
+                pstmtPrecioActual.setLong(4, ultima.getValue().getTimestampFuente());
+                pstmtPrecioActual.addBatch();
+            }
+            try {
+                pstmtPrecioActual.executeBatch();
+            } catch (SQLException e) {
+                // Antes de la migración 6 (servidor recién arrancado) la tabla aún no existe: el historial igual se guarda
+                if (e.getErrorCode() != ERROR_TABLA_NO_EXISTE) {
+                    throw e;
+                }
+                log.debug("precios_actuales aún no existe; se actualizará en el próximo lote.");
+            }
+            conn.commit();
+            Metricas.HISTORIAL_GUARDADAS.sumar(lote.size());
+            return true;
+
+        } catch (SQLException e) {
+            log.error("Error al guardar historial ({} cotizaciones): {}", lote.size(), e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    log.error("Error en rollback de historial: {}", ex.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            // rsCriptoId ya se cierra en el bucle
+            if (pstmtGetCriptoId != null) {
+                try {
+                    pstmtGetCriptoId.close();
+                } catch (SQLException e) { /* ignored */ }
+            }
+            if (pstmtPrecioActual != null) {
+                try {
+                    pstmtPrecioActual.close();
+                } catch (SQLException e) { /* ignored */ }
+            }
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true); // Restaurar autocommit por si acaso
+                } catch (SQLException e) { /* ignored */ }
+            }
+            DatabaseManager.close(conn, pstmtHistorial);
+        }
+    }
+}
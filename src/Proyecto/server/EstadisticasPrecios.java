@@ -0,0 +1,139 @@
+package server;
+
+import common.Cripto;
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Ventanas deslizantes de precios por símbolo, para las alertas estadísticas
+ * (cambio porcentual, cruce de media móvil y volatilidad).
+ *
+ * Solo existen las ventanas que alguien pidió (una alerta activa o una consulta), y se
+ * alimentan desde el mismo camino que actualiza la caché, en la moneda por defecto.
+ * Al crear una ventana se carga una sola vez desde {@code historial_precios}, para no
+ * esperar N periodos antes de poder evaluarla; después nunca se vuelve a consultar la BD.
+ */
+public class EstadisticasPrecios {
+
+    private static final Logger log = LogAsincrono.obtener(EstadisticasPrecios.class);
+
+    private final String moneda;
+    private final EjecutorTareas ejecutor;
+    // Símbolo -> ("P<periodos>" o "T<minutos>" -> ventana)
+    private final Map<String, Map<String, VentanaPrecios>> ventanas = new ConcurrentHashMap<>();
+
+    public EstadisticasPrecios(String moneda, EjecutorTareas ejecutor) {
+        this.moneda = moneda;
+        this.ejecutor = ejecutor;
+        Metricas.REGISTRO.indicador("cripto_estadisticas_ventanas", "Ventanas deslizantes de precios en memoria.",
+                () -> ventanas.values().stream().mapToInt(Map::size).sum());
+    }
+
+    /**
+     * Agrega una cotización a las ventanas de su símbolo (si es de la moneda de las ventanas).
+     */
+    public void registrar(Cripto cripto) {
+        if (!moneda.equals(cripto.getMoneda())) {
+            return;
+        }
+        Map<String, VentanaPrecios> delSimbolo = ventanas.get(cripto.getSimbolo());
+        if (delSimbolo == null) {
+            return;
+        }
+        for (VentanaPrecios ventana : delSimbolo.values()) {
+            ventana.agregar(cripto.getTimestampFuente(), cripto.getPrecio());
+        }
+    }
+
+    /** Ventana con los últimos {@code periodos} ticks del símbolo. */
+    public VentanaPrecios porPeriodos(String simbolo, int periodos) {
+        return obtener(simbolo, "P" + periodos, () -> VentanaPrecios.porPeriodos(periodos), periodos, 0);
+    }
+
+    /** Ventana con los ticks de los últimos {@code minutos} del símbolo. */
+    public VentanaPrecios porMinutos(String simbolo, int minutos) {
+        long duracionMs = minutos * 60_000L;
+        return obtener(simbolo, "T" + minutos, () -> VentanaPrecios.porTiempo(duracionMs), 0, duracionMs);
+    }
+
+    private VentanaPrecios obtener(String simbolo, String clave, Supplier<VentanaPrecios> crear,
+                                   int periodos, long duracionMs) {
+        Map<String, VentanaPrecios> delSimbolo = ventanas.computeIfAbsent(simbolo, s -> new ConcurrentHashMap<>());
+        VentanaPrecios ventana = delSimbolo.get(clave);
+        if (ventana == null) {
+            // La carga inicial se hace fuera del mapa; si otro hilo la creó antes, se usa la suya
+            VentanaPrecios nueva = crear.get();
+            cargarDesdeHistorial(nueva, simbolo, periodos, duracionMs);
+            ventana = delSimbolo.putIfAbsent(clave, nueva);
+            if (ventana == null) {
+                ventana = nueva;
+            }
+        }
+        ventana.marcarUso();
+        return ventana;
+    }
+
+    /**
+     * Olvida las ventanas que nadie usó desde el instante dado (alertas eliminadas o ya disparadas).
+     */
+    public void olvidarSinUsoDesde(long instanteMillis) {
+        for (Map<String, VentanaPrecios> delSimbolo : ventanas.values()) {
+            delSimbolo.values().removeIf(v -> v.getUltimoUso() < instanteMillis);
+        }
+    }
+
+    private void cargarDesdeHistorial(VentanaPrecios ventana, String simbolo, int periodos, long duracionMs) {
+        String sql = "SELECT hp.precio, hp.timestamp_precio FROM historial_precios hp " +
+                "JOIN criptomonedas c ON hp.id_cripto_fk = c.id_cripto " +
+                "WHERE c.simbolo = ? AND hp.moneda_cotizacion = ? AND hp.timestamp_precio >= ? " +
+                "ORDER BY hp.timestamp_precio DESC LIMIT ?";
+        long desde = duracionMs > 0 ? System.currentTimeMillis() - duracionMs : 0;
+        // Se piden filas de más porque el historial puede repetir una misma cotización
+        int limite = periodos > 0 ? periodos * 4 : 10_000;
+
+        List<double[]> filas;
+        try {
+            filas = ejecutor.conPermisoDB(() -> {
+                List<double[]> resultado = new ArrayList<>();
+                Connection conn = null;
+                PreparedStatement pstmt = null;
+                ResultSet rs = null;
+                try {
+                    conn = DatabaseManager.getConnection();
+                    pstmt = conn.prepareStatement(sql);
+                    pstmt.setString(1, simbolo);
+                    pstmt.setString(2, moneda);
+                    pstmt.setLong(3, desde);
+                    pstmt.setInt(4, limite);
+                    rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        resultado.add(new double[]{rs.getDouble("precio"), rs.getLong("timestamp_precio")});
+                    }
+                } catch (SQLException e) {
+                    log.warn("No se pudo cargar el historial de {} para la ventana: {}", simbolo, e.getMessage());
+                } finally {
+                    DatabaseManager.close(conn, pstmt, rs);
+                }
+                return resultado;
+            });
+        } catch (SQLException e) {
+            log.warn("Sin permiso de MySQL para cargar el historial de {}: {}", simbolo, e.getMessage());
+            return; // La ventana se llena con los ticks que vayan llegando
+        }
+
+        // Del más antiguo al más reciente
+        for (int i = filas.size() - 1; i >= 0; i--) {
+            ventana.agregar((long) filas.get(i)[1], filas.get(i)[0]);
+        }
+        log.debug("Ventana de {} cargada con {} precios del historial.", simbolo, ventana.muestras());
+    }
+}
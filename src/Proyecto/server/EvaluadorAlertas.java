@@ -0,0 +1,188 @@
+package server;
+
+import common.Cripto;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluación de las alertas activas repartida en particiones por símbolo, para usar todos
+ * los núcleos cuando hay muchas alertas.
+ *
+ * Cada símbolo pertenece siempre a la misma partición (por el hash del símbolo), y cada
+ * partición tiene un hilo propio y su propio {@link DisparadorAlertas}: el estado de disparo
+ * de una alerta solo lo toca ese hilo y no se sincroniza. Las ventanas de precios, en cambio,
+ * las alimentan los hilos que actualizan la caché (RMI y el pipeline de precios), por eso
+ * {@link VentanaPrecios} se sincroniza; su candado lo disputan esa escritura, la partición
+ * dueña del símbolo y alguna consulta de un cliente, nunca dos particiones. En cada ciclo del verificador se envía a cada partición
+ * la lista de sus símbolos con sus alertas; el precio de cada símbolo se lee de la caché una vez.
+ *
+ * La cantidad de particiones se configura con {@code cripto.alertas.particiones}
+ * (por defecto, la cantidad de procesadores).
+ */
+class EvaluadorAlertas {
+
+    private static final Logger log = LogAsincrono.obtener(EvaluadorAlertas.class);
+
+    /** Lo que la evaluación necesita del servidor: precios, valor de cada condición y qué hacer al disparar. */
+    interface Evaluacion {
+        Cripto precio(String simbolo);
+
+        /** Valor a comparar con el umbral; NaN si aún no hay datos suficientes. */
+        double valorCondicion(AlertaDefinicion alerta, double precioActual);
+
+        void disparada(AlertaDefinicion alerta, Cripto precio);
+    }
+
+    private static final class Particion {
+        final DisparadorAlertas disparador = new DisparadorAlertas();
+        final ExecutorService hilo;
+        volatile int alertas; // Asignadas en el último ciclo
+
+        Particion(int indice) {
+            hilo = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "AlertShard-" + indice);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private final Particion[] particiones;
+
+    EvaluadorAlertas() {
+        this(Integer.getInteger("cripto.alertas.particiones", Runtime.getRuntime().availableProcessors()));
+    }
+
+    EvaluadorAlertas(int cantidad) {
+        particiones = new Particion[Math.max(1, cantidad)];
+        for (int i = 0; i < particiones.length; i++) {
+            Particion particion = new Particion(i);
+            particiones[i] = particion;
+            Metricas.REGISTRO.indicador("cripto_alertas_particion", "Alertas activas asignadas a cada partición del verificador.",
+                    "particion=\"" + i + "\"", () -> particion.alertas);
+        }
+        Metricas.REGISTRO.indicador("cripto_alertas_pendientes_desactivar", "Alertas disparadas aún no desactivadas en la BD.",
+                () -> {
+                    int pendientes = 0;
+                    for (Particion particion : particiones) {
+                        pendientes += particion.disparador.cantidadPendientes();
+                    }
+                    return pendientes;
+                });
+        log.info("Verificador de alertas con {} particiones.", particiones.length);
+    }
+
+    private int particionDe(String simbolo) {
+        return Math.floorMod(simbolo.hashCode(), particiones.length);
+    }
+
+    /**
+     * Evalúa un ciclo completo: reparte las alertas por partición, las evalúa en paralelo
+     * y vuelve cuando todas las particiones terminaron.
+     *
+     * @return Cantidad de alertas disparadas en el ciclo.
+     */
+    int evaluar(List<AlertaDefinicion> activas, Evaluacion evaluacion, long ahora) {
+        List<Map<String, List<AlertaDefinicion>>> porParticion = new ArrayList<>(particiones.length);
+        for (int i = 0; i < particiones.length; i++) {
+            porParticion.add(new HashMap<>());
+        }
+        for (AlertaDefinicion alerta : activas) {
+            porParticion.get(particionDe(alerta.criptomoneda))
+                    .computeIfAbsent(alerta.criptomoneda, s -> new ArrayList<>()).add(alerta);
+        }
+
+        List<Future<Integer>> resultados = new ArrayList<>(particiones.length);
+        for (int i = 0; i < particiones.length; i++) {
+            Particion particion = particiones[i];
+            Map<String, List<AlertaDefinicion>> porSimbolo = porParticion.get(i);
+            resultados.add(particion.hilo.submit(() -> evaluarParticion(particion, porSimbolo, evaluacion, ahora)));
+        }
+
+        int disparadas = 0;
+        for (Future<Integer> resultado : resultados) {
+            try {
+                disparadas += resultado.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error al evaluar una partición de alertas: {}", e.getCause().toString());
+            }
+        }
+        return disparadas;
+    }
+
+    private static int evaluarParticion(Particion particion, Map<String, List<AlertaDefinicion>> porSimbolo, Evaluacion evaluacion, long ahora) {
+        DisparadorAlertas disparador = particion.disparador;
+        int asignadas = 0;
+        int disparadas = 0;
+        disparador.iniciarCiclo();
+        for (Map.Entry<String, List<AlertaDefinicion>> simbolo : porSimbolo.entrySet()) {
+            asignadas += simbolo.getValue().size();
+            Cripto criptoActual = evaluacion.precio(simbolo.getKey());
+            if (criptoActual == null) {
+                // Sin precio no se evalúan, pero siguen activas: se conserva su estado de disparo
+                simbolo.getValue().forEach(alerta -> disparador.conservar(alerta.idAlertaDB));
+                continue;
+            }
+            double precioActual = criptoActual.getPrecio();
+            for (AlertaDefinicion alerta : simbolo.getValue()) {
+                double valor = evaluacion.valorCondicion(alerta, precioActual);
+                if (Double.isNaN(valor)) {
+                    disparador.conservar(alerta.idAlertaDB);
+                    continue; // La ventana aún no tiene suficientes precios
+                }
+                Metricas.ALERTAS_EVALUADAS.incrementar();
+                // Solo se avisa al cruzar el umbral, no en cada ciclo mientras la condición se cumpla
+                if (disparador.evaluar(alerta.idAlertaDB, alerta.tipoCondicion, alerta.precioUmbral, alerta.ventana, valor, ahora)) {
+                    disparadas++;
+                    evaluacion.disparada(alerta, criptoActual);
+                }
+            }
+        }
+        disparador.terminarCiclo();
+        particion.alertas = asignadas;
+        return disparadas;
+    }
+
+    /** Alertas disparadas (en todas las particiones) que falta desactivar en la BD. */
+    List<String> pendientesDeDesactivar() {
+        List<String> pendientes = new ArrayList<>();
+        for (Particion particion : particiones) {
+            pendientes.addAll(particion.disparador.pendientesDeDesactivar());
+        }
+        return pendientes;
+    }
+
+    /** Confirma que las alertas ya quedaron desactivadas en la BD. */
+    void confirmarDesactivadas(List<String> idsAlerta) {
+        for (Particion particion : particiones) {
+            particion.disparador.confirmarDesactivadas(idsAlerta);
+        }
+    }
+
+    /** Detiene los hilos de las particiones, esperando hasta el instante límite (nanoTime). */
+    void detener(long limiteNanos) {
+        for (Particion particion : particiones) {
+            particion.hilo.shutdown();
+        }
+        try {
+            for (Particion particion : particiones) {
+                particion.hilo.awaitTermination(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
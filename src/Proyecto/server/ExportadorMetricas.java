@@ -0,0 +1,68 @@
+package server;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+
+/**
+ * Servidor HTTP mínimo que publica el {@link RegistroMetricas} en {@code /metrics}, en el
+ * formato de texto de Prometheus. Corre aparte del RMI Registry, en el puerto dado por
+ * la propiedad {@code cripto.metricas.puerto} (0 lo desactiva).
+ */
+public class ExportadorMetricas {
+
+    private static final ContentType TIPO_PROMETHEUS = ContentType.create("text/plain",
+            new BasicNameValuePair("version", "0.0.4"), new BasicNameValuePair("charset", "utf-8"));
+
+    private final RegistroMetricas registro;
+    private HttpServer servidor;
+
+    public ExportadorMetricas(RegistroMetricas registro) {
+        this.registro = registro;
+    }
+
+    /**
+     * Inicia el servidor HTTP. Si no puede abrir el puerto, lo informa y sigue sin exportador.
+     */
+    public void iniciar(int puerto) {
+        if (puerto <= 0) {
+            System.out.println("[Metricas] Exportador HTTP desactivado.");
+            return;
+        }
+        HttpServer nuevo = ServerBootstrap.bootstrap()
+                .setListenerPort(puerto)
+                .setSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(Timeout.ofSeconds(5))
+                        .setTcpNoDelay(true)
+                        .build())
+                .register("/metrics", (request, response, context) -> {
+                    StringBuilder sb = new StringBuilder(8192);
+                    registro.escribirPrometheus(sb);
+                    response.setCode(HttpStatus.SC_OK);
+                    response.setEntity(new StringEntity(sb.toString(), TIPO_PROMETHEUS));
+                })
+                .create();
+        try {
+            nuevo.start();
+            servidor = nuevo;
+            System.out.println("[Metricas] Exportador Prometheus escuchando en http://localhost:" + puerto + "/metrics");
+        } catch (IOException e) {
+            System.err.println("[Metricas] No se pudo iniciar el exportador en el puerto " + puerto + ": " + e.getMessage());
+        }
+    }
+
+    public void detener() {
+        if (servidor != null) {
+            servidor.close(CloseMode.GRACEFUL);
+            servidor = null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Apagado ordenado del servidor.
+ *
+ * Cada llamada RMI se registra con {@link #entrar()} / {@link #salir()}. Al apagar:
+ * 1. Se desregistra el servicio del RMI Registry, para que los clientes nuevos vayan al respaldo.
+ * 2. Las llamadas nuevas se rechazan con RemoteException (el cliente hace failover) y se
+ *    espera a que terminen las que están en curso.
+ * 3. Se ejecutan, en orden de registro, las etapas de parada (detener tareas periódicas,
+ *    vaciar el historial pendiente, etc.). Cada etapa recibe el instante límite (nanoTime).
+ * 4. Se desexporta el objeto remoto.
+ * Todo dentro de un plazo total; lo que no alcance a terminar se abandona.
+ */
+public class GestorCicloDeVida {
+
+    private static final Logger log = LogAsincrono.obtener(GestorCicloDeVida.class);
+
+    private static final long ESPERA_SONDEO_MS = 20;
+    private static final long VACIADO_FINAL_NANOS = 200_000_000L;
+
+    private final Remote objetoRemoto;
+    private final AtomicInteger llamadasEnCurso = new AtomicInteger();
+    private final List<String> nombresEtapas = new ArrayList<>();
+    private final List<LongConsumer> etapas = new ArrayList<>();
+    private volatile boolean drenando = false;
+
+    public GestorCicloDeVida(Remote objetoRemoto) {
+        this.objetoRemoto = objetoRemoto;
+    }
+
+    /**
+     * Registra el inicio de una llamada RMI.
+     * @throws RemoteException Si el servidor se está apagando.
+     */
+    public void entrar() throws RemoteException {
+        llamadasEnCurso.incrementAndGet();
+        if (drenando) {
+            llamadasEnCurso.decrementAndGet();
+            throw new RemoteException("El servidor se está apagando. Reintente en el servidor de respaldo.");
+        }
+    }
+
+    /** Registra el fin de una llamada RMI iniciada con {@link #entrar()}. */
+    public void salir() {
+        llamadasEnCurso.decrementAndGet();
+    }
+
+    /** Cantidad de llamadas RMI que están siendo atendidas ahora. */
+    public int llamadasEnCurso() {
+        return llamadasEnCurso.get();
+    }
+
+    /**
+     * Agrega una etapa de parada. Recibe el instante límite en {@link System#nanoTime()}.
+     */
+    public synchronized void registrarEtapa(String nombre, LongConsumer etapa) {
+        nombresEtapas.add(nombre);
+        etapas.add(etapa);
+    }
+
+    /**
+     * Apaga el servidor siguiendo los pasos descritos en la clase.
+     *
+     * @param registry     Registry donde está publicado el servicio (puede ser null).
+     * @param nombreServicio Nombre con que se publicó.
+     * @param plazoMillis  Tiempo máximo total para el apagado.
+     */
+    public synchronized void apagar(Registry registry, String nombreServicio, long plazoMillis) {
+        long limite = System.nanoTime() + plazoMillis * 1_000_000L;
+        log.info("Iniciando apagado ordenado (plazo {} ms)...", plazoMillis);
+
+        if (registry != null) {
+            try {
+                registry.unbind(nombreServicio);
+                log.info("Servicio '{}' desregistrado del RMI Registry.", nombreServicio);
+            } catch (NotBoundException | RemoteException e) {
+                log.warn("No se pudo desregistrar '{}': {}", nombreServicio, e.getMessage());
+            }
+        }
+
+        drenando = true;
+        while (llamadasEnCurso.get() > 0 && System.nanoTime() < limite) {
+            try {
+                Thread.sleep(ESPERA_SONDEO_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int pendientes = llamadasEnCurso.get();
+        if (pendientes > 0) {
+            log.warn("Plazo agotado con {} llamadas RMI aún en curso.", pendientes);
+        }
+
+        for (int i = 0; i < etapas.size(); i++) {
+            try {
+                etapas.get(i).accept(limite);
+                log.info("Etapa de parada completada: {}", nombresEtapas.get(i));
+            } catch (RuntimeException e) {
+                log.error("Error en la etapa de parada '{}': {}", nombresEtapas.get(i), e.getMessage());
+            }
+        }
+
+        try {
+            UnicastRemoteObject.unexportObject(objetoRemoto, true);
+        } catch (NoSuchObjectException e) {
+            // Ya no estaba exportado
+        }
+        log.info("Apagado completado.");
+        // La etapa de log pendiente ya corrió: se vacía de nuevo para no perder los últimos mensajes
+        LogAsincrono.vaciar(Math.max(limite, System.nanoTime() + VACIADO_FINAL_NANOS));
+    }
+}
@@ -0,0 +1,93 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias sin bloqueos, con cubetas fijas en escala aproximadamente
+ * logarítmica (50 µs a 10 s). Cada cubeta es un {@link LongAdder}: registrar una
+ * medición es una búsqueda binaria y un incremento, sin reservar memoria.
+ */
+public final class HistogramaLatencia {
+
+    /** Límites superiores de las cubetas, en nanosegundos (la última cubeta, implícita, es +Inf). */
+    static final long[] LIMITES_NANOS = {
+            50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private final LongAdder[] cuentas = new LongAdder[LIMITES_NANOS.length + 1];
+    private final LongAdder sumaNanos = new LongAdder();
+
+    public HistogramaLatencia() {
+        for (int i = 0; i < cuentas.length; i++) {
+            cuentas[i] = new LongAdder();
+        }
+    }
+
+    public void registrar(long nanos) {
+        int bajo = 0;
+        int alto = LIMITES_NANOS.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (nanos <= LIMITES_NANOS[medio]) {
+                alto = medio;
+            } else {
+                bajo = medio + 1;
+            }
+        }
+        cuentas[bajo].increment();
+        sumaNanos.add(nanos);
+    }
+
+    /** Registra el tiempo transcurrido desde {@code inicioNanos} (obtenido con System.nanoTime()). */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    /** Cuentas por cubeta (no acumuladas); la última posición corresponde a +Inf. */
+    public long[] cuentas() {
+        long[] copia = new long[cuentas.length];
+        for (int i = 0; i < cuentas.length; i++) {
+            copia[i] = cuentas[i].sum();
+        }
+        return copia;
+    }
+
+    public long total() {
+        long total = 0;
+        for (LongAdder cuenta : cuentas) {
+            total += cuenta.sum();
+        }
+        return total;
+    }
+
+    public long sumaNanos() {
+        return sumaNanos.sum();
+    }
+
+    /**
+     * Percentil aproximado en nanosegundos: el límite superior de la cubeta donde cae.
+     * Devuelve 0 si no hay mediciones.
+     */
+    public long percentilNanos(double percentil) {
+        long[] c = cuentas();
+        long total = 0;
+        for (long x : c) {
+            total += x;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(total * percentil);
+        long acumulado = 0;
+        for (int i = 0; i < c.length; i++) {
+            acumulado += c[i];
+            if (acumulado >= objetivo) {
+                return i < LIMITES_NANOS.length ? LIMITES_NANOS[i] : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
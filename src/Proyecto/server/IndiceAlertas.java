@@ -0,0 +1,122 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Alertas activas en memoria, por id, para que el verificador y el actualizador de precios
+ * no consulten MySQL en cada ciclo.
+ *
+ * - Las operaciones RMI (crear, modificar, eliminar) y la desactivación de alertas disparadas
+ *   actualizan el índice apenas confirman su transacción.
+ * - Al arrancar se llena desde la instantánea en disco, y una tarea de fondo lo reconcilia con
+ *   la BD aplicando solo las diferencias (así también se ven las alertas creadas en el otro servidor).
+ *
+ * Una reconciliación no pisa un cambio local hecho mientras su consulta estaba en curso:
+ * cada escritura local anota su instante, y las alertas escritas después del inicio de la
+ * consulta se dejan como están hasta la próxima reconciliación.
+ */
+class IndiceAlertas {
+
+    private final Map<String, AlertaDefinicion> activas = new ConcurrentHashMap<>();
+    private final Map<String, Long> escriturasLocales = new HashMap<>(); // id -> System.nanoTime(); protegido por 'this'
+
+    IndiceAlertas() {
+        Metricas.REGISTRO.indicador("cripto_alertas_indice", "Alertas activas en el índice en memoria.", activas::size);
+    }
+
+    /** Carga inicial (desde la instantánea); no cuenta como escritura local. */
+    synchronized void cargar(Collection<AlertaDefinicion> alertas) {
+        for (AlertaDefinicion alerta : alertas) {
+            activas.put(alerta.idAlertaDB, alerta);
+        }
+    }
+
+    synchronized void poner(AlertaDefinicion alerta) {
+        activas.put(alerta.idAlertaDB, alerta);
+        escriturasLocales.put(alerta.idAlertaDB, System.nanoTime());
+    }
+
+    /** @return Las alertas quitadas que estaban en el índice. */
+    synchronized List<AlertaDefinicion> quitar(Collection<String> idsAlerta) {
+        long ahora = System.nanoTime();
+        List<AlertaDefinicion> quitadas = new ArrayList<>();
+        for (String id : idsAlerta) {
+            AlertaDefinicion quitada = activas.remove(id);
+            if (quitada != null) {
+                quitadas.add(quitada);
+            }
+            escriturasLocales.put(id, ahora);
+        }
+        return quitadas;
+    }
+
+    synchronized void modificar(String idAlerta, double nuevoUmbral, String nuevoTipo) {
+        AlertaDefinicion actual = activas.get(idAlerta);
+        if (actual != null) {
+            activas.put(idAlerta, actual.conCondicion(nuevoUmbral, nuevoTipo));
+        }
+        escriturasLocales.put(idAlerta, System.nanoTime());
+    }
+
+    /** Copia de las alertas activas. */
+    List<AlertaDefinicion> activas() {
+        return new ArrayList<>(activas.values());
+    }
+
+    /** Símbolos con al menos una alerta activa. */
+    Set<String> simbolos() {
+        Set<String> simbolos = new HashSet<>();
+        for (AlertaDefinicion alerta : activas.values()) {
+            simbolos.add(alerta.criptomoneda);
+        }
+        return simbolos;
+    }
+
+    int tamano() {
+        return activas.size();
+    }
+
+    /**
+     * Aplica al índice las diferencias con las alertas activas leídas de la BD.
+     *
+     * @param desdeBD        Alertas activas según la BD.
+     * @param inicioConsulta System.nanoTime() de antes de lanzar la consulta.
+     * @return Cantidad de alertas agregadas, modificadas o quitadas.
+     */
+    synchronized int reconciliar(List<AlertaDefinicion> desdeBD, long inicioConsulta) {
+        int cambios = 0;
+        Set<String> idsEnBD = new HashSet<>();
+        for (AlertaDefinicion alerta : desdeBD) {
+            idsEnBD.add(alerta.idAlertaDB);
+            if (escritaDespuesDe(alerta.idAlertaDB, inicioConsulta)) {
+                continue;
+            }
+            AlertaDefinicion actual = activas.get(alerta.idAlertaDB);
+            if (actual == null || !actual.mismaDefinicion(alerta)) {
+                activas.put(alerta.idAlertaDB, alerta);
+                cambios++;
+            }
+        }
+        for (String id : new ArrayList<>(activas.keySet())) {
+            if (!idsEnBD.contains(id) && !escritaDespuesDe(id, inicioConsulta)) {
+                activas.remove(id);
+                cambios++;
+            }
+        }
+        // Las escrituras anteriores a la consulta ya están reflejadas en la BD
+        escriturasLocales.values().removeIf(instante -> instante - inicioConsulta < 0);
+        return cambios;
+    }
+
+    private boolean escritaDespuesDe(String idAlerta, long instante) {
+        Long escritura = escriturasLocales.get(idAlerta);
+        return escritura != null && escritura - instante >= 0;
+    }
+}
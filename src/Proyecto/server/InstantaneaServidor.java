@@ -0,0 +1,195 @@
+package server;
+
+import common.Cripto;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Instantánea binaria de la caché de precios y de las alertas activas, en un archivo
+ * mapeado en memoria, para que un servidor reiniciado (o el respaldo) responda con datos
+ * tibios desde el primer momento en lugar de esperar a CoinGecko y a MySQL.
+ *
+ * Formato (big-endian):
+ * <pre>
+ * cabecera: int magia, int versión de formato, long creada (ms), int largo del cuerpo, int 0, long CRC32 del cuerpo
+ * cuerpo:   int n, n × (str símbolo, str moneda, double precio, long ts fuente, long ts obtención)
+ *           int m, m × (int id, str usuario, str símbolo, double umbral, str tipo, int ventana)
+ * str:      short largo + bytes UTF-8
+ * </pre>
+ *
+ * La escritura deja la magia en 0 mientras escribe y la pone al final, después de forzar
+ * el cuerpo a disco: una escritura interrumpida deja un archivo que se ignora (arranque en
+ * frío), nunca uno a medias. El archivo no se trunca, porque en Windows no se puede achicar
+ * un archivo con un mapeo abierto; los bytes tras el cuerpo no se leen.
+ */
+public class InstantaneaServidor {
+
+    private static final Logger log = LogAsincrono.obtener(InstantaneaServidor.class);
+
+    private static final int MAGIA = 0x43524950; // "CRIP"
+    private static final int VERSION_FORMATO = 1;
+    private static final int LARGO_CABECERA = 32;
+
+    /** Contenido leído de una instantánea. */
+    public static final class Contenido {
+        final long creadaMillis;
+        final List<Cripto> cotizaciones;
+        final List<AlertaDefinicion> alertas;
+
+        Contenido(long creadaMillis, List<Cripto> cotizaciones, List<AlertaDefinicion> alertas) {
+            this.creadaMillis = creadaMillis;
+            this.cotizaciones = cotizaciones;
+            this.alertas = alertas;
+        }
+    }
+
+    private final Path archivo;
+
+    public InstantaneaServidor(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    public Path getArchivo() {
+        return archivo;
+    }
+
+    /**
+     * Escribe la instantánea con las cotizaciones de la caché en todas sus monedas y las alertas dadas.
+     */
+    public synchronized void guardar(CachePrecios cache, List<String> monedas, Collection<AlertaDefinicion> alertas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream cuerpo = new DataOutputStream(bytes);
+
+        List<Cripto> cotizaciones = new ArrayList<>();
+        for (String moneda : monedas) {
+            cache.forEach(moneda, (simbolo, cripto) -> cotizaciones.add(cripto));
+        }
+        cuerpo.writeInt(cotizaciones.size());
+        for (Cripto cripto : cotizaciones) {
+            escribirTexto(cuerpo, cripto.getSimbolo());
+            escribirTexto(cuerpo, cripto.getMoneda());
+            cuerpo.writeDouble(cripto.getPrecio());
+            cuerpo.writeLong(cripto.getTimestampFuente());
+            cuerpo.writeLong(cripto.getTimestampObtencion());
+        }
+        cuerpo.writeInt(alertas.size());
+        for (AlertaDefinicion alerta : alertas) {
+            cuerpo.writeInt(Integer.parseInt(alerta.idAlertaDB));
+            escribirTexto(cuerpo, alerta.idUsuario);
+            escribirTexto(cuerpo, alerta.criptomoneda);
+            cuerpo.writeDouble(alerta.precioUmbral);
+            escribirTexto(cuerpo, alerta.tipoCondicion);
+            cuerpo.writeInt(alerta.ventana);
+        }
+        cuerpo.flush();
+        byte[] datos = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, LARGO_CABECERA + datos.length);
+            mapa.putInt(0, 0); // Inválida mientras se escribe
+            mapa.force();
+            mapa.put(LARGO_CABECERA, datos);
+            mapa.putInt(4, VERSION_FORMATO);
+            mapa.putLong(8, System.currentTimeMillis());
+            mapa.putInt(16, datos.length);
+            mapa.putInt(20, 0);
+            mapa.putLong(24, crc.getValue());
+            mapa.force();
+            mapa.putInt(0, MAGIA);
+            mapa.force();
+        }
+        log.debug("Instantánea guardada en {}: {} cotizaciones y {} alertas ({} bytes).",
+                archivo, cotizaciones.size(), alertas.size(), LARGO_CABECERA + datos.length);
+    }
+
+    /**
+     * Lee la instantánea del archivo.
+     *
+     * @return El contenido, o null si no existe o no es válida (falta, formato distinto o CRC incorrecto).
+     */
+    public Contenido cargar() {
+        if (!Files.isRegularFile(archivo)) {
+            return null;
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < LARGO_CABECERA) {
+                return null;
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+            if (mapa.getInt(0) != MAGIA || mapa.getInt(4) != VERSION_FORMATO) {
+                log.warn("Instantánea {} ignorada: formato desconocido o escritura incompleta.", archivo);
+                return null;
+            }
+            long creada = mapa.getLong(8);
+            int largo = mapa.getInt(16);
+            if (largo < 0 || LARGO_CABECERA + (long) largo > tamano) {
+                log.warn("Instantánea {} ignorada: largo de cuerpo inválido.", archivo);
+                return null;
+            }
+            ByteBuffer cuerpo = mapa.slice(LARGO_CABECERA, largo);
+            CRC32 crc = new CRC32();
+            crc.update(cuerpo.duplicate());
+            if (crc.getValue() != mapa.getLong(24)) {
+                log.warn("Instantánea {} ignorada: CRC incorrecto.", archivo);
+                return null;
+            }
+
+            int n = cuerpo.getInt();
+            List<Cripto> cotizaciones = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String simbolo = leerTexto(cuerpo);
+                String moneda = leerTexto(cuerpo);
+                double precio = cuerpo.getDouble();
+                long tsFuente = cuerpo.getLong();
+                long tsObtencion = cuerpo.getLong();
+                cotizaciones.add(new Cripto(simbolo, moneda, precio, tsFuente, tsObtencion, 0L));
+            }
+            int m = cuerpo.getInt();
+            List<AlertaDefinicion> alertas = new ArrayList<>(m);
+            for (int i = 0; i < m; i++) {
+                String id = String.valueOf(cuerpo.getInt());
+                String usuario = leerTexto(cuerpo);
+                String simbolo = leerTexto(cuerpo);
+                double umbral = cuerpo.getDouble();
+                String tipo = leerTexto(cuerpo);
+                int ventana = cuerpo.getInt();
+                alertas.add(new AlertaDefinicion(id, usuario, simbolo, umbral, tipo, ventana, true));
+            }
+            return new Contenido(creada, cotizaciones, alertas);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("No se pudo leer la instantánea {}: {}", archivo, e.toString());
+            return null;
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeShort(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static String leerTexto(ByteBuffer entrada) {
+        byte[] bytes = new byte[entrada.getShort() & 0xFFFF];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
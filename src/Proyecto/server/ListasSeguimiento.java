@@ -0,0 +1,154 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listas de seguimiento de los usuarios (tabla {@code listas_seguimiento}), en memoria.
+ *
+ * Los símbolos seguidos por cualquier usuario forman parte de la demanda del actualizador de
+ * precios: se refrescan en la misma petición por lotes a CoinGecko que los símbolos con
+ * alertas, así la lista de un usuario se responde entera desde la caché.
+ *
+ * Las altas y bajas escriben primero en la BD y luego en memoria. Una tarea de fondo recarga
+ * todo desde la BD para ver los cambios hechos en el otro servidor; si mientras tanto hubo una
+ * escritura local, esa recarga se descarta y se aplica la siguiente.
+ */
+class ListasSeguimiento {
+
+    private static final Logger log = LogAsincrono.obtener(ListasSeguimiento.class);
+
+    static final int MAX_POR_USUARIO = 100;
+
+    private volatile Map<String, Set<String>> porUsuario = new ConcurrentHashMap<>(); // nombre_usuario -> símbolos
+    private final AtomicLong escrituras = new AtomicLong();
+    private final EjecutorTareas ejecutor;
+
+    ListasSeguimiento(EjecutorTareas ejecutor) {
+        this.ejecutor = ejecutor;
+        Metricas.REGISTRO.indicador("cripto_seguimiento_simbolos", "Símbolos distintos en las listas de seguimiento.",
+                () -> simbolos().size());
+    }
+
+    /** Símbolos de la lista del usuario, ordenados. */
+    Set<String> de(String nombreUsuario) {
+        Set<String> simbolos = porUsuario.get(nombreUsuario);
+        return simbolos == null ? Collections.emptySet() : new TreeSet<>(simbolos);
+    }
+
+    /** Símbolos seguidos por al menos un usuario. */
+    Set<String> simbolos() {
+        Set<String> simbolos = new HashSet<>();
+        for (Set<String> delUsuario : porUsuario.values()) {
+            simbolos.addAll(delUsuario);
+        }
+        return simbolos;
+    }
+
+    /**
+     * Agrega el símbolo a la lista del usuario (creando el usuario si no existe).
+     *
+     * @return false si el símbolo ya estaba en la lista.
+     * @throws IllegalArgumentException Si la criptomoneda no existe o la lista está llena.
+     */
+    boolean agregar(String nombreUsuario, String simbolo) throws SQLException {
+        Set<String> actuales = de(nombreUsuario);
+        if (!actuales.contains(simbolo) && actuales.size() >= MAX_POR_USUARIO) {
+            throw new IllegalArgumentException("La lista de seguimiento admite como máximo " + MAX_POR_USUARIO + " criptomonedas.");
+        }
+        escrituras.incrementAndGet();
+        int insertadas = ejecutor.conPermisoDB(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                try (PreparedStatement pstmt = conn.prepareStatement("INSERT IGNORE INTO usuarios (nombre_usuario) VALUES (?)")) {
+                    pstmt.setString(1, nombreUsuario);
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM criptomonedas WHERE simbolo = ?")) {
+                    pstmt.setString(1, simbolo);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new IllegalArgumentException("Criptomoneda '" + simbolo + "' no encontrada en la base de datos.");
+                        }
+                    }
+                }
+                String sql = "INSERT IGNORE INTO listas_seguimiento (id_usuario_fk, id_cripto_fk) " +
+                        "SELECT u.id_usuario, c.id_cripto FROM usuarios u, criptomonedas c " +
+                        "WHERE u.nombre_usuario = ? AND c.simbolo = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, nombreUsuario);
+                    pstmt.setString(2, simbolo);
+                    return pstmt.executeUpdate();
+                }
+            }
+        });
+        porUsuario.computeIfAbsent(nombreUsuario, u -> ConcurrentHashMap.newKeySet()).add(simbolo);
+        return insertadas > 0;
+    }
+
+    /** @return false si el símbolo no estaba en la lista. */
+    boolean quitar(String nombreUsuario, String simbolo) throws SQLException {
+        escrituras.incrementAndGet();
+        int borradas = ejecutor.conPermisoDB(() -> {
+            String sql = "DELETE ls FROM listas_seguimiento ls " +
+                    "JOIN usuarios u ON ls.id_usuario_fk = u.id_usuario " +
+                    "JOIN criptomonedas c ON ls.id_cripto_fk = c.id_cripto " +
+                    "WHERE u.nombre_usuario = ? AND c.simbolo = ?";
+            try (Connection conn = DatabaseManager.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, nombreUsuario);
+                pstmt.setString(2, simbolo);
+                return pstmt.executeUpdate();
+            }
+        });
+        Set<String> simbolos = porUsuario.get(nombreUsuario);
+        if (simbolos != null) {
+            simbolos.remove(simbolo);
+        }
+        return borradas > 0;
+    }
+
+    /** Reemplaza las listas en memoria por las de la BD, salvo que haya habido escrituras locales durante la lectura. */
+    void recargar() throws SQLException {
+        long escriturasAntes = escrituras.get();
+        Map<String, Set<String>> desdeBD = ejecutor.conPermisoDB(this::leerDeBD);
+        if (escrituras.get() != escriturasAntes) {
+            log.debug("Recarga de listas de seguimiento descartada: hubo escrituras durante la lectura.");
+            return;
+        }
+        Map<String, Set<String>> nuevas = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Set<String>> entrada : desdeBD.entrySet()) {
+            Set<String> simbolos = ConcurrentHashMap.newKeySet();
+            simbolos.addAll(entrada.getValue());
+            nuevas.put(entrada.getKey(), simbolos);
+        }
+        porUsuario = nuevas;
+    }
+
+    private Map<String, Set<String>> leerDeBD() throws SQLException {
+        String sql = "SELECT u.nombre_usuario, c.simbolo FROM listas_seguimiento ls " +
+                "JOIN usuarios u ON ls.id_usuario_fk = u.id_usuario " +
+                "JOIN criptomonedas c ON ls.id_cripto_fk = c.id_cripto";
+        Map<String, Set<String>> listas = new HashMap<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                listas.computeIfAbsent(rs.getString("nombre_usuario"), u -> new HashSet<>()).add(rs.getString("simbolo").toUpperCase());
+            }
+        }
+        return listas;
+    }
+}
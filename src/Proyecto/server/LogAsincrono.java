@@ -0,0 +1,234 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MarkerIgnoringBase;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logger slf4j del servidor con escritura asíncrona.
+ *
+ * - El nivel se decide antes de hacer nada: un mensaje bajo el nivel configurado
+ *   ({@code cripto.log.nivel}, por defecto INFO) no cuesta más que una comparación.
+ * - Un mensaje que sí pasa solo guarda el formato y sus argumentos en un anillo acotado
+ *   (sin bloqueos); el texto final ({@code {}} reemplazados, hora, hilo) lo arma y lo
+ *   escribe un único hilo de fondo. Así las llamadas RMI no compiten por el bloqueo de System.out.
+ * - Bajo sobrecarga (anillo sobre 3/4 de su capacidad) los mensajes DEBUG/INFO se muestrean,
+ *   y si el anillo está lleno se descartan; WARN y ERROR solo se pierden con el anillo lleno.
+ *   Los descartes se cuentan en {@code cripto_log_descartados_total}.
+ *
+ * WARN y ERROR salen por System.err; el resto por System.out.
+ */
+public final class LogAsincrono extends MarkerIgnoringBase {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int TRACE = 0;
+    private static final int DEBUG = 1;
+    private static final int INFO = 2;
+    private static final int WARN = 3;
+    private static final int ERROR = 4;
+    private static final int OFF = 5;
+    private static final String[] NOMBRES_NIVEL = {"TRACE", "DEBUG", "INFO ", "WARN ", "ERROR"};
+
+    private static final int NIVEL = nivelConfigurado(System.getProperty("cripto.log.nivel", "INFO"));
+    private static final int CAPACIDAD = potenciaDeDos(Integer.getInteger("cripto.log.capacidad", 8192));
+    private static final int MASCARA = CAPACIDAD - 1;
+    private static final int UMBRAL_MUESTREO = CAPACIDAD - CAPACIDAD / 4;
+    private static final int MUESTREO_UNO_DE = 16;
+    private static final long ESPERA_VACIO_NANOS = 1_000_000L;
+
+    private static final DateTimeFormatter FORMATO_HORA =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    /** Mensaje pendiente de formatear. */
+    private static final class Evento {
+        final int nivel;
+        final long timestamp;
+        final String hilo;
+        final String logger;
+        final String formato;
+        final Object[] argumentos;
+        final Throwable error;
+
+        Evento(int nivel, String logger, String formato, Object[] argumentos, Throwable error) {
+            this.nivel = nivel;
+            this.timestamp = System.currentTimeMillis();
+            this.hilo = Thread.currentThread().getName();
+            this.logger = logger;
+            this.formato = formato;
+            this.argumentos = argumentos;
+            this.error = error;
+        }
+    }
+
+    // Anillo con varios productores y un consumidor: 'cola' es la próxima posición a reservar
+    // y 'cabeza' la próxima a leer (solo la avanza el hilo escritor).
+    private static final AtomicReferenceArray<Evento> ANILLO = new AtomicReferenceArray<>(CAPACIDAD);
+    private static final AtomicLong COLA = new AtomicLong();
+    private static volatile long cabeza = 0;
+    private static final AtomicLong contadorMuestreo = new AtomicLong();
+
+    private static final Contador DESCARTADOS = Metricas.REGISTRO.contador("cripto_log_descartados_total",
+            "Mensajes de log descartados o muestreados por sobrecarga.");
+
+    static {
+        Metricas.REGISTRO.indicador("cripto_log_pendientes", "Mensajes de log en espera de ser escritos.",
+                () -> COLA.get() - cabeza);
+        Thread escritor = new Thread(LogAsincrono::bucleEscritura, "LogWriterThread");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /** Logger para la clase dada (se nombra con su nombre simple). */
+    public static Logger obtener(Class<?> clase) {
+        return LOGGERS.computeIfAbsent(clase.getSimpleName(), LogAsincrono::new);
+    }
+
+    /**
+     * Espera, como máximo hasta el instante límite (nanoTime), a que se escriban los mensajes pendientes.
+     */
+    public static void vaciar(long limiteNanos) {
+        while (cabeza < COLA.get() && System.nanoTime() < limiteNanos) {
+            LockSupport.parkNanos(ESPERA_VACIO_NANOS);
+        }
+        System.out.flush();
+        System.err.flush();
+    }
+
+    private LogAsincrono(String nombre) {
+        this.name = nombre;
+    }
+
+    private void publicar(int nivel, String formato, Object[] argumentos, Throwable error) {
+        long pos;
+        do {
+            pos = COLA.get();
+            long ocupados = pos - cabeza;
+            if (ocupados >= CAPACIDAD
+                    || (nivel < WARN && ocupados >= UMBRAL_MUESTREO && contadorMuestreo.getAndIncrement() % MUESTREO_UNO_DE != 0)) {
+                DESCARTADOS.incrementar();
+                return;
+            }
+        } while (!COLA.compareAndSet(pos, pos + 1));
+        ANILLO.set((int) (pos & MASCARA), new Evento(nivel, name, formato, argumentos, error));
+    }
+
+    private static void bucleEscritura() {
+        StringBuilder sb = new StringBuilder(256);
+        while (true) {
+            long pos = cabeza;
+            int indice = (int) (pos & MASCARA);
+            Evento evento = ANILLO.get(indice);
+            if (evento == null) {
+                // Anillo vacío, o el productor reservó la posición y aún no escribe el evento
+                if (pos == COLA.get()) {
+                    System.out.flush();
+                    System.err.flush();
+                }
+                LockSupport.parkNanos(ESPERA_VACIO_NANOS);
+                continue;
+            }
+            ANILLO.set(indice, null);
+            cabeza = pos + 1;
+            try {
+                escribir(evento, sb);
+            } catch (RuntimeException e) {
+                // Un toString() de argumento que falla no debe detener el hilo escritor
+                System.err.println("[LogAsincrono] Error al formatear un mensaje de " + evento.logger + ": " + e);
+            }
+        }
+    }
+
+    private static void escribir(Evento evento, StringBuilder sb) {
+        // Sin excepción explícita, slf4j toma como excepción un Throwable en el último argumento
+        FormattingTuple tupla = evento.error == null
+                ? MessageFormatter.arrayFormat(evento.formato, evento.argumentos)
+                : MessageFormatter.arrayFormat(evento.formato, evento.argumentos, evento.error);
+        sb.setLength(0);
+        FORMATO_HORA.formatTo(Instant.ofEpochMilli(evento.timestamp), sb);
+        sb.append(' ').append(NOMBRES_NIVEL[evento.nivel])
+                .append(" [").append(evento.hilo).append("] ")
+                .append(evento.logger).append(" - ")
+                .append(tupla.getMessage());
+        PrintStream salida = evento.nivel >= WARN ? System.err : System.out;
+        salida.println(sb);
+        if (tupla.getThrowable() != null) {
+            tupla.getThrowable().printStackTrace(salida);
+        }
+    }
+
+    private static int nivelConfigurado(String valor) {
+        switch (valor.trim().toUpperCase(Locale.ROOT)) {
+            case "TRACE": return TRACE;
+            case "DEBUG": return DEBUG;
+            case "INFO": return INFO;
+            case "WARN": return WARN;
+            case "ERROR": return ERROR;
+            case "OFF": return OFF;
+            default:
+                System.err.println("[LogAsincrono] Nivel de log desconocido '" + valor + "', se usa INFO.");
+                return INFO;
+        }
+    }
+
+    private static int potenciaDeDos(int valor) {
+        return Integer.highestOneBit(Math.max(64, valor - 1)) << 1;
+    }
+
+    // --- Implementación de org.slf4j.Logger ---
+
+    private void log(int nivel, String formato, Object[] argumentos, Throwable error) {
+        if (nivel >= NIVEL) {
+            publicar(nivel, formato, argumentos, error);
+        }
+    }
+
+    @Override public boolean isTraceEnabled() { return TRACE >= NIVEL; }
+    @Override public void trace(String msg) { log(TRACE, msg, null, null); }
+    @Override public void trace(String format, Object arg) { if (TRACE >= NIVEL) publicar(TRACE, format, new Object[]{arg}, null); }
+    @Override public void trace(String format, Object arg1, Object arg2) { if (TRACE >= NIVEL) publicar(TRACE, format, new Object[]{arg1, arg2}, null); }
+    @Override public void trace(String format, Object... arguments) { log(TRACE, format, arguments, null); }
+    @Override public void trace(String msg, Throwable t) { log(TRACE, msg, null, t); }
+
+    @Override public boolean isDebugEnabled() { return DEBUG >= NIVEL; }
+    @Override public void debug(String msg) { log(DEBUG, msg, null, null); }
+    @Override public void debug(String format, Object arg) { if (DEBUG >= NIVEL) publicar(DEBUG, format, new Object[]{arg}, null); }
+    @Override public void debug(String format, Object arg1, Object arg2) { if (DEBUG >= NIVEL) publicar(DEBUG, format, new Object[]{arg1, arg2}, null); }
+    @Override public void debug(String format, Object... arguments) { log(DEBUG, format, arguments, null); }
+    @Override public void debug(String msg, Throwable t) { log(DEBUG, msg, null, t); }
+
+    @Override public boolean isInfoEnabled() { return INFO >= NIVEL; }
+    @Override public void info(String msg) { log(INFO, msg, null, null); }
+    @Override public void info(String format, Object arg) { if (INFO >= NIVEL) publicar(INFO, format, new Object[]{arg}, null); }
+    @Override public void info(String format, Object arg1, Object arg2) { if (INFO >= NIVEL) publicar(INFO, format, new Object[]{arg1, arg2}, null); }
+    @Override public void info(String format, Object... arguments) { log(INFO, format, arguments, null); }
+    @Override public void info(String msg, Throwable t) { log(INFO, msg, null, t); }
+
+    @Override public boolean isWarnEnabled() { return WARN >= NIVEL; }
+    @Override public void warn(String msg) { log(WARN, msg, null, null); }
+    @Override public void warn(String format, Object arg) { if (WARN >= NIVEL) publicar(WARN, format, new Object[]{arg}, null); }
+    @Override public void warn(String format, Object arg1, Object arg2) { if (WARN >= NIVEL) publicar(WARN, format, new Object[]{arg1, arg2}, null); }
+    @Override public void warn(String format, Object... arguments) { log(WARN, format, arguments, null); }
+    @Override public void warn(String msg, Throwable t) { log(WARN, msg, null, t); }
+
+    @Override public boolean isErrorEnabled() { return ERROR >= NIVEL; }
+    @Override public void error(String msg) { log(ERROR, msg, null, null); }
+    @Override public void error(String format, Object arg) { if (ERROR >= NIVEL) publicar(ERROR, format, new Object[]{arg}, null); }
+    @Override public void error(String format, Object arg1, Object arg2) { if (ERROR >= NIVEL) publicar(ERROR, format, new Object[]{arg1, arg2}, null); }
+    @Override public void error(String format, Object... arguments) { log(ERROR, format, arguments, null); }
+    @Override public void error(String msg, Throwable t) { log(ERROR, msg, null, t); }
+}
@@ -0,0 +1,109 @@
+package server;
+
+import common.EstadisticasSockets;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catálogo de las métricas del servidor de precios, sobre un único {@link RegistroMetricas}.
+ * Las métricas fijas se crean una sola vez aquí; las que dependen del método RMI se
+ * resuelven con {@link #rpc(String)}.
+ */
+public final class Metricas {
+
+    public static final RegistroMetricas REGISTRO = new RegistroMetricas();
+
+    // --- Caché de precios ---
+    public static final Contador CACHE_ACIERTOS = REGISTRO.contador("cripto_cache_aciertos_total",
+            "Consultas de precio respondidas desde la caché.");
+    public static final Contador CACHE_FALLOS = REGISTRO.contador("cripto_cache_fallos_total",
+            "Consultas de precio que no encontraron un valor fresco en la caché.");
+    public static final Contador CACHE_DESALOJOS = REGISTRO.contador("cripto_cache_desalojos_total",
+            "Símbolos fríos desalojados de la caché por superar el presupuesto.");
+
+    // --- CoinGecko ---
+    public static final Contador COINGECKO_PETICIONES = REGISTRO.contador("cripto_coingecko_peticiones_total",
+            "Peticiones HTTP realizadas a CoinGecko.");
+    public static final Contador COINGECKO_ERRORES = REGISTRO.contador("cripto_coingecko_errores_total",
+            "Peticiones a CoinGecko que fallaron (red, parseo o código distinto de 200).");
+    public static final Contador COINGECKO_SIN_CAMBIOS = REGISTRO.contador("cripto_coingecko_sin_cambios_total",
+            "Respuestas de CoinGecko servidas por la caché HTTP o revalidadas con 304 (sin parsear el JSON).");
+    public static final Contador COINGECKO_COTIZACIONES = REGISTRO.contador("cripto_coingecko_cotizaciones_total",
+            "Cotizaciones (símbolo, moneda) recibidas de CoinGecko.");
+    public static final Contador COINGECKO_SIN_PERMISO = REGISTRO.contador("cripto_coingecko_sin_permiso_total",
+            "Peticiones a CoinGecko rechazadas por no obtener permiso a tiempo (compartimento lleno).");
+    public static final HistogramaLatencia COINGECKO_LATENCIA = REGISTRO.histograma("cripto_coingecko_latencia_segundos",
+            "Latencia de las peticiones a CoinGecko.");
+
+    // --- MySQL ---
+    public static final Contador DB_OPERACIONES = REGISTRO.contador("cripto_db_operaciones_total",
+            "Operaciones JDBC ejecutadas.");
+    public static final Contador DB_ERRORES = REGISTRO.contador("cripto_db_errores_total",
+            "Operaciones JDBC que terminaron con excepción.");
+    public static final HistogramaLatencia DB_LATENCIA = REGISTRO.histograma("cripto_db_latencia_segundos",
+            "Latencia de las operaciones JDBC (sin contar la espera por permiso).");
+    public static final Contador DB_SIN_PERMISO = REGISTRO.contador("cripto_db_sin_permiso_total",
+            "Operaciones JDBC rechazadas por no obtener permiso a tiempo (compartimento lleno).");
+    public static final HistogramaLatencia DB_CONEXION_LATENCIA = REGISTRO.histograma("cripto_db_conexion_latencia_segundos",
+            "Tiempo para abrir una conexión JDBC.");
+    public static final Contador DB_CONEXION_ERRORES = REGISTRO.contador("cripto_db_conexion_errores_total",
+            "Intentos fallidos de abrir una conexión JDBC.");
+
+    // --- Historial ---
+    public static final Contador HISTORIAL_GUARDADAS = REGISTRO.contador("cripto_historial_guardadas_total",
+            "Cotizaciones insertadas en historial_precios.");
+    public static final Contador HISTORIAL_DESCARTADAS = REGISTRO.contador("cripto_historial_descartadas_total",
+            "Cotizaciones descartadas por cola de historial llena.");
+
+    // --- Verificador de alertas ---
+    public static final Contador ALERTAS_CICLOS = REGISTRO.contador("cripto_alertas_ciclos_total",
+            "Ciclos ejecutados por el verificador de alertas.");
+    public static final Contador ALERTAS_EVALUADAS = REGISTRO.contador("cripto_alertas_evaluadas_total",
+            "Alertas evaluadas contra el precio en caché.");
+    public static final Contador ALERTAS_DISPARADAS = REGISTRO.contador("cripto_alertas_disparadas_total",
+            "Alertas cuya condición se cumplió.");
+    public static final HistogramaLatencia ALERTAS_DURACION_CICLO = REGISTRO.histograma("cripto_alertas_duracion_ciclo_segundos",
+            "Duración de cada ciclo del verificador de alertas.");
+
+    // --- Sockets RMI (con FabricaSocketsRmi) ---
+    static {
+        REGISTRO.indicador("cripto_rmi_conexiones_abiertas", "Conexiones RMI abiertas.",
+                EstadisticasSockets::conexionesAbiertas);
+        REGISTRO.indicador("cripto_rmi_conexiones_total", "Conexiones RMI abiertas desde el arranque.",
+                EstadisticasSockets::conexionesTotales);
+        REGISTRO.indicador("cripto_rmi_bytes_enviados_total", "Bytes RMI enviados por la red.",
+                EstadisticasSockets::bytesEnviadosRed);
+        REGISTRO.indicador("cripto_rmi_bytes_recibidos_total", "Bytes RMI recibidos por la red.",
+                EstadisticasSockets::bytesRecibidosRed);
+        REGISTRO.indicador("cripto_rmi_bytes_enviados_sin_comprimir_total", "Bytes RMI enviados, antes de comprimir.",
+                EstadisticasSockets::bytesEnviadosSinComprimir);
+        REGISTRO.indicador("cripto_rmi_bytes_recibidos_sin_comprimir_total", "Bytes RMI recibidos, después de descomprimir.",
+                EstadisticasSockets::bytesRecibidosSinComprimir);
+        REGISTRO.indicador("cripto_rmi_bloques_comprimidos_total", "Bloques RMI enviados comprimidos.",
+                EstadisticasSockets::bloquesComprimidos);
+    }
+
+    /** Métricas de un método RMI. */
+    public static final class MetricasRpc {
+        public final Contador llamadas;
+        public final Contador errores;
+        public final HistogramaLatencia latencia;
+
+        private MetricasRpc(String metodo) {
+            String etiqueta = "metodo=\"" + metodo + "\"";
+            this.llamadas = REGISTRO.contador("cripto_rpc_llamadas_total", "Llamadas RMI recibidas.", etiqueta);
+            this.errores = REGISTRO.contador("cripto_rpc_errores_total", "Llamadas RMI que terminaron con excepción.", etiqueta);
+            this.latencia = REGISTRO.histograma("cripto_rpc_latencia_segundos", "Latencia de las llamadas RMI.", etiqueta);
+        }
+    }
+
+    private static final Map<String, MetricasRpc> POR_METODO = new ConcurrentHashMap<>();
+
+    public static MetricasRpc rpc(String metodo) {
+        return POR_METODO.computeIfAbsent(metodo, MetricasRpc::new);
+    }
+
+    private Metricas() {
+    }
+}
@@ -0,0 +1,96 @@
+package server;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Expone el {@link RegistroMetricas} como un MBean dinámico de solo lectura, para verlo
+ * con JConsole o VisualVM sin configurar nada más. Cada contador, indicador y resumen de
+ * histograma aparece como un atributo numérico.
+ */
+public class MetricasMBean implements DynamicMBean {
+
+    private final RegistroMetricas registro;
+
+    public MetricasMBean(RegistroMetricas registro) {
+        this.registro = registro;
+    }
+
+    /**
+     * Registra el MBean en el servidor de plataforma como {@code server:type=Metricas,name=<nombre>}.
+     * Un fallo solo se informa: el servidor RMI funciona igual sin JMX.
+     */
+    public static void registrar(RegistroMetricas registro, String nombre) {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("server:type=Metricas,name=" + ObjectName.quote(nombre));
+            mbs.registerMBean(new MetricasMBean(registro), objectName);
+            System.out.println("[Metricas] MBean registrado en JMX: " + objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            // Ya registrado en esta JVM
+        } catch (JMException e) {
+            System.err.println("[Metricas] No se pudo registrar el MBean de métricas: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String atributo) throws AttributeNotFoundException {
+        Number valor = registro.valores().get(atributo);
+        if (valor == null) {
+            throw new AttributeNotFoundException(atributo);
+        }
+        return valor;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] atributos) {
+        Map<String, Number> valores = registro.valores();
+        AttributeList lista = new AttributeList();
+        for (String atributo : atributos) {
+            Number valor = valores.get(atributo);
+            if (valor != null) {
+                lista.add(new Attribute(atributo, valor));
+            }
+        }
+        return lista;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Las métricas son de solo lectura: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("El MBean de métricas no tiene operaciones.");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        // Las series se crean de forma perezosa, así que la lista de atributos se arma en cada consulta
+        Map<String, Number> valores = registro.valores();
+        MBeanAttributeInfo[] atributos = new MBeanAttributeInfo[valores.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> entrada : valores.entrySet()) {
+            atributos[i++] = new MBeanAttributeInfo(entrada.getKey(), entrada.getValue().getClass().getName(),
+                    entrada.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Métricas del servidor de precios de criptomonedas.",
+                atributos, null, null, null);
+    }
+}
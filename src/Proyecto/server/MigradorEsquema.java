@@ -0,0 +1,228 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migraciones versionadas del esquema de MySQL, aplicadas al arrancar el servidor.
+ *
+ * La tabla {@code esquema_version} guarda qué migraciones ya se aplicaron; al arrancar se
+ * aplican, en orden, las que falten. El servidor principal y el de respaldo comparten la BD,
+ * así que se toma un bloqueo con nombre ({@code GET_LOCK}) mientras se migra.
+ *
+ * En MySQL el DDL no es transaccional: si una migración se corta a la mitad, al reintentarla
+ * los errores de "ya existe" (tabla, columna o índice) cuentan como pasos ya aplicados.
+ * Lo mismo pasa en una base creada con los scripts de {@code server/db}, que ya traen el esquema final.
+ */
+public final class MigradorEsquema {
+
+    private static final Logger log = LogAsincrono.obtener(MigradorEsquema.class);
+
+    private static final String BLOQUEO = "cripto_monitor_esquema";
+    private static final int ESPERA_BLOQUEO_SEGUNDOS = 60;
+    // Tabla ya existe, columna duplicada, índice duplicado, no se puede borrar (no existe)
+    private static final Set<Integer> ERRORES_YA_APLICADO = Set.of(1050, 1060, 1061, 1091);
+
+    /** Paso de una migración, sobre una conexión con autocommit. */
+    @FunctionalInterface
+    interface Paso {
+        void aplicar(Connection conn) throws SQLException;
+    }
+
+    private static final class Migracion {
+        final int version;
+        final String descripcion;
+        final Paso paso;
+
+        Migracion(int version, String descripcion, Paso paso) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.paso = paso;
+        }
+    }
+
+    private static final List<Migracion> MIGRACIONES = List.of(
+            new Migracion(1, "Columna alertas.ventana (alertas estadísticas)",
+                    sql("ALTER TABLE alertas ADD COLUMN ventana INT NULL AFTER tipo_condicion")),
+            new Migracion(2, "Índice cubriente para el verificador de alertas activas",
+                    sql("CREATE INDEX idx_alertas_activa ON alertas (activa, id_cripto_fk, id_usuario_fk, precio_umbral, tipo_condicion, ventana)")),
+            new Migracion(3, "Índice cubriente para las alertas de un usuario",
+                    sql("CREATE INDEX idx_alertas_usuario ON alertas (id_usuario_fk, activa, id_cripto_fk, precio_umbral, tipo_condicion, ventana)")),
+            new Migracion(4, "Índice cubriente para el último precio por cripto y moneda",
+                    sql("CREATE INDEX idx_historial_ultimo ON historial_precios (id_cripto_fk, moneda_cotizacion, timestamp_precio, precio)")),
+            new Migracion(5, "historial_precios: clave BIGINT y particiones mensuales por timestamp_precio",
+                    MigradorEsquema::particionarHistorial),
+            new Migracion(6, "Tabla precios_actuales (último precio por cripto y moneda)",
+                    sql("CREATE TABLE precios_actuales (" +
+                                    "id_cripto_fk INT NOT NULL, " +
+                                    "moneda_cotizacion VARCHAR(10) NOT NULL, " +
+                                    "precio DECIMAL(20, 8) NOT NULL, " +
+                                    "timestamp_precio BIGINT NOT NULL, " +
+                                    "PRIMARY KEY (id_cripto_fk, moneda_cotizacion), " +
+                                    "FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE" +
+                                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4",
+                            // Carga inicial con lo último del historial (usa idx_historial_ultimo)
+                            "INSERT INTO precios_actuales (id_cripto_fk, moneda_cotizacion, precio, timestamp_precio) " +
+                                    "SELECT hp.id_cripto_fk, hp.moneda_cotizacion, hp.precio, hp.timestamp_precio " +
+                                    "FROM historial_precios hp " +
+                                    "JOIN (SELECT id_cripto_fk, moneda_cotizacion, MAX(timestamp_precio) AS ultimo " +
+                                    "      FROM historial_precios GROUP BY id_cripto_fk, moneda_cotizacion) u " +
+                                    "ON hp.id_cripto_fk = u.id_cripto_fk AND hp.moneda_cotizacion = u.moneda_cotizacion AND hp.timestamp_precio = u.ultimo " +
+                                    "ON DUPLICATE KEY UPDATE precio = VALUES(precio), timestamp_precio = VALUES(timestamp_precio)")),
+            new Migracion(7, "Tabla listas_seguimiento (criptomonedas seguidas por cada usuario)",
+                    sql("CREATE TABLE listas_seguimiento (" +
+                            "id_usuario_fk INT NOT NULL, " +
+                            "id_cripto_fk INT NOT NULL, " +
+                            "agregada_en TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                            "PRIMARY KEY (id_usuario_fk, id_cripto_fk), " +
+                            "FOREIGN KEY (id_usuario_fk) REFERENCES usuarios(id_usuario) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE" +
+                            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"))
+    );
+
+    private MigradorEsquema() {
+    }
+
+    /**
+     * Aplica las migraciones pendientes.
+     *
+     * @throws SQLException Si una migración falla (las anteriores quedan registradas).
+     */
+    public static void aplicar() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conBloqueo(conn, () -> aplicarPendientes(conn));
+        }
+    }
+
+    /**
+     * Ejecuta la acción con el bloqueo de esquema tomado (lo comparte el mantenimiento de particiones).
+     */
+    static void conBloqueo(Connection conn, EjecutorTareas.Bloqueante<Void, SQLException> accion) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, BLOQUEO);
+            pstmt.setInt(2, ESPERA_BLOQUEO_SEGUNDOS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se obtuvo el bloqueo de esquema '" + BLOQUEO + "' en " + ESPERA_BLOQUEO_SEGUNDOS + " s.");
+                }
+            }
+        }
+        try {
+            accion.ejecutar();
+        } finally {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                pstmt.setString(1, BLOQUEO);
+                pstmt.executeQuery().close();
+            }
+        }
+    }
+
+    private static Void aplicarPendientes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS esquema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "descripcion VARCHAR(200) NOT NULL, " +
+                    "duracion_ms BIGINT NOT NULL, " +
+                    "aplicada_en TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        }
+        int actual = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM esquema_version")) {
+            if (rs.next()) {
+                actual = rs.getInt(1);
+            }
+        }
+
+        int aplicadas = 0;
+        for (Migracion migracion : MIGRACIONES) {
+            if (migracion.version <= actual) {
+                continue;
+            }
+            log.info("Aplicando migración {}: {}...", migracion.version, migracion.descripcion);
+            long inicio = System.nanoTime();
+            migracion.paso.aplicar(conn);
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO esquema_version (version, descripcion, duracion_ms) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, migracion.version);
+                pstmt.setString(2, migracion.descripcion);
+                pstmt.setLong(3, duracionMs);
+                pstmt.executeUpdate();
+            }
+            log.info("Migración {} aplicada en {} ms.", migracion.version, duracionMs);
+            aplicadas++;
+        }
+        if (aplicadas == 0) {
+            log.info("Esquema al día (versión {}).", actual);
+        }
+        return null;
+    }
+
+    // Paso que ejecuta sentencias DDL; las que ya estaban aplicadas se omiten
+    private static Paso sql(String... sentencias) {
+        return conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sentencia : sentencias) {
+                    ejecutarDDL(stmt, sentencia);
+                }
+            }
+        };
+    }
+
+    private static void ejecutarDDL(Statement stmt, String sentencia) throws SQLException {
+        try {
+            stmt.executeUpdate(sentencia);
+        } catch (SQLException e) {
+            if (!ERRORES_YA_APLICADO.contains(e.getErrorCode())) {
+                throw e;
+            }
+            log.info("Ya aplicado, se omite: {} ({})", sentencia, e.getMessage());
+        }
+    }
+
+    /**
+     * Pasa la clave de historial_precios a BIGINT y particiona la tabla por mes.
+     * MySQL exige que la columna de partición esté en la clave primaria y no admite claves
+     * foráneas en tablas particionadas, así que la FK a criptomonedas se elimina
+     * (las criptomonedas base nunca se borran).
+     */
+    private static void particionarHistorial(Connection conn) throws SQLException {
+        if (ParticionesHistorial.estaParticionada(conn)) {
+            log.info("{} ya está particionada, se omite.", ParticionesHistorial.TABLA);
+            return;
+        }
+        List<String> clavesForaneas = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS " +
+                "WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            pstmt.setString(1, ParticionesHistorial.TABLA);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    clavesForaneas.add(rs.getString(1));
+                }
+            }
+        }
+        long desde = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            for (String claveForanea : clavesForaneas) {
+                ejecutarDDL(stmt, "ALTER TABLE " + ParticionesHistorial.TABLA + " DROP FOREIGN KEY `" + claveForanea + "`");
+            }
+            stmt.executeUpdate("ALTER TABLE " + ParticionesHistorial.TABLA +
+                    " MODIFY id_historial BIGINT NOT NULL AUTO_INCREMENT, DROP PRIMARY KEY, ADD PRIMARY KEY (id_historial, timestamp_precio)");
+            try (ResultSet rs = stmt.executeQuery("SELECT MIN(timestamp_precio) FROM " + ParticionesHistorial.TABLA)) {
+                if (rs.next() && rs.getObject(1) != null) {
+                    desde = Math.min(desde, rs.getLong(1));
+                }
+            }
+            stmt.executeUpdate("ALTER TABLE " + ParticionesHistorial.TABLA + " " + ParticionesHistorial.definicion(desde));
+        }
+    }
+}
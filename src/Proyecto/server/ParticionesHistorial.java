@@ -0,0 +1,148 @@
+package server;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Particiones mensuales de {@code historial_precios} por {@code timestamp_precio} (UTC).
+ *
+ * Cada partición {@code pAAAAMM} guarda las cotizaciones de ese mes, y {@code pmax} todo lo
+ * posterior. El mantenimiento deja siempre creadas las particiones de los próximos meses
+ * (partiendo {@code pmax}, que está vacía, así que es inmediato) y, si hay retención
+ * configurada, borra las particiones completas más antiguas: un DROP PARTITION no recorre filas.
+ */
+final class ParticionesHistorial {
+
+    private static final Logger log = LogAsincrono.obtener(ParticionesHistorial.class);
+
+    static final String TABLA = "historial_precios";
+    private static final int MESES_ADELANTE = 2;
+    private static final int MAX_MESES_ATRAS = 36; // Lo anterior queda en la primera partición
+    private static final String PARTICION_MAXIMA = "pmax";
+
+    private ParticionesHistorial() {
+    }
+
+    static boolean estaParticionada(Connection conn) throws SQLException {
+        return limites(conn) != null;
+    }
+
+    /**
+     * Cláusula PARTITION BY con un mes por partición, desde el mes de {@code desdeMillis}
+     * hasta {@link #MESES_ADELANTE} meses después del actual, más {@code pmax}.
+     */
+    static String definicion(long desdeMillis) {
+        YearMonth actual = YearMonth.now(ZoneOffset.UTC);
+        YearMonth mes = mesDe(desdeMillis);
+        if (mes.isBefore(actual.minusMonths(MAX_MESES_ATRAS))) {
+            mes = actual.minusMonths(MAX_MESES_ATRAS);
+        }
+        YearMonth ultimo = actual.plusMonths(MESES_ADELANTE);
+        StringBuilder sql = new StringBuilder("PARTITION BY RANGE (timestamp_precio) (");
+        for (; !mes.isAfter(ultimo); mes = mes.plusMonths(1)) {
+            sql.append(particion(mes)).append(", ");
+        }
+        sql.append("PARTITION ").append(PARTICION_MAXIMA).append(" VALUES LESS THAN MAXVALUE)");
+        return sql.toString();
+    }
+
+    /**
+     * Mantenimiento periódico, con el mismo bloqueo que las migraciones (lo hacen ambos servidores).
+     */
+    static void mantener(int retencionMeses) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            MigradorEsquema.conBloqueo(conn, () -> {
+                mantener(conn, retencionMeses);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Crea las particiones de los próximos meses y borra las anteriores a la retención.
+     *
+     * @param retencionMeses Meses completos a conservar además del actual; 0 no borra nada.
+     */
+    static void mantener(Connection conn, int retencionMeses) throws SQLException {
+        List<Long> limites = limites(conn);
+        if (limites == null) {
+            return; // Tabla sin particionar (la migración aún no se aplicó)
+        }
+        // Solo con pmax (base recién creada con historial_precios.sql) se empieza por el mes actual
+        long mayorLimite = inicioDe(YearMonth.now(ZoneOffset.UTC));
+        for (long limite : limites) {
+            mayorLimite = Math.max(mayorLimite, limite);
+        }
+
+        YearMonth hasta = YearMonth.now(ZoneOffset.UTC).plusMonths(MESES_ADELANTE);
+        try (Statement stmt = conn.createStatement()) {
+            for (YearMonth mes = mesDe(mayorLimite); !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+                stmt.executeUpdate("ALTER TABLE " + TABLA + " REORGANIZE PARTITION " + PARTICION_MAXIMA + " INTO ("
+                        + particion(mes) + ", PARTITION " + PARTICION_MAXIMA + " VALUES LESS THAN MAXVALUE)");
+                log.info("Partición p{} creada en {}.", nombreMes(mes), TABLA);
+            }
+
+            if (retencionMeses > 0) {
+                long corte = inicioDe(YearMonth.now(ZoneOffset.UTC).minusMonths(retencionMeses));
+                List<String> antiguas = new ArrayList<>();
+                for (long limite : limites) {
+                    if (limite <= corte) {
+                        antiguas.add("p" + nombreMes(mesDe(limite).minusMonths(1)));
+                    }
+                }
+                if (!antiguas.isEmpty()) {
+                    stmt.executeUpdate("ALTER TABLE " + TABLA + " DROP PARTITION " + String.join(", ", antiguas));
+                    log.info("Particiones de {} borradas por retención ({} meses): {}", TABLA, retencionMeses, antiguas);
+                }
+            }
+        }
+    }
+
+    // Límite superior (exclusivo) de cada partición mensual, sin pmax; null si la tabla no está particionada
+    private static List<Long> limites(Connection conn) throws SQLException {
+        String sql = "SELECT PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL";
+        List<Long> limites = null;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, TABLA);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String descripcion = rs.getString(1);
+                    if (limites == null) {
+                        limites = new ArrayList<>();
+                    }
+                    if (descripcion != null && !"MAXVALUE".equalsIgnoreCase(descripcion)) {
+                        limites.add(Long.parseLong(descripcion.trim()));
+                    }
+                }
+            }
+        }
+        return limites;
+    }
+
+    private static String particion(YearMonth mes) {
+        return "PARTITION p" + nombreMes(mes) + " VALUES LESS THAN (" + inicioDe(mes.plusMonths(1)) + ")";
+    }
+
+    private static String nombreMes(YearMonth mes) {
+        return String.format("%04d%02d", mes.getYear(), mes.getMonthValue());
+    }
+
+    private static long inicioDe(YearMonth mes) {
+        return mes.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static YearMonth mesDe(long millis) {
+        return YearMonth.from(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+}
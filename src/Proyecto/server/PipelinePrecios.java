@@ -0,0 +1,387 @@
+package server;
+
+import common.Cripto;
+
+import io.reactivex.rxjava3.core.BackpressureOverflowStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.flowables.ConnectableFlowable;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ingesta de precios como un flujo con contrapresión (RxJava):
+ *
+ *   tick → consulta al origen → normalización → deduplicación → caché
+ *        → (verificación de alertas | historial | suscriptores)
+ *
+ * Cada etapa corre en su propio hilo y recibe de la anterior por un buffer acotado
+ * ({@code cripto.pipeline.buffer} lotes, 16 por defecto). Si una etapa se atrasa, la
+ * contrapresión llega hasta la fuente, que omite ticks en vez de acumular consultas a CoinGecko.
+ *
+ * Las ramas de salida no frenan a la caché: la verificación de alertas solo guarda la señal más
+ * reciente (evalúa contra la caché, así que las intermedias sobran), y el historial y cada
+ * suscriptor tienen su propio buffer, del que se descarta el lote más antiguo al llenarse.
+ * Así una BD lenta o un suscriptor lento no atrasan la frescura de los precios.
+ *
+ * Por etapa se publican los lotes y cotizaciones procesados, los descartes, los errores y el
+ * retraso con que la etapa recibe cada lote desde que se obtuvo ({@code cripto_pipeline_*}).
+ *
+ * Cada etapa atrapa los errores de su lote y lo descarta. Si aun así un error llega a cortar la
+ * ingesta (un bug o un buffer desbordado), ésta se vuelve a suscribir al origen en el siguiente
+ * tick ({@code cripto_pipeline_reinicios_total}); una rama de salida que termina con error queda
+ * contada en {@code cripto_pipeline_ramas_caidas} y se informa al detener el servidor.
+ */
+final class PipelinePrecios {
+
+    private static final Logger log = LogAsincrono.obtener(PipelinePrecios.class);
+
+    private static final int BUFFER_ETAPA = Integer.getInteger("cripto.pipeline.buffer", 16);
+    private static final int BUFFER_HISTORIAL = Integer.getInteger("cripto.pipeline.bufferHistorial", 64);
+    private static final int BUFFER_SUSCRIPTOR = Integer.getInteger("cripto.pipeline.bufferSuscriptor", 16);
+    private static final long DELAY_INICIAL_CONSULTA_SEGUNDOS = 5;
+    private static final int MAX_PARES_DEDUPLICACION = 50_000;
+
+    /** El trabajo de cada etapa, que pone el servidor. */
+    interface Etapas {
+        /** Consulta al origen las cotizaciones con demanda; lista vacía si no hay nada que consultar. */
+        List<Cripto> consultarOrigen() throws Exception;
+
+        /** Publica en la caché las cotizaciones nuevas y renueva las que no cambiaron. */
+        void actualizarCache(List<Cripto> cambiadas, List<Cripto> sinCambios);
+
+        /** Un ciclo del verificador de alertas contra la caché. */
+        void verificarAlertas();
+
+        /** Encola las cotizaciones para el historial (escritura diferida). */
+        void guardarHistorial(List<Cripto> cotizaciones);
+    }
+
+    /** Cotizaciones que avanzan juntas por el flujo, con el instante (nanoTime) en que se obtuvieron. */
+    private static final class Lote {
+        static final Lote VACIO = new Lote(Collections.emptyList(), Collections.emptyList(), 0);
+
+        final List<Cripto> cotizaciones;
+        final List<Cripto> sinCambios; // Solo entre la deduplicación y la caché
+        final long obtenidoNanos;
+
+        Lote(List<Cripto> cotizaciones, List<Cripto> sinCambios, long obtenidoNanos) {
+            this.cotizaciones = cotizaciones;
+            this.sinCambios = sinCambios;
+            this.obtenidoNanos = obtenidoNanos;
+        }
+
+        boolean vacio() {
+            return cotizaciones.isEmpty() && sinCambios.isEmpty();
+        }
+    }
+
+    /** Hilo propio y métricas de una etapa (sin hilo, solo métricas, si {@code nombreHilo} es null). */
+    private static final class Etapa {
+        final String nombre;
+        final ExecutorService hilo;
+        final Scheduler scheduler;
+        final Contador lotes;
+        final Contador cotizaciones;
+        final Contador descartes;
+        final Contador errores;
+        final HistogramaLatencia retraso;
+
+        Etapa(String nombre, String nombreHilo) {
+            this.nombre = nombre;
+            this.hilo = nombreHilo == null ? null : Executors.newSingleThreadExecutor(r -> {
+                Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName(nombreHilo);
+                t.setDaemon(true);
+                return t;
+            });
+            this.scheduler = hilo == null ? null : Schedulers.from(hilo);
+            String etiqueta = "etapa=\"" + nombre + "\"";
+            this.lotes = Metricas.REGISTRO.contador("cripto_pipeline_lotes_total",
+                    "Lotes de cotizaciones procesados por la etapa.", etiqueta);
+            this.cotizaciones = Metricas.REGISTRO.contador("cripto_pipeline_cotizaciones_total",
+                    "Cotizaciones procesadas por la etapa.", etiqueta);
+            this.descartes = Metricas.REGISTRO.contador("cripto_pipeline_descartes_total",
+                    "Ticks, lotes o cotizaciones descartados por la etapa (buffer lleno o dato inválido).", etiqueta);
+            this.errores = Metricas.REGISTRO.contador("cripto_pipeline_errores_total",
+                    "Lotes cuyo procesamiento falló en la etapa.", etiqueta);
+            this.retraso = Metricas.REGISTRO.histograma("cripto_pipeline_retraso_segundos",
+                    "Tiempo desde que se obtuvo el lote hasta que la etapa lo recibe.", etiqueta);
+        }
+
+        void recibido(Lote lote) {
+            lotes.incrementar();
+            cotizaciones.sumar(lote.cotizaciones.size() + lote.sinCambios.size());
+            retraso.registrarDesde(lote.obtenidoNanos);
+        }
+    }
+
+    private final Etapas etapas;
+    private final EjecutorTareas ejecutor;
+    private final long periodoConsultaSegundos;
+    private final long delayAlertasSegundos;
+    private final long periodoAlertasSegundos;
+
+    private final Etapa fuente = new Etapa("fuente", "PricePipelineTimerThread");
+    private final Etapa consulta = new Etapa("consulta", "APIPriceUpdaterThread");
+    private final Etapa normalizacion = new Etapa("normalizacion", "PricePipelineParseThread");
+    private final Etapa deduplicacion = new Etapa("deduplicacion", "PricePipelineDedupeThread");
+    private final Etapa cache = new Etapa("cache", "PricePipelineCacheThread");
+    private final Etapa alertas = new Etapa("alertas", "AlertVerifierThread");
+    private final Etapa historial = new Etapa("historial", "PricePipelineHistoryThread");
+    private final Etapa suscriptores = new Etapa("suscriptores", null); // Cada suscriptor usa un hilo virtual
+    private final List<Etapa> todas = List.of(fuente, consulta, normalizacion, deduplicacion, cache, alertas, historial, suscriptores);
+
+    private final Map<String, Cripto> ultimaPorPar = new HashMap<>(); // Solo desde el hilo de deduplicación
+    private final PublishProcessor<Boolean> parada = PublishProcessor.create();
+    private final CompositeDisposable suscripciones = new CompositeDisposable();
+    private final CountDownLatch ramasTerminadas = new CountDownLatch(2); // Alertas e historial
+    private final Contador reinicios = Metricas.REGISTRO.contador("cripto_pipeline_reinicios_total",
+            "Veces que la ingesta de precios se volvió a suscribir al origen tras un error.");
+    private final AtomicInteger ramasCaidas = new AtomicInteger();
+    private volatile boolean detenido = false;
+    private ConnectableFlowable<Lote> salida;
+
+    PipelinePrecios(Etapas etapas, EjecutorTareas ejecutor, long periodoConsultaSegundos,
+                    long delayAlertasSegundos, long periodoAlertasSegundos) {
+        this.etapas = etapas;
+        this.ejecutor = ejecutor;
+        this.periodoConsultaSegundos = periodoConsultaSegundos;
+        this.delayAlertasSegundos = delayAlertasSegundos;
+        this.periodoAlertasSegundos = periodoAlertasSegundos;
+        Metricas.REGISTRO.indicador("cripto_pipeline_ramas_caidas",
+                "Ramas de salida del pipeline (alertas, historial) que terminaron con error; debería ser 0.", ramasCaidas::get);
+    }
+
+    /** Arma el flujo y empieza a consultar el origen y a verificar alertas. */
+    synchronized void iniciar() {
+        salida = Flowable.interval(DELAY_INICIAL_CONSULTA_SEGUNDOS, periodoConsultaSegundos, TimeUnit.SECONDS, fuente.scheduler)
+                .takeUntil(parada)
+                .onBackpressureDrop(tick -> fuente.descartes.incrementar()) // La consulta anterior sigue en curso
+                .observeOn(consulta.scheduler, false, 1)
+                .map(tick -> consultar())
+                .filter(lote -> !lote.vacio())
+                .observeOn(normalizacion.scheduler, false, BUFFER_ETAPA)
+                .map(this::normalizar)
+                .filter(lote -> !lote.vacio())
+                .observeOn(deduplicacion.scheduler, false, BUFFER_ETAPA)
+                .map(this::deduplicar)
+                .filter(lote -> !lote.vacio())
+                .observeOn(cache.scheduler, false, BUFFER_ETAPA)
+                .map(this::actualizarCache)
+                .filter(lote -> !lote.cotizaciones.isEmpty()) // Sin cambios no hay nada que avisar a las ramas
+                .retry(this::reiniciarIngesta) // Un error no deja al servidor sin precios: se vuelve a empezar desde el tick
+                .publish();
+
+        // Alertas: cada lote nuevo y, además, el tick periódico (las condiciones estadísticas dependen del tiempo)
+        Flowable<Lote> ticksAlertas = Flowable.interval(delayAlertasSegundos, periodoAlertasSegundos, TimeUnit.SECONDS, fuente.scheduler)
+                .takeUntil(parada)
+                .map(tick -> Lote.VACIO);
+        suscripciones.add(Flowable.merge(salida, ticksAlertas)
+                .onBackpressureLatest(lote -> alertas.descartes.incrementar())
+                .observeOn(alertas.scheduler, false, 1)
+                .subscribe(this::verificarAlertas, e -> terminoRama(alertas, e), () -> terminoRama(alertas, null)));
+
+        suscripciones.add(salida
+                .onBackpressureBuffer(BUFFER_HISTORIAL, null, BackpressureOverflowStrategy.DROP_OLDEST,
+                        lote -> historial.descartes.sumar(lote.cotizaciones.size()))
+                .observeOn(historial.scheduler, false, 1)
+                .subscribe(this::guardarHistorial, e -> terminoRama(historial, e), () -> terminoRama(historial, null)));
+
+        suscripciones.add(salida.connect());
+        log.info("Pipeline de precios iniciado (consulta cada {} s, alertas cada {} s, buffer {} lotes por etapa).",
+                periodoConsultaSegundos, periodoAlertasSegundos, BUFFER_ETAPA);
+    }
+
+    /**
+     * Suscribe un consumidor en proceso a los lotes de cotizaciones que cambiaron. Cada suscriptor
+     * corre en su propio hilo virtual con un buffer de {@code cripto.pipeline.bufferSuscriptor}
+     * lotes; si no alcanza a consumirlos se descartan los más antiguos, sin frenar al resto.
+     *
+     * @return Para cancelar la suscripción.
+     */
+    synchronized Disposable suscribir(String nombre, Consumer<List<Cripto>> consumidor) {
+        if (salida == null) {
+            throw new IllegalStateException("El pipeline de precios no está iniciado.");
+        }
+        Disposable suscripcion = salida
+                .onBackpressureBuffer(BUFFER_SUSCRIPTOR, null, BackpressureOverflowStrategy.DROP_OLDEST,
+                        lote -> suscriptores.descartes.sumar(lote.cotizaciones.size()))
+                .observeOn(Schedulers.from(ejecutor::ejecutar), false, 1)
+                .subscribe(lote -> {
+                    suscriptores.recibido(lote);
+                    try {
+                        consumidor.accept(lote.cotizaciones);
+                    } catch (RuntimeException e) {
+                        suscriptores.errores.incrementar();
+                        log.warn("El suscriptor '{}' del pipeline de precios falló: {}", nombre, e.getMessage());
+                    }
+                }, e -> log.error("El suscriptor '{}' del pipeline de precios terminó con error", nombre, e));
+        suscripciones.add(suscripcion);
+        return suscripcion;
+    }
+
+    /**
+     * Deja de consultar el origen, deja que los lotes en vuelo lleguen a la caché, las alertas y
+     * el historial, y espera hasta el instante límite (nanoTime). Los suscriptores no se esperan.
+     */
+    void detener(long limiteNanos) {
+        detenido = true; // Antes de la señal: un reinicio posterior ya no se suscribiría a ella
+        parada.onNext(Boolean.TRUE);
+        try {
+            if (!ramasTerminadas.await(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Plazo agotado: el pipeline de precios se detiene con lotes en vuelo.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ramasCaidas.get() > 0) {
+            log.warn("El pipeline de precios se detiene con {} rama(s) caída(s) por error.", ramasCaidas.get());
+        }
+        suscripciones.dispose();
+        for (Etapa etapa : todas) {
+            if (etapa.hilo != null) {
+                etapa.hilo.shutdownNow();
+            }
+        }
+    }
+
+    // --- Etapas ---
+
+    private Lote consultar() {
+        try {
+            List<Cripto> cotizaciones = etapas.consultarOrigen();
+            Lote lote = new Lote(cotizaciones, Collections.emptyList(), System.nanoTime());
+            consulta.recibido(lote);
+            return lote;
+        } catch (Exception e) {
+            consulta.errores.incrementar();
+            log.error("No se pudo actualizar datos desde CoinGecko: {}", e.getMessage());
+            return Lote.VACIO;
+        }
+    }
+
+    // Descarta cotizaciones incompletas o con precios no válidos antes de que lleguen a la caché
+    private Lote normalizar(Lote lote) {
+        normalizacion.recibido(lote);
+        try {
+            return filtrarValidas(lote);
+        } catch (RuntimeException e) {
+            normalizacion.errores.incrementar();
+            log.error("Error al normalizar cotizaciones", e);
+            return Lote.VACIO;
+        }
+    }
+
+    private Lote filtrarValidas(Lote lote) {
+        List<Cripto> validas = new ArrayList<>(lote.cotizaciones.size());
+        for (Cripto cripto : lote.cotizaciones) {
+            if (cripto != null && cripto.getSimbolo() != null && cripto.getMoneda() != null
+                    && Double.isFinite(cripto.getPrecio()) && cripto.getPrecio() > 0) {
+                validas.add(cripto);
+            }
+        }
+        int invalidas = lote.cotizaciones.size() - validas.size();
+        if (invalidas > 0) {
+            normalizacion.descartes.sumar(invalidas);
+            log.warn("Se descartaron {} cotizaciones inválidas recibidas de CoinGecko.", invalidas);
+        }
+        return new Lote(validas, Collections.emptyList(), lote.obtenidoNanos);
+    }
+
+    // Separa las cotizaciones que ya se publicaron (mismo precio y misma hora en la fuente, ej. un 304)
+    private Lote deduplicar(Lote lote) {
+        deduplicacion.recibido(lote);
+        try {
+            return separarSinCambios(lote);
+        } catch (RuntimeException e) {
+            deduplicacion.errores.incrementar();
+            log.error("Error al deduplicar cotizaciones", e);
+            return Lote.VACIO;
+        }
+    }
+
+    private Lote separarSinCambios(Lote lote) {
+        if (ultimaPorPar.size() > MAX_PARES_DEDUPLICACION) {
+            ultimaPorPar.clear(); // Acotado: con más pares que esto, se empieza de nuevo
+        }
+        List<Cripto> cambiadas = new ArrayList<>(lote.cotizaciones.size());
+        List<Cripto> sinCambios = new ArrayList<>();
+        for (Cripto cripto : lote.cotizaciones) {
+            Cripto anterior = ultimaPorPar.put(cripto.getSimbolo() + '/' + cripto.getMoneda(), cripto);
+            if (anterior != null && anterior.getPrecio() == cripto.getPrecio()
+                    && anterior.getTimestampFuente() == cripto.getTimestampFuente()) {
+                sinCambios.add(cripto);
+            } else {
+                cambiadas.add(cripto);
+            }
+        }
+        return new Lote(cambiadas, sinCambios, lote.obtenidoNanos);
+    }
+
+    private Lote actualizarCache(Lote lote) {
+        cache.recibido(lote);
+        try {
+            etapas.actualizarCache(lote.cotizaciones, lote.sinCambios);
+        } catch (RuntimeException e) {
+            cache.errores.incrementar();
+            log.error("Error al publicar cotizaciones en la caché", e);
+            return Lote.VACIO;
+        }
+        return new Lote(lote.cotizaciones, Collections.emptyList(), lote.obtenidoNanos);
+    }
+
+    private void verificarAlertas(Lote lote) {
+        if (!lote.vacio()) {
+            alertas.recibido(lote);
+        }
+        try {
+            etapas.verificarAlertas();
+        } catch (RuntimeException e) {
+            alertas.errores.incrementar();
+            log.error("Error en el ciclo del verificador de alertas", e);
+        }
+    }
+
+    private void guardarHistorial(Lote lote) {
+        historial.recibido(lote);
+        try {
+            etapas.guardarHistorial(lote.cotizaciones);
+        } catch (RuntimeException e) {
+            historial.errores.incrementar();
+            log.error("Error al encolar cotizaciones para el historial", e);
+        }
+    }
+
+    private boolean reiniciarIngesta(Throwable error) {
+        if (detenido) {
+            return false;
+        }
+        reinicios.incrementar();
+        log.error("La ingesta del pipeline de precios se cortó por un error; se reinicia desde el origen", error);
+        return true;
+    }
+
+    private void terminoRama(Etapa etapa, Throwable error) {
+        if (error != null) {
+            ramasCaidas.incrementAndGet();
+            log.error("La rama '{}' del pipeline de precios terminó con error", etapa.nombre, error);
+        }
+        ramasTerminadas.countDown();
+    }
+}
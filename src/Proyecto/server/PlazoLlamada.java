@@ -0,0 +1,79 @@
+package server;
+
+import common.PlazoVencidoException;
+
+/**
+ * Plazo (deadline) de la llamada RMI que atiende el hilo actual.
+ *
+ * Las sobrecargas de la interfaz que reciben {@code plazoMs} fijan aquí el instante límite al
+ * entrar; las etapas que pueden bloquearse (espera de permiso HTTP, petición a CoinGecko,
+ * lectura de MySQL) acotan su espera con {@link #restanteMs(long)} y llaman a
+ * {@link #verificar(String)} antes de empezar, así el servidor no sigue trabajando para un
+ * cliente que ya se rindió. Sin plazo fijado, nada cambia. Las tareas que una llamada lanza en
+ * otros hilos heredan el plazo con {@link #conLimite(Long, EjecutorTareas.Bloqueante)}.
+ */
+final class PlazoLlamada {
+
+    private static final long MAX_PLAZO_MS = Long.getLong("cripto.plazo.maxMs", 60_000);
+
+    private static final ThreadLocal<Long> LIMITE = new ThreadLocal<>(); // nanoTime; null sin plazo
+
+    private PlazoLlamada() {
+    }
+
+    /**
+     * Ejecuta la llamada con un plazo de {@code plazoMs} desde ahora (acotado a {@code cripto.plazo.maxMs}).
+     */
+    static <T, E extends Exception> T con(long plazoMs, EjecutorTareas.Bloqueante<T, E> llamada) throws E {
+        return conLimite(System.nanoTime() + Math.min(plazoMs, MAX_PLAZO_MS) * 1_000_000L, llamada);
+    }
+
+    /** Ejecuta la llamada con el instante límite dado (nanoTime), o sin plazo si es null. */
+    static <T, E extends Exception> T conLimite(Long limiteNanos, EjecutorTareas.Bloqueante<T, E> llamada) throws E {
+        Long anterior = LIMITE.get();
+        LIMITE.set(limiteNanos);
+        try {
+            return llamada.ejecutar();
+        } finally {
+            if (anterior == null) {
+                LIMITE.remove();
+            } else {
+                LIMITE.set(anterior);
+            }
+        }
+    }
+
+    /** Instante límite (nanoTime) de la llamada actual, o null si no tiene plazo. */
+    static Long limite() {
+        return LIMITE.get();
+    }
+
+    /** Milisegundos que le quedan a la llamada, acotados por {@code maximoMs}; {@code maximoMs} si no tiene plazo. */
+    static long restanteMs(long maximoMs) {
+        Long limite = LIMITE.get();
+        if (limite == null) {
+            return maximoMs;
+        }
+        return Math.min(maximoMs, Math.max(0, (limite - System.nanoTime()) / 1_000_000L));
+    }
+
+    static boolean vencido() {
+        Long limite = LIMITE.get();
+        return limite != null && System.nanoTime() - limite >= 0;
+    }
+
+    /**
+     * @throws PlazoVencidoException Si la llamada actual tiene plazo y ya se cumplió.
+     */
+    static void verificar(String etapa) throws PlazoVencidoException {
+        if (vencido()) {
+            throw vencimiento(etapa);
+        }
+    }
+
+    static PlazoVencidoException vencimiento(String etapa) {
+        Metricas.REGISTRO.contador("cripto_plazo_vencidos_total",
+                "Llamadas abandonadas porque se cumplió el plazo del cliente.", "etapa=\"" + etapa + "\"").incrementar();
+        return new PlazoVencidoException(etapa);
+    }
+}
@@ -0,0 +1,170 @@
+package server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registro de métricas del servidor: contadores, indicadores (gauges) e histogramas de latencia.
+ *
+ * Las métricas se agrupan en familias con nombre y tipo al estilo Prometheus; cada serie de
+ * una familia se distingue por sus etiquetas (ej. {@code metodo="obtenerPrecioActual"}).
+ * Registrar dos veces la misma serie devuelve el mismo objeto, así que el código
+ * instrumentado puede pedirla de forma perezosa. Las lecturas (exportación a Prometheus o
+ * JMX) recorren el registro sin detener a quienes escriben.
+ */
+public class RegistroMetricas {
+
+    enum Tipo { COUNTER, GAUGE, HISTOGRAM }
+
+    private static final class Familia {
+        final String nombre;
+        final String ayuda;
+        final Tipo tipo;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>(); // Etiquetas -> métrica
+
+        Familia(String nombre, String ayuda, Tipo tipo) {
+            this.nombre = nombre;
+            this.ayuda = ayuda;
+            this.tipo = tipo;
+        }
+    }
+
+    private final Map<String, Familia> familias = new ConcurrentSkipListMap<>();
+    private final Map<String, Object> cacheSeries = new ConcurrentHashMap<>(); // "nombre{etiquetas}" -> métrica
+
+    public Contador contador(String nombre, String ayuda) {
+        return contador(nombre, ayuda, "");
+    }
+
+    public Contador contador(String nombre, String ayuda, String etiquetas) {
+        return (Contador) serie(nombre, ayuda, Tipo.COUNTER, etiquetas, Contador::new);
+    }
+
+    public HistogramaLatencia histograma(String nombre, String ayuda) {
+        return histograma(nombre, ayuda, "");
+    }
+
+    public HistogramaLatencia histograma(String nombre, String ayuda, String etiquetas) {
+        return (HistogramaLatencia) serie(nombre, ayuda, Tipo.HISTOGRAM, etiquetas, HistogramaLatencia::new);
+    }
+
+    /** Registra un indicador cuyo valor se calcula al momento de leerlo. */
+    public void indicador(String nombre, String ayuda, DoubleSupplier valor) {
+        indicador(nombre, ayuda, "", valor);
+    }
+
+    public void indicador(String nombre, String ayuda, String etiquetas, DoubleSupplier valor) {
+        serie(nombre, ayuda, Tipo.GAUGE, etiquetas, () -> valor);
+    }
+
+    private Object serie(String nombre, String ayuda, Tipo tipo, String etiquetas, Supplier<Object> crear) {
+        String clave = nombre + "{" + etiquetas + "}";
+        Object existente = cacheSeries.get(clave);
+        if (existente != null) {
+            return existente;
+        }
+        Familia familia = familias.computeIfAbsent(nombre, n -> new Familia(n, ayuda, tipo));
+        if (familia.tipo != tipo) {
+            throw new IllegalArgumentException("La métrica " + nombre + " ya está registrada como " + familia.tipo);
+        }
+        Object metrica = familia.series.computeIfAbsent(etiquetas, e -> crear.get());
+        cacheSeries.put(clave, metrica);
+        return metrica;
+    }
+
+    /**
+     * Escribe todas las métricas en el formato de texto de Prometheus (versión 0.0.4).
+     */
+    public void escribirPrometheus(StringBuilder sb) {
+        for (Familia familia : familias.values()) {
+            sb.append("# HELP ").append(familia.nombre).append(' ').append(familia.ayuda).append('\n');
+            sb.append("# TYPE ").append(familia.nombre).append(' ').append(familia.tipo.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> serie : familia.series.entrySet()) {
+                String etiquetas = serie.getKey();
+                Object metrica = serie.getValue();
+                switch (familia.tipo) {
+                    case COUNTER:
+                        linea(sb, familia.nombre, etiquetas, ((Contador) metrica).valor());
+                        break;
+                    case GAUGE:
+                        linea(sb, familia.nombre, etiquetas, ((DoubleSupplier) metrica).getAsDouble());
+                        break;
+                    case HISTOGRAM:
+                        escribirHistograma(sb, familia.nombre, etiquetas, (HistogramaLatencia) metrica);
+                        break;
+                }
+            }
+        }
+    }
+
+    private static void escribirHistograma(StringBuilder sb, String nombre, String etiquetas, HistogramaLatencia histograma) {
+        long[] cuentas = histograma.cuentas();
+        String prefijo = etiquetas.isEmpty() ? "" : etiquetas + ",";
+        long acumulado = 0;
+        for (int i = 0; i < cuentas.length; i++) {
+            acumulado += cuentas[i];
+            String le = i < HistogramaLatencia.LIMITES_NANOS.length
+                    ? Double.toString(HistogramaLatencia.LIMITES_NANOS[i] / 1e9)
+                    : "+Inf";
+            linea(sb, nombre + "_bucket", prefijo + "le=\"" + le + "\"", acumulado);
+        }
+        linea(sb, nombre + "_sum", etiquetas, histograma.sumaNanos() / 1e9);
+        linea(sb, nombre + "_count", etiquetas, acumulado);
+    }
+
+    private static void linea(StringBuilder sb, String nombre, String etiquetas, Object valor) {
+        sb.append(nombre);
+        if (!etiquetas.isEmpty()) {
+            sb.append('{').append(etiquetas).append('}');
+        }
+        sb.append(' ').append(valor).append('\n');
+    }
+
+    /**
+     * Vista plana de los valores actuales, para JMX. Los histogramas se resumen en
+     * cantidad, media y percentiles 50/99 (en milisegundos).
+     */
+    public Map<String, Number> valores() {
+        Map<String, Number> valores = new LinkedHashMap<>();
+        for (Familia familia : familias.values()) {
+            for (Map.Entry<String, Object> serie : familia.series.entrySet()) {
+                String clave = nombreAtributo(familia.nombre, serie.getKey());
+                Object metrica = serie.getValue();
+                switch (familia.tipo) {
+                    case COUNTER:
+                        valores.put(clave, ((Contador) metrica).valor());
+                        break;
+                    case GAUGE:
+                        valores.put(clave, ((DoubleSupplier) metrica).getAsDouble());
+                        break;
+                    case HISTOGRAM:
+                        HistogramaLatencia h = (HistogramaLatencia) metrica;
+                        long total = h.total();
+                        valores.put(clave + "_count", total);
+                        valores.put(clave + "_media_ms", total == 0 ? 0.0 : h.sumaNanos() / 1e6 / total);
+                        valores.put(clave + "_p50_ms", h.percentilNanos(0.50) / 1e6);
+                        valores.put(clave + "_p99_ms", h.percentilNanos(0.99) / 1e6);
+                        break;
+                }
+            }
+        }
+        return valores;
+    }
+
+    // cripto_rpc_llamadas_total + metodo="obtenerPrecioActual" -> cripto_rpc_llamadas_total_obtenerPrecioActual
+    private static String nombreAtributo(String nombre, String etiquetas) {
+        if (etiquetas.isEmpty()) {
+            return nombre;
+        }
+        StringBuilder sb = new StringBuilder(nombre);
+        for (String par : etiquetas.split(",")) {
+            int igual = par.indexOf('=');
+            sb.append('_').append(par.substring(igual + 1).replace("\"", ""));
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,18 @@
 package server;
 
+import common.FabricaSocketsRmi;
+
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 
 
 public class RunServerRespaldo {
+    private static final long PLAZO_APAGADO_MS = Long.getLong("cripto.apagado.plazoMs", 10_000);
+    private static final String ARCHIVO_INSTANTANEA = System.getProperty("cripto.instantanea.archivo", "cripto-respaldo.bin");
+    private static final int PUERTO_METRICAS = Integer.getInteger("cripto.metricas.puerto", 9401);
+
     public static void main(String[] args) {
         try {
             // 1. Iniciar el RMI Registry
@@ -21,7 +28,11 @@ public class RunServerRespaldo {
             }
 
             // 2. Instanciar nuestra implementación del servidor
-            ServidorPreciosImpl cryptoService = new ServidorPreciosImpl();
+            // Con la instantánea de la ejecución anterior, el servicio responde con datos tibios apenas se publica
+            // Se exporta con la fábrica de sockets elegida en cripto.rmi.sockets (defecto, tcp o comprimido)
+            FabricaSocketsRmi fabricaSockets = FabricaSocketsRmi.desdePropiedades();
+            ServidorPreciosImpl cryptoService = new ServidorPreciosImpl(Paths.get(ARCHIVO_INSTANTANEA), fabricaSockets);
+            System.out.println("Sockets RMI: " + (fabricaSockets == null ? "por defecto" : fabricaSockets));
             System.out.println("Instancia de ServidorPreciosImpl creada.");
 
             // 3. Registrar (bind) el objeto remoto en el RMI Registry
@@ -29,8 +40,22 @@ public class RunServerRespaldo {
             String serviceName = "ServidorCriptoMonitorRespaldo";
             registry.rebind(serviceName, cryptoService);
 
+            // 4. Métricas: MBean en JMX y endpoint /metrics para Prometheus
+            MetricasMBean.registrar(Metricas.REGISTRO, serviceName);
+            ExportadorMetricas exportadorMetricas = new ExportadorMetricas(Metricas.REGISTRO);
+            exportadorMetricas.iniciar(PUERTO_METRICAS);
+
+            // 5. Apagado ordenado al recibir SIGTERM/Ctrl+C: drena llamadas y guarda lo pendiente
+            final Registry registryFinal = registry;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                cryptoService.apagar(registryFinal, serviceName, PLAZO_APAGADO_MS);
+                exportadorMetricas.detener();
+            }, "ShutdownHookThread"));
+
             System.out.println("Servicio de RESPALDO '" + serviceName + "' registrado y listo en el puerto " + 1100 + ".");
             System.out.println("El servidor está esperando conexiones de clientes...");
+            // El servicio se publica sin esperar a MySQL ni a CoinGecko; hasta que arranquen funciona en modo degradado
+            System.out.println("Estado de arranque de los subsistemas: " + cryptoService.estadoArranque());
 
         } catch (Exception e) {
             System.err.println("Excepción en el servidor RMI: " + e.toString());
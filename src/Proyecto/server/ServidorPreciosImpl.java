@@ -1,32 +1,71 @@
 package server;
 
+import common.AlertaUsuario;
+import common.CambiosPrecios;
 import common.InterfazServicioCripto;
 import common.Cripto;
+import common.FabricaSocketsRmi;
+import common.PaginaAlertas;
+import common.PlazoVencidoException;
+import common.ServidorSaturadoException;
+
+import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
 import java.util.*; // Para Date, ArrayList, List, Map, Set, Optional, Timestamp
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 // Arriba de la clase ServidorPreciosImpl, junto a las otras variables
 public class ServidorPreciosImpl extends UnicastRemoteObject implements InterfazServicioCripto {
 
+    private static final Logger log = LogAsincrono.obtener(ServidorPreciosImpl.class);
+
     private final CoinGeckoService coinGeckoService;
-    private static final String MONEDA_COTIZACION = "usd";
+    private static final String MONEDA_COTIZACION = CoinGeckoService.MONEDA_POR_DEFECTO; // Moneda por defecto de la API y de las alertas
     private static final int INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS = 60; // API tiene límites, 60s es más seguro
     private static final int INTERVALO_VERIFICACION_ALERTAS_SEGUNDOS = 15;
     private static final int DELAY_INICIAL_VERIFICACION_ALERTAS_SEGUNDOS = 5;
     private static final String USUARIO_POR_DEFECTO = "default_user";
 
-    private final Map<String, Cripto> cacheCriptoData = new ConcurrentHashMap<>();
+    private static final String CAMBIO_PCT = AlertaDefinicion.CAMBIO_PCT;
+    private static final String CRUCE_SMA = AlertaDefinicion.CRUCE_SMA;
+    private static final String VOLATIL = AlertaDefinicion.VOLATIL;
+    private static final int MAX_VENTANA = 1440;
+    private static final long OLVIDAR_VENTANAS_SIN_USO_MS = 60 * 60 * 1000L;
+    private static final int CONEXIONES_PRECALENTADAS = 4;
+    private static final int RETENCION_HISTORIAL_MESES = Integer.getInteger("cripto.historial.retencionMeses", 0); // 0: conservar todo
+    private static final long INTERVALO_MANTENIMIENTO_PARTICIONES_HORAS = 24;
+    private static final long INTERVALO_INSTANTANEA_SEGUNDOS = Long.getLong("cripto.instantanea.periodoSeg", 30);
+    private static final long INTERVALO_RECONCILIACION_ALERTAS_SEGUNDOS = Long.getLong("cripto.alertas.reconciliarSeg", 60);
+    private static final long VENTANA_DEMANDA_MS = Long.getLong("cripto.cache.demandaSeg", 600) * 1000; // Consultas que mantienen un símbolo en el refresco
+    private static final int MAX_SIMBOLOS_CACHE = Integer.getInteger("cripto.cache.maxSimbolos", 2_000);
+
+    private final CachePrecios cacheCriptoData = new CachePrecios(CoinGeckoService.MONEDAS_COTIZACION);
+    private final EjecutorTareas ejecutor = new EjecutorTareas();
+    private final EscritorHistorial escritorHistorial = new EscritorHistorial(ejecutor);
+    private final GestorCicloDeVida cicloDeVida = new GestorCicloDeVida(this);
+    private final EvaluadorAlertas evaluadorAlertas = new EvaluadorAlertas();
+    private final EstadisticasPrecios estadisticas = new EstadisticasPrecios(MONEDA_COTIZACION, ejecutor);
+    private final IndiceAlertas indiceAlertas = new IndiceAlertas();
+    private final UltimosPreciosConocidos ultimosPreciosConocidos = new UltimosPreciosConocidos(ejecutor);
+    private final AlertasPorUsuario alertasPorUsuario = new AlertasPorUsuario(ejecutor);
+    private final ListasSeguimiento listasSeguimiento = new ListasSeguimiento(ejecutor);
+    private final ControlAdmision admision = new ControlAdmision();
+    private final InstantaneaServidor instantanea;
+    private final ArranqueServidor arranque = new ArranqueServidor(ejecutor);
+    private final PipelinePrecios pipeline;
 
 
     private boolean inUse = false;
@@ -50,232 +89,358 @@ public class ServidorPreciosImpl extends UnicastRemoteObject implements Interfaz
         this.inUse = false; // Liberamos el bloqueo
     }
 
-    private static class AlertaDefinicion {
-        String idAlertaDB;
-        String idUsuario;
-        String criptomoneda;
-        double precioUmbral;
-        String tipoCondicion;
-        boolean activa = true;
-
-        public AlertaDefinicion(String idAlertaDB, String idUsuario, String criptomoneda, double precioUmbral, String tipoCondicion, boolean activa) {
-            this.idAlertaDB = idAlertaDB;
-            this.idUsuario = idUsuario;
-            this.criptomoneda = criptomoneda.toUpperCase();
-            this.precioUmbral = precioUmbral;
-            this.tipoCondicion = tipoCondicion;
-            this.activa = activa;
-        }
-
-        public AlertaDefinicion(String idUsuario, String criptomoneda, double precioUmbral, String tipoCondicion) {
-            this(null, idUsuario, criptomoneda, precioUmbral, tipoCondicion, true);
-        }
-
-
-        @Override
-        public String toString() {
-            String simboloCondicion = "MAYOR_QUE".equals(tipoCondicion) ? ">" : "<";
-            return String.format("%s %s %.2f (Activa: %b)", criptomoneda, simboloCondicion, precioUmbral, activa);
-        }
+    public ServidorPreciosImpl() throws RemoteException {
+        this(Paths.get(System.getProperty("cripto.instantanea.archivo", "cripto-instantanea.bin")));
     }
 
+    /**
+     * @param archivoInstantanea Archivo de la instantánea de arranque (caché y alertas); cada
+     *                           servidor que corre en la misma máquina necesita el suyo.
+     */
+    public ServidorPreciosImpl(Path archivoInstantanea) throws RemoteException {
+        this(archivoInstantanea, null);
+    }
 
-    public ServidorPreciosImpl() throws RemoteException {
-        super();
+    /**
+     * @param archivoInstantanea Archivo de la instantánea de arranque (caché y alertas).
+     * @param fabricaSockets     Fábrica de sockets con que se exporta el servicio (TCP ajustado y
+     *                           compresión opcional); null para las fábricas por defecto de RMI.
+     */
+    public ServidorPreciosImpl(Path archivoInstantanea, FabricaSocketsRmi fabricaSockets) throws RemoteException {
+        super(0, fabricaSockets, fabricaSockets);
         this.coinGeckoService = new CoinGeckoService();
-
-        System.out.println("[ServidorPreciosImpl] Instanciado.");
-        DatabaseManager.inicializarCriptomonedasBase();
-        DatabaseManager.inicializarUsuarioPorDefecto(USUARIO_POR_DEFECTO);
-
-        iniciarActualizadorDeCriptoDataDesdeAPI();
-        iniciarVerificadorDeAlertas();
+        this.instantanea = new InstantaneaServidor(archivoInstantanea);
+
+        log.info("Instanciado.");
+        // Antes de tocar la BD: con la instantánea el servidor ya responde con datos tibios al publicarse
+        cargarInstantanea();
+
+        Metricas.REGISTRO.indicador("cripto_cache_entradas", "Cotizaciones (símbolo, moneda) en la caché.", cacheCriptoData::tamano);
+        Metricas.REGISTRO.indicador("cripto_cache_version", "Versión actual de la caché de precios.", () -> cacheCriptoData.getVersion() & 0xFFFF_FFFF_FFFFL);
+        Metricas.REGISTRO.indicador("cripto_rpc_en_curso", "Llamadas RMI siendo atendidas.", cicloDeVida::llamadasEnCurso);
+
+        // Subsistemas independientes, en paralelo; el constructor no espera a MySQL ni a CoinGecko
+        arranque.agregar("bd", () -> ejecutor.conPermisoDB(() -> {
+            DatabaseManager.precalentar(CONEXIONES_PRECALENTADAS);
+            return null;
+        }));
+        arranque.agregar("catalogo", () -> ejecutor.conPermisoDB(() -> {
+            MigradorEsquema.aplicar();
+            ParticionesHistorial.mantener(RETENCION_HISTORIAL_MESES);
+            DatabaseManager.inicializarCriptomonedasBase();
+            DatabaseManager.inicializarUsuarioPorDefecto(USUARIO_POR_DEFECTO);
+            return null;
+        }));
+        arranque.agregar("coingecko", () -> ejecutor.conPermisoHTTP(() -> {
+            coinGeckoService.precalentar();
+            return null;
+        }));
+        arranque.agregar("cache", this::precargarCache);
+        arranque.iniciar();
+
+        iniciarReconciliadorDeAlertas();
+        // Actualización de precios desde la API y verificación de alertas, como un flujo con contrapresión
+        this.pipeline = new PipelinePrecios(etapasPipeline, ejecutor, INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS,
+                DELAY_INICIAL_VERIFICACION_ALERTAS_SEGUNDOS, INTERVALO_VERIFICACION_ALERTAS_SEGUNDOS);
+        pipeline.iniciar();
+        iniciarEscritorDeInstantanea();
+        iniciarMantenimientoDeParticiones();
+
+        // Orden de parada: primero dejar de producir precios, luego guardar lo pendiente
+        cicloDeVida.registrarEtapa("arranque", limite -> arranque.detener());
+        cicloDeVida.registrarEtapa("tareas periódicas", ejecutor::detenerProgramadas);
+        cicloDeVida.registrarEtapa("pipeline de precios", pipeline::detener);
+        cicloDeVida.registrarEtapa("particiones de alertas", evaluadorAlertas::detener);
+        cicloDeVida.registrarEtapa("alertas disparadas", limite -> desactivarAlertasDisparadas());
+        cicloDeVida.registrarEtapa("instantánea", limite -> guardarInstantanea());
+        cicloDeVida.registrarEtapa("historial pendiente", escritorHistorial::detener);
+        cicloDeVida.registrarEtapa("hilos virtuales", ejecutor::detener);
+        cicloDeVida.registrarEtapa("cliente HTTP", limite -> coinGeckoService.cerrar());
+        cicloDeVida.registrarEtapa("conexiones BD", limite -> DatabaseManager.cerrarConexiones());
+        cicloDeVida.registrarEtapa("log pendiente", LogAsincrono::vaciar);
     }
 
-    private Set<String> obtenerSimbolosCriptoConAlertasActivas() {
-        Set<String> simbolos = new HashSet<>();
-        String sql = "SELECT DISTINCT c.simbolo FROM alertas a " +
-                "JOIN criptomonedas c ON a.id_cripto_fk = c.id_cripto " +
-                "WHERE a.activa = TRUE";
-
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+    /**
+     * Ejecuta una llamada RMI registrándola en el ciclo de vida, para que el apagado
+     * pueda esperar a que termine (o rechazarla si ya se está apagando), y en las
+     * métricas del método (llamadas, errores y latencia).
+     * Antes pasa por el control de admisión de su clase: si el servidor está saturado se
+     * rechaza al instante con {@link ServidorSaturadoException}, sin ejecutarse.
+     */
+    private <T> T atender(String metodo, ControlAdmision.Clase clase, EjecutorTareas.Bloqueante<T, RemoteException> llamada) throws RemoteException {
+        Metricas.MetricasRpc metricas = Metricas.rpc(metodo);
+        metricas.llamadas.incrementar();
+        long inicio = System.nanoTime();
+        boolean admitida = false;
         try {
-            conn = DatabaseManager.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            rs = pstmt.executeQuery();
-            while (rs.next()) {
-                simbolos.add(rs.getString("simbolo").toUpperCase());
+            admision.entrar(clase);
+            admitida = true;
+            cicloDeVida.entrar();
+            try {
+                return llamada.ejecutar();
+            } finally {
+                cicloDeVida.salir();
             }
-        } catch (SQLException e) {
-            System.err.println("[Servidor ERROR] Error al obtener símbolos de criptos con alertas activas: " + e.getMessage());
+        } catch (RemoteException | RuntimeException e) {
+            metricas.errores.incrementar();
+            throw e;
         } finally {
-            DatabaseManager.close(conn, pstmt, rs);
+            if (admitida) {
+                admision.salir(clase, inicio);
+            }
+            metricas.latencia.registrarDesde(inicio);
         }
-        return simbolos;
     }
 
-    private void iniciarActualizadorDeCriptoDataDesdeAPI() {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setName("APIPriceUpdaterThread");
-            return t;
-        });
+    /**
+     * Como {@link #atender(String, ControlAdmision.Clase, EjecutorTareas.Bloqueante)}, con el plazo
+     * del cliente fijado en {@link PlazoLlamada} mientras se ejecuta la llamada.
+     */
+    private <T> T atender(String metodo, ControlAdmision.Clase clase, long plazoMs,
+                          EjecutorTareas.Bloqueante<T, RemoteException> llamada) throws RemoteException {
+        if (plazoMs <= 0) {
+            throw new RemoteException("El plazo de la llamada debe ser mayor que 0 ms.");
+        }
+        return atender(metodo, clase, () -> PlazoLlamada.con(plazoMs, llamada));
+    }
 
-        scheduler.scheduleAtFixedRate(() -> {
-            Set<String> simbolosParaActualizar = obtenerSimbolosCriptoConAlertasActivas();
+    /**
+     * Apaga el servicio de forma ordenada: lo desregistra, drena las llamadas en curso,
+     * detiene las tareas periódicas, guarda el historial pendiente y lo desexporta.
+     *
+     * @param registry       Registry donde se publicó el servicio.
+     * @param nombreServicio Nombre con que se publicó.
+     * @param plazoMillis    Tiempo máximo total para el apagado.
+     */
+    public void apagar(Registry registry, String nombreServicio, long plazoMillis) {
+        cicloDeVida.apagar(registry, nombreServicio, plazoMillis);
+    }
 
-            if (simbolosParaActualizar.isEmpty()) {
-                // System.out.println("[ServidorPreciosImpl API Updater] No hay criptomonedas con alertas activas para actualizar desde la API en este momento.");
-                return;
-            }
-            try {
-                System.out.println("[ServidorPreciosImpl API Updater] Actualizando datos desde CoinGecko para: " + simbolosParaActualizar);
-                Map<String, Cripto> nuevosDatosCripto = coinGeckoService.fetchCriptoData(simbolosParaActualizar, MONEDA_COTIZACION);
+    /** Estado de arranque de cada subsistema (ej. {@code bd=LISTO (120 ms)}, {@code catalogo=FALLIDO}). */
+    public Map<String, String> estadoArranque() {
+        return arranque.estado();
+    }
 
-                if (!nuevosDatosCripto.isEmpty()) {
-                    actualizarCacheYGuardarHistorial(nuevosDatosCripto);
-                } else {
-                    System.out.println("[ServidorPreciosImpl API Updater] No se recibieron nuevos datos de CoinGecko para las criptomonedas con alertas activas.");
-                }
+    /**
+     * Trae en una sola petición todas las criptomonedas base en todas las monedas, para que
+     * las primeras consultas sean aciertos de caché.
+     */
+    private void precargarCache() throws IOException {
+        List<Cripto> cotizaciones = ejecutor.conPermisoHTTP(() -> coinGeckoService.fetchCriptoData(
+                CoinGeckoService.SYMBOL_TO_COINGECKO_ID_MAP.keySet(), CoinGeckoService.MONEDAS_COTIZACION));
+        if (cotizaciones.isEmpty()) {
+            throw new IOException("CoinGecko no devolvió cotizaciones para precargar la caché.");
+        }
+        actualizarCacheYGuardarHistorial(cotizaciones);
+    }
 
-            } catch (IOException e) {
-                System.err.println("[ServidorPreciosImpl API Updater ERROR] No se pudo actualizar datos desde CoinGecko: " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("[ServidorPreciosImpl API Updater ERROR] Excepción inesperada: " + e.getMessage());
-                e.printStackTrace();
+    /**
+     * Publica en la caché y en el índice de alertas lo que haya en la instantánea de arranque.
+     * Las cotizaciones conservan su hora de obtención, así que las vencidas se refrescan en
+     * la primera consulta; las alertas se corrigen en la primera reconciliación con la BD.
+     */
+    private void cargarInstantanea() {
+        long inicio = System.nanoTime();
+        InstantaneaServidor.Contenido contenido = instantanea.cargar();
+        if (contenido == null) {
+            log.info("Sin instantánea de arranque en {}; la caché y las alertas se cargan desde cero.", instantanea.getArchivo());
+            return;
+        }
+        int cargadas = 0;
+        for (Cripto cripto : contenido.cotizaciones) {
+            if (cacheCriptoData.soportaMoneda(cripto.getMoneda())) {
+                cacheCriptoData.actualizar(cripto);
+                cargadas++;
             }
-        }, 5, INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS, TimeUnit.SECONDS); // Delay inicial de 5s
-        System.out.println("Tarea de actualización de datos de criptomonedas (basada en alertas activas) desde API iniciada (cada " + INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS + " segundos).");
+        }
+        indiceAlertas.cargar(contenido.alertas);
+        log.info("Instantánea de {} cargada en {} ms: {} cotizaciones y {} alertas activas.",
+                Instant.ofEpochMilli(contenido.creadaMillis), (System.nanoTime() - inicio) / 1_000_000, cargadas, contenido.alertas.size());
     }
 
-    private void actualizarCacheYGuardarHistorial(Map<String, Cripto> nuevosDatosCripto) {
-        Connection conn = null;
-        PreparedStatement pstmtHistorial = null;
-        PreparedStatement pstmtGetCriptoId = null;
-        ResultSet rsCriptoId = null;
-
-        String sqlGetCriptoId = "SELECT id_cripto FROM criptomonedas WHERE simbolo = ?";
-        String sqlInsertHistorial = "INSERT INTO historial_precios (id_cripto_fk, precio, moneda_cotizacion, timestamp_precio) VALUES (?, ?, ?, ?)";
-
+    private void guardarInstantanea() {
         try {
-            conn = DatabaseManager.getConnection();
-            conn.setAutoCommit(false); // Iniciar transacción
-
-            pstmtGetCriptoId = conn.prepareStatement(sqlGetCriptoId);
-            pstmtHistorial = conn.prepareStatement(sqlInsertHistorial);
+            instantanea.guardar(cacheCriptoData, CoinGeckoService.MONEDAS_COTIZACION, indiceAlertas.activas());
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo guardar la instantánea en {}: {}", instantanea.getArchivo(), e.toString());
+        }
+    }
 
-            for (Map.Entry<String, Cripto> entry : nuevosDatosCripto.entrySet()) {
-                String simbolo = entry.getKey().toUpperCase();
-                Cripto cripto = entry.getValue();
+    private void iniciarEscritorDeInstantanea() {
+        ejecutor.programar("SnapshotWriterThread", this::guardarInstantanea,
+                INTERVALO_INSTANTANEA_SEGUNDOS, INTERVALO_INSTANTANEA_SEGUNDOS, TimeUnit.SECONDS);
+    }
 
-                // 1. Actualizar caché
-                cacheCriptoData.put(simbolo, cripto);
+    /**
+     * Crea las particiones de historial de los próximos meses y borra las que superan la retención.
+     */
+    private void iniciarMantenimientoDeParticiones() {
+        ejecutor.programar("HistoryPartitionThread", () -> {
+            try {
+                ejecutor.conPermisoDB(() -> {
+                    ParticionesHistorial.mantener(RETENCION_HISTORIAL_MESES);
+                    return null;
+                });
+            } catch (SQLException e) {
+                log.error("Error en el mantenimiento de particiones de historial_precios: {}", e.getMessage());
+            }
+        }, INTERVALO_MANTENIMIENTO_PARTICIONES_HORAS, INTERVALO_MANTENIMIENTO_PARTICIONES_HORAS, TimeUnit.HOURS);
+    }
 
-                // 2. Obtener id_cripto_fk para el historial
-                pstmtGetCriptoId.setString(1, simbolo);
-                rsCriptoId = pstmtGetCriptoId.executeQuery();
-                int idCriptoFk = -1;
-                if (rsCriptoId.next()) {
-                    idCriptoFk = rsCriptoId.getInt("id_cripto");
-                }
-                rsCriptoId.close();
-
-                if (idCriptoFk != -1) {
-                    // 3. Guardar en historial_precios
-                    pstmtHistorial.setInt(1, idCriptoFk);
-                    pstmtHistorial.setDouble(2, cripto.getPrecioUSD());
-                    pstmtHistorial.setString(3, MONEDA_COTIZACION.toLowerCase());
-                    pstmtHistorial.setLong(4, cripto.getUltimaActualizacionTimestamp());
-                    pstmtHistorial.addBatch();
-                } else {
-                    System.err.println("[ServidorPreciosImpl ERROR] No se encontró id_cripto para el símbolo: " + simbolo + " al guardar historial.");
+    /**
+     * Reconcilia el índice de alertas con la BD: una vez al arrancar, en segundo plano, y luego
+     * cada cierto tiempo para ver las alertas creadas o borradas desde el otro servidor.
+     * En la misma tarea se recargan las listas de seguimiento.
+     */
+    private void iniciarReconciliadorDeAlertas() {
+        ejecutor.programar("AlertReconcilerThread", () -> {
+            long inicioConsulta = System.nanoTime();
+            try {
+                List<AlertaDefinicion> desdeBD = ejecutor.conPermisoDB(this::obtenerDefinicionesDeAlertasActivasDeDB);
+                int cambios = indiceAlertas.reconciliar(desdeBD, inicioConsulta);
+                if (cambios > 0) {
+                    log.info("Índice de alertas reconciliado con la BD: {} cambios ({} activas).", cambios, indiceAlertas.tamano());
                 }
+            } catch (SQLException e) {
+                log.error("Error al reconciliar las alertas activas con la BD (se reintentará): {}", e.getMessage());
             }
-            pstmtHistorial.executeBatch();
-            conn.commit();
-            // System.out.println("[ServidorPreciosImpl] Datos de Criptomonedas actualizados en caché y guardados en historial_precios.");
-            // cacheCriptoData.forEach((simbolo, cripto) ->
-            //         System.out.printf("  Cache: %s: %.2f (Actualizado: %tF %<tT)\n",
-            //                 simbolo, cripto.getPrecioUSD(), new Date(cripto.getUltimaActualizacionTimestamp())));
-
-        } catch (SQLException e) {
-            System.err.println("[ServidorPreciosImpl ERROR] Error al actualizar caché y guardar historial: " + e.getMessage());
-            if (conn != null) {
+            if (arranque.listo("catalogo")) { // La tabla la crea la migración 7
                 try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    System.err.println("[ServidorPreciosImpl ERROR] Error en rollback de historial: " + ex.getMessage());
+                    listasSeguimiento.recargar();
+                } catch (SQLException e) {
+                    log.error("Error al recargar las listas de seguimiento (se reintentará): {}", e.getMessage());
                 }
             }
-        } finally {
-            // rsCriptoId ya se cierra en el bucle
-            if(pstmtGetCriptoId != null) {
-                try {
-                    pstmtGetCriptoId.close();
-                } catch (SQLException e) { /* ignored */ }
+        }, 0, INTERVALO_RECONCILIACION_ALERTAS_SEGUNDOS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Trae de CoinGecko los símbolos con demanda (primera etapa del pipeline de precios).
+     * Antes desaloja de la caché los símbolos fríos si supera su presupuesto.
+     */
+    private List<Cripto> consultarSimbolosConDemanda() throws IOException {
+        // Demanda real: símbolos con alertas activas o en listas de seguimiento, más los consultados recientemente
+        Set<String> conAlertas = indiceAlertas.simbolos();
+        conAlertas.addAll(listasSeguimiento.simbolos());
+        int desalojados = cacheCriptoData.desalojar(MAX_SIMBOLOS_CACHE, conAlertas);
+        if (desalojados > 0) {
+            Metricas.CACHE_DESALOJOS.sumar(desalojados);
+            log.info("{} símbolos fríos desalojados de la caché (máximo {}).", desalojados, MAX_SIMBOLOS_CACHE);
+        }
+        Set<String> simbolosParaActualizar = new HashSet<>(conAlertas);
+        simbolosParaActualizar.addAll(cacheCriptoData.simbolosUsadosDesde(System.currentTimeMillis() - VENTANA_DEMANDA_MS));
+
+        if (simbolosParaActualizar.isEmpty()) {
+            return Collections.emptyList();
+        }
+        log.info("Actualizando datos desde CoinGecko para: {}", simbolosParaActualizar);
+        // Una sola petición trae todas las monedas configuradas para todos los símbolos
+        List<Cripto> nuevosDatosCripto = ejecutor.conPermisoHTTP(
+                () -> coinGeckoService.fetchCriptoData(simbolosParaActualizar, CoinGeckoService.MONEDAS_COTIZACION));
+        if (nuevosDatosCripto.isEmpty()) {
+            log.info("No se recibieron nuevos datos de CoinGecko para las criptomonedas con demanda.");
+        }
+        return nuevosDatosCripto;
+    }
+
+    /**
+     * Publica las cotizaciones en la caché y las encola para el historial (escritura diferida).
+     */
+    private void actualizarCacheYGuardarHistorial(List<Cripto> nuevosDatosCripto) {
+        for (Cripto cripto : nuevosDatosCripto) {
+            cacheCriptoData.actualizar(cripto);
+            estadisticas.registrar(cripto);
+        }
+        escritorHistorial.encolar(nuevosDatosCripto);
+    }
+
+    // Etapas del pipeline de precios; cada método corre en el hilo de su etapa
+    private final PipelinePrecios.Etapas etapasPipeline = new PipelinePrecios.Etapas() {
+        @Override
+        public List<Cripto> consultarOrigen() throws IOException {
+            return consultarSimbolosConDemanda();
+        }
+
+        @Override
+        public void actualizarCache(List<Cripto> cambiadas, List<Cripto> sinCambios) {
+            for (Cripto cripto : cambiadas) {
+                cacheCriptoData.actualizar(cripto);
+                estadisticas.registrar(cripto);
             }
-            if(pstmtHistorial != null) {
-                try {
-                    pstmtHistorial.close();
-                } catch (SQLException e) { /* ignored */ }
+            // Mismo precio y misma hora en la fuente: solo se renueva la hora de obtención, sin versión nueva
+            for (Cripto cripto : sinCambios) {
+                cacheCriptoData.refrescar(cripto);
             }
-            if(conn != null) {
-                try {
-                    if (!conn.getAutoCommit()) { // Solo si iniciamos una transacción explícita
-                        // No hacer rollback aquí si commit fue exitoso.
-                        // El rollback ya está en el catch de SQLException.
-                    }
-                    conn.setAutoCommit(true); // Restaurar autocommit por si acaso
-                    conn.close();
-                } catch (SQLException e) { /* ignored */ }
+        }
+
+        @Override
+        public void verificarAlertas() {
+            long inicioCiclo = System.nanoTime();
+            try {
+                ServidorPreciosImpl.this.verificarAlertas();
+            } finally {
+                Metricas.ALERTAS_CICLOS.incrementar();
+                Metricas.ALERTAS_DURACION_CICLO.registrarDesde(inicioCiclo);
             }
         }
+
+        @Override
+        public void guardarHistorial(List<Cripto> cotizaciones) {
+            escritorHistorial.encolar(cotizaciones);
+        }
+    };
+
+    private void verificarAlertas() {
+        long ahora = System.currentTimeMillis();
+        evaluadorAlertas.evaluar(indiceAlertas.activas(), evaluacionAlertas, ahora);
+        desactivarAlertasDisparadas();
+        estadisticas.olvidarSinUsoDesde(ahora - OLVIDAR_VENTANAS_SIN_USO_MS);
     }
 
-    private void iniciarVerificadorDeAlertas() {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setName("AlertVerifierThread");
-            return t;
-        });
-        scheduler.scheduleAtFixedRate(() -> {
-            // System.out.println("[ServidorPreciosImpl Alert Verifier] Verificando alertas...");
-            List<AlertaDefinicion> alertasActivas = obtenerDefinicionesDeAlertasActivasDeDB();
-
-            if (alertasActivas.isEmpty()){
-                // System.out.println("[ServidorPreciosImpl Alert Verifier] No hay alertas activas en la BD para verificar.");
-                return;
-            }
-
-            for (AlertaDefinicion alerta : alertasActivas) {
-                Cripto criptoActual = cacheCriptoData.get(alerta.criptomoneda); // La clave es el símbolo en mayúsculas
-                if (criptoActual != null) {
-                    double precioActual = criptoActual.getPrecioUSD();
-                    boolean condicionCumplida = false;
-                    if ("MAYOR_QUE".equals(alerta.tipoCondicion) && precioActual > alerta.precioUmbral) {
-                        condicionCumplida = true;
-                    } else if ("MENOR_QUE".equals(alerta.tipoCondicion) && precioActual < alerta.precioUmbral) {
-                        condicionCumplida = true;
-                    }
+    // La usan los hilos de las particiones del verificador
+    private final EvaluadorAlertas.Evaluacion evaluacionAlertas = new EvaluadorAlertas.Evaluacion() {
+        @Override
+        public Cripto precio(String simbolo) {
+            return cacheCriptoData.obtener(simbolo, MONEDA_COTIZACION); // La clave es el símbolo en mayúsculas
+        }
 
-                    if (condicionCumplida) {
-                        System.out.printf("[ALERTA DISPARADA] Usuario: %s, Alerta DB ID: %s, Detalles: %s, Precio Actual de %s: %.2f %s (Timestamp del precio: %tF %<tT)\n",
-                                alerta.idUsuario, alerta.idAlertaDB, alerta.toString().replaceFirst("\\(Activa: true\\)",""), criptoActual.getSimbolo(), precioActual, MONEDA_COTIZACION.toUpperCase(), new Date(criptoActual.getUltimaActualizacionTimestamp()));
-                        // Opcional: desactivarAlertaEnDB(alerta.idAlertaDB);
-                    }
-                } else {
-                    // System.out.println("[ServidorPreciosImpl Alert Verifier] No hay datos en caché para " + alerta.criptomoneda + " para verificar alerta ID " + alerta.idAlertaDB);
+        @Override
+        public double valorCondicion(AlertaDefinicion alerta, double precioActual) {
+            return ServidorPreciosImpl.this.valorCondicion(alerta, precioActual);
+        }
+
+        @Override
+        public void disparada(AlertaDefinicion alerta, Cripto criptoActual) {
+            Metricas.ALERTAS_DISPARADAS.incrementar();
+            log.info("[ALERTA DISPARADA] Usuario: {}, Alerta DB ID: {}, Detalles: {}, Precio Actual de {}: {} {} (Timestamp del precio: {})",
+                    alerta.idUsuario, alerta.idAlertaDB, alerta, criptoActual.getSimbolo(), criptoActual.getPrecio(), MONEDA_COTIZACION, Instant.ofEpochMilli(criptoActual.getTimestampFuente()));
+        }
+    };
+
+    /**
+     * Valor que se compara con el umbral de la alerta: el precio en las alertas de precio fijo,
+     * o la estadística de la ventana en las alertas estadísticas. NaN si aún no hay datos suficientes.
+     */
+    private double valorCondicion(AlertaDefinicion alerta, double precioActual) {
+        switch (alerta.tipoCondicion) {
+            case CAMBIO_PCT:
+                return estadisticas.porMinutos(alerta.criptomoneda, alerta.ventana).cambioPorcentual();
+            case CRUCE_SMA:
+                VentanaPrecios ventana = estadisticas.porPeriodos(alerta.criptomoneda, alerta.ventana);
+                if (Double.isNaN(ventana.mediaMovil())) {
+                    return Double.NaN;
                 }
-            }
-        }, DELAY_INICIAL_VERIFICACION_ALERTAS_SEGUNDOS, INTERVALO_VERIFICACION_ALERTAS_SEGUNDOS, TimeUnit.SECONDS);
-        System.out.println("Tarea de verificación de alertas (desde BD) iniciada (cada " + INTERVALO_VERIFICACION_ALERTAS_SEGUNDOS + " segundos).");
+                return ventana.cruzoMediaMovil() ? 1.0 : 0.0; // Umbral 0: se cumple al cruzar
+            case VOLATIL:
+                return estadisticas.porPeriodos(alerta.criptomoneda, alerta.ventana).volatilidadPorcentual();
+            default:
+                return precioActual;
+        }
     }
 
-    private List<AlertaDefinicion> obtenerDefinicionesDeAlertasActivasDeDB() {
+    private List<AlertaDefinicion> obtenerDefinicionesDeAlertasActivasDeDB() throws SQLException {
         List<AlertaDefinicion> alertas = new ArrayList<>();
-        String sql = "SELECT a.id_alerta, u.nombre_usuario, c.simbolo, a.precio_umbral, a.tipo_condicion, a.activa " +
+        String sql = "SELECT a.id_alerta, u.nombre_usuario, c.simbolo, a.precio_umbral, a.tipo_condicion, a.ventana, a.activa " +
                 "FROM alertas a " +
                 "JOIN usuarios u ON a.id_usuario_fk = u.id_usuario " +
                 "JOIN criptomonedas c ON a.id_cripto_fk = c.id_cripto " +
@@ -295,453 +460,808 @@ public class ServidorPreciosImpl extends UnicastRemoteObject implements Interfaz
                         rs.getString("simbolo").toUpperCase(),
                         rs.getDouble("precio_umbral"),
                         rs.getString("tipo_condicion"),
+                        rs.getInt("ventana"),
                         rs.getBoolean("activa")
                 ));
             }
-        } catch (SQLException e) {
-            System.err.println("[Servidor ERROR] Error al obtener alertas activas de la BD: " + e.getMessage());
         } finally {
             DatabaseManager.close(conn, pstmt, rs);
         }
         return alertas;
     }
 
-    private void desactivarAlertaEnDB(String idAlertaDB) {
-        if (idAlertaDB == null) return;
-        String sql = "UPDATE alertas SET activa = FALSE WHERE id_alerta = ?";
+    /**
+     * Desactiva varias alertas con un solo UPDATE.
+     * @return true si el UPDATE se ejecutó (las alertas ya no están activas en la BD).
+     */
+    private boolean desactivarAlertasEnDB(List<String> idsAlertas) {
+        StringBuilder sql = new StringBuilder("UPDATE alertas SET activa = FALSE WHERE id_alerta IN (");
+        for (int i = 0; i < idsAlertas.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
         Connection conn = null;
         PreparedStatement pstmt = null;
         try {
             conn = DatabaseManager.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, Integer.parseInt(idAlertaDB));
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                System.out.println("[ServidorPreciosImpl] Alerta ID " + idAlertaDB + " desactivada en la BD.");
+            pstmt = conn.prepareStatement(sql.toString());
+            for (int i = 0; i < idsAlertas.size(); i++) {
+                pstmt.setInt(i + 1, Integer.parseInt(idsAlertas.get(i)));
             }
+            int affectedRows = pstmt.executeUpdate();
+            log.info("{} alertas disparadas desactivadas en la BD: {}", affectedRows, idsAlertas);
+            return true;
         } catch (SQLException e) {
-            System.err.println("[Servidor ERROR] Error al desactivar alerta ID " + idAlertaDB + " en la BD: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.err.println("[Servidor ERROR] ID de alerta inválido para desactivar: " + idAlertaDB);
-        }
-        finally {
+            log.error("Error al desactivar alertas {} en la BD (se reintentará): {}", idsAlertas, e.getMessage());
+            return false;
+        } finally {
             DatabaseManager.close(conn, pstmt);
         }
     }
 
+    /**
+     * Escribe en la BD la desactivación de las alertas disparadas en el ciclo (política UNA_VEZ).
+     */
+    private void desactivarAlertasDisparadas() {
+        List<String> pendientes = evaluadorAlertas.pendientesDeDesactivar();
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        boolean desactivadas;
+        try {
+            desactivadas = ejecutor.conPermisoDB(() -> desactivarAlertasEnDB(pendientes));
+        } catch (SQLException e) {
+            log.warn("Sin permiso de MySQL para desactivar alertas {} (se reintentará): {}", pendientes, e.getMessage());
+            return;
+        }
+        if (desactivadas) {
+            evaluadorAlertas.confirmarDesactivadas(pendientes);
+            for (AlertaDefinicion desactivada : indiceAlertas.quitar(pendientes)) {
+                alertasPorUsuario.invalidar(desactivada.idUsuario);
+            }
+        }
+    }
+
     @Override
     public String establecerAlerta(String nombreUsuario, String criptomoneda, double precioUmbral, String tipoCondicion) throws RemoteException {
+        if (tipoCondicion == null || (!tipoCondicion.equalsIgnoreCase("MAYOR_QUE") && !tipoCondicion.equalsIgnoreCase("MENOR_QUE"))) {
+            throw new RemoteException("Datos de alerta inválidos: Criptomoneda y tipo de condición ('MAYOR_QUE' o 'MENOR_QUE') son obligatorios.");
+        }
+        return atender("establecerAlerta", ControlAdmision.Clase.ESCRITURA, () -> establecerAlertaEnDB(nombreUsuario, criptomoneda, precioUmbral, tipoCondicion, 0));
+    }
 
-        System.out.println("\n[Mutex] Hilo " + Thread.currentThread().getName() + " intentando adquirir bloqueo para ESTABLECER ALERTA...");
+    @Override
+    public String establecerAlertaEstadistica(String nombreUsuario, String criptomoneda, String tipoCondicion, double umbral, int ventana) throws RemoteException {
+        String tipoUpper = tipoCondicion == null ? "" : tipoCondicion.toUpperCase();
+        if (!CAMBIO_PCT.equals(tipoUpper) && !CRUCE_SMA.equals(tipoUpper) && !VOLATIL.equals(tipoUpper)) {
+            throw new RemoteException("Tipo de alerta estadística inválido: '" + tipoCondicion + "'. Use " + CAMBIO_PCT + ", " + CRUCE_SMA + " o " + VOLATIL + ".");
+        }
+        if (ventana < 2 || ventana > MAX_VENTANA) {
+            throw new RemoteException("La ventana debe estar entre 2 y " + MAX_VENTANA + ".");
+        }
+        if (umbral < 0) {
+            throw new RemoteException("El umbral no puede ser negativo.");
+        }
+        double umbralEfectivo = CRUCE_SMA.equals(tipoUpper) ? 0 : umbral;
+        return atender("establecerAlertaEstadistica", ControlAdmision.Clase.ESCRITURA, () -> establecerAlertaEnDB(nombreUsuario, criptomoneda, umbralEfectivo, tipoUpper, ventana));
+    }
+
+    private String establecerAlertaEnDB(String nombreUsuario, String criptomoneda, double precioUmbral, String tipoCondicion, int ventana) throws RemoteException {
+        arranque.exigir("catalogo", "establecer la alerta");
+
+        log.info("[Mutex] Intentando adquirir bloqueo para ESTABLECER ALERTA...");
 
         // 1. Bucle de espera para adquirir el bloqueo (estilo-clase)
+        long esperaMutexDesde = System.nanoTime();
         while (!this.request_mutex()) {
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " en espera. El recurso está ocupado.");
+            log.info("[Mutex] En espera. El recurso está ocupado.");
             try {
                 Thread.sleep(2000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
+        admision.descontar(System.nanoTime() - esperaMutexDesde); // La espera no es carga de MySQL
 
         // Si salimos del bucle, es porque obtuvimos el bloqueo.
-        System.out.println("[Mutex] ¡Bloqueo adquirido por " + Thread.currentThread().getName() + "! Iniciando operación crítica.");
+        log.info("[Mutex] ¡Bloqueo adquirido! Iniciando operación crítica.");
 
         // 2. Bloque try-finally para garantizar la liberación del mutex
         try {
 
             if (nombreUsuario == null || nombreUsuario.trim().isEmpty()) {
                 nombreUsuario = USUARIO_POR_DEFECTO;
-                System.out.println("[ServidorPreciosImpl] Nombre de usuario no provisto para alerta, usando por defecto: " + USUARIO_POR_DEFECTO);
+                log.info("Nombre de usuario no provisto para alerta, usando por defecto: {}", USUARIO_POR_DEFECTO);
             }
-            if (criptomoneda == null || criptomoneda.trim().isEmpty() ||
-                    (!tipoCondicion.equalsIgnoreCase("MAYOR_QUE") && !tipoCondicion.equalsIgnoreCase("MENOR_QUE"))) {
+            if (criptomoneda == null || criptomoneda.trim().isEmpty()) {
                 throw new RemoteException("Datos de alerta inválidos: Criptomoneda y tipo de condición ('MAYOR_QUE' o 'MENOR_QUE') son obligatorios.");
             }
             String criptoUpper = criptomoneda.toUpperCase();
             String tipoCondicionUpper = tipoCondicion.toUpperCase();
 
-            Connection conn = null;
-            PreparedStatement pstmt = null;
-            ResultSet rs = null;
+            // La transacción ocupa un permiso de MySQL; la pausa de demostración va fuera de él
+            final String usuario = nombreUsuario;
+            String confirmacion;
             try {
-                conn = DatabaseManager.getConnection();
-                conn.setAutoCommit(false);
-
-                int idUsuarioFk = -1;
-                String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
-                pstmt = conn.prepareStatement(sqlGetUsuario);
-                pstmt.setString(1, nombreUsuario);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    idUsuarioFk = rs.getInt("id_usuario");
-                } else {
-                    rs.close();
-                    pstmt.close();
-                    String sqlInsertUsuario = "INSERT INTO usuarios (nombre_usuario) VALUES (?)";
-                    pstmt = conn.prepareStatement(sqlInsertUsuario, Statement.RETURN_GENERATED_KEYS);
-                    pstmt.setString(1, nombreUsuario);
-                    pstmt.executeUpdate();
-                    rs = pstmt.getGeneratedKeys();
-                    if (rs.next()) {
-                        idUsuarioFk = rs.getInt(1);
-                        System.out.println("[ServidorPreciosImpl] Usuario '" + nombreUsuario + "' creado con ID: " + idUsuarioFk);
-                    } else {
-                        conn.rollback();
-                        throw new RemoteException("No se pudo crear el usuario '" + nombreUsuario + "' en la base de datos.");
-                    }
-                }
-                if(rs!=null) rs.close();
-                if(pstmt!=null) pstmt.close();
-
-                int idCriptoFk = -1;
-                String sqlGetCripto = "SELECT id_cripto FROM criptomonedas WHERE simbolo = ?";
-                pstmt = conn.prepareStatement(sqlGetCripto);
-                pstmt.setString(1, criptoUpper);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    idCriptoFk = rs.getInt("id_cripto");
-                } else {
-                    conn.rollback();
-                    throw new RemoteException("Criptomoneda '" + criptoUpper + "' no encontrada en la base de datos.");
-                }
-                rs.close();
-                pstmt.close();
-
-                String sqlInsertAlerta = "INSERT INTO alertas (id_usuario_fk, id_cripto_fk, precio_umbral, tipo_condicion, activa) VALUES (?, ?, ?, ?, TRUE)";
-                pstmt = conn.prepareStatement(sqlInsertAlerta);
-                pstmt.setInt(1, idUsuarioFk);
-                pstmt.setInt(2, idCriptoFk);
-                pstmt.setDouble(3, precioUmbral);
-                pstmt.setString(4, tipoCondicionUpper);
-                int affectedRows = pstmt.executeUpdate();
-
-                if (affectedRows > 0) {
-                    conn.commit();
-
-                    // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
-                    System.out.println("-> [Servidor] Procesando solicitud para " + Thread.currentThread().getName() + ". La operación simulada tomará 8 segundos...");
+                confirmacion = ejecutor.conPermisoDB(() -> {
+                    Connection conn = null;
+                    PreparedStatement pstmt = null;
+                    ResultSet rs = null;
                     try {
-                        // CORREGIDO: Pausa larga de 8 segundos para la demostración.
-                        Thread.sleep(8000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                        conn = DatabaseManager.getConnection();
+                        conn.setAutoCommit(false);
+
+                        int idUsuarioFk = -1;
+                        String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
+                        pstmt = conn.prepareStatement(sqlGetUsuario);
+                        pstmt.setString(1, usuario);
+                        rs = pstmt.executeQuery();
+                        if (rs.next()) {
+                            idUsuarioFk = rs.getInt("id_usuario");
+                        } else {
+                            rs.close();
+                            pstmt.close();
+                            String sqlInsertUsuario = "INSERT INTO usuarios (nombre_usuario) VALUES (?)";
+                            pstmt = conn.prepareStatement(sqlInsertUsuario, Statement.RETURN_GENERATED_KEYS);
+                            pstmt.setString(1, usuario);
+                            pstmt.executeUpdate();
+                            rs = pstmt.getGeneratedKeys();
+                            if (rs.next()) {
+                                idUsuarioFk = rs.getInt(1);
+                                log.info("Usuario '{}' creado con ID: {}", usuario, idUsuarioFk);
+                            } else {
+                                conn.rollback();
+                                throw new RemoteException("No se pudo crear el usuario '" + usuario + "' en la base de datos.");
+                            }
+                        }
+                        if(rs!=null) rs.close();
+                        if(pstmt!=null) pstmt.close();
+
+                        int idCriptoFk = -1;
+                        String sqlGetCripto = "SELECT id_cripto FROM criptomonedas WHERE simbolo = ?";
+                        pstmt = conn.prepareStatement(sqlGetCripto);
+                        pstmt.setString(1, criptoUpper);
+                        rs = pstmt.executeQuery();
+                        if (rs.next()) {
+                            idCriptoFk = rs.getInt("id_cripto");
+                        } else {
+                            conn.rollback();
+                            throw new RemoteException("Criptomoneda '" + criptoUpper + "' no encontrada en la base de datos.");
+                        }
+                        rs.close();
+                        pstmt.close();
+
+                        String sqlInsertAlerta = "INSERT INTO alertas (id_usuario_fk, id_cripto_fk, precio_umbral, tipo_condicion, ventana, activa) VALUES (?, ?, ?, ?, ?, TRUE)";
+                        pstmt = conn.prepareStatement(sqlInsertAlerta, Statement.RETURN_GENERATED_KEYS);
+                        pstmt.setInt(1, idUsuarioFk);
+                        pstmt.setInt(2, idCriptoFk);
+                        pstmt.setDouble(3, precioUmbral);
+                        pstmt.setString(4, tipoCondicionUpper);
+                        if (ventana > 0) {
+                            pstmt.setInt(5, ventana);
+                        } else {
+                            pstmt.setNull(5, Types.INTEGER);
+                        }
+                        int affectedRows = pstmt.executeUpdate();
+
+                        if (affectedRows > 0) {
+                            rs = pstmt.getGeneratedKeys();
+                            String idAlerta = rs.next() ? String.valueOf(rs.getInt(1)) : null;
+                            conn.commit();
+                            if (idAlerta != null) {
+                                indiceAlertas.poner(new AlertaDefinicion(idAlerta, usuario, criptoUpper, precioUmbral, tipoCondicionUpper, ventana, true));
+                            }
+                            alertasPorUsuario.invalidar(usuario);
+
+
+                            AlertaDefinicion nuevaAlerta = new AlertaDefinicion(usuario, criptoUpper, precioUmbral, tipoCondicionUpper, ventana);
+                            String mensaje = "Alerta para " + nuevaAlerta.toString().replace("(Activa: true)","") + " establecida correctamente para el usuario " + usuario + ".";
+                            return mensaje;
+                        } else {
+                            conn.rollback();
+                            throw new RemoteException("No se pudo establecer la alerta en la base de datos.");
+                        }
+
+                    } catch (SQLException e) {
+                        log.error("SQLException al establecer alerta: {}", e.getMessage());
+                        if (conn != null) {
+                            try {
+                                conn.rollback();
+                            } catch (SQLException ex) {
+                                log.error("Error en rollback de alerta: {}", ex.getMessage());
+                            }
+                        }
+                        throw new RemoteException("Error de base de datos al establecer alerta: " + e.getMessage());
+                    } finally {
+                        if(conn != null) {
+                            try {
+                                conn.setAutoCommit(true);
+                            } catch (SQLException e) { /* ignored */ }
+                        }
+                        DatabaseManager.close(conn, pstmt, rs);
                     }
-                    System.out.println("-> [Servidor] Procesamiento para " + Thread.currentThread().getName() + " finalizado.");
-                    // --- FIN CÓDIGO DEMO ---
-
-                    AlertaDefinicion nuevaAlerta = new AlertaDefinicion(nombreUsuario, criptoUpper, precioUmbral, tipoCondicionUpper);
-                    String mensaje = "Alerta para " + nuevaAlerta.toString().replace("(Activa: true)","") + " establecida correctamente para el usuario " + nombreUsuario + ".";
-                    System.out.printf("[ServidorPreciosImpl] %s\n", mensaje);
-                    return mensaje;
-                } else {
-                    conn.rollback();
-                    throw new RemoteException("No se pudo establecer la alerta en la base de datos.");
-                }
-
+                });
             } catch (SQLException e) {
-                System.err.println("[Servidor ERROR] SQLException al establecer alerta: " + e.getMessage());
-                if (conn != null) {
-                    try {
-                        conn.rollback();
-                    } catch (SQLException ex) {
-                        System.err.println("[Servidor ERROR] Error en rollback de alerta: " + ex.getMessage());
-                    }
-                }
-                throw new RemoteException("Error de base de datos al establecer alerta: " + e.getMessage());
-            } finally {
-                if(conn != null) {
-                    try {
-                        conn.setAutoCommit(true);
-                    } catch (SQLException e) { /* ignored */ }
-                }
-                DatabaseManager.close(conn, pstmt, rs);
+                log.error("Sin permiso de MySQL para establecer alerta: {}", e.getMessage());
+                throw new RemoteException("Base de datos saturada; no se pudo establecer alerta: " + e.getMessage());
+            }
+
+            // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
+            long pausaDesde = System.nanoTime();
+            log.info("Procesando solicitud. La operación simulada tomará 8 segundos...");
+            try {
+                // CORREGIDO: Pausa larga de 8 segundos para la demostración.
+                Thread.sleep(8000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            admision.descontar(System.nanoTime() - pausaDesde);
+            log.info("Procesamiento finalizado.");
+            // --- FIN CÓDIGO DEMO ---
+
+            log.info("{}", confirmacion);
+            return confirmacion;
         } finally {
 
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " liberando el bloqueo.");
+            log.info("[Mutex] Liberando el bloqueo.");
             this.release_mutex();
         }
     }
 
     @Override
     public String eliminarAlerta(String nombreUsuario, int idAlertaDB) throws RemoteException {
+        return atender("eliminarAlerta", ControlAdmision.Clase.ESCRITURA, () -> eliminarAlertaEnDB(nombreUsuario, idAlertaDB));
+    }
+
+    private String eliminarAlertaEnDB(String nombreUsuario, int idAlertaDB) throws RemoteException {
+        arranque.exigir("catalogo", "eliminar la alerta");
 
-        System.out.println("\n[Mutex] Hilo " + Thread.currentThread().getName() + " intentando adquirir bloqueo para ELIMINAR ALERTA...");
+        log.info("[Mutex] Intentando adquirir bloqueo para ELIMINAR ALERTA...");
 
         // 1. Bucle de espera para adquirir el bloqueo (estilo-clase)
+        long esperaMutexDesde = System.nanoTime();
         while (!this.request_mutex()) {
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " en espera. El recurso está ocupado.");
+            log.info("[Mutex] En espera. El recurso está ocupado.");
             try {
                 Thread.sleep(2000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
+        admision.descontar(System.nanoTime() - esperaMutexDesde); // La espera no es carga de MySQL
 
-        System.out.println("[Mutex] ¡Bloqueo adquirido por " + Thread.currentThread().getName() + "! Iniciando operación crítica.");
+        log.info("[Mutex] ¡Bloqueo adquirido! Iniciando operación crítica.");
 
         // 2. Bloque try-finally para garantizar la liberación del mutex
         try {
             if (nombreUsuario == null || nombreUsuario.trim().isEmpty()) {
                 nombreUsuario = USUARIO_POR_DEFECTO;
-                System.out.println("[ServidorPreciosImpl] Nombre de usuario no provisto para eliminar alerta, usando por defecto: " + USUARIO_POR_DEFECTO);
+                log.info("Nombre de usuario no provisto para eliminar alerta, usando por defecto: {}", USUARIO_POR_DEFECTO);
             }
             if (idAlertaDB <= 0) {
                 throw new RemoteException("ID de alerta inválido.");
             }
 
-            System.out.println("[ServidorPreciosImpl] Solicitud para eliminar alerta ID: " + idAlertaDB + " para el usuario: " + nombreUsuario);
-
-            Connection conn = null;
-            PreparedStatement pstmt = null;
-            ResultSet rs = null;
-            int idUsuarioFk = -1;
+            log.info("Solicitud para eliminar alerta ID: {} para el usuario: {}", idAlertaDB, nombreUsuario);
 
+            // La transacción ocupa un permiso de MySQL; la pausa de demostración va fuera de él
+            final String usuario = nombreUsuario;
+            String confirmacion;
             try {
-                conn = DatabaseManager.getConnection();
-                conn.setAutoCommit(false); // Iniciar transacción
-
-                // 1. Obtener el id_usuario_fk del usuario
-                String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
-                pstmt = conn.prepareStatement(sqlGetUsuario);
-                pstmt.setString(1, nombreUsuario);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    idUsuarioFk = rs.getInt("id_usuario");
-                } else {
-                    conn.rollback();
-                    throw new RemoteException("Usuario '" + nombreUsuario + "' no encontrado. No se puede eliminar la alerta.");
-                }
-                rs.close();
-                pstmt.close();
-
-                // 2. Eliminar la alerta verificando que pertenezca al usuario
-                String sqlDeleteAlerta = "DELETE FROM alertas WHERE id_alerta = ? AND id_usuario_fk = ?";
-                pstmt = conn.prepareStatement(sqlDeleteAlerta);
-                pstmt.setInt(1, idAlertaDB);
-                pstmt.setInt(2, idUsuarioFk);
-
-                int affectedRows = pstmt.executeUpdate();
-
-                if (affectedRows > 0) {
-                    conn.commit();
+                confirmacion = ejecutor.conPermisoDB(() -> {
+                    Connection conn = null;
+                    PreparedStatement pstmt = null;
+                    ResultSet rs = null;
+                    int idUsuarioFk = -1;
 
-                    // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
-                    System.out.println("-> [Servidor] Procesando solicitud para " + Thread.currentThread().getName() + ". La operación simulada tomará 8 segundos...");
                     try {
-                        // Pausa larga de 8 segundos para la demostración.
-                        Thread.sleep(8000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                        conn = DatabaseManager.getConnection();
+                        conn.setAutoCommit(false); // Iniciar transacción
+
+                        // 1. Obtener el id_usuario_fk del usuario
+                        String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
+                        pstmt = conn.prepareStatement(sqlGetUsuario);
+                        pstmt.setString(1, usuario);
+                        rs = pstmt.executeQuery();
+                        if (rs.next()) {
+                            idUsuarioFk = rs.getInt("id_usuario");
+                        } else {
+                            conn.rollback();
+                            throw new RemoteException("Usuario '" + usuario + "' no encontrado. No se puede eliminar la alerta.");
+                        }
+                        rs.close();
+                        pstmt.close();
+
+                        // 2. Eliminar la alerta verificando que pertenezca al usuario
+                        String sqlDeleteAlerta = "DELETE FROM alertas WHERE id_alerta = ? AND id_usuario_fk = ?";
+                        pstmt = conn.prepareStatement(sqlDeleteAlerta);
+                        pstmt.setInt(1, idAlertaDB);
+                        pstmt.setInt(2, idUsuarioFk);
+
+                        int affectedRows = pstmt.executeUpdate();
+
+                        if (affectedRows > 0) {
+                            conn.commit();
+                            indiceAlertas.quitar(Collections.singletonList(String.valueOf(idAlertaDB)));
+                            alertasPorUsuario.invalidar(usuario);
+
+
+                            String mensaje = "Alerta ID: " + idAlertaDB + " eliminada correctamente para el usuario " + usuario + ".";
+                            return mensaje;
+                        } else {
+                            conn.rollback();
+                            // Verificar si la alerta existía pero no pertenecía al usuario, o si no existía
+                            String sqlCheckAlertaExiste = "SELECT id_usuario_fk FROM alertas WHERE id_alerta = ?";
+                            PreparedStatement pstmtCheck = conn.prepareStatement(sqlCheckAlertaExiste);
+                            pstmtCheck.setInt(1, idAlertaDB);
+                            ResultSet rsCheck = pstmtCheck.executeQuery();
+                            boolean alertaExiste = rsCheck.next();
+                            rsCheck.close();
+                            pstmtCheck.close();
+
+                            if (alertaExiste) {
+                                throw new RemoteException("La alerta ID: " + idAlertaDB + " no pertenece al usuario " + usuario + " o ya fue eliminada.");
+                            } else {
+                                throw new RemoteException("Alerta ID: " + idAlertaDB + " no encontrada.");
+                            }
+                        }
+                    } catch (SQLException e) {
+                        log.error("SQLException al eliminar alerta: {}", e.getMessage());
+                        if (conn != null) {
+                            try {
+                                conn.rollback();
+                            } catch (SQLException ex) {
+                                log.error("Error en rollback al eliminar alerta: {}", ex.getMessage());
+                            }
+                        }
+                        throw new RemoteException("Error de base de datos al eliminar alerta: " + e.getMessage());
+                    } finally {
+                        DatabaseManager.close(conn, pstmt, rs);
                     }
-                    System.out.println("-> [Servidor] Procesamiento para " + Thread.currentThread().getName() + " finalizado.");
-                    // --- FIN CÓDIGO DEMO ---
-
-                    String mensaje = "Alerta ID: " + idAlertaDB + " eliminada correctamente para el usuario " + nombreUsuario + ".";
-                    System.out.println("[ServidorPreciosImpl] " + mensaje);
-                    return mensaje;
-                } else {
-                    conn.rollback();
-                    // Verificar si la alerta existía pero no pertenecía al usuario, o si no existía
-                    String sqlCheckAlertaExiste = "SELECT id_usuario_fk FROM alertas WHERE id_alerta = ?";
-                    PreparedStatement pstmtCheck = conn.prepareStatement(sqlCheckAlertaExiste);
-                    pstmtCheck.setInt(1, idAlertaDB);
-                    ResultSet rsCheck = pstmtCheck.executeQuery();
-                    boolean alertaExiste = rsCheck.next();
-                    rsCheck.close();
-                    pstmtCheck.close();
-
-                    if (alertaExiste) {
-                        throw new RemoteException("La alerta ID: " + idAlertaDB + " no pertenece al usuario " + nombreUsuario + " o ya fue eliminada.");
-                    } else {
-                        throw new RemoteException("Alerta ID: " + idAlertaDB + " no encontrada.");
-                    }
-                }
+                });
             } catch (SQLException e) {
-                System.err.println("[Servidor ERROR] SQLException al eliminar alerta: " + e.getMessage());
-                if (conn != null) {
-                    try {
-                        conn.rollback();
-                    } catch (SQLException ex) {
-                        System.err.println("[Servidor ERROR] Error en rollback al eliminar alerta: " + ex.getMessage());
-                    }
-                }
-                throw new RemoteException("Error de base de datos al eliminar alerta: " + e.getMessage());
-            } finally {
-                DatabaseManager.close(conn, pstmt, rs);
+                log.error("Sin permiso de MySQL para eliminar alerta: {}", e.getMessage());
+                throw new RemoteException("Base de datos saturada; no se pudo eliminar alerta: " + e.getMessage());
             }
 
+            // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
+            long pausaDesde = System.nanoTime();
+            log.info("Procesando solicitud. La operación simulada tomará 8 segundos...");
+            try {
+                // Pausa larga de 8 segundos para la demostración.
+                Thread.sleep(8000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            admision.descontar(System.nanoTime() - pausaDesde);
+            log.info("Procesamiento finalizado.");
+            // --- FIN CÓDIGO DEMO ---
+
+            log.info("{}", confirmacion);
+            return confirmacion;
+
         } finally {
 
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " liberando el bloqueo.");
+            log.info("[Mutex] Liberando el bloqueo.");
             this.release_mutex();
         }
     }
 
     @Override
     public List<String> obtenerAlertasUsuario(String nombreUsuario) throws RemoteException {
+        return atender("obtenerAlertasUsuario", ControlAdmision.Clase.LECTURA, () -> {
+            List<String> alertasString = new ArrayList<>();
+            for (AlertaUsuario alerta : alertasUsuario(nombreUsuario)) {
+                alertasString.add(alerta.toString());
+            }
+            return alertasString;
+        });
+    }
+
+    @Override
+    public PaginaAlertas obtenerAlertasUsuario(String nombreUsuario, int cursor, int limite) throws RemoteException {
+        if (cursor < 0 || limite < 1 || limite > AlertasPorUsuario.MAX_POR_PAGINA) {
+            throw new RemoteException("Página inválida: el cursor no puede ser negativo y el límite debe estar entre 1 y " + AlertasPorUsuario.MAX_POR_PAGINA + ".");
+        }
+        return atender("obtenerAlertasUsuarioPagina", ControlAdmision.Clase.LECTURA, () -> AlertasPorUsuario.pagina(alertasUsuario(nombreUsuario), cursor, limite));
+    }
+
+    // Alertas del usuario ordenadas por id, desde la memoria si están vigentes
+    private List<AlertaUsuario> alertasUsuario(String nombreUsuario) throws RemoteException {
+        arranque.exigir("bd", "consultar las alertas");
         if (nombreUsuario == null || nombreUsuario.trim().isEmpty()) {
             nombreUsuario = USUARIO_POR_DEFECTO;
-            System.out.println("[ServidorPreciosImpl] Nombre de usuario no provisto para obtener alertas, usando por defecto: " + USUARIO_POR_DEFECTO);
+            log.info("Nombre de usuario no provisto para obtener alertas, usando por defecto: {}", USUARIO_POR_DEFECTO);
         }
-        System.out.println("[ServidorPreciosImpl] Solicitud para obtener alertas del usuario: " + nombreUsuario);
+        log.debug("Solicitud para obtener alertas del usuario: {}", nombreUsuario);
 
-        List<String> alertasString = new ArrayList<>();
-        // Modificamos la consulta SQL para obtener también a.id_alerta
-        String sql = "SELECT a.id_alerta, c.simbolo, a.precio_umbral, a.tipo_condicion, a.activa " +
-                "FROM alertas a " +
-                "JOIN usuarios u ON a.id_usuario_fk = u.id_usuario " +
-                "JOIN criptomonedas c ON a.id_cripto_fk = c.id_cripto " +
-                "WHERE u.nombre_usuario = ?";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
         try {
-            conn = DatabaseManager.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, nombreUsuario);
-            rs = pstmt.executeQuery();
-            while (rs.next()) {
-                int idAlerta = rs.getInt("id_alerta");
-                String simbolo = rs.getString("simbolo").toUpperCase();
-                double precioUmbral = rs.getDouble("precio_umbral");
-                String tipoCondicion = rs.getString("tipo_condicion");
-                boolean activa = rs.getBoolean("activa");
-
-                String simboloCondicion = "MAYOR_QUE".equals(tipoCondicion) ? ">" : "<";
-                // Incluimos el ID de la alerta en el string
-                String descripcionAlerta = String.format("[ID: %d] %s %s %.2f (Activa: %b)",
-                        idAlerta, simbolo, simboloCondicion, precioUmbral, activa);
-                alertasString.add(descripcionAlerta);
-            }
+            return alertasPorUsuario.obtener(nombreUsuario);
         } catch (SQLException e) {
-            System.err.println("[Servidor ERROR] Error al obtener alertas para el usuario " + nombreUsuario + ": " + e.getMessage());
+            log.error("Error al obtener alertas para el usuario {}: {}", nombreUsuario, e.getMessage());
             throw new RemoteException("Error de base de datos al obtener alertas: " + e.getMessage());
-        } finally {
-            DatabaseManager.close(conn, pstmt, rs);
         }
-        return alertasString;
     }
 
 
     @Override
     public double obtenerPrecioActual(String criptomoneda) throws RemoteException {
+        return obtenerPrecioActual(criptomoneda, MONEDA_COTIZACION);
+    }
+
+    @Override
+    public double obtenerPrecioActual(String criptomoneda, String moneda) throws RemoteException {
+        return atender("obtenerPrecioActual", ControlAdmision.Clase.LECTURA, () -> precioActual(criptomoneda, moneda));
+    }
+
+    @Override
+    public double obtenerPrecioActual(String criptomoneda, String moneda, long plazoMs) throws RemoteException {
+        return atender("obtenerPrecioActual", ControlAdmision.Clase.LECTURA, plazoMs, () -> precioActual(criptomoneda, moneda));
+    }
+
+    private double precioActual(String criptomoneda, String moneda) throws RemoteException {
         if (criptomoneda == null || criptomoneda.trim().isEmpty()) {
             throw new RemoteException("Nombre de criptomoneda no puede ser nulo o vacío.");
         }
         String criptoUpper = criptomoneda.toUpperCase();
+        String monedaLower = validarMoneda(moneda);
 
-        Cripto criptoEnCache = cacheCriptoData.get(criptoUpper);
-        if (criptoEnCache != null && (System.currentTimeMillis() - criptoEnCache.getUltimaActualizacionTimestamp() < (INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS * 1000 / 2))) {
-            return criptoEnCache.getPrecioUSD();
+        cacheCriptoData.marcarAcceso(criptoUpper); // Mantiene el símbolo en el refresco periódico
+        Cripto criptoEnCache = cacheCriptoData.obtener(criptoUpper, monedaLower);
+        if (criptoEnCache != null && (System.currentTimeMillis() - criptoEnCache.getTimestampObtencion() < (INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS * 1000 / 2))) {
+            Metricas.CACHE_ACIERTOS.incrementar();
+            return criptoEnCache.getPrecio();
         }
+        Metricas.CACHE_FALLOS.incrementar();
+        PlazoLlamada.verificar("caché");
 
+        // Ir al origen es lo primero que se deja de admitir bajo carga: antes un precio vencido que un rechazo
+        if (!admision.intentar(ControlAdmision.Clase.ORIGEN)) {
+            if (criptoEnCache != null) {
+                return criptoEnCache.getPrecio();
+            }
+            throw admision.rechazo(ControlAdmision.Clase.ORIGEN);
+        }
+        long inicioOrigen = System.nanoTime();
         try {
-            Cripto criptoObtenida = coinGeckoService.fetchSingleCriptoData(criptoUpper, MONEDA_COTIZACION);
-            if (criptoObtenida != null) {
-                Map<String, Cripto> singleCriptoMap = new HashMap<>();
-                singleCriptoMap.put(criptoUpper, criptoObtenida);
-                actualizarCacheYGuardarHistorial(singleCriptoMap);
+            return precioDesdeOrigen(criptoUpper, monedaLower, criptoEnCache);
+        } finally {
+            admision.salir(ControlAdmision.Clase.ORIGEN, inicioOrigen);
+        }
+    }
 
-                return criptoObtenida.getPrecioUSD();
-            } else {
-                return obtenerUltimoPrecioConocidoDeDB(criptoUpper);
+    private double precioDesdeOrigen(String criptoUpper, String monedaLower, Cripto criptoEnCache) throws PlazoVencidoException {
+        try {
+            // Un fallo de caché trae todas las monedas configuradas: las siguientes consultas en otra moneda serán aciertos
+            List<Cripto> cotizaciones = ejecutor.conPermisoHTTP(
+                    () -> coinGeckoService.fetchSingleCriptoData(criptoUpper, CoinGeckoService.MONEDAS_COTIZACION));
+            if (!cotizaciones.isEmpty()) {
+                actualizarCacheYGuardarHistorial(cotizaciones);
+                cacheCriptoData.marcarAcceso(criptoUpper); // Primera consulta: la fila recién existe
             }
+            for (Cripto cotizacion : cotizaciones) {
+                if (cotizacion.getMoneda().equals(monedaLower)) {
+                    return cotizacion.getPrecio();
+                }
+            }
+        } catch (PlazoVencidoException e) {
+            throw e;
         } catch (IOException e) {
-            System.err.println("[ServidorPreciosImpl ERROR] IOException al obtener precio individual para " + criptoUpper + ": " + e.getMessage());
-            return obtenerUltimoPrecioConocidoDeDB(criptoUpper);
+            log.error("IOException al obtener precio individual para {}: {}", criptoUpper, e.getMessage());
+        }
+        // Sin respuesta de CoinGecko: el último precio conocido (caché vencida o instantánea) antes que la BD
+        if (criptoEnCache != null) {
+            return criptoEnCache.getPrecio();
         }
+        PlazoLlamada.verificar("CoinGecko");
+        return ultimosPreciosConocidos.obtener(criptoUpper, monedaLower);
     }
 
-    private double obtenerUltimoPrecioConocidoDeDB(String criptoSimbol) {
-        String sql = "SELECT hp.precio FROM historial_precios hp " +
-                "JOIN criptomonedas c ON hp.id_cripto_fk = c.id_cripto " +
-                "WHERE c.simbolo = ? ORDER BY hp.timestamp_precio DESC LIMIT 1";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        try {
-            conn = DatabaseManager.getConnection();
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, criptoSimbol.toUpperCase());
-            rs = pstmt.executeQuery();
-            if (rs.next()) {
-                double precio = rs.getDouble("precio");
-                return precio;
-            } else {
-                return -1.0;
-            }
-        } catch (SQLException e) {
-            System.err.println("[Servidor ERROR] Error al obtener último precio de BD para " + criptoSimbol + ": " + e.getMessage());
-            return -1.0;
-        } finally {
-            DatabaseManager.close(conn, pstmt, rs);
+    private String validarMoneda(String moneda) throws RemoteException {
+        if (moneda == null || moneda.trim().isEmpty()) {
+            return MONEDA_COTIZACION;
+        }
+        String monedaLower = moneda.trim().toLowerCase();
+        if (!cacheCriptoData.soportaMoneda(monedaLower)) {
+            throw new RemoteException("Moneda de cotización no soportada: '" + moneda + "'. Disponibles: " + CoinGeckoService.MONEDAS_COTIZACION);
         }
+        return monedaLower;
     }
 
+    @Override
+    public List<String> obtenerMonedasDisponibles() throws RemoteException {
+        return atender("obtenerMonedasDisponibles", ControlAdmision.Clase.LECTURA, () -> new ArrayList<>(CoinGeckoService.MONEDAS_COTIZACION));
+    }
 
     @Override
     public Map<String, Double> obtenerPreciosMonitoreados(String nombreUsuario) throws RemoteException {
-        System.out.println("[ServidorPreciosImpl] Solicitud de precios monitoreados/cacheados por usuario: " + nombreUsuario);
-        Map<String, Double> preciosParaCliente = new ConcurrentHashMap<>();
-        cacheCriptoData.forEach((simbolo, cripto) -> {
-            preciosParaCliente.put(simbolo, cripto.getPrecioUSD());
-        });
+        return obtenerPreciosMonitoreados(nombreUsuario, MONEDA_COTIZACION);
+    }
+
+    @Override
+    public Map<String, Double> obtenerPreciosMonitoreados(String nombreUsuario, String moneda) throws RemoteException {
+        return atender("obtenerPreciosMonitoreados", ControlAdmision.Clase.LECTURA, () -> preciosMonitoreados(nombreUsuario, moneda));
+    }
+
+    private Map<String, Double> preciosMonitoreados(String nombreUsuario, String moneda) throws RemoteException {
+        String monedaLower = validarMoneda(moneda);
+        log.debug("Solicitud de precios monitoreados/cacheados ({}) por usuario: {}", monedaLower, nombreUsuario);
+        Map<String, Double> preciosParaCliente = new HashMap<>(cacheCriptoData.tamano() * 2);
+        cacheCriptoData.forEach(monedaLower, (simbolo, cripto) -> preciosParaCliente.put(simbolo, cripto.getPrecio()));
 
-        System.out.println("[ServidorPreciosImpl] Devolviendo " + preciosParaCliente.size() + " precios cacheados. (Timestamp del más reciente en caché: " +
-                cacheCriptoData.values().stream()
-                        .map(Cripto::getUltimaActualizacionTimestamp)
-                        .max(Long::compareTo)
-                        .map(ts -> String.format("%tF %<tT", new Date(ts)))
-                        .orElse("N/A") + ")");
+        log.debug("Devolviendo {} precios cacheados. (Versión de la caché: {})", preciosParaCliente.size(), cacheCriptoData.getVersion());
         return preciosParaCliente;
     }
 
+    @Override
+    public CambiosPrecios obtenerCambiosDesde(long version) throws RemoteException {
+        return obtenerCambiosDesde(version, MONEDA_COTIZACION);
+    }
+
+    @Override
+    public CambiosPrecios obtenerCambiosDesde(long version, String moneda) throws RemoteException {
+        return atender("obtenerCambiosDesde", ControlAdmision.Clase.LECTURA, () -> cambiosDesde(version, moneda));
+    }
+
+    private CambiosPrecios cambiosDesde(long version, String moneda) throws RemoteException {
+        CambiosPrecios cambios = cacheCriptoData.cambiosDesde(version, validarMoneda(moneda));
+        log.debug("Cambios desde versión {}: {}", version, cambios);
+        return cambios;
+    }
+
     // NUEVO MÉTODO IMPLEMENTADO
     @Override
     public Map<String, Double> obtenerPreciosDeTodasLasBases(String nombreUsuario) throws RemoteException {
-        System.out.println("[ServidorPreciosImpl] Solicitud de precios para todas las criptomonedas base por usuario: " + nombreUsuario);
-        Map<String, Double> preciosDeTodas = new ConcurrentHashMap<>();
-        // Obtener todos los símbolos base desde CoinGeckoService o una constante si es más apropiado
-        Set<String> todosLosSimbolosBase = CoinGeckoService.SYMBOL_TO_COINGECKO_ID_MAP.keySet();
+        return obtenerPreciosDeTodasLasBases(nombreUsuario, MONEDA_COTIZACION);
+    }
+
+    @Override
+    public Map<String, Double> obtenerEstadisticas(String criptomoneda, int ventana) throws RemoteException {
+        return atender("obtenerEstadisticas", ControlAdmision.Clase.ORIGEN, () -> estadisticasDe(criptomoneda, ventana));
+    }
 
-        for (String simbolo : todosLosSimbolosBase) {
+    private Map<String, Double> estadisticasDe(String criptomoneda, int ventana) throws RemoteException {
+        if (criptomoneda == null || criptomoneda.trim().isEmpty()) {
+            throw new RemoteException("Nombre de criptomoneda no puede ser nulo o vacío.");
+        }
+        if (ventana < 2 || ventana > MAX_VENTANA) {
+            throw new RemoteException("La ventana debe estar entre 2 y " + MAX_VENTANA + ".");
+        }
+        VentanaPrecios v = estadisticas.porPeriodos(criptomoneda.trim().toUpperCase(), ventana);
+        Map<String, Double> resultado = new LinkedHashMap<>();
+        resultado.put("muestras", (double) v.muestras());
+        resultado.put("sma", v.mediaMovil());
+        resultado.put("desviacion", v.desviacion());
+        resultado.put("volatilidad_pct", v.volatilidadPorcentual());
+        resultado.put("minimo", v.minimo());
+        resultado.put("maximo", v.maximo());
+        resultado.put("cambio_pct", v.cambioPorcentual());
+        return resultado;
+    }
+
+    @Override
+    public String agregarASeguimiento(String nombreUsuario, String criptomoneda) throws RemoteException {
+        return atender("agregarASeguimiento", ControlAdmision.Clase.ESCRITURA, () -> {
+            arranque.exigir("catalogo", "modificar la lista de seguimiento");
+            String usuario = usuarioOPorDefecto(nombreUsuario);
+            String criptoUpper = simboloValido(criptomoneda);
+            try {
+                boolean agregada = listasSeguimiento.agregar(usuario, criptoUpper);
+                return agregada ? criptoUpper + " agregada a la lista de seguimiento de " + usuario + "."
+                        : criptoUpper + " ya estaba en la lista de seguimiento de " + usuario + ".";
+            } catch (IllegalArgumentException e) {
+                throw new RemoteException(e.getMessage());
+            } catch (SQLException e) {
+                log.error("Error al agregar {} a la lista de seguimiento de {}: {}", criptoUpper, usuario, e.getMessage());
+                throw new RemoteException("Error de base de datos al modificar la lista de seguimiento: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public String quitarDeSeguimiento(String nombreUsuario, String criptomoneda) throws RemoteException {
+        return atender("quitarDeSeguimiento", ControlAdmision.Clase.ESCRITURA, () -> {
+            arranque.exigir("catalogo", "modificar la lista de seguimiento");
+            String usuario = usuarioOPorDefecto(nombreUsuario);
+            String criptoUpper = simboloValido(criptomoneda);
+            try {
+                boolean quitada = listasSeguimiento.quitar(usuario, criptoUpper);
+                return quitada ? criptoUpper + " quitada de la lista de seguimiento de " + usuario + "."
+                        : criptoUpper + " no estaba en la lista de seguimiento de " + usuario + ".";
+            } catch (SQLException e) {
+                log.error("Error al quitar {} de la lista de seguimiento de {}: {}", criptoUpper, usuario, e.getMessage());
+                throw new RemoteException("Error de base de datos al modificar la lista de seguimiento: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Double> obtenerPreciosSeguimiento(String nombreUsuario, String moneda) throws RemoteException {
+        return atender("obtenerPreciosSeguimiento", ControlAdmision.Clase.LECTURA, () -> preciosSeguimiento(usuarioOPorDefecto(nombreUsuario), validarMoneda(moneda)));
+    }
+
+    @Override
+    public Map<String, Double> obtenerPreciosSeguimiento(String nombreUsuario, String moneda, long plazoMs) throws RemoteException {
+        return atender("obtenerPreciosSeguimiento", ControlAdmision.Clase.LECTURA, plazoMs,
+                () -> preciosSeguimiento(usuarioOPorDefecto(nombreUsuario), validarMoneda(moneda)));
+    }
+
+    /**
+     * Precios de la lista de seguimiento desde la caché (el actualizador ya los refresca en cada ciclo).
+     * Los que falten se piden juntos en una sola petición a CoinGecko.
+     */
+    private Map<String, Double> preciosSeguimiento(String usuario, String monedaLower) throws RemoteException {
+        Map<String, Double> precios = new TreeMap<>();
+        Set<String> faltantes = new HashSet<>();
+        for (String simbolo : listasSeguimiento.de(usuario)) {
+            Cripto cripto = cacheCriptoData.obtener(simbolo, monedaLower);
+            if (cripto != null) {
+                Metricas.CACHE_ACIERTOS.incrementar();
+                precios.put(simbolo, cripto.getPrecio());
+            } else {
+                Metricas.CACHE_FALLOS.incrementar();
+                faltantes.add(simbolo);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            PlazoLlamada.verificar("caché");
+            if (!admision.intentar(ControlAdmision.Clase.ORIGEN)) {
+                throw admision.rechazo(ControlAdmision.Clase.ORIGEN);
+            }
+            long inicioOrigen = System.nanoTime();
             try {
-                double precio = obtenerPrecioActual(simbolo);
-                if (precio >= 0) { // obtenerPrecioActual devuelve < 0 si no se encuentra o hay error
-                    preciosDeTodas.put(simbolo, precio);
-                } else {
-                    preciosDeTodas.put(simbolo, precio); // Mantener el valor negativo para indicar problema
-                    System.out.println("[ServidorPreciosImpl] No se pudo obtener precio para la cripto base: " + simbolo + " en obtenerPreciosDeTodasLasBases (valor: "+precio+").");
+                completarDesdeOrigen(usuario, faltantes, monedaLower, precios);
+            } finally {
+                admision.salir(ControlAdmision.Clase.ORIGEN, inicioOrigen);
+            }
+        }
+        return precios;
+    }
+
+    private void completarDesdeOrigen(String usuario, Set<String> faltantes, String monedaLower, Map<String, Double> precios)
+            throws PlazoVencidoException {
+        try {
+            List<Cripto> cotizaciones = ejecutor.conPermisoHTTP(
+                    () -> coinGeckoService.fetchCriptoData(faltantes, CoinGeckoService.MONEDAS_COTIZACION));
+            actualizarCacheYGuardarHistorial(cotizaciones);
+            for (Cripto cotizacion : cotizaciones) {
+                if (cotizacion.getMoneda().equals(monedaLower)) {
+                    precios.put(cotizacion.getSimbolo(), cotizacion.getPrecio());
                 }
-            } catch (RemoteException e) {
-                System.err.println("[ServidorPreciosImpl ERROR] Excepción al intentar obtener precio para " + simbolo + " en obtenerPreciosDeTodasLasBases: " + e.getMessage());
-                preciosDeTodas.put(simbolo, -2.0); // Usar un valor diferente para error de obtención general
             }
+        } catch (PlazoVencidoException e) {
+            throw e;
+        } catch (IOException e) {
+            log.error("IOException al obtener la lista de seguimiento de {}: {}", usuario, e.getMessage());
+        }
+        PlazoLlamada.verificar("CoinGecko");
+        for (String simbolo : faltantes) {
+            if (!precios.containsKey(simbolo)) {
+                precios.put(simbolo, ultimosPreciosConocidos.obtener(simbolo, monedaLower)); // -1 si no hay ninguno
+            }
+        }
+    }
+
+    private static String usuarioOPorDefecto(String nombreUsuario) {
+        return nombreUsuario == null || nombreUsuario.trim().isEmpty() ? USUARIO_POR_DEFECTO : nombreUsuario;
+    }
+
+    private static String simboloValido(String criptomoneda) throws RemoteException {
+        if (criptomoneda == null || criptomoneda.trim().isEmpty()) {
+            throw new RemoteException("Nombre de criptomoneda no puede ser nulo o vacío.");
+        }
+        return criptomoneda.trim().toUpperCase();
+    }
+
+    @Override
+    public Map<String, Double> obtenerPreciosDeTodasLasBases(String nombreUsuario, String moneda) throws RemoteException {
+        return atender("obtenerPreciosDeTodasLasBases", ControlAdmision.Clase.LECTURA, () -> preciosDeTodasLasBases(nombreUsuario, moneda));
+    }
+
+    @Override
+    public Map<String, Double> obtenerPreciosDeTodasLasBases(String nombreUsuario, String moneda, long plazoMs) throws RemoteException {
+        return atender("obtenerPreciosDeTodasLasBases", ControlAdmision.Clase.LECTURA, plazoMs, () -> preciosDeTodasLasBases(nombreUsuario, moneda));
+    }
+
+    /**
+     * Precios de todas las criptomonedas base desde la caché. Los que falten o estén vencidos se
+     * piden juntos en una sola petición a CoinGecko, con un solo permiso de origen.
+     */
+    private Map<String, Double> preciosDeTodasLasBases(String nombreUsuario, String moneda) throws RemoteException {
+        String monedaLower = validarMoneda(moneda);
+        log.debug("Solicitud de precios ({}) para todas las criptomonedas base por usuario: {}", monedaLower, nombreUsuario);
+        Map<String, Double> preciosDeTodas = new HashMap<>();
+        Map<String, Cripto> faltantes = new HashMap<>(); // Símbolo -> valor vencido de la caché (o null)
+        long ahora = System.currentTimeMillis();
+        for (String simbolo : CoinGeckoService.SYMBOL_TO_COINGECKO_ID_MAP.keySet()) {
+            cacheCriptoData.marcarAcceso(simbolo);
+            Cripto cripto = cacheCriptoData.obtener(simbolo, monedaLower);
+            if (cripto != null && ahora - cripto.getTimestampObtencion() < (INTERVALO_ACTUALIZACION_PRECIOS_SEGUNDOS * 1000 / 2)) {
+                Metricas.CACHE_ACIERTOS.incrementar();
+                preciosDeTodas.put(simbolo, cripto.getPrecio());
+            } else {
+                Metricas.CACHE_FALLOS.incrementar();
+                faltantes.put(simbolo, cripto);
+            }
+        }
+        if (faltantes.isEmpty()) {
+            return preciosDeTodas;
+        }
+        PlazoLlamada.verificar("caché");
+        if (admision.intentar(ControlAdmision.Clase.ORIGEN)) {
+            long inicioOrigen = System.nanoTime();
+            try {
+                completarBasesDesdeOrigen(faltantes, monedaLower, preciosDeTodas);
+            } finally {
+                admision.salir(ControlAdmision.Clase.ORIGEN, inicioOrigen);
+            }
+            return preciosDeTodas;
+        }
+        // Sin permiso para ir al origen: antes un precio vencido que un rechazo
+        for (Map.Entry<String, Cripto> faltante : faltantes.entrySet()) {
+            Cripto vencido = faltante.getValue();
+            preciosDeTodas.put(faltante.getKey(), vencido != null ? vencido.getPrecio() : -2.0);
         }
-        System.out.println("[ServidorPreciosImpl] Devolviendo " + preciosDeTodas.size() + " precios para todas las bases (algunos podrían no estar disponibles).");
         return preciosDeTodas;
     }
 
+    private void completarBasesDesdeOrigen(Map<String, Cripto> faltantes, String monedaLower, Map<String, Double> precios)
+            throws PlazoVencidoException {
+        try {
+            List<Cripto> cotizaciones = ejecutor.conPermisoHTTP(
+                    () -> coinGeckoService.fetchCriptoData(faltantes.keySet(), CoinGeckoService.MONEDAS_COTIZACION));
+            actualizarCacheYGuardarHistorial(cotizaciones);
+            for (Cripto cotizacion : cotizaciones) {
+                cacheCriptoData.marcarAcceso(cotizacion.getSimbolo()); // Primera consulta: la fila recién existe
+                if (cotizacion.getMoneda().equals(monedaLower)) {
+                    precios.put(cotizacion.getSimbolo(), cotizacion.getPrecio());
+                }
+            }
+        } catch (PlazoVencidoException e) {
+            throw e;
+        } catch (IOException e) {
+            log.error("IOException al obtener precios de todas las bases: {}", e.getMessage());
+        }
+        PlazoLlamada.verificar("CoinGecko");
+        // Sin respuesta de CoinGecko: el último precio conocido (caché vencida) antes que la BD
+        for (Map.Entry<String, Cripto> faltante : faltantes.entrySet()) {
+            String simbolo = faltante.getKey();
+            if (!precios.containsKey(simbolo)) {
+                Cripto vencido = faltante.getValue();
+                double precio = vencido != null ? vencido.getPrecio() : ultimosPreciosConocidos.obtener(simbolo, monedaLower);
+                if (precio < 0) {
+                    log.info("No se pudo obtener precio para la cripto base: {} en obtenerPreciosDeTodasLasBases (valor: {}).", simbolo, precio);
+                }
+                precios.put(simbolo, precio); // Un valor negativo indica que no hay precio
+            }
+        }
+    }
+
     // Dentro de la clase ServidorPreciosImpl
 
     @Override
     public String modificarAlerta(String nombreUsuario, int idAlertaDB, double nuevoPrecio, String nuevaCondicion) throws RemoteException {
+        return atender("modificarAlerta", ControlAdmision.Clase.ESCRITURA, () -> modificarAlertaEnDB(nombreUsuario, idAlertaDB, nuevoPrecio, nuevaCondicion));
+    }
+
+    private String modificarAlertaEnDB(String nombreUsuario, int idAlertaDB, double nuevoPrecio, String nuevaCondicion) throws RemoteException {
+        arranque.exigir("catalogo", "modificar la alerta");
 
-        System.out.println("\n[Mutex] Hilo " + Thread.currentThread().getName() + " intentando adquirir bloqueo para MODIFICAR ALERTA...");
+        log.info("[Mutex] Intentando adquirir bloqueo para MODIFICAR ALERTA...");
 
         // 1. Bucle de espera para adquirir el bloqueo (estilo-clase)
+        long esperaMutexDesde = System.nanoTime();
         while (!this.request_mutex()) {
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " en espera. El recurso está ocupado.");
+            log.info("[Mutex] En espera. El recurso está ocupado.");
             try {
                 Thread.sleep(2000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
+        admision.descontar(System.nanoTime() - esperaMutexDesde); // La espera no es carga de MySQL
 
-        System.out.println("[Mutex] ¡Bloqueo adquirido por " + Thread.currentThread().getName() + "! Iniciando operación crítica.");
+        log.info("[Mutex] ¡Bloqueo adquirido! Iniciando operación crítica.");
 
         // 2. Bloque try-finally para garantizar la liberación del mutex
         try {
@@ -751,77 +1271,113 @@ public class ServidorPreciosImpl extends UnicastRemoteObject implements Interfaz
             if (idAlertaDB <= 0 || nuevoPrecio < 0 || (!nuevaCondicion.equalsIgnoreCase("MAYOR_QUE") && !nuevaCondicion.equalsIgnoreCase("MENOR_QUE"))) {
                 throw new RemoteException("Datos para modificar la alerta son inválidos.");
             }
-            System.out.println("[ServidorPreciosImpl] Solicitud para modificar alerta ID: " + idAlertaDB + " para el usuario: " + nombreUsuario);
-
-            Connection conn = null;
-            PreparedStatement pstmt = null;
-            ResultSet rs = null;
-            int idUsuarioFk = -1;
+            log.info("Solicitud para modificar alerta ID: {} para el usuario: {}", idAlertaDB, nombreUsuario);
 
+            // La transacción ocupa un permiso de MySQL; la pausa de demostración va fuera de él
+            final String usuario = nombreUsuario;
+            String confirmacion;
             try {
-                conn = DatabaseManager.getConnection();
-                conn.setAutoCommit(false);
-
-                // Obtener el id_usuario_fk
-                String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
-                pstmt = conn.prepareStatement(sqlGetUsuario);
-                pstmt.setString(1, nombreUsuario);
-                rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    idUsuarioFk = rs.getInt("id_usuario");
-                } else {
-                    conn.rollback();
-                    throw new RemoteException("Usuario '" + nombreUsuario + "' no encontrado.");
-                }
-                rs.close();
-                pstmt.close();
-
-                // Ejecutar el UPDATE
-                String sqlUpdate = "UPDATE alertas SET precio_umbral = ?, tipo_condicion = ? WHERE id_alerta = ? AND id_usuario_fk = ?";
-                pstmt = conn.prepareStatement(sqlUpdate);
-                pstmt.setDouble(1, nuevoPrecio);
-                pstmt.setString(2, nuevaCondicion.toUpperCase());
-                pstmt.setInt(3, idAlertaDB);
-                pstmt.setInt(4, idUsuarioFk);
-                int affectedRows = pstmt.executeUpdate();
-
-                if (affectedRows > 0) {
-                    conn.commit();
-
-                    // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
-                    System.out.println("-> [Servidor] Procesando solicitud para " + Thread.currentThread().getName() + ". La operación simulada tomará 8 segundos...");
+                confirmacion = ejecutor.conPermisoDB(() -> {
+                    Connection conn = null;
+                    PreparedStatement pstmt = null;
+                    ResultSet rs = null;
+                    int idUsuarioFk = -1;
+
                     try {
-                        // Pausa larga de 8 segundos para la demostración.
-                        Thread.sleep(8000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                        conn = DatabaseManager.getConnection();
+                        conn.setAutoCommit(false);
+
+                        // Obtener el id_usuario_fk
+                        String sqlGetUsuario = "SELECT id_usuario FROM usuarios WHERE nombre_usuario = ?";
+                        pstmt = conn.prepareStatement(sqlGetUsuario);
+                        pstmt.setString(1, usuario);
+                        rs = pstmt.executeQuery();
+                        if (rs.next()) {
+                            idUsuarioFk = rs.getInt("id_usuario");
+                        } else {
+                            conn.rollback();
+                            throw new RemoteException("Usuario '" + usuario + "' no encontrado.");
+                        }
+                        rs.close();
+                        pstmt.close();
+
+                        // Solo las alertas de precio se modifican; una estadística perdería su tipo y su ventana
+                        String sqlGetTipo = "SELECT tipo_condicion FROM alertas WHERE id_alerta = ? AND id_usuario_fk = ? FOR UPDATE";
+                        pstmt = conn.prepareStatement(sqlGetTipo);
+                        pstmt.setInt(1, idAlertaDB);
+                        pstmt.setInt(2, idUsuarioFk);
+                        rs = pstmt.executeQuery();
+                        if (!rs.next()) {
+                            conn.rollback();
+                            throw new RemoteException("No se pudo modificar la alerta. Verifique el ID o la propiedad de la misma.");
+                        }
+                        String tipoActual = rs.getString("tipo_condicion");
+                        if (!"MAYOR_QUE".equals(tipoActual) && !"MENOR_QUE".equals(tipoActual)) {
+                            conn.rollback();
+                            throw new RemoteException("La alerta ID: " + idAlertaDB + " es estadística (" + tipoActual
+                                    + ") y no se puede modificar; elimínela y cree una nueva.");
+                        }
+                        rs.close();
+                        pstmt.close();
+
+                        // Ejecutar el UPDATE
+                        String sqlUpdate = "UPDATE alertas SET precio_umbral = ?, tipo_condicion = ? WHERE id_alerta = ? AND id_usuario_fk = ?";
+                        pstmt = conn.prepareStatement(sqlUpdate);
+                        pstmt.setDouble(1, nuevoPrecio);
+                        pstmt.setString(2, nuevaCondicion.toUpperCase());
+                        pstmt.setInt(3, idAlertaDB);
+                        pstmt.setInt(4, idUsuarioFk);
+                        int affectedRows = pstmt.executeUpdate();
+
+                        if (affectedRows > 0) {
+                            conn.commit();
+                            indiceAlertas.modificar(String.valueOf(idAlertaDB), nuevoPrecio, nuevaCondicion.toUpperCase());
+                            alertasPorUsuario.invalidar(usuario);
+
+
+                            String mensaje = "Alerta ID: " + idAlertaDB + " modificada correctamente.";
+                            return mensaje;
+                        } else {
+                            conn.rollback();
+                            throw new RemoteException("No se pudo modificar la alerta. Verifique el ID o la propiedad de la misma.");
+                        }
+
+                    } catch (SQLException e) {
+                        log.error("SQLException al modificar alerta: {}", e.getMessage());
+                        if (conn != null) {
+                            try {
+                                conn.rollback();
+                            } catch (SQLException ex) { /* ignorado */ }
+                        }
+                        throw new RemoteException("Error de base de datos al modificar la alerta.");
+                    } finally {
+                        DatabaseManager.close(conn, pstmt, rs);
                     }
-                    System.out.println("-> [Servidor] Procesamiento para " + Thread.currentThread().getName() + " finalizado.");
-                    // --- FIN CÓDIGO DEMO ---
-
-                    String mensaje = "Alerta ID: " + idAlertaDB + " modificada correctamente.";
-                    System.out.println("[ServidorPreciosImpl] " + mensaje);
-                    return mensaje;
-                } else {
-                    conn.rollback();
-                    throw new RemoteException("No se pudo modificar la alerta. Verifique el ID o la propiedad de la misma.");
-                }
-
+                });
             } catch (SQLException e) {
-                System.err.println("[Servidor ERROR] SQLException al modificar alerta: " + e.getMessage());
-                if (conn != null) {
-                    try {
-                        conn.rollback();
-                    } catch (SQLException ex) { /* ignorado */ }
-                }
-                throw new RemoteException("Error de base de datos al modificar la alerta.");
-            } finally {
-                DatabaseManager.close(conn, pstmt, rs);
+                log.error("Sin permiso de MySQL para modificar la alerta: {}", e.getMessage());
+                throw new RemoteException("Base de datos saturada; no se pudo modificar la alerta: " + e.getMessage());
             }
 
+            // --- CÓDIGO SOLO PARA DEMOSTRACIÓN ---
+            long pausaDesde = System.nanoTime();
+            log.info("Procesando solicitud. La operación simulada tomará 8 segundos...");
+            try {
+                // Pausa larga de 8 segundos para la demostración.
+                Thread.sleep(8000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            admision.descontar(System.nanoTime() - pausaDesde);
+            log.info("Procesamiento finalizado.");
+            // --- FIN CÓDIGO DEMO ---
+
+            log.info("{}", confirmacion);
+            return confirmacion;
+
         } finally {
             // 3. Se libera el bloqueo SIEMPRE, sin importar si hubo éxito o error
-            System.out.println("[Mutex] Hilo " + Thread.currentThread().getName() + " liberando el bloqueo.");
+            log.info("[Mutex] Liberando el bloqueo.");
             this.release_mutex();
         }
     }
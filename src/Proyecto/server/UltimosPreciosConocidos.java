@@ -0,0 +1,118 @@
+package server;
+
+import common.PlazoVencidoException;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Último precio conocido de un par (símbolo, moneda) cuando CoinGecko no responde y la caché
+ * no lo tiene.
+ *
+ * Se lee de {@code precios_actuales} (una fila por par, por clave primaria; la mantiene
+ * {@link EscritorHistorial}), nunca del historial completo. El resultado se recuerda en memoria
+ * por {@value #VIGENCIA_MS} ms, y las consultas simultáneas del mismo par comparten una sola
+ * lectura: cuando CoinGecko limita las peticiones, todos los clientes caen aquí a la vez.
+ * Con un plazo de llamada ({@link PlazoLlamada}) la espera por la lectura y la consulta misma
+ * se acotan a lo que le queda.
+ */
+class UltimosPreciosConocidos {
+
+    private static final Logger log = LogAsincrono.obtener(UltimosPreciosConocidos.class);
+
+    private static final long VIGENCIA_MS = 60_000;
+
+    private static final class Entrada {
+        final long cargadaEn = System.currentTimeMillis();
+        final CompletableFuture<Double> precio = new CompletableFuture<>();
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>(); // "SIMBOLO/moneda" -> precio
+    private final EjecutorTareas ejecutor;
+
+    UltimosPreciosConocidos(EjecutorTareas ejecutor) {
+        this.ejecutor = ejecutor;
+    }
+
+    /**
+     * @return El último precio conocido, o -1 si no hay ninguno o la BD no responde.
+     * @throws PlazoVencidoException Si el plazo de la llamada se cumple antes de tener el precio.
+     */
+    double obtener(String simbolo, String moneda) throws PlazoVencidoException {
+        String clave = simbolo + "/" + moneda;
+        while (true) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && System.currentTimeMillis() - entrada.cargadaEn < VIGENCIA_MS) {
+                return esperar(entrada.precio); // Si otra llamada la está leyendo, se espera su resultado
+            }
+            Entrada nueva = new Entrada();
+            boolean propia = entrada == null ? entradas.putIfAbsent(clave, nueva) == null : entradas.replace(clave, entrada, nueva);
+            if (!propia) {
+                continue; // Otro hilo empezó la lectura primero
+            }
+            double precio;
+            try {
+                precio = ejecutor.conPermisoDB(() -> leerDeBD(simbolo, moneda));
+            } catch (SQLException | RuntimeException e) {
+                if (PlazoLlamada.vencido()) {
+                    entradas.remove(clave, nueva);
+                    nueva.precio.complete(-1.0); // Quienes esperaban a esta lectura no quedan colgados
+                    throw PlazoLlamada.vencimiento("BD");
+                }
+                log.error("Error al obtener último precio de BD para {}: {}", simbolo, e.getMessage());
+                entradas.remove(clave, nueva); // Un error no se recuerda
+                precio = -1.0;
+            }
+            nueva.precio.complete(precio);
+            return precio;
+        }
+    }
+
+    private static double esperar(CompletableFuture<Double> precio) throws PlazoVencidoException {
+        if (PlazoLlamada.limite() == null) {
+            return precio.join();
+        }
+        try {
+            return precio.get(PlazoLlamada.restanteMs(Long.MAX_VALUE), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw PlazoLlamada.vencimiento("BD");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw PlazoLlamada.vencimiento("BD");
+        } catch (ExecutionException e) {
+            return -1.0; // No ocurre: la entrada siempre se completa con un valor
+        }
+    }
+
+    private double leerDeBD(String simbolo, String moneda) throws SQLException {
+        String sql = "SELECT pa.precio FROM precios_actuales pa " +
+                "JOIN criptomonedas c ON pa.id_cripto_fk = c.id_cripto " +
+                "WHERE c.simbolo = ? AND pa.moneda_cotizacion = ?";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            conn = DatabaseManager.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            if (PlazoLlamada.limite() != null) {
+                pstmt.setQueryTimeout((int) Math.max(1, (PlazoLlamada.restanteMs(Long.MAX_VALUE) + 999) / 1000));
+            }
+            pstmt.setString(1, simbolo);
+            pstmt.setString(2, moneda);
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getDouble("precio") : -1.0;
+        } finally {
+            DatabaseManager.close(conn, pstmt, rs);
+        }
+    }
+}
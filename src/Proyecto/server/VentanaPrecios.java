@@ -0,0 +1,208 @@
+package server;
+
+import java.util.ArrayDeque;
+
+/**
+ * Ventana deslizante de precios de un símbolo, con estadísticas incrementales.
+ *
+ * La ventana se acota por cantidad de periodos (últimos N ticks) o por tiempo (último T ms).
+ * Cada tick cuesta O(1) amortizado:
+ * - media y varianza con el algoritmo de Welford, sumando el precio que entra y
+ *   restando el que sale;
+ * - mínimo y máximo con colas monótonas de posiciones (cada precio entra y sale una vez);
+ * - para el cruce con la media móvil se recuerda de qué lado de la media quedó el tick anterior.
+ *
+ * Un tick con el mismo timestamp de fuente que el anterior (CoinGecko devuelve la misma
+ * cotización en varias consultas seguidas) no cuenta como periodo nuevo.
+ *
+ * Los métodos se sincronizan: la ventana la alimentan los hilos que actualizan la caché y la
+ * leen la partición de {@link EvaluadorAlertas} dueña del símbolo y las consultas de los clientes.
+ */
+public class VentanaPrecios {
+
+    private final int maxPeriodos;   // > 0 en ventanas por conteo
+    private final long duracionMs;   // > 0 en ventanas por tiempo
+
+    // Anillo de ticks; 'primero' es la posición absoluta del tick más antiguo
+    private double[] precios;
+    private long[] tiempos;
+    private long primero = 0;
+    private long siguiente = 0;
+
+    private double media = 0;
+    private double m2 = 0;
+    private final ArrayDeque<Long> colaMinimos = new ArrayDeque<>(); // Posiciones con precios crecientes
+    private final ArrayDeque<Long> colaMaximos = new ArrayDeque<>(); // Posiciones con precios decrecientes
+
+    private int ladoAnterior = 0; // Signo de (precio - media) en el tick anterior
+    private boolean cruzoMedia = false;
+    private long ultimoTimestamp = Long.MIN_VALUE;
+    private volatile long ultimoUso = System.currentTimeMillis();
+
+    private VentanaPrecios(int maxPeriodos, long duracionMs, int capacidadInicial) {
+        this.maxPeriodos = maxPeriodos;
+        this.duracionMs = duracionMs;
+        this.precios = new double[capacidadInicial];
+        this.tiempos = new long[capacidadInicial];
+    }
+
+    /** Ventana con los últimos {@code periodos} ticks. */
+    public static VentanaPrecios porPeriodos(int periodos) {
+        return new VentanaPrecios(periodos, 0, periodos);
+    }
+
+    /** Ventana con los ticks de los últimos {@code duracionMs} milisegundos. */
+    public static VentanaPrecios porTiempo(long duracionMs) {
+        return new VentanaPrecios(0, duracionMs, 64);
+    }
+
+    /**
+     * Agrega un tick a la ventana, descartando los que quedan fuera.
+     */
+    public synchronized void agregar(long timestamp, double precio) {
+        if (timestamp <= ultimoTimestamp) {
+            return;
+        }
+        ultimoTimestamp = timestamp;
+
+        if (maxPeriodos > 0 && tamano() == maxPeriodos) {
+            quitarPrimero();
+        }
+        if (duracionMs > 0) {
+            while (tamano() > 0 && tiempos[indice(primero)] <= timestamp - duracionMs) {
+                quitarPrimero();
+            }
+            if (tamano() == precios.length) {
+                crecer();
+            }
+        }
+
+        long pos = siguiente++;
+        precios[indice(pos)] = precio;
+        tiempos[indice(pos)] = timestamp;
+
+        int n = tamano();
+        double delta = precio - media;
+        media += delta / n;
+        m2 += delta * (precio - media);
+
+        while (!colaMinimos.isEmpty() && precios[indice(colaMinimos.peekLast())] >= precio) {
+            colaMinimos.pollLast();
+        }
+        colaMinimos.addLast(pos);
+        while (!colaMaximos.isEmpty() && precios[indice(colaMaximos.peekLast())] <= precio) {
+            colaMaximos.pollLast();
+        }
+        colaMaximos.addLast(pos);
+
+        int lado = Double.compare(precio, media);
+        cruzoMedia = estaLlena() && lado != 0 && ladoAnterior != 0 && lado != ladoAnterior;
+        if (lado != 0) {
+            ladoAnterior = lado;
+        }
+    }
+
+    private void quitarPrimero() {
+        long pos = primero++;
+        double precio = precios[indice(pos)];
+        int n = tamano();
+        if (n == 0) {
+            media = 0;
+            m2 = 0;
+        } else {
+            double delta = precio - media;
+            media -= delta / n;
+            m2 = Math.max(0, m2 - delta * (precio - media));
+        }
+        if (!colaMinimos.isEmpty() && colaMinimos.peekFirst() == pos) {
+            colaMinimos.pollFirst();
+        }
+        if (!colaMaximos.isEmpty() && colaMaximos.peekFirst() == pos) {
+            colaMaximos.pollFirst();
+        }
+    }
+
+    private void crecer() {
+        double[] nuevosPrecios = new double[precios.length * 2];
+        long[] nuevosTiempos = new long[tiempos.length * 2];
+        for (long pos = primero; pos < siguiente; pos++) {
+            nuevosPrecios[(int) (pos % nuevosPrecios.length)] = precios[indice(pos)];
+            nuevosTiempos[(int) (pos % nuevosTiempos.length)] = tiempos[indice(pos)];
+        }
+        precios = nuevosPrecios;
+        tiempos = nuevosTiempos;
+    }
+
+    private int indice(long pos) {
+        return (int) (pos % precios.length);
+    }
+
+    private int tamano() {
+        return (int) (siguiente - primero);
+    }
+
+    // Una ventana por conteo está llena con N ticks; una por tiempo, cuando ya cubre al menos la mitad del periodo
+    private boolean estaLlena() {
+        if (maxPeriodos > 0) {
+            return tamano() == maxPeriodos;
+        }
+        return tamano() >= 2 && tiempos[indice(siguiente - 1)] - tiempos[indice(primero)] >= duracionMs / 2;
+    }
+
+    public synchronized int muestras() {
+        return tamano();
+    }
+
+    /** Media móvil simple, o NaN si la ventana aún no está llena. */
+    public synchronized double mediaMovil() {
+        return estaLlena() ? media : Double.NaN;
+    }
+
+    /** Desviación estándar muestral, o NaN si la ventana aún no está llena. */
+    public synchronized double desviacion() {
+        return estaLlena() && tamano() > 1 ? Math.sqrt(m2 / (tamano() - 1)) : Double.NaN;
+    }
+
+    /** Desviación estándar como porcentaje de la media (coeficiente de variación). */
+    public synchronized double volatilidadPorcentual() {
+        double desviacion = desviacion();
+        return Double.isNaN(desviacion) || media == 0 ? Double.NaN : desviacion / media * 100.0;
+    }
+
+    public synchronized double minimo() {
+        return colaMinimos.isEmpty() ? Double.NaN : precios[indice(colaMinimos.peekFirst())];
+    }
+
+    public synchronized double maximo() {
+        return colaMaximos.isEmpty() ? Double.NaN : precios[indice(colaMaximos.peekFirst())];
+    }
+
+    /**
+     * Mayor movimiento porcentual del último precio dentro de la ventana: cuánto subió desde
+     * el mínimo o cuánto bajó desde el máximo, lo que sea mayor. NaN si la ventana no está llena.
+     */
+    public synchronized double cambioPorcentual() {
+        if (!estaLlena()) {
+            return Double.NaN;
+        }
+        double ultimo = precios[indice(siguiente - 1)];
+        double minimo = minimo();
+        double maximo = maximo();
+        double subida = minimo > 0 ? (ultimo - minimo) / minimo : 0;
+        double bajada = maximo > 0 ? (maximo - ultimo) / maximo : 0;
+        return Math.max(subida, bajada) * 100.0;
+    }
+
+    /** true si el último tick cruzó la media móvil (en cualquier dirección). */
+    public synchronized boolean cruzoMediaMovil() {
+        return cruzoMedia;
+    }
+
+    void marcarUso() {
+        ultimoUso = System.currentTimeMillis();
+    }
+
+    long getUltimoUso() {
+        return ultimoUso;
+    }
+}
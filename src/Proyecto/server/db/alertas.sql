@@ -4,9 +4,14 @@ CREATE TABLE alertas (
                          id_usuario_fk INT NOT NULL,
                          id_cripto_fk INT NOT NULL,
                          precio_umbral DECIMAL(20, 8) NOT NULL,
-                         tipo_condicion VARCHAR(10) NOT NULL COMMENT 'MAYOR_QUE, MENOR_QUE',
+                         tipo_condicion VARCHAR(10) NOT NULL COMMENT 'MAYOR_QUE, MENOR_QUE, CAMBIO_PCT, CRUCE_SMA, VOLATIL',
+                         ventana INT NULL COMMENT 'Minutos (CAMBIO_PCT) o periodos (CRUCE_SMA, VOLATIL); NULL en alertas de precio fijo',
                          activa BOOLEAN NOT NULL DEFAULT TRUE,
                          fecha_creacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                          FOREIGN KEY (id_usuario_fk) REFERENCES usuarios(id_usuario) ON DELETE CASCADE,
-                         FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
\ No newline at end of file
+                         FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE,
+                         INDEX idx_alertas_activa (activa, id_cripto_fk, id_usuario_fk, precio_umbral, tipo_condicion, ventana),
+                         INDEX idx_alertas_usuario (id_usuario_fk, activa, id_cripto_fk, precio_umbral, tipo_condicion, ventana)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Una base ya creada se migra sola al arrancar el servidor (MigradorEsquema).
@@ -0,0 +1,7 @@
+-- Migraciones aplicadas por el servidor al arrancar (MigradorEsquema); la crea el propio servidor si no existe.
+CREATE TABLE esquema_version (
+                                 version INT PRIMARY KEY,
+                                 descripcion VARCHAR(200) NOT NULL,
+                                 duracion_ms BIGINT NOT NULL,
+                                 aplicada_en TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
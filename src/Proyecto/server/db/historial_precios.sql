@@ -1,11 +1,21 @@
+-- Particionada por mes (UTC) según timestamp_precio; el servidor crea las particiones
+-- mensuales partiendo pmax y borra las antiguas según cripto.historial.retencionMeses.
+-- MySQL no admite claves foráneas en tablas particionadas, por eso id_cripto_fk no la tiene,
+-- y la columna de partición debe ser parte de la clave primaria.
 CREATE TABLE historial_precios (
-                                   id_historial INT AUTO_INCREMENT PRIMARY KEY,
+                                   id_historial BIGINT NOT NULL AUTO_INCREMENT,
                                    id_cripto_fk INT NOT NULL,
                                    precio DECIMAL(20, 8) NOT NULL,
                                    moneda_cotizacion VARCHAR(10) NOT NULL DEFAULT 'usd',
                                    timestamp_precio BIGINT NOT NULL COMMENT 'Timestamp UNIX en milisegundos del precio',
                                    fecha_registro TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                                   FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE,
+                                   PRIMARY KEY (id_historial, timestamp_precio),
                                    INDEX idx_timestamp_precio (timestamp_precio),
-                                   INDEX idx_cripto_timestamp (id_cripto_fk, timestamp_precio)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
\ No newline at end of file
+                                   INDEX idx_cripto_timestamp (id_cripto_fk, timestamp_precio),
+                                   INDEX idx_historial_ultimo (id_cripto_fk, moneda_cotizacion, timestamp_precio, precio)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+PARTITION BY RANGE (timestamp_precio) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- Una base ya creada se migra sola al arrancar el servidor (MigradorEsquema, versión 5).
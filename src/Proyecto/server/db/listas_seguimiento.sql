@@ -0,0 +1,10 @@
+-- Criptomonedas que cada usuario sigue; sus precios se refrescan en cada ciclo del actualizador
+-- (una base ya creada la recibe con MigradorEsquema, versión 7).
+CREATE TABLE listas_seguimiento (
+                                    id_usuario_fk INT NOT NULL,
+                                    id_cripto_fk INT NOT NULL,
+                                    agregada_en TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                    PRIMARY KEY (id_usuario_fk, id_cripto_fk),
+                                    FOREIGN KEY (id_usuario_fk) REFERENCES usuarios(id_usuario) ON DELETE CASCADE,
+                                    FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
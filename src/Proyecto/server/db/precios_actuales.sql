@@ -0,0 +1,10 @@
+-- Último precio conocido por cripto y moneda; lo mantiene el escritor de historial en la misma
+-- transacción que inserta en historial_precios (una base ya creada la recibe con MigradorEsquema, versión 6).
+CREATE TABLE precios_actuales (
+                                  id_cripto_fk INT NOT NULL,
+                                  moneda_cotizacion VARCHAR(10) NOT NULL,
+                                  precio DECIMAL(20, 8) NOT NULL,
+                                  timestamp_precio BIGINT NOT NULL COMMENT 'Timestamp UNIX en milisegundos del precio',
+                                  PRIMARY KEY (id_cripto_fk, moneda_cotizacion),
+                                  FOREIGN KEY (id_cripto_fk) REFERENCES criptomonedas(id_cripto) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,157 @@
+package client;
+
+import common.InterfazServicioCripto;
+import common.PlazoVencidoException;
+import common.ServidorSaturadoException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pruebas de los reintentos de {@link ClienteAsincrono} contra servidores exportados de verdad
+ * por RMI: los errores del servidor llegan envueltos en {@link java.rmi.ServerException}, así
+ * que el cliente debe desenvolverlos para distinguir saturación, plazo vencido y validaciones de
+ * un servidor caído.
+ *
+ * Sin dependencias: se ejecuta con {@code java client.ClienteAsincronoTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class ClienteAsincronoTest {
+
+    public static void main(String[] args) throws Exception {
+        saturadoSeReintentaEnElMismoServidor();
+        plazoVencidoNoSeReintenta();
+        errorDeValidacionNoCambiaDeServidor();
+        servidorCaidoPasaAlOtro();
+        System.out.println("ClienteAsincronoTest: OK");
+    }
+
+    static void saturadoSeReintentaEnElMismoServidor() throws Exception {
+        try (Servidores servidores = new Servidores()) {
+            servidores.principal.responder(new ServidorSaturadoException("LECTURA", 50), 10.0);
+            long inicio = System.nanoTime();
+            double precio = servidores.cliente.precioActual("BTC", "usd").join();
+            long esperaMs = (System.nanoTime() - inicio) / 1_000_000;
+            comprobar(precio == 10.0, "tras la saturación responde el mismo servidor: " + precio);
+            comprobar(esperaMs >= 50, "respeta la espera sugerida: " + esperaMs + " ms");
+            comprobar(servidores.principal.llamadas.get() == 2 && servidores.respaldo.llamadas.get() == 0,
+                    "no pasa al respaldo por una saturación");
+        }
+    }
+
+    static void plazoVencidoNoSeReintenta() throws Exception {
+        try (Servidores servidores = new Servidores()) {
+            servidores.principal.responder(new PlazoVencidoException("CoinGecko"));
+            Throwable error = fallo(servidores.cliente, "BTC");
+            comprobar(error instanceof PlazoVencidoException, "llega el PlazoVencidoException del servidor: " + error);
+            comprobar(servidores.principal.llamadas.get() == 1 && servidores.respaldo.llamadas.get() == 0,
+                    "un plazo vencido no se reintenta en ningún servidor");
+        }
+    }
+
+    static void errorDeValidacionNoCambiaDeServidor() throws Exception {
+        try (Servidores servidores = new Servidores()) {
+            servidores.principal.responder(new RemoteException("Criptomoneda no válida"), 20.0);
+            Throwable error = fallo(servidores.cliente, "???");
+            comprobar(error != null && "Criptomoneda no válida".equals(error.getMessage()), "llega el error del servidor: " + error);
+            comprobar(servidores.principal.llamadas.get() == 1, "una validación no se reintenta");
+            double precio = servidores.cliente.precioActual("BTC", "usd").join();
+            comprobar(precio == 20.0 && servidores.respaldo.llamadas.get() == 0, "el cliente sigue en el principal");
+        }
+    }
+
+    static void servidorCaidoPasaAlOtro() throws Exception {
+        try (Servidores servidores = new Servidores()) {
+            servidores.respaldo.responder(30.0);
+            UnicastRemoteObject.unexportObject(servidores.principal.objeto, true); // El stub queda apuntando a nada
+            double precio = servidores.cliente.precioActual("BTC", "usd").join();
+            comprobar(precio == 30.0, "responde el respaldo: " + precio);
+            comprobar(servidores.principal.llamadas.get() == 0 && servidores.respaldo.llamadas.get() == 1,
+                    "un error de transporte pasa al otro servidor");
+        }
+    }
+
+    private static Throwable fallo(ClienteAsincrono cliente, String cripto) {
+        try {
+            cliente.precioActual(cripto, "usd").join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    /** Servidor de prueba: responde a obtenerPrecioActual con lo que se le haya encolado, en orden. */
+    private static final class ServidorFalso {
+        final AtomicInteger llamadas = new AtomicInteger();
+        private final Deque<Object> respuestas = new ArrayDeque<>();
+        final InterfazServicioCripto objeto;
+        final InterfazServicioCripto stub;
+
+        ServidorFalso() throws RemoteException {
+            InvocationHandler manejador = (proxy, metodo, argumentos) -> {
+                if (!metodo.getName().equals("obtenerPrecioActual")) {
+                    throw new UnsupportedOperationException(metodo.getName());
+                }
+                llamadas.incrementAndGet();
+                Object respuesta;
+                synchronized (respuestas) {
+                    respuesta = respuestas.size() > 1 ? respuestas.poll() : respuestas.peek();
+                }
+                if (respuesta instanceof RemoteException e) {
+                    throw e;
+                }
+                return respuesta;
+            };
+            objeto = (InterfazServicioCripto) Proxy.newProxyInstance(InterfazServicioCripto.class.getClassLoader(),
+                    new Class<?>[]{InterfazServicioCripto.class}, manejador);
+            stub = (InterfazServicioCripto) UnicastRemoteObject.exportObject(objeto, 0);
+        }
+
+        // La última respuesta se repite en las llamadas siguientes
+        void responder(Object... enOrden) {
+            synchronized (respuestas) {
+                respuestas.clear();
+                respuestas.addAll(List.of(enOrden));
+            }
+        }
+    }
+
+    /** Principal y respaldo exportados en puertos libres, con un cliente que los usa. */
+    private static final class Servidores implements AutoCloseable {
+        final ServidorFalso principal = new ServidorFalso();
+        final ServidorFalso respaldo = new ServidorFalso();
+        final ClienteAsincrono cliente = new ClienteAsincrono(indice -> indice == 0 ? principal.stub : respaldo.stub);
+
+        Servidores() throws RemoteException {
+        }
+
+        @Override
+        public void close() throws Exception {
+            cliente.close();
+            desexportar(principal);
+            desexportar(respaldo);
+        }
+
+        private static void desexportar(ServidorFalso servidor) {
+            try {
+                UnicastRemoteObject.unexportObject(servidor.objeto, true);
+            } catch (NoSuchObjectException e) {
+                // La prueba ya lo dio de baja
+            }
+        }
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package common;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pruebas del formato por bloques de {@link SocketRmi} sobre una conexión local real: lo que se
+ * escribe llega igual del otro lado, los bloques chicos o incompresibles van planos, los que se
+ * achican van comprimidos, y el socket cerrado ya no acepta escrituras.
+ *
+ * Sin dependencias: se ejecuta con {@code java common.SocketRmiTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class SocketRmiTest {
+
+    private static final int UMBRAL = 256;
+
+    public static void main(String[] args) throws IOException {
+        bloquesChicosVanPlanos();
+        bloquesCompresiblesVanComprimidos();
+        datosIncompresiblesVanPlanos();
+        bloqueMayorAlMaximoSeParte();
+        sinCompresionPasaTalCual();
+        socketCerradoRechazaEscrituras();
+        System.out.println("SocketRmiTest: OK");
+    }
+
+    static void bloquesChicosVanPlanos() throws IOException {
+        try (Conexion conexion = new Conexion(true)) {
+            long comprimidosAntes = EstadisticasSockets.bloquesComprimidos();
+            byte[] datos = repetitivos(UMBRAL - 1);
+            conexion.enviar(datos);
+            comprobar(Arrays.equals(datos, conexion.recibir(datos.length)), "un bloque chico llega igual");
+            comprobar(EstadisticasSockets.bloquesComprimidos() == comprimidosAntes, "un bloque bajo el umbral no se comprime");
+        }
+    }
+
+    static void bloquesCompresiblesVanComprimidos() throws IOException {
+        try (Conexion conexion = new Conexion(true)) {
+            long comprimidosAntes = EstadisticasSockets.bloquesComprimidos();
+            long redAntes = EstadisticasSockets.bytesEnviadosRed();
+            byte[] datos = repetitivos(100_000);
+            conexion.enviar(datos);
+            comprobar(Arrays.equals(datos, conexion.recibir(datos.length)), "un bloque comprimido llega igual");
+            comprobar(EstadisticasSockets.bloquesComprimidos() == comprimidosAntes + 1, "se envió un bloque comprimido");
+            comprobar(EstadisticasSockets.bytesEnviadosRed() - redAntes < datos.length / 10, "por la red viaja mucho menos");
+
+            // Varios mensajes seguidos sobre la misma conexión (el Deflater se reutiliza)
+            for (int i = 0; i < 20; i++) {
+                byte[] mensaje = repetitivos(UMBRAL * (i + 1));
+                conexion.enviar(mensaje);
+                comprobar(Arrays.equals(mensaje, conexion.recibir(mensaje.length)), "mensaje " + i + " llega igual");
+            }
+        }
+    }
+
+    static void datosIncompresiblesVanPlanos() throws IOException {
+        try (Conexion conexion = new Conexion(true)) {
+            long comprimidosAntes = EstadisticasSockets.bloquesComprimidos();
+            byte[] datos = new byte[50_000];
+            new Random(7).nextBytes(datos);
+            conexion.enviar(datos);
+            comprobar(Arrays.equals(datos, conexion.recibir(datos.length)), "un bloque incompresible llega igual");
+            comprobar(EstadisticasSockets.bloquesComprimidos() == comprimidosAntes, "lo que no se achica va plano");
+        }
+    }
+
+    static void bloqueMayorAlMaximoSeParte() throws IOException {
+        try (Conexion conexion = new Conexion(true)) {
+            byte[] datos = repetitivos((1 << 20) * 2 + 123); // Más de dos bloques máximos sin flush
+            conexion.escritor.escribir(datos);
+            comprobar(Arrays.equals(datos, conexion.recibir(datos.length)), "un mensaje de varios bloques llega igual");
+            conexion.escritor.esperar();
+        }
+    }
+
+    static void sinCompresionPasaTalCual() throws IOException {
+        try (Conexion conexion = new Conexion(false)) {
+            long redAntes = EstadisticasSockets.bytesEnviadosRed();
+            byte[] datos = repetitivos(10_000);
+            conexion.enviar(datos);
+            comprobar(Arrays.equals(datos, conexion.recibir(datos.length)), "sin compresión llega igual");
+            comprobar(EstadisticasSockets.bytesEnviadosRed() - redAntes == datos.length, "sin compresión no hay cabeceras de bloque");
+        }
+    }
+
+    static void socketCerradoRechazaEscrituras() throws IOException {
+        long abiertasAntes = EstadisticasSockets.conexionesAbiertas();
+        Conexion conexion = new Conexion(true);
+        comprobar(EstadisticasSockets.conexionesAbiertas() == abiertasAntes + 2, "se cuentan ambos extremos abiertos");
+        OutputStream salida = conexion.cliente.getOutputStream();
+        conexion.close();
+        conexion.close(); // Cerrar dos veces no descuenta de más
+        comprobar(EstadisticasSockets.conexionesAbiertas() == abiertasAntes, "al cerrar se descuentan");
+        try {
+            salida.write(repetitivos(UMBRAL * 4));
+            salida.flush();
+            throw new AssertionError("escribir en un socket cerrado debía fallar");
+        } catch (IOException e) {
+            // Esperado: el Deflater ya se liberó y no se vuelve a usar
+        }
+    }
+
+    private static byte[] repetitivos(int largo) {
+        byte[] datos = new byte[largo];
+        for (int i = 0; i < largo; i++) {
+            datos[i] = (byte) ("precio BTC usd ".charAt(i % 15));
+        }
+        return datos;
+    }
+
+    /** Un par de sockets conectados por la fábrica, como los que usa RMI. */
+    private static final class Conexion implements AutoCloseable {
+        final ServerSocket servidor;
+        final Socket cliente;
+        final Socket aceptado;
+        final Escritor escritor;
+
+        Conexion(boolean comprimir) throws IOException {
+            FabricaSocketsRmi fabrica = new FabricaSocketsRmi(comprimir, UMBRAL, 64 * 1024);
+            servidor = fabrica.createServerSocket(0);
+            cliente = fabrica.createSocket("localhost", servidor.getLocalPort());
+            aceptado = servidor.accept();
+            escritor = new Escritor(cliente.getOutputStream());
+        }
+
+        void enviar(byte[] datos) throws IOException {
+            OutputStream salida = cliente.getOutputStream();
+            salida.write(datos);
+            salida.flush(); // Fin de mensaje: RMI vacía al terminar cada llamada
+        }
+
+        byte[] recibir(int largo) throws IOException {
+            InputStream entrada = aceptado.getInputStream();
+            byte[] datos = new byte[largo];
+            new DataInputStream(entrada).readFully(datos);
+            return datos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            cliente.close();
+            aceptado.close();
+            servidor.close();
+        }
+    }
+
+    /** Escribe en otro hilo, para mensajes que no caben en los buffers TCP antes de leerlos. */
+    private static final class Escritor {
+        private final OutputStream salida;
+        private Thread hilo;
+        private volatile IOException error;
+
+        Escritor(OutputStream salida) {
+            this.salida = salida;
+        }
+
+        void escribir(byte[] datos) {
+            hilo = new Thread(() -> {
+                try {
+                    salida.write(datos);
+                    salida.flush();
+                } catch (IOException e) {
+                    error = e;
+                }
+            });
+            hilo.start();
+        }
+
+        void esperar() throws IOException {
+            try {
+                hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}
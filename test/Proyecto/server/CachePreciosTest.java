@@ -0,0 +1,161 @@
+package server;
+
+import common.CambiosPrecios;
+import common.Cripto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pruebas de {@link CachePrecios}: versiones por época, cambios incrementales y desalojo (también
+ * cómo se entera de él un cliente que sincroniza por versión).
+ *
+ * Sin dependencias: se ejecuta con {@code java server.CachePreciosTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class CachePreciosTest {
+
+    public static void main(String[] args) {
+        versionesMonotonasPorActualizacion();
+        cambiosDesdeDevuelveSoloLoNuevo();
+        otraEpocaOFuturaDaInstantaneaCompleta();
+        refrescarSinCambioNoPublicaVersion();
+        desalojaLosMenosUsadosSinTocarProtegidos();
+        filaDesalojadaSeReutiliza();
+        desalojoDaInstantaneaCompletaALosAtrasados();
+        System.out.println("CachePreciosTest: OK");
+    }
+
+    static void versionesMonotonasPorActualizacion() {
+        CachePrecios cache = new CachePrecios(List.of("usd", "eur"));
+        long inicial = cache.getVersion();
+        long v1 = cache.actualizar(cripto("BTC", "usd", 100));
+        long v2 = cache.actualizar(cripto("BTC", "eur", 90));
+        comprobar(v1 == inicial + 1 && v2 == v1 + 1, "una versión por actualización");
+        comprobar(cache.getVersion() == v2, "la versión actual es la última publicada");
+        comprobar(cache.obtener("BTC", "usd").getSecuencia() == v1, "la celda lleva su versión como secuencia");
+        comprobar(cache.actualizar(cripto("BTC", "clp", 1)) == -1, "una moneda no configurada se ignora");
+        comprobar(cache.getVersion() == v2, "la moneda ignorada no publica versión");
+    }
+
+    static void cambiosDesdeDevuelveSoloLoNuevo() {
+        CachePrecios cache = new CachePrecios(List.of("usd", "eur"));
+        cache.actualizar(cripto("BTC", "usd", 100));
+        cache.actualizar(cripto("ETH", "usd", 10));
+        long versionCliente = cache.getVersion();
+        cache.actualizar(cripto("ETH", "usd", 11));
+        cache.actualizar(cripto("ADA", "eur", 1)); // Otra moneda: no aparece en usd
+
+        CambiosPrecios cambios = cache.cambiosDesde(versionCliente, "usd");
+        comprobar(!cambios.isInstantaneaCompleta(), "misma época: cambios incrementales");
+        comprobar(cambios.getPrecios().equals(Map.of("ETH", 11.0)), "solo cambió ETH: " + cambios.getPrecios());
+        comprobar(cambios.getVersion() == cache.getVersion(), "devuelve la versión actual");
+
+        CambiosPrecios alDia = cache.cambiosDesde(cambios.getVersion(), "usd");
+        comprobar(alDia.getPrecios().isEmpty() && !alDia.isInstantaneaCompleta(), "un cliente al día no recibe nada");
+    }
+
+    static void otraEpocaOFuturaDaInstantaneaCompleta() {
+        CachePrecios cache = new CachePrecios(List.of("usd"));
+        cache.actualizar(cripto("BTC", "usd", 100));
+        cache.actualizar(cripto("ETH", "usd", 10));
+
+        CambiosPrecios desdeCero = cache.cambiosDesde(0, "usd");
+        comprobar(desdeCero.isInstantaneaCompleta() && desdeCero.getPrecios().size() == 2, "versión 0: instantánea completa");
+
+        CambiosPrecios futura = cache.cambiosDesde(cache.getVersion() + 5, "usd");
+        comprobar(futura.isInstantaneaCompleta() && futura.getPrecios().size() == 2, "versión futura: instantánea completa");
+
+        // Una versión emitida por otra instancia (principal/respaldo) casi siempre tiene otra época
+        CachePrecios otra = new CachePrecios(List.of("usd"));
+        for (int intento = 0; intento < 5 && epoca(otra.getVersion()) == epoca(cache.getVersion()); intento++) {
+            otra = new CachePrecios(List.of("usd"));
+        }
+        otra.actualizar(cripto("BTC", "usd", 1));
+        CambiosPrecios deOtra = cache.cambiosDesde(otra.getVersion(), "usd");
+        comprobar(deOtra.isInstantaneaCompleta() && deOtra.getPrecios().size() == 2, "versión de otra época: instantánea completa");
+    }
+
+    static void refrescarSinCambioNoPublicaVersion() {
+        CachePrecios cache = new CachePrecios(List.of("usd"));
+        long v1 = cache.actualizar(new Cripto("BTC", "usd", 100, 1_000, 1_000, 0));
+        long refrescada = cache.refrescar(new Cripto("BTC", "usd", 100, 1_000, 2_000, 0));
+        comprobar(refrescada == v1 && cache.getVersion() == v1, "refrescar el mismo precio no publica versión");
+        comprobar(cache.obtener("BTC", "usd").getTimestampObtencion() == 2_000, "refrescar renueva la hora de obtención");
+        long v2 = cache.refrescar(new Cripto("BTC", "usd", 101, 3_000, 3_000, 0));
+        comprobar(v2 == v1 + 1, "refrescar con otro precio publica versión");
+    }
+
+    static void desalojaLosMenosUsadosSinTocarProtegidos() {
+        CachePrecios cache = new CachePrecios(List.of("usd"));
+        for (String simbolo : List.of("BTC", "ETH", "ADA", "SOL", "DOGE")) {
+            cache.actualizar(cripto(simbolo, "usd", 1));
+        }
+        cache.marcarAcceso("ETH");
+        cache.marcarAcceso("SOL");
+        comprobar(cache.desalojar(5, Set.of()) == 0, "dentro del presupuesto no se desaloja");
+
+        // Sobran 3; ADA está protegido (tiene alertas) aunque nadie la consultó
+        int desalojados = cache.desalojar(2, Set.of("ADA"));
+        comprobar(desalojados == 3, "desalojados: " + desalojados);
+        comprobar(cache.tamano() == 2, "quedan los símbolos del presupuesto");
+        comprobar(cache.obtener("ADA", "usd") != null, "el protegido se conserva");
+        comprobar(cache.obtener("BTC", "usd") == null && cache.obtener("DOGE", "usd") == null, "se van los que nadie consultó");
+        comprobar((cache.obtener("ETH", "usd") != null) != (cache.obtener("SOL", "usd") != null),
+                "de los consultados queda uno (el presupuesto alcanza para el protegido y uno más)");
+        comprobar(cache.simbolosUsadosDesde(System.currentTimeMillis() - 60_000).size() == 1, "solo queda un símbolo usado");
+    }
+
+    static void filaDesalojadaSeReutiliza() {
+        CachePrecios cache = new CachePrecios(List.of("usd", "eur"));
+        cache.actualizar(cripto("BTC", "usd", 100));
+        cache.actualizar(cripto("BTC", "eur", 90));
+        cache.actualizar(cripto("ETH", "usd", 10));
+        cache.marcarAcceso("ETH");
+        cache.desalojar(1, Set.of());
+        comprobar(cache.obtener("BTC", "usd") == null && cache.obtener("BTC", "eur") == null, "BTC desalojado en todas las monedas");
+
+        cache.actualizar(cripto("SOL", "usd", 5)); // Toma la fila que dejó BTC
+        comprobar(cache.obtener("SOL", "usd").getPrecio() == 5, "el símbolo nuevo se lee en la fila reutilizada");
+        comprobar(cache.obtener("SOL", "eur") == null, "la fila reutilizada no arrastra precios del símbolo anterior");
+        comprobar(cache.obtener("BTC", "usd") == null, "el símbolo desalojado no reaparece");
+        comprobar(cache.cambiosDesde(0, "eur").getPrecios().isEmpty(), "sin precios en eur tras el desalojo");
+    }
+
+    static void desalojoDaInstantaneaCompletaALosAtrasados() {
+        CachePrecios cache = new CachePrecios(List.of("usd"));
+        cache.actualizar(cripto("BTC", "usd", 100));
+        cache.actualizar(cripto("ETH", "usd", 10));
+        cache.marcarAcceso("ETH");
+        long antesDelDesalojo = cache.getVersion();
+
+        comprobar(cache.desalojar(1, Set.of()) == 1, "se desaloja BTC");
+        comprobar(cache.getVersion() == antesDelDesalojo + 1, "el desalojo publica una versión");
+        CambiosPrecios atrasado = cache.cambiosDesde(antesDelDesalojo, "usd");
+        comprobar(atrasado.isInstantaneaCompleta(), "un cliente anterior al desalojo recibe una instantánea completa");
+        comprobar(atrasado.getPrecios().equals(Map.of("ETH", 10.0)), "la instantánea ya no trae BTC: " + atrasado.getPrecios());
+
+        cache.actualizar(cripto("ETH", "usd", 11));
+        CambiosPrecios alDia = cache.cambiosDesde(atrasado.getVersion(), "usd");
+        comprobar(!alDia.isInstantaneaCompleta(), "después del desalojo vuelven los cambios incrementales");
+        comprobar(alDia.getPrecios().equals(Map.of("ETH", 11.0)), "solo cambió ETH: " + alDia.getPrecios());
+        comprobar(cache.desalojar(1, Set.of()) == 0 && cache.getVersion() == alDia.getVersion(),
+                "sin nada que desalojar no se publica versión");
+    }
+
+    private static long epoca(long version) {
+        return version >>> 48;
+    }
+
+    private static Cripto cripto(String simbolo, String moneda, double precio) {
+        long ahora = System.currentTimeMillis();
+        return new Cripto(simbolo, moneda, precio, ahora, ahora, 0);
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}
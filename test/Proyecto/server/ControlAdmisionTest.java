@@ -0,0 +1,131 @@
+package server;
+
+import common.ServidorSaturadoException;
+
+/**
+ * Pruebas del límite AIMD de {@link ControlAdmision}: rechazo al llegar al límite, reducción
+ * multiplicativa ante llamadas lentas (una vez por latencia objetivo), crecimiento aditivo con
+ * llamadas rápidas, y descuento en la latencia del tiempo en el origen (lecturas) y de los tramos
+ * que no son trabajo en MySQL (escrituras).
+ *
+ * Sin dependencias: se ejecuta con {@code java server.ControlAdmisionTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class ControlAdmisionTest {
+
+    private static final ControlAdmision.Clase ORIGEN = ControlAdmision.Clase.ORIGEN;
+    private static final ControlAdmision.Clase LECTURA = ControlAdmision.Clase.LECTURA;
+    private static final ControlAdmision.Clase ESCRITURA = ControlAdmision.Clase.ESCRITURA;
+
+    public static void main(String[] args) {
+        rechazaAlLlegarAlLimite();
+        llamadaLentaReduceElLimite();
+        llamadasRapidasLoHacenCrecer();
+        tiempoEnOrigenNoPenalizaALaLectura();
+        esperaFueraDeMySQLNoPenalizaALaEscritura();
+        System.out.println("ControlAdmisionTest: OK");
+    }
+
+    static void rechazaAlLlegarAlLimite() {
+        ControlAdmision admision = new ControlAdmision();
+        int admitidas = llenar(admision, ORIGEN);
+        comprobar(admitidas == ORIGEN.inicial, "admite hasta el límite inicial: " + admitidas);
+        try {
+            admision.entrar(ORIGEN);
+            throw new AssertionError("entrar por sobre el límite debía rechazarse");
+        } catch (ServidorSaturadoException e) {
+            // Esperado
+        }
+        vaciar(admision, ORIGEN, admitidas, System.nanoTime());
+        comprobar(admision.intentar(ORIGEN), "al liberar vuelve a admitir");
+        admision.salir(ORIGEN, System.nanoTime());
+    }
+
+    static void llamadaLentaReduceElLimite() {
+        ControlAdmision admision = new ControlAdmision();
+        long lenta = System.nanoTime() - (ORIGEN.objetivoMs + 1_000) * 1_000_000L;
+        comprobar(admision.intentar(ORIGEN), "admite la primera");
+        admision.salir(ORIGEN, lenta);
+        int esperado = (int) (ORIGEN.inicial * 0.9);
+        int admitidas = llenar(admision, ORIGEN);
+        comprobar(admitidas == esperado, "tras una llamada lenta el límite baja a " + esperado + ": " + admitidas);
+        vaciar(admision, ORIGEN, admitidas, lenta);
+        // La misma ráfaga lenta no vuelve a reducir antes de que pase otra latencia objetivo
+        admitidas = llenar(admision, ORIGEN);
+        comprobar(admitidas == esperado, "una ráfaga lenta reduce una sola vez: " + admitidas);
+        vaciar(admision, ORIGEN, admitidas, System.nanoTime());
+    }
+
+    static void llamadasRapidasLoHacenCrecer() {
+        ControlAdmision admision = new ControlAdmision();
+        int admitidas = 0;
+        for (int ronda = 0; ronda < 200 && admitidas <= ORIGEN.inicial; ronda++) {
+            admitidas = llenar(admision, ORIGEN); // Límite en uso: cada llamada rápida suma 1/límite
+            vaciar(admision, ORIGEN, admitidas, System.nanoTime());
+        }
+        comprobar(admitidas > ORIGEN.inicial, "con llamadas rápidas el límite crece: " + admitidas);
+        for (int ronda = 0; ronda < 5_000; ronda++) {
+            admitidas = llenar(admision, ORIGEN);
+            vaciar(admision, ORIGEN, admitidas, System.nanoTime());
+        }
+        comprobar(admitidas == ORIGEN.maximo, "el límite no supera el máximo de la clase: " + admitidas);
+    }
+
+    static void tiempoEnOrigenNoPenalizaALaLectura() {
+        ControlAdmision admision = new ControlAdmision();
+        long espera = (ORIGEN.objetivoMs + 1_000) * 1_000_000L;
+        long inicioLectura = System.nanoTime() - espera;
+        comprobar(admision.intentar(LECTURA), "admite la lectura");
+        comprobar(admision.intentar(ORIGEN), "la lectura toma un permiso de origen en el mismo hilo");
+        admision.salir(ORIGEN, inicioLectura); // El origen fue lento: todo el tiempo de la lectura
+        admision.salir(LECTURA, inicioLectura);
+
+        int lecturas = llenar(admision, LECTURA);
+        comprobar(lecturas >= LECTURA.inicial, "la lectura no se castiga por el origen lento: " + lecturas);
+        vaciar(admision, LECTURA, lecturas, System.nanoTime());
+        int origenes = llenar(admision, ORIGEN);
+        comprobar(origenes < ORIGEN.inicial, "el origen lento sí reduce su propio límite: " + origenes);
+        vaciar(admision, ORIGEN, origenes, System.nanoTime());
+    }
+
+    static void esperaFueraDeMySQLNoPenalizaALaEscritura() {
+        ControlAdmision admision = new ControlAdmision();
+        // Una escritura de 9 s: mutex ocupado y pausa de demostración, con solo 100 ms en MySQL
+        long fueraDeMySQL = 8_900 * 1_000_000L;
+        long inicio = System.nanoTime() - fueraDeMySQL - 100 * 1_000_000L;
+        comprobar(admision.intentar(ESCRITURA), "admite la escritura");
+        admision.descontar(fueraDeMySQL);
+        admision.salir(ESCRITURA, inicio);
+        int escrituras = llenar(admision, ESCRITURA);
+        comprobar(escrituras == ESCRITURA.inicial, "la espera fuera de MySQL no reduce el límite: " + escrituras);
+        vaciar(admision, ESCRITURA, escrituras, System.nanoTime());
+
+        // Sin descontarla, la misma escritura sí lo reduce
+        comprobar(admision.intentar(ESCRITURA), "admite la escritura");
+        admision.salir(ESCRITURA, inicio);
+        escrituras = llenar(admision, ESCRITURA);
+        comprobar(escrituras < ESCRITURA.inicial, "una escritura lenta en MySQL reduce el límite: " + escrituras);
+        vaciar(admision, ESCRITURA, escrituras, System.nanoTime());
+    }
+
+    // Toma permisos hasta el primer rechazo; devuelve cuántos se admitieron
+    private static int llenar(ControlAdmision admision, ControlAdmision.Clase clase) {
+        int admitidas = 0;
+        while (admision.intentar(clase)) {
+            admitidas++;
+        }
+        return admitidas;
+    }
+
+    private static void vaciar(ControlAdmision admision, ControlAdmision.Clase clase, int cantidad, long inicioNanos) {
+        for (int i = 0; i < cantidad; i++) {
+            admision.salir(clase, inicioNanos);
+        }
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}
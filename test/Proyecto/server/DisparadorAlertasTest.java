@@ -0,0 +1,114 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Pruebas de las transiciones de {@link DisparadorAlertas} con ambas políticas de rearme.
+ *
+ * Sin dependencias: se ejecuta con {@code java server.DisparadorAlertasTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class DisparadorAlertasTest {
+
+    private static final double HISTERESIS = 0.01; // 1%
+    private static final long ENFRIAMIENTO_MS = 1_000;
+
+    public static void main(String[] args) {
+        unaVezDisparaUnaSolaVezYQuedaPendiente();
+        menorQueDisparaBajoElUmbral();
+        enfriamientoRequiereSalirDeLaBanda();
+        enfriamientoRequiereQuePaseElTiempo();
+        alertaModificadaVuelveAEstarArmada();
+        terminarCicloOlvidaLasInactivas();
+        conservarMantieneElEstadoSinEvaluar();
+        System.out.println("DisparadorAlertasTest: OK");
+    }
+
+    static void unaVezDisparaUnaSolaVezYQuedaPendiente() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.UNA_VEZ, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(!evaluar(disparador, "1", "MAYOR_QUE", 100, 99, 0), "bajo el umbral no dispara");
+        comprobar(evaluar(disparador, "1", "MAYOR_QUE", 100, 101, 10), "sobre el umbral dispara");
+        comprobar(!evaluar(disparador, "1", "MAYOR_QUE", 100, 102, 20), "no vuelve a disparar mientras se cumple");
+        // Aunque el precio salga de la banda y pase el enfriamiento, UNA_VEZ no rearma
+        comprobar(!evaluar(disparador, "1", "MAYOR_QUE", 100, 50, 5_000), "UNA_VEZ no rearma al salir de la banda");
+        comprobar(!evaluar(disparador, "1", "MAYOR_QUE", 100, 150, 10_000), "UNA_VEZ no rearma nunca");
+        comprobar(disparador.pendientesDeDesactivar().equals(List.of("1")), "queda pendiente de desactivar");
+        disparador.confirmarDesactivadas(List.of("1"));
+        comprobar(disparador.cantidadPendientes() == 0, "confirmada la desactivación");
+    }
+
+    static void menorQueDisparaBajoElUmbral() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.UNA_VEZ, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(!evaluar(disparador, "2", "MENOR_QUE", 100, 100, 0), "en el umbral exacto no dispara");
+        comprobar(evaluar(disparador, "2", "MENOR_QUE", 100, 99.9, 10), "bajo el umbral dispara");
+    }
+
+    static void enfriamientoRequiereSalirDeLaBanda() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.ENFRIAMIENTO, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(disparador, "3", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        // Oscila dentro de la banda (99..100): no se rearma aunque pase el tiempo
+        comprobar(!evaluar(disparador, "3", "MAYOR_QUE", 100, 99.5, 5_000), "dentro de la banda no rearma");
+        comprobar(!evaluar(disparador, "3", "MAYOR_QUE", 100, 101, 6_000), "sin salir de la banda no vuelve a disparar");
+        comprobar(disparador.cantidadPendientes() == 0, "ENFRIAMIENTO no desactiva la alerta");
+        // Sale de la banda: pasa a enfriamiento, y como ya pasó el tiempo desde el disparo, se rearma
+        comprobar(!evaluar(disparador, "3", "MAYOR_QUE", 100, 98, 7_000), "al salir de la banda no dispara");
+        comprobar(evaluar(disparador, "3", "MAYOR_QUE", 100, 101, 8_000), "rearmada, vuelve a disparar");
+    }
+
+    static void enfriamientoRequiereQuePaseElTiempo() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.ENFRIAMIENTO, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(disparador, "4", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        comprobar(!evaluar(disparador, "4", "MAYOR_QUE", 100, 98, 100), "sale de la banda: enfriamiento");
+        comprobar(!evaluar(disparador, "4", "MAYOR_QUE", 100, 101, 500), "en enfriamiento no dispara");
+        // Cumplido el enfriamiento con la condición ya cumplida, dispara en la misma evaluación
+        comprobar(evaluar(disparador, "4", "MAYOR_QUE", 100, 101, ENFRIAMIENTO_MS), "tras el enfriamiento dispara");
+    }
+
+    static void alertaModificadaVuelveAEstarArmada() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.ENFRIAMIENTO, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(disparador, "5", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        comprobar(evaluar(disparador, "5", "MAYOR_QUE", 90, 101, 10), "con otro umbral empieza armada");
+        comprobar(evaluar(disparador, "5", "MENOR_QUE", 90, 80, 20), "con otra condición empieza armada");
+    }
+
+    static void terminarCicloOlvidaLasInactivas() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.ENFRIAMIENTO, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(disparador, "6", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        disparador.iniciarCiclo();
+        disparador.terminarCiclo(); // La alerta 6 no se evaluó: ya no está activa
+        disparador.iniciarCiclo();
+        comprobar(disparador.evaluar("6", "MAYOR_QUE", 100, 0, 101, 10), "una alerta olvidada vuelve a empezar armada");
+        disparador.terminarCiclo();
+    }
+
+    static void conservarMantieneElEstadoSinEvaluar() {
+        DisparadorAlertas disparador = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.ENFRIAMIENTO, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(disparador, "7", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        // Un ciclo sin precio en la caché (o con la ventana sin datos): la alerta sigue activa
+        disparador.iniciarCiclo();
+        disparador.conservar("7");
+        disparador.terminarCiclo();
+        comprobar(!evaluar(disparador, "7", "MAYOR_QUE", 100, 101, 10), "conserva DISPARADA: no vuelve a disparar");
+
+        DisparadorAlertas unaVez = new DisparadorAlertas(DisparadorAlertas.PoliticaRearme.UNA_VEZ, HISTERESIS, ENFRIAMIENTO_MS);
+        comprobar(evaluar(unaVez, "8", "MAYOR_QUE", 100, 101, 0), "primer disparo");
+        unaVez.iniciarCiclo();
+        unaVez.conservar("8"); // El UPDATE aún no se confirma
+        unaVez.terminarCiclo();
+        comprobar(!evaluar(unaVez, "8", "MAYOR_QUE", 100, 101, 10), "pendiente de desactivar no vuelve a disparar");
+    }
+
+    // Un ciclo completo del verificador con una sola alerta de precio
+    private static boolean evaluar(DisparadorAlertas disparador, String id, String tipo, double umbral, double valor, long ahora) {
+        disparador.iniciarCiclo();
+        boolean disparada = disparador.evaluar(id, tipo, umbral, 0, valor, ahora);
+        disparador.terminarCiclo();
+        return disparada;
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}
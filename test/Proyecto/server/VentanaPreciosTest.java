@@ -0,0 +1,123 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pruebas de {@link VentanaPrecios}: las estadísticas incrementales (Welford y colas monótonas)
+ * deben coincidir con recalcularlas desde cero sobre los ticks que quedan en la ventana.
+ *
+ * Sin dependencias: se ejecuta con {@code java server.VentanaPreciosTest} y termina con error
+ * si alguna comprobación falla.
+ */
+public class VentanaPreciosTest {
+
+    private static final double TOLERANCIA = 1e-9;
+
+    public static void main(String[] args) {
+        noLlenaDevuelveNaN();
+        porPeriodosCoincideConRecalcular();
+        porTiempoDescartaLosViejos();
+        ignoraTimestampsRepetidos();
+        detectaCruceDeMedia();
+        cambioPorcentualDesdeMinimoYMaximo();
+        System.out.println("VentanaPreciosTest: OK");
+    }
+
+    static void noLlenaDevuelveNaN() {
+        VentanaPrecios ventana = VentanaPrecios.porPeriodos(3);
+        ventana.agregar(1, 10);
+        ventana.agregar(2, 11);
+        comprobar(Double.isNaN(ventana.mediaMovil()), "media de una ventana a medio llenar");
+        comprobar(Double.isNaN(ventana.desviacion()), "desviación de una ventana a medio llenar");
+        comprobar(Double.isNaN(ventana.cambioPorcentual()), "cambio de una ventana a medio llenar");
+        comprobar(ventana.minimo() == 10 && ventana.maximo() == 11, "mínimo y máximo antes de llenarse");
+    }
+
+    static void porPeriodosCoincideConRecalcular() {
+        int periodos = 7;
+        VentanaPrecios ventana = VentanaPrecios.porPeriodos(periodos);
+        List<Double> todos = new ArrayList<>();
+        Random azar = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            double precio = 1000 + azar.nextGaussian() * 50;
+            todos.add(precio);
+            ventana.agregar(i + 1, precio);
+            if (todos.size() >= periodos) {
+                List<Double> enVentana = todos.subList(todos.size() - periodos, todos.size());
+                comprobarCerca(media(enVentana), ventana.mediaMovil(), "media tras el tick " + i);
+                comprobarCerca(desviacion(enVentana), ventana.desviacion(), "desviación tras el tick " + i);
+                comprobar(ventana.minimo() == enVentana.stream().mapToDouble(d -> d).min().getAsDouble(), "mínimo tras el tick " + i);
+                comprobar(ventana.maximo() == enVentana.stream().mapToDouble(d -> d).max().getAsDouble(), "máximo tras el tick " + i);
+                comprobar(ventana.muestras() == periodos, "muestras tras el tick " + i);
+            }
+        }
+    }
+
+    static void porTiempoDescartaLosViejos() {
+        VentanaPrecios ventana = VentanaPrecios.porTiempo(10_000);
+        // 200 ticks cada segundo: la ventana crece más allá de su capacidad inicial y luego se desliza
+        for (int i = 1; i <= 200; i++) {
+            ventana.agregar(i * 1_000L, i);
+        }
+        // Quedan los ticks con timestamp > 200 000 - 10 000, o sea 191..200
+        comprobar(ventana.muestras() == 10, "muestras de la ventana por tiempo: " + ventana.muestras());
+        comprobarCerca(195.5, ventana.mediaMovil(), "media de la ventana por tiempo");
+        comprobar(ventana.minimo() == 191 && ventana.maximo() == 200, "extremos de la ventana por tiempo");
+    }
+
+    static void ignoraTimestampsRepetidos() {
+        VentanaPrecios ventana = VentanaPrecios.porPeriodos(2);
+        ventana.agregar(1_000, 10);
+        ventana.agregar(1_000, 99); // Misma cotización de la fuente: no es un periodo nuevo
+        ventana.agregar(500, 99);   // Más antigua que la última: tampoco
+        ventana.agregar(2_000, 20);
+        comprobar(ventana.muestras() == 2, "los ticks repetidos no cuentan");
+        comprobarCerca(15, ventana.mediaMovil(), "media sin los ticks repetidos");
+    }
+
+    static void detectaCruceDeMedia() {
+        VentanaPrecios ventana = VentanaPrecios.porPeriodos(3);
+        ventana.agregar(1, 10);
+        ventana.agregar(2, 12);
+        ventana.agregar(3, 14); // Media 12, el último queda arriba
+        comprobar(!ventana.cruzoMediaMovil(), "sin cruce mientras sube");
+        ventana.agregar(4, 8);  // Media 11,33, el último queda abajo
+        comprobar(ventana.cruzoMediaMovil(), "cruce al caer bajo la media");
+        ventana.agregar(5, 7);
+        comprobar(!ventana.cruzoMediaMovil(), "el cruce dura un solo tick");
+    }
+
+    static void cambioPorcentualDesdeMinimoYMaximo() {
+        VentanaPrecios ventana = VentanaPrecios.porPeriodos(3);
+        ventana.agregar(1, 100);
+        ventana.agregar(2, 80);
+        ventana.agregar(3, 90); // Subió 12,5% desde 80, bajó 10% desde 100
+        comprobarCerca(12.5, ventana.cambioPorcentual(), "cambio porcentual");
+    }
+
+    private static double media(List<Double> valores) {
+        return valores.stream().mapToDouble(d -> d).average().orElse(Double.NaN);
+    }
+
+    private static double desviacion(List<Double> valores) {
+        double media = media(valores);
+        double suma = 0;
+        for (double valor : valores) {
+            suma += (valor - media) * (valor - media);
+        }
+        return Math.sqrt(suma / (valores.size() - 1));
+    }
+
+    private static void comprobarCerca(double esperado, double obtenido, String que) {
+        comprobar(Math.abs(esperado - obtenido) <= TOLERANCIA * Math.max(1, Math.abs(esperado)),
+                que + ": se esperaba " + esperado + " y se obtuvo " + obtenido);
+    }
+
+    private static void comprobar(boolean condicion, String que) {
+        if (!condicion) {
+            throw new AssertionError(que);
+        }
+    }
+}